@@ -0,0 +1,315 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import java.util.List;
+
+/**
+ * <p>
+ * A class that chooses, for each computation of the intersections in a
+ * set of segments, the fastest of the algorithms of InterComputer.
+ * </p>
+ * <p>
+ * The duration of each algorithm is estimated as a number of work units
+ * times a cost per unit:<ul>
+ *     <li>naive: one unit per pair of segments, n(n-1)/2, plus
+ *     INTERSECTION_WEIGHT units per intersection, k</li>
+ *     <li>boxed: n log(n) to sort the segments, plus one unit per pair of
+ *     segments whose x-ranges overlap, plus INTERSECTION_WEIGHT units per
+ *     intersection</li>
+ *     <li>Bentley Ottmann: (n + k/BO_INTERSECTION_DIVISOR) log(n)</li>
+ * </ul>
+ * The weights of the intersections reflect that building an Intersection
+ * and adding it to an IntersectionSet costs much more than testing a pair
+ * of segments, while the Bentley Ottmann implementation mostly pays for
+ * its sweep line and event queue.
+ * </p>
+ * <p>
+ * The numbers of overlapping and intersecting pairs are estimated from a
+ * small sample of pairs of segments, and the cost per unit of each
+ * algorithm is learnt from the durations of its past runs. Every
+ * EXPLORATION_PERIOD computations, another algorithm than the expected
+ * fastest one is run, so that the costs of all of them stay up to date.
+ * </p>
+ * <p>
+ * All the algorithms return the same intersections, so the choice only
+ * changes the duration of the computation. A model can be pinned to one
+ * algorithm, and reset to its initial costs, e.g. by tests and
+ * benchmarks which need a reproducible choice.
+ * </p>
+ * <p>
+ * The model can be shared by several threads.
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class CrossoverModel {
+
+    /**
+     * Naive algorithm, testing all pairs of segments.
+     */
+    public static final int NAIVE = 0;
+
+    /**
+     * Naive algorithm, only testing the pairs of segments whose
+     * bounding boxes overlap.
+     */
+    public static final int BOXED = 1;
+
+    /**
+     * Bentley Ottmann algorithm, on exact predicates.
+     */
+    public static final int BO = 2;
+
+    /**
+     * Number of algorithms.
+     */
+    public static final int NB_ALGORITHMS = 3;
+
+    /**
+     * No algorithm pinned : the fastest one is chosen.
+     */
+    public static final int ADAPTIVE = -1;
+
+    /**
+     * Minimal number of segments for which the sample is worth it : the
+     * naive algorithm is always used for smaller sets.
+     */
+    static final int MIN_SAMPLED_SIZE = 32;
+
+    /**
+     * Number of pairs of segments of the sample.
+     */
+    private static final int SAMPLE_SIZE = 64;
+
+    /**
+     * Number of computations between two runs of another algorithm than
+     * the expected fastest one.
+     */
+    private static final int EXPLORATION_PERIOD = 32;
+
+    /**
+     * Maximal ratio between the estimated durations of an algorithm run
+     * to update its cost and of the expected fastest one.
+     */
+    private static final double MAX_EXPLORATION_RATIO = 4;
+
+    /**
+     * Weight of a new measure in the cost per unit of an algorithm.
+     */
+    private static final double SMOOTHING = 0.125;
+
+    /**
+     * Number of work units per intersection of the naive algorithms.
+     */
+    private static final double INTERSECTION_WEIGHT = 50;
+
+    /**
+     * Number of intersections per work unit of the Bentley Ottmann
+     * algorithm.
+     */
+    private static final double BO_INTERSECTION_DIVISOR = 32;
+
+    /**
+     * Initial costs per unit of the algorithms, in nanoseconds, measured
+     * on the drawings of random graphs, which make the Bentley Ottmann
+     * algorithm outrun the naive one from about 90 segments.
+     */
+    private static final double[] DEFAULT_COSTS = {15, 20, 250};
+
+    /**
+     * Initial costs per unit of the algorithms, in nanoseconds.
+     */
+    private final double[] initialCosts;
+
+    /**
+     * Costs per unit of the algorithms, in nanoseconds.
+     */
+    private final double[] costs;
+
+    /**
+     * Number of choices made so far.
+     */
+    private int nbChoices;
+
+    /**
+     * Algorithm always chosen, or ADAPTIVE.
+     */
+    private int pinned;
+
+    /**
+     * Initializes a new model with the default costs.
+     */
+    public CrossoverModel() {
+        this(DEFAULT_COSTS);
+    }
+
+    /**
+     * Initializes a new model with the specified costs.
+     *
+     * @param costs Cost per unit of each algorithm, in nanoseconds
+     * @throws IllegalArgumentException if there is not one cost per
+     * algorithm
+     */
+    public CrossoverModel(double[] costs) throws IllegalArgumentException {
+        if (costs.length != NB_ALGORITHMS) {
+            throw new IllegalArgumentException("One cost per algorithm is required");
+        }
+        this.initialCosts = costs.clone();
+        this.costs = costs.clone();
+        this.nbChoices = 0;
+        this.pinned = ADAPTIVE;
+    }
+
+    /**
+     * Makes the model always choose the specified algorithm, or choose
+     * the fastest one again if ADAPTIVE is specified. The durations of
+     * the runs of a pinned algorithm are not recorded.
+     *
+     * @param algorithm NAIVE, BOXED, BO or ADAPTIVE
+     * @throws IllegalArgumentException if the algorithm is unknown
+     */
+    public synchronized void pin(int algorithm) throws IllegalArgumentException {
+        if (algorithm < ADAPTIVE || algorithm >= NB_ALGORITHMS) {
+            throw new IllegalArgumentException("Unknown algorithm");
+        }
+        pinned = algorithm;
+    }
+
+    /**
+     * Pinned algorithm getter.
+     *
+     * @return the algorithm always chosen, or ADAPTIVE
+     */
+    public synchronized int getPinned() {
+        return pinned;
+    }
+
+    /**
+     * Forgets everything learnt so far : the costs are set back to the
+     * initial ones, the exploration starts again, and no algorithm is
+     * pinned anymore.
+     */
+    public synchronized void reset() {
+        System.arraycopy(initialCosts, 0, costs, 0, NB_ALGORITHMS);
+        nbChoices = 0;
+        pinned = ADAPTIVE;
+    }
+
+    /**
+     * Returns the algorithm which should be used to compute the
+     * intersections in the specified list of segments, and sets the
+     * specified array to the work of each algorithm.
+     *
+     * @param segments Segments whose intersections must be computed
+     * @param work     Array of length NB_ALGORITHMS, previous content will
+     *                 be overwritten
+     * @return the algorithm to run : NAIVE, BOXED or BO
+     */
+    int choose(List<Segment> segments, double[] work) {
+        int n = segments.size();
+        double nbPairs = n * (n - 1) / 2.0;
+        double log = Math.log(Math.max(n, 2)) / Math.log(2);
+        // Estimates the number of x-overlapping and intersecting pairs
+        // with a sample of pairs, picked by a fixed generator so that a
+        // set of segments always leads to the same estimation
+        int nbOverlapping = 0;
+        int nbIntersecting = 0;
+        long seed = n;
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int a = (int) ((seed >>> 33) % n);
+            int b = (int) ((seed >>> 1) % (n - 1));
+            if (b >= a) {
+                b++;
+            }
+            Segment s1 = segments.get(a);
+            Segment s2 = segments.get(b);
+            if (overlapX(s1, s2)) {
+                nbOverlapping++;
+                if (s1.intersectionWith(s2) != null) {
+                    nbIntersecting++;
+                }
+            }
+        }
+        double k = nbPairs * nbIntersecting / SAMPLE_SIZE;
+        work[NAIVE] = nbPairs + INTERSECTION_WEIGHT * k;
+        work[BOXED] = n * log + nbPairs * nbOverlapping / SAMPLE_SIZE
+                + INTERSECTION_WEIGHT * k;
+        work[BO] = (n + k / BO_INTERSECTION_DIVISOR) * log;
+        return choose(work);
+    }
+
+    /**
+     * Returns the algorithm which should be used given the specified work
+     * of each algorithm.
+     *
+     * @param work Work of each algorithm
+     * @return the algorithm to run : NAIVE, BOXED or BO
+     */
+    synchronized int choose(double[] work) {
+        if (pinned != ADAPTIVE) {
+            return pinned;
+        }
+        int fastest = 0;
+        for (int i = 1; i < NB_ALGORITHMS; i++) {
+            if (costs[i]*work[i] < costs[fastest]*work[fastest]) {
+                fastest = i;
+            }
+        }
+        nbChoices++;
+        if (nbChoices % EXPLORATION_PERIOD == 0) {
+            // Runs each other algorithm in turn, if not too slow
+            int other = (fastest + 1 + (nbChoices / EXPLORATION_PERIOD) % (NB_ALGORITHMS - 1))
+                    % NB_ALGORITHMS;
+            if (costs[other]*work[other] <= MAX_EXPLORATION_RATIO*costs[fastest]*work[fastest]) {
+                return other;
+            }
+        }
+        return fastest;
+    }
+
+    /**
+     * Updates the cost per unit of the specified algorithm with the
+     * duration of one of its runs.
+     *
+     * @param algorithm Algorithm which has been run
+     * @param work      Work of the run
+     * @param duration  Duration of the run, in nanoseconds
+     */
+    synchronized void record(int algorithm, double work, long duration) {
+        if (work <= 0) {
+            return;
+        }
+        double cost = costs[algorithm];
+        // Bounds the measure, which might include a garbage collection
+        // or a context switch
+        double measure = Math.max(cost / 4, Math.min(4 * cost, duration / work));
+        costs[algorithm] = cost + SMOOTHING*(measure - cost);
+    }
+
+    /**
+     * Cost per unit getter.
+     *
+     * @param algorithm Algorithm whose cost is required
+     * @return the current cost per unit of the specified algorithm, in
+     * nanoseconds
+     */
+    synchronized double getCost(int algorithm) {
+        return costs[algorithm];
+    }
+
+    /**
+     * Checks whether the x-ranges of the specified segments overlap.
+     *
+     * @param s1 First segment
+     * @param s2 Second segment
+     * @return True if and only if the x-ranges of the segments overlap
+     */
+    private static boolean overlapX(Segment s1, Segment s2) {
+        int minX1 = Math.min(s1.getP1().getX(), s1.getP2().getX());
+        int maxX1 = Math.max(s1.getP1().getX(), s1.getP2().getX());
+        int minX2 = Math.min(s2.getP1().getX(), s2.getP2().getX());
+        int maxX2 = Math.max(s2.getP1().getX(), s2.getP2().getX());
+        return minX2 <= maxX1 && minX1 <= maxX2;
+    }
+}
@@ -0,0 +1,529 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * <p>
+ * A class that computes the intersections in a set of segments with a
+ * sweep line whose events and order only rely on exact predicates on long
+ * integers, so that vertical segments, overlapping segments, segments with
+ * common endpoints and several segments crossing at the same point are
+ * handled without disturbing the input.
+ * </p>
+ * <p>
+ * Each event is a point with rational coordinates (xn/d, yn/d), computed
+ * exactly from the endpoints of the segments. The events are swept in
+ * lexicographic order, and at each event point p :<ul>
+ *     <li>the segments starting at p, ending at p, or containing p are
+ *     reported as intersecting at p, if at least two of them are not
+ *     parallel</li>
+ *     <li>the segments ending at p leave the sweep line, the segments
+ *     containing p are sorted again, and the segments starting at p
+ *     enter it, in their order right after p</li>
+ *     <li>the segments that become neighbours in the sweep line are
+ *     checked for an intersection after p</li>
+ * </ul>
+ * The intersections are snapped to the closest point with integral
+ * coordinates only when they are reported, so that the result is the one
+ * of the naive algorithm, whatever the rounding of the intersections.
+ * </p>
+ * <p>
+ * The sweep line is stored in a sorted array, which is cheaper than a tree
+ * for the few hundred edges of a drawing.
+ * </p>
+ * <p>
+ * The sweep can be restricted to a vertical slab : the segments starting
+ * on its left enter the sweep line where they cross its left side, and no
+ * event is created on its right, so that the work is proportional to the
+ * events of the slab.
+ * </p>
+ * <p>
+ * Undefined behaviour if one of the segments is outside
+ * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class ExactSweep {
+
+	/**
+	 * Offset of the coordinates in the sorting keys of the left endpoints,
+	 * which keeps the keys positive.
+	 */
+	private static final int KEY_OFFSET = 1 << 14;
+
+	/**
+	 * Analysed segments.
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * Coordinates of the left (resp. right) endpoint of each segment, the
+	 * left one being the lowest for vertical segments.
+	 */
+	private final int[] x1;
+	private final int[] y1;
+	private final int[] x2;
+	private final int[] y2;
+
+	/**
+	 * Twice the first and last x-coordinates swept. They are never
+	 * integral, so that no endpoint is on the sides of the slab swept.
+	 */
+	private final long fromX2;
+	private final long toX2;
+
+	/**
+	 * Start point of each segment, (startXn/startD, startYn/startD) with
+	 * startD > 0 : its left endpoint, or the point where it crosses the
+	 * left side of the slab swept if it starts before. startD is 0 for the
+	 * segments ending before the slab, which are not swept.
+	 */
+	private final long[] startXn;
+	private final long[] startYn;
+	private final long[] startD;
+
+	/**
+	 * Indices of the segments, sorted by start point.
+	 */
+	private final int[] byLeft;
+
+	/**
+	 * Number of segments of byLeft already in the sweep line.
+	 */
+	private int nbStarted;
+
+	/**
+	 * Segments intersecting with the sweep line, in their order right
+	 * after the current event.
+	 */
+	private final int[] status;
+	private int statusSize;
+
+	/**
+	 * Segments of the current event, in their order right after it.
+	 */
+	private final int[] block;
+
+	/**
+	 * Coordinates of the event points, each event being (xn/d, yn/d) with
+	 * d > 0.
+	 */
+	private long[] eventXn;
+	private long[] eventYn;
+	private long[] eventD;
+	private int nbEvents;
+
+	/**
+	 * Binary min-heap of the indices of the future events.
+	 */
+	private int[] queue;
+	private int queueSize;
+
+	/**
+	 * Initializes a new sweep over the specified segments.
+	 *
+	 * @param segments Segments to analyse
+	 */
+	public ExactSweep(Collection<Segment> segments) {
+		this(segments, -KEY_OFFSET, KEY_OFFSET);
+	}
+
+	/**
+	 * Initializes a new sweep over the specified segments, restricted to
+	 * the slab of the points whose x-coordinate is rounded in
+	 * [minX, maxX], i.e. in [minX - 1/2, maxX + 1/2]. All the intersections
+	 * snapped inside the slab are found, along with the ones on its sides.
+	 *
+	 * @param segments Segments to analyse
+	 * @param minX     First x-coordinate of the slab
+	 * @param maxX     Last x-coordinate of the slab
+	 */
+	ExactSweep(Collection<Segment> segments, int minX, int maxX) {
+		int n = segments.size();
+		this.segments = segments.toArray(new Segment[n]);
+		fromX2 = 2L*minX - 1;
+		toX2 = 2L*maxX + 1;
+		x1 = new int[n];
+		y1 = new int[n];
+		x2 = new int[n];
+		y2 = new int[n];
+		startXn = new long[n];
+		startYn = new long[n];
+		startD = new long[n];
+		long[] keys = new long[n];
+		int nbKeys = 0;
+		Integer[] clipped = new Integer[n];
+		int nbClipped = 0;
+		for (int s = 0; s < n; s++) {
+			// The endpoints of a Segment are already sorted
+			x1[s] = this.segments[s].getP1().getX();
+			y1[s] = this.segments[s].getP1().getY();
+			x2[s] = this.segments[s].getP2().getX();
+			y2[s] = this.segments[s].getP2().getY();
+			if (2L*x2[s] < fromX2) {
+				startD[s] = 0;
+			} else if (2L*x1[s] < fromX2) {
+				// Starts on the left side of the slab, where it is not vertical
+				long dx = x2[s] - x1[s];
+				startXn[s] = fromX2*dx;
+				startYn[s] = 2*y1[s]*dx + (fromX2 - 2L*x1[s])*(y2[s] - y1[s]);
+				startD[s] = 2*dx;
+				clipped[nbClipped++] = s;
+			} else {
+				startXn[s] = x1[s];
+				startYn[s] = y1[s];
+				startD[s] = 1;
+				keys[nbKeys++] = ((long) (x1[s] + KEY_OFFSET) << 47)
+						| ((long) (y1[s] + KEY_OFFSET) << 32) | s;
+			}
+		}
+		// The segments starting on the left side come first
+		Arrays.sort(clipped, 0, nbClipped, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.signum(startYn[a]*startD[b] - startYn[b]*startD[a]);
+			}
+		});
+		Arrays.sort(keys, 0, nbKeys);
+		byLeft = new int[nbClipped + nbKeys];
+		for (int i = 0; i < nbClipped; i++) {
+			byLeft[i] = clipped[i];
+		}
+		for (int i = 0; i < nbKeys; i++) {
+			byLeft[nbClipped + i] = (int) keys[i];
+		}
+		status = new int[n];
+		block = new int[n];
+		int capacity = Math.max(2*n, 1);
+		eventXn = new long[capacity];
+		eventYn = new long[capacity];
+		eventD = new long[capacity];
+		queue = new int[capacity];
+	}
+
+	/**
+	 * Sweeps over the segments.
+	 *
+	 * @return the intersections between the segments
+	 */
+	public IntersectionSet run() {
+		IntersectionSet result = new IntersectionSet();
+		for (int s = 0; s < segments.length; s++) {
+			if (startD[s] > 0) {
+				push(startXn[s], startYn[s], startD[s]);
+				push(x2[s], y2[s], 1);
+			}
+		}
+		while (queueSize > 0) {
+			int p = poll();
+			// Skips the other copies of the same event
+			while (queueSize > 0 && compareEvents(queue[0], p) == 0) {
+				poll();
+			}
+			handle(p, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Handles the event of specified index.
+	 */
+	private void handle(int p, IntersectionSet result) {
+		long xn = eventXn[p];
+		long yn = eventYn[p];
+		long d = eventD[p];
+		// Segments of the sweep line containing p, which are contiguous
+		int lo = 0;
+		int hi = statusSize;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (compareToPoint(status[mid], xn, yn, d) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		hi = lo;
+		while (hi < statusSize && compareToPoint(status[hi], xn, yn, d) == 0) {
+			hi++;
+		}
+		// Segments going on after p, then segments starting at p
+		int blockSize = 0;
+		for (int i = lo; i < hi; i++) {
+			int s = status[i];
+			if ((long) x2[s]*d != xn || (long) y2[s]*d != yn) {
+				block[blockSize++] = s;
+			}
+		}
+		int firstStarted = nbStarted;
+		while (nbStarted < byLeft.length && startsAt(byLeft[nbStarted], xn, yn, d)) {
+			block[blockSize++] = byLeft[nbStarted++];
+		}
+		report(p, lo, hi, firstStarted, result);
+		sortBySlope(blockSize);
+		// Replaces the segments containing p by the block
+		int shift = blockSize - (hi - lo);
+		System.arraycopy(status, hi, status, hi + shift, statusSize - hi);
+		System.arraycopy(block, 0, status, lo, blockSize);
+		statusSize += shift;
+		// Checks the new neighbours
+		if (blockSize == 0) {
+			if (lo > 0 && lo < statusSize) {
+				checkIntersection(status[lo - 1], status[lo], p);
+			}
+		} else {
+			if (lo > 0) {
+				checkIntersection(status[lo - 1], status[lo], p);
+			}
+			int last = lo + blockSize - 1;
+			if (last + 1 < statusSize) {
+				checkIntersection(status[last], status[last + 1], p);
+			}
+		}
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * @return True if and only if the specified segment starts at the
+	 * point (xn/d, yn/d)
+	 */
+	private boolean startsAt(int s, long xn, long yn, long d) {
+		return startXn[s]*d == xn*startD[s] && startYn[s]*d == yn*startD[s];
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Reports the segments of the sweep line between lo and hi, and the
+	 * segments of byLeft from firstStarted, which all go through the event
+	 * p, as intersecting at p if two of them are not parallel.
+	 */
+	private void report(int p, int lo, int hi, int firstStarted, IntersectionSet result) {
+		int nb = (hi - lo) + (nbStarted - firstStarted);
+		if (nb < 2) {
+			return;
+		}
+		int first = (hi > lo) ? status[lo] : byLeft[firstStarted];
+		int other = -1;
+		for (int i = lo; i < hi && other == -1; i++) {
+			if (!parallel(first, status[i])) {
+				other = status[i];
+			}
+		}
+		for (int i = firstStarted; i < nbStarted && other == -1; i++) {
+			if (!parallel(first, byLeft[i])) {
+				other = byLeft[i];
+			}
+		}
+		if (other == -1) {
+			return;
+		}
+		CPoint location = new CPoint(round(eventXn[p], eventD[p]), round(eventYn[p], eventD[p]));
+		Intersection inter = new Intersection(location, segments[first], segments[other]);
+		for (int i = lo; i < hi; i++) {
+			inter.addSegmentIfAbsent(segments[status[i]]);
+		}
+		for (int i = firstStarted; i < nbStarted; i++) {
+			inter.addSegmentIfAbsent(segments[byLeft[i]]);
+		}
+		result.add(inter);
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * If the specified segments intersect at a single point after the
+	 * event p, adds it to the events.
+	 */
+	private void checkIntersection(int a, int b, int p) {
+		long rx = x2[a] - x1[a];
+		long ry = y2[a] - y1[a];
+		long sx = x2[b] - x1[b];
+		long sy = y2[b] - y1[b];
+		long den = rx*sy - ry*sx;
+		if (den == 0) {
+			return;
+		}
+		long qx = x1[b] - x1[a];
+		long qy = y1[b] - y1[a];
+		// The intersection is at a + t*r = b + u*s, t = tn/den, u = un/den
+		long tn = qx*sy - qy*sx;
+		long un = qx*ry - qy*rx;
+		if (den < 0) {
+			den = -den;
+			tn = -tn;
+			un = -un;
+		}
+		if (tn < 0 || tn > den || un < 0 || un > den) {
+			return;
+		}
+		long xn = x1[a]*den + tn*rx;
+		long yn = y1[a]*den + tn*ry;
+		// Intersections at p or before have already been handled
+		if (comparePoints(xn, yn, den, p) > 0) {
+			push(xn, yn, den);
+		}
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Compares the y-coordinate of the specified segment at the abscissa
+	 * of the point (xn/d, yn/d) with the ordinate of the point, vertical
+	 * segments containing the point being considered to go through it.
+	 */
+	private int compareToPoint(int s, long xn, long yn, long d) {
+		long dx = x2[s] - x1[s];
+		if (dx == 0) {
+			if (yn < y1[s]*d) {
+				return 1;
+			} else if (yn > y2[s]*d) {
+				return -1;
+			} else {
+				return 0;
+			}
+		}
+		long dy = y2[s] - y1[s];
+		// (y(x) - y)*dx*d with x = xn/d and y = yn/d
+		return Long.signum(y1[s]*dx*d + (xn - x1[s]*d)*dy - yn*dx);
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Sorts the first blockSize segments of the block by gradient, vertical
+	 * segments being the highest, and overlapping segments by index.
+	 */
+	private void sortBySlope(int blockSize) {
+		for (int i = 1; i < blockSize; i++) {
+			int s = block[i];
+			int j = i;
+			while (j > 0 && compareSlopes(block[j - 1], s) > 0) {
+				block[j] = block[j - 1];
+				j--;
+			}
+			block[j] = s;
+		}
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Compares the gradients of the specified segments, then their indices.
+	 */
+	private int compareSlopes(int a, int b) {
+		long dxa = x2[a] - x1[a];
+		long dya = y2[a] - y1[a];
+		long dxb = x2[b] - x1[b];
+		long dyb = y2[b] - y1[b];
+		// dx >= 0, and dy > 0 for vertical segments
+		int res = Long.signum(dya*dxb - dyb*dxa);
+		return (res != 0) ? res : ((a < b) ? -1 : ((a == b) ? 0 : 1));
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * @return True if and only if the specified segments are parallel
+	 */
+	private boolean parallel(int a, int b) {
+		return (long) (x2[a] - x1[a])*(y2[b] - y1[b]) - (long) (y2[a] - y1[a])*(x2[b] - x1[b]) == 0;
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * @return n/d rounded as Math.round() does, d being > 0
+	 */
+	private static int round(long n, long d) {
+		long twice = 2*n + d;
+		long res = twice / (2*d);
+		if (twice % (2*d) < 0) {
+			res--;
+		}
+		return (int) res;
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Compares two events in lexicographic order.
+	 */
+	private int compareEvents(int e, int f) {
+		return comparePoints(eventXn[e], eventYn[e], eventD[e], f);
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Compares the point (xn/d, yn/d) with an event in lexicographic order.
+	 */
+	private int comparePoints(long xn, long yn, long d, int f) {
+		int res = Long.signum(xn*eventD[f] - eventXn[f]*d);
+		if (res == 0) {
+			res = Long.signum(yn*eventD[f] - eventYn[f]*d);
+		}
+		return res;
+	}
+
+	/**
+	 * Number of events getter.
+	 *
+	 * @return the number of events created so far, i.e. the endpoints,
+	 * intersections and entry points of the segments inside the slab swept
+	 */
+	int getNbEvents() {
+		return nbEvents;
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Adds a new event to the queue, unless it is on the right of the
+	 * slab swept.
+	 */
+	private void push(long xn, long yn, long d) {
+		if (2*xn > toX2*d) {
+			return;
+		}
+		if (nbEvents == eventXn.length) {
+			int capacity = 2*nbEvents;
+			eventXn = Arrays.copyOf(eventXn, capacity);
+			eventYn = Arrays.copyOf(eventYn, capacity);
+			eventD = Arrays.copyOf(eventD, capacity);
+			queue = Arrays.copyOf(queue, capacity);
+		}
+		int e = nbEvents++;
+		eventXn[e] = xn;
+		eventYn[e] = yn;
+		eventD[e] = d;
+		int i = queueSize++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (compareEvents(queue[parent], e) <= 0) {
+				break;
+			}
+			queue[i] = queue[parent];
+			i = parent;
+		}
+		queue[i] = e;
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Removes and returns the first event of the queue.
+	 */
+	private int poll() {
+		int res = queue[0];
+		int e = queue[--queueSize];
+		int i = 0;
+		int child;
+		while ((child = 2*i + 1) < queueSize) {
+			if (child + 1 < queueSize && compareEvents(queue[child + 1], queue[child]) < 0) {
+				child++;
+			}
+			if (compareEvents(e, queue[child]) <= 0) {
+				break;
+			}
+			queue[i] = queue[child];
+			i = child;
+		}
+		queue[i] = e;
+		return res;
+	}
+}
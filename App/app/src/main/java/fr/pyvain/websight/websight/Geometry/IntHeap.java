@@ -0,0 +1,104 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A class that represents a priority queue of primitive ints, used to
+ * store the x-coordinates of the future intersection events of the
+ * Bentley-Ottmann algorithm without boxing them.
+ * </p>
+ * <p>
+ * The ints are stored in a binary min-heap : adding an int and polling
+ * the smallest one need O(log(N)) time, peeking at it needs O(1) time.
+ * Unlike a set, the queue can contain the same int several times.
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class IntHeap {
+
+	/**
+	 * Heap array : the children of the int at index i are at indices
+	 * 2*i+1 and 2*i+2.
+	 */
+	private int[] heap;
+
+	/**
+	 * Number of ints in the queue.
+	 */
+	private int size;
+
+	/**
+	 * Initializes a new empty queue.
+	 *
+	 * @param capacity Initial capacity of the queue, must be > 0
+	 */
+	public IntHeap(int capacity) {
+		heap = new int[Math.max(capacity, 1)];
+		size = 0;
+	}
+
+	/**
+	 * @return True if and only if the queue is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds the specified int to the queue.
+	 *
+	 * @param value int to add
+	 */
+	public void add(int value) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, 2*size);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (heap[parent] <= value) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = value;
+	}
+
+	/**
+	 * Returns the smallest int of the queue, which must not be empty.
+	 *
+	 * @return the smallest int of the queue
+	 */
+	public int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Removes and returns the smallest int of the queue, which must not
+	 * be empty.
+	 *
+	 * @return the smallest int of the queue
+	 */
+	public int poll() {
+		int res = heap[0];
+		int value = heap[--size];
+		int i = 0;
+		int child;
+		while ((child = 2*i + 1) < size) {
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (value <= heap[child]) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = value;
+		return res;
+	}
+}
@@ -1,11 +1,15 @@
 package fr.pyvain.websight.websight.Geometry;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * <p>
@@ -20,14 +24,21 @@ import java.util.TreeSet;
 public class InterComputer {
 
     /**
-     * Minimal number of segments so that the Bentley Ottman implementation
-	 * outrun the naive method. In other words : <ul>
-     *     <li>if the size of the segment set is less than EQ_SIZE,
-     *     then the naive method is faster</li>
-     *     <li>else, the Bentley Ottmann method is faster</li>
-     * </ul>
+     * Model choosing the fastest algorithm in edgeIntersections(), when
+     * no other model is specified, learning from the durations of the
+     * computations.
      */
-    private static final int EQ_SIZE = 90;
+    private static final CrossoverModel DEFAULT_CROSSOVER = new CrossoverModel();
+
+    /**
+     * Default crossover model getter.
+     *
+     * @return the model used by edgeIntersections(Collection), which
+     * may be pinned or reset
+     */
+    public static CrossoverModel getCrossoverModel() {
+        return DEFAULT_CROSSOVER;
+    }
 
 
 	/**
@@ -56,8 +67,12 @@ public class InterComputer {
 
     /**
      * Computes the intersections in the specified set of Segments,
-     * using the fastest method between naive and Bentley Ottmann with
-     * a data set of this size.
+     * using the fastest method between naive, naive with bounding boxes
+     * and Bentley Ottmann with this data set.
+     *
+     * The fastest method is estimated from the number of segments, the
+     * number of intersections estimated with a small sample of pairs of
+     * segments, and the durations of the previous computations.
      *
      * For the time being, only the intersections between non parallel
      * segments are computed, in order to make the computation faster
@@ -68,13 +83,52 @@ public class InterComputer {
      *
      * @param segments  The set of segments to analyse
      * @return the intersections in the specified set of segments
+     * @see #getCrossoverModel()
      */
     public static IntersectionSet edgeIntersections(Collection<Segment> segments) {
-        if (segments.size() < EQ_SIZE) {
-            return edgeIntersectionsNaive(segments);
-        } else {
-            return edgeIntersectionsBO(segments);
+        return edgeIntersections(segments, DEFAULT_CROSSOVER);
+    }
+
+    /**
+     * Computes the intersections in the specified set of Segments, as
+     * edgeIntersections(Collection), with the method chosen by the
+     * specified crossover model. Whatever the method, the result is the
+     * same.
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param segments  The set of segments to analyse
+     * @param model     Model choosing the method
+     * @return the intersections in the specified set of segments
+     */
+    public static IntersectionSet edgeIntersections(Collection<Segment> segments,
+                                                    CrossoverModel model) {
+        List<Segment> lSegments = new ArrayList<>(segments);
+        // No work is estimated for a pinned algorithm, so it is not recorded
+        double[] work = new double[CrossoverModel.NB_ALGORITHMS];
+        int algorithm = model.getPinned();
+        if (algorithm == CrossoverModel.ADAPTIVE) {
+            if (segments.size() < CrossoverModel.MIN_SAMPLED_SIZE) {
+                return edgeIntersectionsNaive(lSegments);
+            }
+            algorithm = model.choose(lSegments, work);
+        }
+        long start = System.nanoTime();
+        IntersectionSet result;
+        switch (algorithm) {
+            case CrossoverModel.NAIVE:
+                result = edgeIntersectionsNaive(lSegments);
+                break;
+            case CrossoverModel.BOXED:
+                result = edgeIntersectionsBoxed(lSegments);
+                break;
+            default:
+                result = edgeIntersectionsExact(lSegments);
+                break;
         }
+        model.record(algorithm, work[algorithm], System.nanoTime() - start);
+        return result;
     }
 
     /**
@@ -109,6 +163,203 @@ public class InterComputer {
         return intersections;
     }
 
+    /**
+     * Computes the intersections in the specified set of Segments,
+     * using the naive algorithm, but only testing the pairs of segments
+     * whose bounding boxes overlap : the segments are sorted by left end,
+     * then each segment is only tested against the following ones which
+     * start before its right end.
+     *
+     * For the time being, only the intersections between non parallel
+     * segments are computed, in order to make the computation faster
+     * (and easier).
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] (caused by long overflow)
+     *
+     * @param segments  The set of segments to analyse
+     * @return the intersections in the specified set of segments
+     */
+    public static IntersectionSet edgeIntersectionsBoxed(Collection<Segment> segments) {
+        Segment[] aSegments = segments.toArray(new Segment[segments.size()]);
+        int S = aSegments.length;
+        // Sorts the segments by left end x-coordinate, the index of each
+        // segment being stored in the low bits of its sorting key
+        long[] sorted = new long[S];
+        for (int s = 0; s < S; s++) {
+            int minX = Math.min(aSegments[s].getP1().getX(), aSegments[s].getP2().getX());
+            sorted[s] = ((long) minX << 32) | s;
+        }
+        Arrays.sort(sorted);
+        IntersectionSet intersections = new IntersectionSet();
+        for (int a = 0; a < S; a++) {
+            Segment s1 = aSegments[(int) sorted[a]];
+            int maxX1 = Math.max(s1.getP1().getX(), s1.getP2().getX());
+            int minY1 = Math.min(s1.getP1().getY(), s1.getP2().getY());
+            int maxY1 = Math.max(s1.getP1().getY(), s1.getP2().getY());
+            for (int b = a+1; b < S; b++) {
+                // The following segments start beyond the right end of s1
+                if ((int) (sorted[b] >> 32) > maxX1) {
+                    break;
+                }
+                Segment s2 = aSegments[(int) sorted[b]];
+                int minY2 = Math.min(s2.getP1().getY(), s2.getP2().getY());
+                int maxY2 = Math.max(s2.getP1().getY(), s2.getP2().getY());
+                if (minY2 <= maxY1 && minY1 <= maxY2) {
+                    Intersection inter = interBetween(s1, s2);
+                    if (inter != null) {
+                        intersections.add(inter);
+                    }
+                }
+            }
+        }
+        return intersections;
+    }
+
+    /**
+     * Computes the intersections in the specified set of Segments, using
+     * a Bentley Ottmann algorithm whose events and sweep line order are
+     * computed exactly on long integers : vertical segments, overlapping
+     * segments and segments with common endpoints are handled as they
+     * are, without being disturbed first, and the intersections are only
+     * snapped to integral coordinates when they are reported.
+     *
+     * The result is the same as the one of edgeIntersectionsNaive().
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param segments  The set of segments to analyse
+     * @return the intersections in the specified set of segments
+     * @see ExactSweep
+     */
+    public static IntersectionSet edgeIntersectionsExact(Collection<Segment> segments) {
+        return new ExactSweep(segments).run();
+    }
+
+    /**
+     * Computes the intersections in the specified set of Segments, on
+     * several threads : the x-range of the segments is split into vertical
+     * slabs, each segment is given to the slabs it goes through, then the
+     * slabs are swept in parallel by an ExactSweep restricted to each slab.
+     * A segment coming from the left enters the sweep of a slab where it
+     * crosses its left side, and no event is created on its right, so that
+     * the work of a slab is proportional to its share of the events, even
+     * for long segments. Only the intersections whose location is inside
+     * the slab are kept, so that the intersections on the boundaries are
+     * not reported twice.
+     *
+     * As the segments have integral endpoints, two segments whose
+     * intersection is snapped inside a slab both reach that slab, so the
+     * result is the same as the one of edgeIntersectionsExact().
+     *
+     * If the calling thread is interrupted while waiting for the slabs,
+     * the intersections are computed in the calling thread, and the
+     * interrupt status is restored.
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param segments  The set of segments to analyse
+     * @param executor  Executor computing the intersections in the slabs
+     * @param nbSlabs   Number of slabs, must be > 0
+     * @return the intersections in the specified set of segments
+     * @throws IllegalArgumentException if the number of slabs is not
+     * positive
+     * @throws IllegalStateException if the computation failed in a slab
+     */
+    public static IntersectionSet edgeIntersectionsParallel(Collection<Segment> segments,
+                                                            ExecutorService executor, int nbSlabs)
+            throws IllegalArgumentException, IllegalStateException
+    {
+        if (nbSlabs <= 0) {
+            throw new IllegalArgumentException("Invalid number of slabs");
+        }
+        IntersectionSet result = new IntersectionSet();
+        if (segments.isEmpty()) {
+            return result;
+        }
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        for (Segment s : segments) {
+            minX = Math.min(minX, s.getP1().getX());
+            maxX = Math.max(maxX, s.getP2().getX());
+        }
+        int width = (maxX - minX + nbSlabs) / nbSlabs;
+        List<Slab> slabs = new ArrayList<>(nbSlabs);
+        for (int i = 0; i < nbSlabs; i++) {
+            slabs.add(new Slab(minX + i*width, minX + (i+1)*width - 1));
+        }
+        // The left endpoint of a Segment is its first one
+        for (Segment s : segments) {
+            int first = (s.getP1().getX() - minX) / width;
+            int last = (s.getP2().getX() - minX) / width;
+            for (int i = first; i <= last; i++) {
+                slabs.get(i).segments.add(s);
+            }
+        }
+        List<Future<List<Intersection>>> results;
+        try {
+            results = executor.invokeAll(slabs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return edgeIntersectionsExact(segments);
+        }
+        for (Future<List<Intersection>> slabResult : results) {
+            try {
+                for (Intersection i : slabResult.get()) {
+                    result.add(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return edgeIntersectionsExact(segments);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Intersection computation failed", e.getCause());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A vertical slab of the plane, with the segments going through it,
+     * whose intersections can be computed by another thread.
+     */
+    private static final class Slab implements Callable<List<Intersection>> {
+
+        /**
+         * First and last x-coordinates of the slab.
+         */
+        private final int minX;
+        private final int maxX;
+
+        /**
+         * Segments going through the slab.
+         */
+        private final List<Segment> segments;
+
+        Slab(int minX, int maxX) {
+            this.minX = minX;
+            this.maxX = maxX;
+            this.segments = new ArrayList<>();
+        }
+
+        /**
+         * @return the intersections between the segments of the slab which
+         * are inside the slab
+         */
+        @Override
+        public List<Intersection> call() {
+            List<Intersection> res = new ArrayList<>();
+            for (Intersection i : new ExactSweep(segments, minX, maxX).run().toArray()) {
+                int x = i.getLocation().getX();
+                if (minX <= x && x <= maxX) {
+                    res.add(i);
+                }
+            }
+            return res;
+        }
+    }
+
     /**
      * Returns a copy of the specified segment collections,
      * with slight modifications so that there are no vertical segments
@@ -166,6 +417,12 @@ public class InterComputer {
      * segments are computed, in order to make the computation faster
      * (and easier).
 	 *
+     * The position of the sweep line is stored in a SweepContext owned
+     * by this call, so that several computations can run concurrently.
+     * The sweep line itself is a SweepLine, in which the segments of each
+     * intersection swap their order in place, and the x-coordinates of
+     * the next intersections are queued unboxed in an IntHeap.
+     *
      * Undefined behaviour if one of the segments is outside
      * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
      *
@@ -181,40 +438,49 @@ public class InterComputer {
         // Contains the segments endpoint events by ascending locations
         EventQueue eventQueue = new EventQueue(lSegments);
 		// Contains the x-coordinates of the next segment intersections
-		// sorted by increasing values.
-		TreeSet<Integer> interX = new TreeSet<>();
+		// sorted by increasing values, possibly several times each
+		IntHeap interX = new IntHeap(lSegments.size());
+		// Position of the sweep line, used to order the segments in it
+		SweepContext context = new SweepContext(0);
 		// Contains at any moment all the segments that intersect with
-		// the sweep line in its current position, sorted in natural order
-		TreeSet<Segment> sweepLine = new TreeSet<>();
+		// the sweep line in its current position, sorted by context
+		SweepLine sweepLine = new SweepLine(context);
 
 		Event e;
 		int prevX = 0;
 		while ((e = eventQueue.nextEvent()) != null) {
 			int x = e.getLocation().getX();
 			// If the sweep line moves to a new x-coordinate which is beyond
-			// the next segments intersections, reorders the intersecting
-			// segments by removing them, updating comparingX, and readding them
-			while ((x != prevX) && !interX.isEmpty() && (interX.first() <= x)) {
-				int nextX = interX.pollFirst();
-                for (Intersection i : result.at(nextX)) {
-					for (Segment segment : i.getSegments()) {
-						sweepLine.remove(segment);
-					}
+			// the next segments intersections, updates comparingX and
+			// reorders the segments of each intersection in place
+			while ((x != prevX) && !interX.isEmpty() && (interX.peek() <= x)) {
+				int nextX = interX.poll();
+				while (!interX.isEmpty() && interX.peek() == nextX) {
+					interX.poll();
+				}
+				context.setComparingX(nextX);
+				for (Intersection i : result.at(nextX)) {
+					sweepLine.reorder(i.getSegments());
 				}
-				Segment.setComparingX(nextX);
                 // new found intersections are first stored in newInters
                 // while result.at(nextX) is browsed, then added after
                 // the loop, to avoid ConcurrentModificationException
                 List<Intersection> newInters = new ArrayList<>();
 				for (Intersection i : result.at(nextX)) {
-					for (Segment segment : i.getSegments()) {
-						sweepLine.add(segment);
-					}
 					// Checks intersection between the highest (resp. lowest)
 					// segment of each intersection and the one above (resp.
-                    // below) it in the sweep line
-                    Segment high = i.getSegments().first();
-                    Segment low = i.getSegments().last();
+                    // below) it in the sweep line, the order right after the
+                    // intersection being given by the gradients
+                    Segment high = null;
+                    Segment low = null;
+                    for (Segment segment : i.getSegments()) {
+                        if (high == null || SweepLine.compareGradients(segment, high) > 0) {
+                            high = segment;
+                        }
+                        if (low == null || SweepLine.compareGradients(segment, low) < 0) {
+                            low = segment;
+                        }
+                    }
                     Intersection[] mustCheck = new Intersection[]{
                             interBetween(high, sweepLine.higher(high)),
                             interBetween(low, sweepLine.lower(low))};
@@ -232,7 +498,7 @@ public class InterComputer {
                 }
 			}
 
-			Segment.setComparingX(x);
+			context.setComparingX(x);
 			// Now that the sweep line is sorted, handles the event
 			if (e.isLeftEndpoint()) {
 				Segment s = e.getSegment();
@@ -245,20 +511,208 @@ public class InterComputer {
 				for (Intersection i : mustCheck) {
 					if (i != null) {
                         result.add(i);
-                        if (i.getLocation().getX() > e.getLocation().getX()) {
+                        if (i.getLocation().getX() >= e.getLocation().getX()) {
                             interX.add(i.getLocation().getX());
                         }
 					}
 				}
 			} else {
 				Segment s = e.getSegment();
+				// The segments above and below s become neighbours
+				Segment above = sweepLine.higher(s);
+				Segment below = sweepLine.lower(s);
 				sweepLine.remove(s);
+				Intersection i = interBetween(above, below);
+				if (i != null) {
+					result.add(i);
+					if (i.getLocation().getX() >= e.getLocation().getX()) {
+						interX.add(i.getLocation().getX());
+					}
+				}
 			}
 			prevX = x;
 		}
 		return result;
 	}
 
+    /**
+     * Checks whether the segments of specified indices intersect, given
+     * an array containing the coordinates of segments packed as follow :
+     * x1, y1, x2, y2 of the 1st segment, then of the 2nd one, and so on.
+     *
+     * The arithmetic is the same as in Segment.intersectionWith(), so
+     * parallel segments are never considered to intersect.
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param coords Packed coordinates of the segments
+     * @param s1     Index of the first segment
+     * @param s2     Index of the second segment
+     * @return True if and only if the segments intersect
+     * @see Segment#intersectionWith(Segment)
+     */
+    public static boolean crosses(int[] coords, int s1, int s2) {
+        int i = 4*s1;
+        int j = 4*s2;
+        long thisDx = coords[i+2] - coords[i];
+        long thisDy = coords[i+3] - coords[i+1];
+        long thatDx = coords[j+2] - coords[j];
+        long thatDy = coords[j+3] - coords[j+1];
+        long ratio = thatDx*thisDy - thisDx*thatDy;
+        if (ratio == 0) {
+            return false;
+        }
+        long interDx = coords[j+2] - coords[i+2];
+        long interDy = coords[j+3] - coords[i+3];
+        long a = thatDy*interDx - thatDx*interDy;
+        long b = thisDy*interDx - thisDx*interDy;
+        return (0 < ratio && 0 <= a && a <= ratio && 0 <= b && b <= ratio) ||
+                (0 > ratio && 0 >= a && a >= ratio && 0 >= b && b >= ratio);
+    }
+
+    /**
+     * Counts the pairs of intersecting segments in the specified set
+     * of segments, without allocating any object.
+     *
+     * The segments are given in an array containing their coordinates
+     * packed as follow : x1, y1, x2, y2 of the 1st segment, then of the
+     * 2nd one, and so on. They are sorted by left end in the specified
+     * scratch buffer, then each segment is only tested against the following
+     * ones whose bounding boxes overlap with its own.
+     *
+     * Note that unlike edgeIntersections(), several segments intersecting
+     * at the same point are counted once per pair, and that the segments
+     * are not disturbed before the computation.
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param coords     Packed coordinates of the segments, its length must
+     *                   be at least 4*nbSegments
+     * @param nbSegments Number of segments to analyse
+     * @param scratch    Scratch buffer, previous content will be overwritten,
+     *                   its length must be at least nbSegments
+     * @return the number of pairs of intersecting segments
+     * @throws IllegalArgumentException if one of the arrays is too short
+     */
+    public static int nbEdgeCrossings(int[] coords, int nbSegments, long[] scratch)
+            throws IllegalArgumentException
+    {
+        if (coords.length < 4*nbSegments || scratch.length < nbSegments) {
+            throw new IllegalArgumentException("Arrays too short");
+        }
+        // Sorts the segments by left end x-coordinate, the index of each
+        // segment being stored in the low bits of its sorting key
+        for (int s = 0; s < nbSegments; s++) {
+            int minX = Math.min(coords[4*s], coords[4*s+2]);
+            scratch[s] = ((long) minX << 32) | s;
+        }
+        Arrays.sort(scratch, 0, nbSegments);
+        int res = 0;
+        for (int a = 0; a < nbSegments; a++) {
+            int s1 = (int) scratch[a];
+            int maxX1 = Math.max(coords[4*s1], coords[4*s1+2]);
+            int minY1 = Math.min(coords[4*s1+1], coords[4*s1+3]);
+            int maxY1 = Math.max(coords[4*s1+1], coords[4*s1+3]);
+            for (int b = a+1; b < nbSegments; b++) {
+                // The following segments start beyond the right end of s1
+                if ((int) (scratch[b] >> 32) > maxX1) {
+                    break;
+                }
+                int s2 = (int) scratch[b];
+                int minY2 = Math.min(coords[4*s2+1], coords[4*s2+3]);
+                int maxY2 = Math.max(coords[4*s2+1], coords[4*s2+3]);
+                if (minY2 <= maxY1 && minY1 <= maxY2 && crosses(coords, s1, s2)) {
+                    res++;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Counts the pairs of intersecting segments in the specified set
+     * of segments, in which at least one of the segments is one of the
+     * nbFirst first ones, without allocating any object.
+     *
+     * The segments are given as in nbEdgeCrossings(int[], int, long[]).
+     * They are sorted by left end in the specified scratch buffer, and the
+     * nbFirst first ones are copied after them in the same order, so that
+     * each of the other segments is only tested against the following
+     * first ones whose bounding boxes overlap with its own.
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param coords     Packed coordinates of the segments, its length must
+     *                   be at least 4*nbSegments
+     * @param nbSegments Number of segments to analyse
+     * @param nbFirst    Number of segments, at the beginning of the array,
+     *                   whose intersections must be counted
+     * @param scratch    Scratch buffer, previous content will be overwritten,
+     *                   its length must be at least nbSegments+nbFirst
+     * @return the number of pairs of intersecting segments, one of which
+     * at least is one of the nbFirst first ones
+     * @throws IllegalArgumentException if one of the arrays is too short,
+     * or if nbFirst is not in [0, nbSegments]
+     */
+    public static int nbEdgeCrossings(int[] coords, int nbSegments, int nbFirst,
+                                      long[] scratch)
+            throws IllegalArgumentException
+    {
+        if (nbFirst < 0 || nbFirst > nbSegments) {
+            throw new IllegalArgumentException("Invalid number of first segments");
+        } else if (coords.length < 4*nbSegments || scratch.length < nbSegments+nbFirst) {
+            throw new IllegalArgumentException("Arrays too short");
+        }
+        for (int s = 0; s < nbSegments; s++) {
+            int minX = Math.min(coords[4*s], coords[4*s+2]);
+            scratch[s] = ((long) minX << 32) | s;
+        }
+        Arrays.sort(scratch, 0, nbSegments);
+        // The first segments, in the same order
+        int f = nbSegments;
+        for (int a = 0; a < nbSegments; a++) {
+            if ((int) scratch[a] < nbFirst) {
+                scratch[f++] = scratch[a];
+            }
+        }
+        int res = 0;
+        int nextFirst = nbSegments;
+        for (int a = 0; a < nbSegments; a++) {
+            int s1 = (int) scratch[a];
+            int maxX1 = Math.max(coords[4*s1], coords[4*s1+2]);
+            int minY1 = Math.min(coords[4*s1+1], coords[4*s1+3]);
+            int maxY1 = Math.max(coords[4*s1+1], coords[4*s1+3]);
+            // s1 is tested against all the following segments if it is one
+            // of the first ones, else against the following first ones only
+            int b;
+            int end;
+            if (s1 < nbFirst) {
+                nextFirst++;
+                b = a+1;
+                end = nbSegments;
+            } else {
+                b = nextFirst;
+                end = nbSegments+nbFirst;
+            }
+            for (; b < end; b++) {
+                // The following segments start beyond the right end of s1
+                if ((int) (scratch[b] >> 32) > maxX1) {
+                    break;
+                }
+                int s2 = (int) scratch[b];
+                int minY2 = Math.min(coords[4*s2+1], coords[4*s2+3]);
+                int maxY2 = Math.max(coords[4*s2+1], coords[4*s2+3]);
+                if (minY2 <= maxY1 && minY1 <= maxY2 && crosses(coords, s1, s2)) {
+                    res++;
+                }
+            }
+        }
+        return res;
+    }
+
     /**
      * Returns the number of times the segments of the specified set
      * cross the circles of specified centers and radius
@@ -21,7 +21,8 @@ public final class Intersection {
 	private final CPoint location;
 
 	/**
-	 * Segments that form the intersection; 
+	 * Segments that form the intersection, ordered at the x-coordinate
+	 * of the location, then by gradient.
 	 */
 	private final TreeSet<Segment> segments;
 
@@ -35,7 +36,9 @@ public final class Intersection {
 	 */
 	public Intersection(CPoint location, Segment segment1, Segment segment2) {
 		this.location = location;
-		segments = new TreeSet<>();
+		// The ordering only depends on the location, so that it does not
+		// change with Segment's shared comparing abscissa
+		segments = new TreeSet<>(new SweepContext(location.getX()));
 		segments.add(segment1);
 		segments.add(segment2);
 	}
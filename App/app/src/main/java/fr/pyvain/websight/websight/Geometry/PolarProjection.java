@@ -0,0 +1,116 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A class that converts batches of polar coordinates to cartesian
+ * coordinates, filling parallel arrays of x and y-coordinates from
+ * parallel arrays of radii and angles.
+ * </p>
+ * <p>
+ * The cosine and the sine of the angle of each slot of the batch are
+ * cached, and only computed again when the angle of the slot changes :
+ * in a radial layout, the angles of the vertices only change when the
+ * tree changes, whereas the radii are scaled by each drawing.
+ * </p>
+ * <p>
+ * The arithmetic is the same as in CPoint(PolarCoords, CPoint, float), so
+ * that both give the same points.
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class PolarProjection {
+
+    /**
+     * Angle whose cosine and sine are cached, per slot.
+     */
+    private float[] angles;
+
+    /**
+     * Cached cosine and sine of the angle of each slot.
+     */
+    private double[] cos;
+    private double[] sin;
+
+    /**
+     * Initializes a new projection with an empty cache.
+     */
+    public PolarProjection() {
+        angles = new float[0];
+        cos = new double[0];
+        sin = new double[0];
+    }
+
+    /**
+     * Projects the specified polar coordinates, with integral radii, to
+     * rounded cartesian coordinates :
+     * (r, theta) -> (round(x0 + unit*r*cos(theta)), round(y0 + unit*r*sin(theta)))
+     *
+     * @param radii     Radial coordinates, per slot
+     * @param angles    Angular coordinates in radians, per slot
+     * @param n         Number of slots to project
+     * @param x0        x-coordinate of the pole
+     * @param y0        y-coordinate of the pole
+     * @param unit      Distance equivalent to a unit of radial coordinate
+     * @param xs        Array to fill with the x-coordinates, per slot
+     * @param ys        Array to fill with the y-coordinates, per slot
+     */
+    public void project(int[] radii, float[] angles, int n, int x0, int y0, float unit,
+                        int[] xs, int[] ys) {
+        updateCache(angles, n);
+        for (int i = 0; i < n; i++) {
+            xs[i] = (int) Math.round(x0 + unit * radii[i] * cos[i]);
+            ys[i] = (int) Math.round(y0 + unit * radii[i] * sin[i]);
+        }
+    }
+
+    /**
+     * Projects the specified polar coordinates to cartesian coordinates :
+     * (r, theta) -> (x0 + unit*r*cos(theta), y0 + unit*r*sin(theta))
+     *
+     * @param radii     Radial coordinates, per slot
+     * @param angles    Angular coordinates in radians, per slot
+     * @param n         Number of slots to project
+     * @param x0        x-coordinate of the pole
+     * @param y0        y-coordinate of the pole
+     * @param unit      Distance equivalent to a unit of radial coordinate
+     * @param xs        Array to fill with the x-coordinates, per slot
+     * @param ys        Array to fill with the y-coordinates, per slot
+     */
+    public void project(float[] radii, float[] angles, int n, float x0, float y0, float unit,
+                        float[] xs, float[] ys) {
+        updateCache(angles, n);
+        for (int i = 0; i < n; i++) {
+            xs[i] = x0 + unit * radii[i] * (float) cos[i];
+            ys[i] = y0 + unit * radii[i] * (float) sin[i];
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Computes again the cosine and the sine of the slots whose angle has
+     * changed, the cache only being reallocated when the batch gets bigger.
+     */
+    private void updateCache(float[] newAngles, int n) {
+        if (angles.length < n) {
+            int size = Math.max(n, 2*angles.length);
+            int old = angles.length;
+            angles = Arrays.copyOf(angles, size);
+            cos = Arrays.copyOf(cos, size);
+            sin = Arrays.copyOf(sin, size);
+            // The new slots never match an angle
+            Arrays.fill(angles, old, size, Float.NaN);
+        }
+        for (int i = 0; i < n; i++) {
+            float theta = newAngles[i];
+            if (Float.floatToIntBits(theta) != Float.floatToIntBits(angles[i])) {
+                angles[i] = theta;
+                cos[i] = Math.cos(theta);
+                sin[i] = Math.sin(theta);
+            }
+        }
+    }
+}
@@ -25,11 +25,16 @@ public class Segment implements Comparable<Segment> {
 
 	/**
 	 * x-coordinate at which Segment objects y-coordinate must be
-	 * compared when calling compareTo
+	 * compared when calling compareTo.
+	 *
+	 * Note that this abscissa is shared by the whole process, so the
+	 * natural ordering must not be used by concurrent sweeps : they should
+	 * rather rely on their own SweepContext.
 	 *
 	 * @see Segment#setComparingX(int)
 	 * @see Segment#compareTo
-	 */ 
+	 * @see SweepContext
+	 */
 	private static int comparingX;
 
 	/**
@@ -142,11 +147,32 @@ public class Segment implements Comparable<Segment> {
 	 * @return the number of intersection between the segment and the circle
 	 */
 	public int nbIntersectionsWithCircle(CPoint center, float radius) {
+		return nbIntersectionsWithCircle(p1.getX(), p1.getY(), p2.getX(), p2.getY(),
+				center.getX(), center.getY(), radius);
+	}
+
+	/**
+	 * Returns the number of intersection points between the segment of
+	 * specified endpoints and the circle of specified center and radius,
+	 * without allocating any object.
+	 *
+	 * @see Segment#nbIntersectionsWithCircle(CPoint, float)
+	 * @param x1     x-coordinate of the first endpoint
+	 * @param y1     y-coordinate of the first endpoint
+	 * @param x2     x-coordinate of the second endpoint
+	 * @param y2     y-coordinate of the second endpoint
+	 * @param cx     x-coordinate of the center of the circle
+	 * @param cy     y-coordinate of the center of the circle
+	 * @param radius Radius of the circle
+	 * @return the number of intersection points
+	 */
+	public static int nbIntersectionsWithCircle(int x1, int y1, int x2, int y2,
+												int cx, int cy, float radius) {
 		int res = 0;
-		long dx12 = p1.getX()-p2.getX();
-		long dx2c = p2.getX()-center.getX();
-		long dy12 = p1.getY()-p2.getY();
-		long dy2c = p2.getY()-center.getY();
+		long dx12 = x1-x2;
+		long dx2c = x2-cx;
+		long dy12 = y1-y2;
+		long dy2c = y2-cy;
 		// Computes the barycentric coordinate alpha, which is solution of
 		// | (y-c.y)^2 + (x-c.x)^2 = r^2
 		// | y = alpha*p1.y + (1-alpha)*p2.y
@@ -205,18 +231,39 @@ public class Segment implements Comparable<Segment> {
 	 * gradient).
 	 *
 	 * @see Segment#comparingX
+	 * @see Segment#compareAt(Segment, int)
 	 * @param s Segment to compare with the receiving segment
 	 * @return a negative integer, 0, or a positive integer depending
 	 * 			on whether the receiving Segment is less than, equal to
 	 * 			or greater than the specified Segment s
 	 */
 	public int compareTo(@NonNull Segment s) {
+		return compareAt(s, comparingX);
+	}
+
+	/**
+	 * Compares the receiving Segment with the specified Segment
+	 * by the y-coordinates of the lines that contain them, at the
+	 * specified x-coordinate, then by gradient (vertical segments are
+	 * considered to have an infinite gradient).
+	 *
+	 * Unlike compareTo, this method does not depend on any shared state,
+	 * and can be safely called by several threads at the same time.
+	 *
+	 * @param s Segment to compare with the receiving segment
+	 * @param x x-coordinate at which the segments must be compared,
+	 *          should not be outside [-1000, 1000]
+	 * @return a negative integer, 0, or a positive integer depending
+	 * 			on whether the receiving Segment is less than, equal to
+	 * 			or greater than the specified Segment s at x
+	 */
+	public int compareAt(Segment s, int x) {
 		long thisDx = p2.getX() - p1.getX();
 		long sDx = s.p2.getX() - s.p1.getX();
-		// Computes res = (this.yAtComparingX - s.yAtComparingX)*sDx*thisDx
+		// Computes res = (this.yAtX - s.yAtX)*sDx*thisDx
 		long res = (thisDx*sDx*(p1.getY()-s.p1.getY()) +
-			(p2.getY()-p1.getY())*(comparingX-p1.getX())*sDx -
-			(s.p2.getY()-s.p1.getY())*(comparingX-s.p1.getX())*thisDx);
+			(p2.getY()-p1.getY())*(x-p1.getX())*sDx -
+			(s.p2.getY()-s.p1.getY())*(x-s.p1.getX())*thisDx);
 		if (res == 0) {
 			// Computes res = (this.gradient - s.gradient)*sDx*thisDx
 			res = sDx*(p2.getY()-p1.getY()) - thisDx*(s.p2.getY()-s.p1.getY());
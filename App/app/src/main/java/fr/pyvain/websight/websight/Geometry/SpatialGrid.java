@@ -0,0 +1,500 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A class that indexes the vertices and edges of a drawing, i.e. circles
+ * of common radius and segments, in a uniform grid, so that the circles
+ * crossed by a segment, or the vertex or edge nearest to a point, are
+ * found by only looking at the few cells around them.
+ * </p>
+ * <p>
+ * Each cell stores the indices of the centers it contains, and the
+ * indices of the segments going through it, both in compressed sparse
+ * row format : the items of cell c are at indices [start[c], start[c+1][
+ * of the items array. The grid is built again by each call to update(),
+ * its arrays only being reallocated when the drawing gets bigger.
+ * </p>
+ * <p>
+ * The centers and segments are indexed by their coordinates, which can
+ * be given as arrays of primitives, so that neither building the grid
+ * nor querying it allocates any object.
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class SpatialGrid {
+
+    /**
+     * Maximal number of cells per center.
+     */
+    private static final int MAX_CELLS_PER_CENTER = 4;
+
+    /**
+     * Top left corner of the grid.
+     */
+    private int minX;
+    private int minY;
+
+    /**
+     * Bottom right corner of the grid.
+     */
+    private int maxX;
+    private int maxY;
+
+    /**
+     * Width and height of the cells.
+     */
+    private int cellSize;
+
+    /**
+     * Number of columns and rows of the grid.
+     */
+    private int nbColumns;
+    private int nbRows;
+
+    /**
+     * Coordinates of the indexed centers, and number of them.
+     */
+    private int[] centerXs;
+    private int[] centerYs;
+    private int nbCenters;
+
+    /**
+     * Start of the centers of each cell in centerItems, cells being
+     * numbered row by row.
+     */
+    private int[] centerStart;
+
+    /**
+     * Indices of the centers, cell by cell.
+     */
+    private int[] centerItems;
+
+    /**
+     * Coordinates of the indexed segments, packed as follow : x1, y1, x2, y2
+     * of the 1st segment, then of the 2nd one, and so on, and number of them.
+     */
+    private int[] segmentCoords;
+    private int nbSegments;
+
+    /**
+     * Start of the segments of each cell in segmentItems.
+     */
+    private int[] segmentStart;
+
+    /**
+     * Indices of the segments, cell by cell.
+     */
+    private int[] segmentItems;
+
+    /**
+     * Initializes a new empty grid.
+     */
+    public SpatialGrid() {
+        minX = 0;
+        minY = 0;
+        maxX = 0;
+        maxY = 0;
+        cellSize = 1;
+        nbColumns = 1;
+        nbRows = 1;
+        centerXs = new int[0];
+        centerYs = new int[0];
+        nbCenters = 0;
+        centerStart = new int[2];
+        centerItems = new int[0];
+        segmentCoords = new int[0];
+        nbSegments = 0;
+        segmentStart = new int[2];
+        segmentItems = new int[0];
+    }
+
+    /**
+     * Replaces the content of the grid by the specified centers and
+     * segments.
+     *
+     * @param centers    Centers of the circles, the first nbCenters ones
+     *                   are indexed
+     * @param nbCenters  Number of centers
+     * @param segments   Segments, the first nbSegments ones are indexed
+     * @param nbSegments Number of segments
+     * @param radius     Radius of the circles, which gives the minimal
+     *                   size of the cells
+     */
+    public void update(CPoint[] centers, int nbCenters,
+                       Segment[] segments, int nbSegments, float radius) {
+        int[] xs = new int[nbCenters];
+        int[] ys = new int[nbCenters];
+        for (int i = 0; i < nbCenters; i++) {
+            xs[i] = centers[i].getX();
+            ys[i] = centers[i].getY();
+        }
+        int[] coords = new int[4*nbSegments];
+        for (int i = 0; i < nbSegments; i++) {
+            coords[4*i] = segments[i].getP1().getX();
+            coords[4*i+1] = segments[i].getP1().getY();
+            coords[4*i+2] = segments[i].getP2().getX();
+            coords[4*i+3] = segments[i].getP2().getY();
+        }
+        update(xs, ys, nbCenters, coords, nbSegments, radius);
+    }
+
+    /**
+     * Replaces the content of the grid by the centers and segments of
+     * specified coordinates. The arrays are referenced by the grid, and
+     * must not be modified until the next update.
+     *
+     * @param centerXs      x-coordinates of the centers of the circles,
+     *                      the first nbCenters ones are indexed
+     * @param centerYs      y-coordinates of the centers of the circles
+     * @param nbCenters     Number of centers
+     * @param segmentCoords Coordinates of the segments, packed as follow :
+     *                      x1, y1, x2, y2 of the 1st segment, then of the
+     *                      2nd one, and so on
+     * @param nbSegments    Number of segments
+     * @param radius        Radius of the circles, which gives the minimal
+     *                      size of the cells
+     */
+    public void update(int[] centerXs, int[] centerYs, int nbCenters,
+                       int[] segmentCoords, int nbSegments, float radius) {
+        this.centerXs = centerXs;
+        this.centerYs = centerYs;
+        this.nbCenters = nbCenters;
+        this.segmentCoords = segmentCoords;
+        this.nbSegments = nbSegments;
+
+        // Bounds of the drawing
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        for (int i = 0; i < nbCenters; i++) {
+            extendBounds(centerXs[i], centerYs[i]);
+        }
+        for (int i = 0; i < nbSegments; i++) {
+            extendBounds(segmentCoords[4*i], segmentCoords[4*i+1]);
+            extendBounds(segmentCoords[4*i+2], segmentCoords[4*i+3]);
+        }
+        if (minX > maxX) {
+            minX = 0;
+            minY = 0;
+            maxX = 0;
+            maxY = 0;
+        }
+
+        // About one center per cell, the cells being at least as large
+        // as the circles
+        long width = (long) maxX - minX + 1;
+        long height = (long) maxY - minY + 1;
+        double area = (double) width * height;
+        cellSize = (int) Math.max(Math.ceil(2*radius),
+                Math.ceil(Math.sqrt(area / Math.max(1, nbCenters))));
+        cellSize = Math.max(cellSize, 1);
+        while (((width + cellSize - 1) / cellSize) * ((height + cellSize - 1) / cellSize)
+                > MAX_CELLS_PER_CENTER * Math.max(1, nbCenters)) {
+            cellSize *= 2;
+        }
+        nbColumns = (int) ((width + cellSize - 1) / cellSize);
+        nbRows = (int) ((height + cellSize - 1) / cellSize);
+        int nbCells = nbColumns * nbRows;
+
+        // Centers, counted then placed per cell
+        if (centerStart.length < nbCells + 1) {
+            centerStart = new int[nbCells + 1];
+        }
+        if (centerItems.length < nbCenters) {
+            centerItems = new int[nbCenters];
+        }
+        Arrays.fill(centerStart, 0, nbCells + 1, 0);
+        for (int i = 0; i < nbCenters; i++) {
+            centerStart[cellOf(centerXs[i], centerYs[i]) + 1]++;
+        }
+        for (int c = 0; c < nbCells; c++) {
+            centerStart[c + 1] += centerStart[c];
+        }
+        for (int i = 0; i < nbCenters; i++) {
+            centerItems[--centerStart[cellOf(centerXs[i], centerYs[i]) + 1]] = i;
+        }
+        // The placement loop moved the start of each cell to the next one
+        System.arraycopy(centerStart, 1, centerStart, 0, nbCells);
+        centerStart[nbCells] = nbCenters;
+
+        // Segments, counted then placed in each cell they go through
+        if (segmentStart.length < nbCells + 1) {
+            segmentStart = new int[nbCells + 1];
+        }
+        Arrays.fill(segmentStart, 0, nbCells + 1, 0);
+        int nbItems = 0;
+        for (int i = 0; i < nbSegments; i++) {
+            nbItems += placeSegment(i, null);
+        }
+        if (segmentItems.length < nbItems) {
+            segmentItems = new int[nbItems];
+        }
+        for (int c = 0; c < nbCells; c++) {
+            segmentStart[c + 1] += segmentStart[c];
+        }
+        for (int i = 0; i < nbSegments; i++) {
+            placeSegment(i, segmentItems);
+        }
+        System.arraycopy(segmentStart, 1, segmentStart, 0, nbCells);
+        segmentStart[nbCells] = nbItems;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Extends the bounds of the drawing to the specified point.
+     */
+    private void extendBounds(int x, int y) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+    }
+
+    /**
+     * Counts the centers of the circles of specified radius crossed by the
+     * specified segment, i.e. such that segment.nbIntersectionsWithCircle()
+     * is positive, only testing the centers of the cells around the segment.
+     *
+     * @param segment Segment to analyse
+     * @param radius  Radius of the circles
+     * @return the number of circles crossed by the segment
+     */
+    public int nbCirclesCrossedBy(Segment segment, float radius) {
+        return nbCirclesCrossedBy(segment.getP1().getX(), segment.getP1().getY(),
+                segment.getP2().getX(), segment.getP2().getY(), radius);
+    }
+
+    /**
+     * Counts the centers of the circles of specified radius crossed by the
+     * indexed segment of specified index.
+     *
+     * @see SpatialGrid#nbCirclesCrossedBy(Segment, float)
+     * @param segment Index of the segment to analyse
+     * @param radius  Radius of the circles
+     * @return the number of circles crossed by the segment
+     */
+    public int nbCirclesCrossedBy(int segment, float radius) {
+        return nbCirclesCrossedBy(segmentCoords[4*segment], segmentCoords[4*segment+1],
+                segmentCoords[4*segment+2], segmentCoords[4*segment+3], radius);
+    }
+
+    /**
+     * Private auxiliary method.
+     * Counts the centers of the circles of specified radius crossed by the
+     * segment of specified endpoints.
+     */
+    private int nbCirclesCrossedBy(int x1, int y1, int x2, int y2, float radius) {
+        int res = 0;
+        int margin = (int) Math.ceil(radius) + 1;
+        int colMin = column(Math.min(x1, x2) - margin);
+        int colMax = column(Math.max(x1, x2) + margin);
+        for (int col = colMin; col <= colMax; col++) {
+            long rows = rowsAt(x1, y1, x2, y2, col, margin);
+            if (rows < 0) {
+                continue;
+            }
+            for (int row = (int) (rows >> 32); row <= (int) rows; row++) {
+                int cell = row*nbColumns + col;
+                for (int k = centerStart[cell]; k < centerStart[cell + 1]; k++) {
+                    int c = centerItems[k];
+                    if (Segment.nbIntersectionsWithCircle(x1, y1, x2, y2,
+                            centerXs[c], centerYs[c], radius) > 0) {
+                        res++;
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the index of the center nearest to the specified point,
+     * among the ones within the specified distance.
+     *
+     * @param p           Point to analyse
+     * @param maxDistance Maximal distance of the center, must be >= 0
+     * @return the index of the nearest center within maxDistance of p,
+     * -1 if there is none
+     */
+    public int nearestCenter(CPoint p, float maxDistance) {
+        int res = -1;
+        float best = maxDistance;
+        int d = (int) Math.ceil(maxDistance);
+        int rowMin = row(p.getY() - d);
+        int rowMax = row(p.getY() + d);
+        int colMin = column(p.getX() - d);
+        int colMax = column(p.getX() + d);
+        for (int row = rowMin; row <= rowMax; row++) {
+            for (int col = colMin; col <= colMax; col++) {
+                int cell = row*nbColumns + col;
+                for (int k = centerStart[cell]; k < centerStart[cell + 1]; k++) {
+                    int i = centerItems[k];
+                    // Same arithmetic as CPoint.distance()
+                    float distance = (float) Math.sqrt(Math.pow(centerXs[i] - p.getX(), 2) +
+                            Math.pow(centerYs[i] - p.getY(), 2));
+                    if (distance < best || (distance == best && (res == -1 || i < res))) {
+                        best = distance;
+                        res = i;
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the index of the segment nearest to the specified point,
+     * among the ones containing it with the specified precision, i.e. such
+     * that segment.contains(p, eps).
+     *
+     * @param p   Point to analyse
+     * @param eps Required precision, must be > 0
+     * @return the index of the nearest segment containing p with precision
+     * eps, -1 if there is none
+     */
+    public int nearestSegment(CPoint p, int eps) {
+        int res = -1;
+        double best = Double.MAX_VALUE;
+        int rowMin = row(p.getY() - eps);
+        int rowMax = row(p.getY() + eps);
+        int colMin = column(p.getX() - eps);
+        int colMax = column(p.getX() + eps);
+        for (int row = rowMin; row <= rowMax; row++) {
+            for (int col = colMin; col <= colMax; col++) {
+                int cell = row*nbColumns + col;
+                for (int k = segmentStart[cell]; k < segmentStart[cell + 1]; k++) {
+                    int i = segmentItems[k];
+                    if (i == res || Segment.nbIntersectionsWithCircle(
+                            segmentCoords[4*i], segmentCoords[4*i+1],
+                            segmentCoords[4*i+2], segmentCoords[4*i+3],
+                            p.getX(), p.getY(), eps) == 0) {
+                        continue;
+                    }
+                    double distance = distanceSq(p, segmentCoords, i);
+                    if (distance < best || (distance == best && i < res)) {
+                        best = distance;
+                        res = i;
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Adds the specified segment to the cells it goes through, or only
+     * counts them in the starts if items is null.
+     *
+     * @return the number of cells the segment goes through
+     */
+    private int placeSegment(int i, int[] items) {
+        int res = 0;
+        int x1 = segmentCoords[4*i];
+        int y1 = segmentCoords[4*i+1];
+        int x2 = segmentCoords[4*i+2];
+        int y2 = segmentCoords[4*i+3];
+        int colMin = column(Math.min(x1, x2) - 1);
+        int colMax = column(Math.max(x1, x2) + 1);
+        for (int col = colMin; col <= colMax; col++) {
+            long rows = rowsAt(x1, y1, x2, y2, col, 1);
+            if (rows < 0) {
+                continue;
+            }
+            for (int row = (int) (rows >> 32); row <= (int) rows; row++) {
+                int cell = row*nbColumns + col;
+                if (items == null) {
+                    segmentStart[cell + 1]++;
+                } else {
+                    items[--segmentStart[cell + 1]] = i;
+                }
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Computes the rows of the cells of the specified column which are
+     * within the specified margin of the segment of specified endpoints.
+     *
+     * @return the first row in the high bits and the last row in the
+     * low bits, or -1 if the segment does not reach the column
+     */
+    private long rowsAt(int x1, int y1, int x2, int y2, int col, int margin) {
+        // x-range of the column, extended by the margin, and of the segment
+        long colStart = (long) minX + (long) col*cellSize - margin;
+        long colEnd = (long) minX + (long) (col + 1)*cellSize - 1 + margin;
+        long xa = Math.max(colStart, Math.min(x1, x2));
+        long xb = Math.min(colEnd, Math.max(x1, x2));
+        if (xa > xb) {
+            return -1;
+        }
+        double ya;
+        double yb;
+        if (x1 == x2) {
+            ya = y1;
+            yb = y2;
+        } else {
+            double slope = (double) (y2 - y1) / (x2 - x1);
+            ya = y1 + slope*(xa - x1);
+            yb = y1 + slope*(xb - x1);
+        }
+        int rowMin = row((int) Math.floor(Math.min(ya, yb)) - margin);
+        int rowMax = row((int) Math.ceil(Math.max(ya, yb)) + margin);
+        return ((long) rowMin << 32) | rowMax;
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the cell containing the specified point
+     */
+    private int cellOf(int x, int y) {
+        return row(y)*nbColumns + column(x);
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the column containing the specified x-coordinate, bounded
+     * by the first and last columns
+     */
+    private int column(int x) {
+        long col = ((long) x - minX) / cellSize;
+        return (int) Math.max(0, Math.min(nbColumns - 1, col));
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the row containing the specified y-coordinate, bounded
+     * by the first and last rows
+     */
+    private int row(int y) {
+        long row = ((long) y - minY) / cellSize;
+        return (int) Math.max(0, Math.min(nbRows - 1, row));
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the squared distance between the specified point and the
+     * segment of specified index in the specified packed coordinates
+     */
+    private static double distanceSq(CPoint p, int[] coords, int i) {
+        double x1 = coords[4*i];
+        double y1 = coords[4*i+1];
+        double dx = coords[4*i+2] - x1;
+        double dy = coords[4*i+3] - y1;
+        double length = dx*dx + dy*dy;
+        double t = (length == 0) ? 0 :
+                ((p.getX() - x1)*dx + (p.getY() - y1)*dy) / length;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x1 + t*dx - p.getX();
+        double ey = y1 + t*dy - p.getY();
+        return ex*ex + ey*ey;
+    }
+}
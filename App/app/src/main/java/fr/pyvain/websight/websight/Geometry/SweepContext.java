@@ -0,0 +1,73 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import java.util.Comparator;
+
+/**
+ * <p>
+ * A class that represents the position of the sweep line of one run of
+ * the Bentley-Ottmann algorithm, and orders Segment objects accordingly,
+ * i.e. by the y-coordinates of the lines that contain them at the current
+ * x-coordinate of the sweep line, then by gradient.
+ * </p>
+ * <p>
+ * Unlike the natural ordering of Segment objects, which relies on an
+ * abscissa shared by the whole process, each SweepContext owns its
+ * abscissa. Several sweeps can thus run at the same time, in different
+ * threads, as long as each of them uses its own SweepContext.
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class SweepContext implements Comparator<Segment> {
+
+	/**
+	 * x-coordinate at which Segment objects y-coordinate are compared.
+	 */
+	private int comparingX;
+
+	/**
+	 * Initializes a new SweepContext, whose sweep line is at the specified
+	 * x-coordinate.
+	 *
+	 * @param comparingX x-coordinate of the sweep line, should not be
+	 *                   outside [-1000, 1000]
+	 */
+	public SweepContext(int comparingX) {
+		this.comparingX = comparingX;
+	}
+
+	/**
+	 * Sweep line x-coordinate getter.
+	 *
+	 * @return the x-coordinate at which Segment objects are compared
+	 */
+	public int getComparingX() {
+		return comparingX;
+	}
+
+	/**
+	 * Moves the sweep line to the specified x-coordinate.
+	 *
+	 * @param comparingX new x-coordinate of the sweep line, should not be
+	 *                   outside [-1000, 1000]
+	 */
+	public void setComparingX(int comparingX) {
+		this.comparingX = comparingX;
+	}
+
+	/**
+	 * Compares two Segment objects at the current x-coordinate of the
+	 * sweep line.
+	 *
+	 * @see Segment#compareAt(Segment, int)
+	 * @param s1 first Segment to compare
+	 * @param s2 second Segment to compare
+	 * @return a negative integer, 0, or a positive integer depending
+	 * 			on whether s1 is less than, equal to or greater than s2
+	 */
+	@Override
+	public int compare(Segment s1, Segment s2) {
+		return s1.compareAt(s2, comparingX);
+	}
+}
@@ -0,0 +1,322 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+
+/**
+ * <p>
+ * A class that represents the sweep line of one run of the Bentley-Ottmann
+ * algorithm, i.e. the segments that intersect with it, sorted by the
+ * SweepContext of the run.
+ * </p>
+ * <p>
+ * The segments are stored in a skip list whose nodes are linked to their
+ * neighbours in both directions at each level, so that :<ul>
+ *     <li>adding a segment needs O(log(N)) expected time, and no
+ *     rebalancing</li>
+ *     <li>removing a segment, or getting the segments above and below
+ *     it, needs O(1) expected time and no comparison</li>
+ *     <li>the segments of an intersection, which are contiguous in the
+ *     sweep line, are reordered by moving them between their own nodes,
+ *     without changing the structure of the list</li>
+ * </ul></p>
+ * <p>
+ * As a TreeSet, the sweep line does not contain two segments equal for its
+ * SweepContext.
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class SweepLine {
+
+	/**
+	 * Maximal number of levels of the skip list.
+	 */
+	private static final int MAX_LEVEL = 16;
+
+	/**
+	 * A node of the skip list, holding a segment.
+	 */
+	private static final class Node {
+
+		/**
+		 * Segment held by the node, null for the head.
+		 */
+		Segment segment;
+
+		/**
+		 * Next and previous nodes at each level of the node, the previous
+		 * node of the first one being the head.
+		 */
+		final Node[] next;
+		final Node[] prev;
+
+		/**
+		 * Mark used by reorder().
+		 */
+		boolean marked;
+
+		Node(Segment segment, int level) {
+			this.segment = segment;
+			this.next = new Node[level];
+			this.prev = new Node[level];
+			this.marked = false;
+		}
+	}
+
+	/**
+	 * Order of the segments.
+	 */
+	private final SweepContext context;
+
+	/**
+	 * Head of the skip list, before the lowest segment at each level.
+	 */
+	private final Node head;
+
+	/**
+	 * Node of each segment in the sweep line.
+	 */
+	private final IdentityHashMap<Segment, Node> nodes;
+
+	/**
+	 * Last node before the searched segment at each level, reused by
+	 * each search.
+	 */
+	private final Node[] update;
+
+	/**
+	 * Buffer of the segments being reordered.
+	 */
+	private Segment[] buffer;
+
+	/**
+	 * State of the generator of the node levels, fixed so that each run
+	 * builds the same list.
+	 */
+	private int seed;
+
+	/**
+	 * Initializes a new empty sweep line ordered by the specified context.
+	 *
+	 * @param context Order of the segments in the sweep line
+	 */
+	public SweepLine(SweepContext context) {
+		this.context = context;
+		this.head = new Node(null, MAX_LEVEL);
+		this.nodes = new IdentityHashMap<>();
+		this.update = new Node[MAX_LEVEL];
+		this.buffer = new Segment[4];
+		this.seed = 0x2545F491;
+	}
+
+	/**
+	 * Adds the specified segment to the sweep line, if it does not already
+	 * contain a segment equal for the context.
+	 *
+	 * @param s Segment to add
+	 * @return True if and only if the segment has been added
+	 */
+	public boolean add(Segment s) {
+		Node node = head;
+		for (int l = MAX_LEVEL - 1; l >= 0; l--) {
+			while (node.next[l] != null && context.compare(node.next[l].segment, s) < 0) {
+				node = node.next[l];
+			}
+			update[l] = node;
+		}
+		if (node.next[0] != null && context.compare(node.next[0].segment, s) == 0) {
+			return false;
+		}
+		Node added = new Node(s, randomLevel());
+		for (int l = 0; l < added.next.length; l++) {
+			added.next[l] = update[l].next[l];
+			added.prev[l] = update[l];
+			if (added.next[l] != null) {
+				added.next[l].prev[l] = added;
+			}
+			update[l].next[l] = added;
+		}
+		nodes.put(s, added);
+		return true;
+	}
+
+	/**
+	 * Removes the specified segment from the sweep line, if it contains it.
+	 *
+	 * @param s Segment to remove
+	 * @return True if and only if the segment has been removed
+	 */
+	public boolean remove(Segment s) {
+		Node node = nodes.remove(s);
+		if (node == null) {
+			return false;
+		}
+		for (int l = 0; l < node.next.length; l++) {
+			node.prev[l].next[l] = node.next[l];
+			if (node.next[l] != null) {
+				node.next[l].prev[l] = node.prev[l];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the segment right above the specified segment in the
+	 * sweep line.
+	 *
+	 * @param s Segment, which might not be in the sweep line
+	 * @return the lowest segment greater than s in the sweep line, null
+	 * if there is none
+	 */
+	public Segment higher(Segment s) {
+		Node node = nodes.get(s);
+		if (node == null) {
+			// The sweep line contains no segment equal to s at most
+			node = floor(s);
+		}
+		node = node.next[0];
+		return (node == null) ? null : node.segment;
+	}
+
+	/**
+	 * Returns the segment right below the specified segment in the
+	 * sweep line.
+	 *
+	 * @param s Segment, which might not be in the sweep line
+	 * @return the greatest segment lower than s in the sweep line, null
+	 * if there is none
+	 */
+	public Segment lower(Segment s) {
+		Node node = nodes.get(s);
+		if (node == null) {
+			node = floor(s);
+			if (node != head && context.compare(node.segment, s) == 0) {
+				node = node.prev[0];
+			}
+		} else {
+			node = node.prev[0];
+		}
+		return (node == head) ? null : node.segment;
+	}
+
+	/**
+	 * Reorders the specified segments, which are those of an intersection,
+	 * after the context has been moved to the x-coordinate of the
+	 * intersection. If they are contiguous in the sweep line, they are
+	 * sorted by gradient within their nodes, which is their order right
+	 * after their common point, even if the x-coordinate of the
+	 * intersection has been rounded before that point. Else they are
+	 * removed and added again.
+	 *
+	 * @param segments Segments to reorder
+	 */
+	public void reorder(Collection<Segment> segments) {
+		// Marks the nodes of the segments
+		int k = 0;
+		Node any = null;
+		for (Segment s : segments) {
+			Node node = nodes.get(s);
+			if (node != null && !node.marked) {
+				node.marked = true;
+				any = node;
+				k++;
+			}
+		}
+		if (k == 0) {
+			return;
+		}
+		// Checks that the marked nodes are contiguous
+		Node first = any;
+		while (first.prev[0] != head && first.prev[0].marked) {
+			first = first.prev[0];
+		}
+		int nbContiguous = 0;
+		for (Node node = first; node != null && node.marked; node = node.next[0]) {
+			nbContiguous++;
+		}
+		if (nbContiguous == k) {
+			// Sorts the segments by insertion, k being small
+			if (buffer.length < k) {
+				buffer = new Segment[2*k];
+			}
+			int n = 0;
+			for (Node node = first; n < k; node = node.next[0]) {
+				Segment s = node.segment;
+				int i = n++;
+				while (i > 0 && compareGradients(buffer[i-1], s) > 0) {
+					buffer[i] = buffer[i-1];
+					i--;
+				}
+				buffer[i] = s;
+			}
+			Node node = first;
+			for (int i = 0; i < k; i++) {
+				node.segment = buffer[i];
+				node.marked = false;
+				nodes.put(buffer[i], node);
+				buffer[i] = null;
+				node = node.next[0];
+			}
+		} else {
+			for (Segment s : segments) {
+				Node node = nodes.get(s);
+				if (node != null) {
+					node.marked = false;
+				}
+			}
+			for (Segment s : segments) {
+				remove(s);
+			}
+			for (Segment s : segments) {
+				add(s);
+			}
+		}
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Returns the last node whose segment is lower than or equal to the
+	 * specified segment, the head if there is none.
+	 */
+	private Node floor(Segment s) {
+		Node node = head;
+		for (int l = MAX_LEVEL - 1; l >= 0; l--) {
+			while (node.next[l] != null && context.compare(node.next[l].segment, s) <= 0) {
+				node = node.next[l];
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Compares the gradients of two non vertical segments, which gives
+	 * their order right after their intersection.
+	 *
+	 * @param s1 first Segment to compare
+	 * @param s2 second Segment to compare
+	 * @return a negative integer, 0, or a positive integer depending
+	 * 			on whether the gradient of s1 is less than, equal to or
+	 * 			greater than the gradient of s2
+	 */
+	static int compareGradients(Segment s1, Segment s2) {
+		long dx1 = s1.getP2().getX() - s1.getP1().getX();
+		long dy1 = s1.getP2().getY() - s1.getP1().getY();
+		long dx2 = s2.getP2().getX() - s2.getP1().getX();
+		long dy2 = s2.getP2().getY() - s2.getP1().getY();
+		return Long.signum(dy1*dx2 - dy2*dx1);
+	}
+
+	/**
+	 * Private auxiliary method.
+	 * Returns the level of a new node : 1 with probability 1/2, 2 with
+	 * probability 1/4, and so on.
+	 */
+	private int randomLevel() {
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		return 1 + Integer.numberOfTrailingZeros(seed | (1 << (MAX_LEVEL - 1)));
+	}
+}
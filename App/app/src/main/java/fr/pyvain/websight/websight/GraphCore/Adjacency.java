@@ -0,0 +1,194 @@
+package fr.pyvain.websight.websight.GraphCore;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>This class represents the adjacency of a graph in compressed sparse
+ * row (CSR) format, keyed by the dense ids of its vertices (0 to N-1).</p>
+ *
+ * <p>The neighbours of the vertex of id v are the ids stored in targets
+ * between offsets[v] (included) and offsets[v+1] (excluded), sorted by
+ * increasing id, which is the order in which Vertex.getNeighbours()
+ * iterates over them. The edge leading to each of them is stored at the
+ * same position in edges.</p>
+ *
+ * <p>Browsing the graph this way only reads contiguous int arrays, instead
+ * of going through the neighbours TreeMap of each Vertex.</p>
+ *
+ * <p>The vertices and edges are the ones of any kind of graph, as long as
+ * they implement Node and Link.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class Adjacency<V extends Adjacency.Node, E extends Adjacency.Link<V>> {
+
+    /**
+     * Vertex of a graph, identified by a dense id.
+     */
+    public interface Node {
+
+        /**
+         * Id getter.
+         * @return the id of the vertex, from 0 to N-1 in a graph of N
+         * vertices
+         */
+        int getId();
+    }
+
+    /**
+     * Edge of a graph, between two vertices.
+     * @param <V> Type of the vertices
+     */
+    public interface Link<V extends Node> {
+
+        /**
+         * First end getter.
+         * @return the first end of the edge
+         */
+        V getEnd1();
+
+        /**
+         * Second end getter.
+         * @return the second end of the edge
+         */
+        V getEnd2();
+    }
+
+    /**
+     * Vertices of the graph, per id.
+     */
+    private final Object[] vertices;
+
+    /**
+     * Position of the neighbours of each vertex in targets, per id,
+     * followed by the total number of neighbours.
+     */
+    private final int[] offsets;
+
+    /**
+     * Ids of the neighbours of every vertex.
+     */
+    private final int[] targets;
+
+    /**
+     * Edge leading to each neighbour in targets.
+     */
+    private final Object[] edges;
+
+    /**
+     * Builds the adjacency of the graph composed of the specified vertices
+     * and edges.
+     *
+     * @param vertices Vertices of the graph, which must have consecutive,
+     *                 increasing ids starting from 0
+     * @param edges    Edges of the graph, two edges must not have the same
+     *                 ends
+     * @throws IllegalArgumentException if the ids of the vertices are not
+     * consecutive, or if an edge has an end which is not in the graph
+     */
+    public Adjacency(List<V> vertices, Collection<E> edges)
+            throws IllegalArgumentException
+    {
+        int nbVertices = vertices.size();
+        this.vertices = new Object[nbVertices];
+        for (int id = 0; id < nbVertices; id++) {
+            V v = vertices.get(id);
+            if (v.getId() != id) {
+                throw new IllegalArgumentException("Ids must be consecutive");
+            }
+            this.vertices[id] = v;
+        }
+        // Counts the neighbours of each vertex
+        offsets = new int[nbVertices+1];
+        for (E e : edges) {
+            int id1 = e.getEnd1().getId();
+            int id2 = e.getEnd2().getId();
+            if (id1 < 0 || id1 >= nbVertices || id2 < 0 || id2 >= nbVertices) {
+                throw new IllegalArgumentException("Edge end not in the graph");
+            }
+            offsets[id1+1]++;
+            offsets[id2+1]++;
+        }
+        for (int id = 0; id < nbVertices; id++) {
+            offsets[id+1] += offsets[id];
+        }
+        // Fills the rows
+        targets = new int[offsets[nbVertices]];
+        this.edges = new Object[offsets[nbVertices]];
+        int[] next = new int[nbVertices];
+        System.arraycopy(offsets, 0, next, 0, nbVertices);
+        for (E e : edges) {
+            int id1 = e.getEnd1().getId();
+            int id2 = e.getEnd2().getId();
+            targets[next[id1]] = id2;
+            this.edges[next[id1]++] = e;
+            targets[next[id2]] = id1;
+            this.edges[next[id2]++] = e;
+        }
+        // Sorts each row by increasing id (insertion sort, as rows are short)
+        for (int id = 0; id < nbVertices; id++) {
+            for (int i = offsets[id]+1; i < offsets[id+1]; i++) {
+                int target = targets[i];
+                Object edge = this.edges[i];
+                int j = i-1;
+                while (j >= offsets[id] && targets[j] > target) {
+                    targets[j+1] = targets[j];
+                    this.edges[j+1] = this.edges[j];
+                    j--;
+                }
+                targets[j+1] = target;
+                this.edges[j+1] = edge;
+            }
+        }
+    }
+
+    /**
+     * Number of vertices getter.
+     * @return the number of vertices of the graph
+     */
+    public int getNbVertices() {
+        return vertices.length;
+    }
+
+    /**
+     * Vertex getter by id.
+     * @param id Id of the required vertex
+     * @return the vertex of specified id
+     */
+    @SuppressWarnings("unchecked")
+    public V getVertex(int id) {
+        return (V) vertices[id];
+    }
+
+    /**
+     * Offsets getter.
+     * The returned array must not be modified.
+     * @return the position of the neighbours of each vertex in the targets,
+     * per id, followed by the total number of neighbours
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Targets getter.
+     * The returned array must not be modified.
+     * @return the ids of the neighbours of every vertex
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Edge getter by position in the targets.
+     * @param i Position in the targets array
+     * @return the edge leading to the neighbour at the specified position
+     */
+    @SuppressWarnings("unchecked")
+    public E getEdge(int i) {
+        return (E) edges[i];
+    }
+}
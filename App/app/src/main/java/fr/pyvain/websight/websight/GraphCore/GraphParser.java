@@ -0,0 +1,656 @@
+package fr.pyvain.websight.websight.GraphCore;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>This class parses a json encoded graph received from the server,
+ * token by token, directly from a character stream.</p>
+ *
+ * <p>The graph is read in one pass, without building the whole document
+ * in memory, neither as a String nor as a tree of JSON objects : only the
+ * urls, the keywords, and the ids of the vertices and urls are kept until
+ * the vertices and edges are built. Each url is stored once, in an
+ * URLDictionary shared by all the data sets of the graph.</p>
+ *
+ * <p>The parser does not build the vertices and edges itself, so that
+ * each kind of graph builds its own ones from the keywords, ends and url
+ * ids read.</p>
+ *
+ * <p>The expected format is the following, the fields of an object may
+ * come in any order, and unknown fields are ignored :
+ * {
+ *  "urls": ["url1", "url2", ..., "urlM"],
+ *  "vertices": [
+ *                {"kw":"keyword1",
+ *                 "url_ids":[v0_url_id_0, ..., v0_url_id_X] },
+ *                ...,
+ *                {"kw":"keywordN",
+ *                 "url_ids":[vN_url_id_0, ..., vN_url_id_Y]}
+ *              ],
+ *  "edges": [
+ *             {
+ *               "src": e0_vertex_id_0,
+ *               "dst": e0_vertex_id_1,
+ *               "url_ids":[e0_url_id_0, ..., e0_url_id_Z]
+ *             },
+ *             ...,
+ *             {
+ *               "src": eP_vertex_id_0,
+ *               "dst": eP_vertex_id_1,
+ *               "url_ids":[eP_url_id_0, ..., eP_url_id_W]
+ *             }
+ *           ]
+ * }</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class GraphParser {
+
+    /**
+     * Size of the characters buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Character stream to parse.
+     */
+    private final Reader in;
+
+    /**
+     * Characters read from the stream and not consumed yet are between
+     * pos (included) and limit (excluded).
+     */
+    private final char[] buffer;
+
+    /**
+     * Position of the next character to consume in buffer.
+     */
+    private int pos;
+
+    /**
+     * Number of characters read from the stream in buffer.
+     */
+    private int limit;
+
+    /**
+     * Characters of the string being read.
+     */
+    private final StringBuilder string;
+
+    /**
+     * Ids of the url array being read.
+     */
+    private int[] ids;
+
+    /**
+     * Urls of the graph, per id, null until parsed.
+     */
+    private List<String> urls;
+
+    /**
+     * Dictionary of the urls, null until the vertices or edges are built.
+     */
+    private URLDictionary dictionary;
+
+    /**
+     * Id in dictionary of each url, per position in urls.
+     */
+    private int[] dictionaryIds;
+
+    /**
+     * Keywords of the vertices, per id, null until parsed.
+     */
+    private List<String> keywords;
+
+    /**
+     * Url ids of the vertices, per id.
+     */
+    private List<int[]> vertexUrlIds;
+
+    /**
+     * Ends of the edges, two per edge, null until parsed.
+     */
+    private int[] edgeEnds;
+
+    /**
+     * Url ids of the edges.
+     */
+    private List<int[]> edgeUrlIds;
+
+    /**
+     * Initializes a new parser reading the specified character stream.
+     * The stream is not closed by the parser.
+     * @param in Character stream to parse
+     */
+    public GraphParser(Reader in) {
+        this.in = in;
+        buffer = new char[BUFFER_SIZE];
+        pos = 0;
+        limit = 0;
+        string = new StringBuilder();
+        ids = new int[16];
+        urls = null;
+        dictionary = null;
+        dictionaryIds = null;
+        keywords = null;
+        vertexUrlIds = null;
+        edgeEnds = null;
+        edgeUrlIds = null;
+    }
+
+    /**
+     * Reads the whole graph from the stream.
+     * @throws IOException if the stream could not be read
+     * @throws IllegalArgumentException if the graph is not valid
+     */
+    public void parse() throws IOException, IllegalArgumentException {
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                String key = readString();
+                expect(':');
+                switch (key) {
+                    case "urls":
+                        parseUrls();
+                        break;
+                    case "vertices":
+                        parseVertices();
+                        break;
+                    case "edges":
+                        parseEdges();
+                        break;
+                    default:
+                        skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        if (peek() != -1) {
+            throw invalid("unexpected content after the graph");
+        } else if (urls == null) {
+            throw invalid("no urls");
+        } else if (keywords == null) {
+            throw invalid("no vertices");
+        } else if (edgeEnds == null) {
+            throw invalid("no edges");
+        }
+        for (int[] urlIds : vertexUrlIds) {
+            checkURLIds(urlIds);
+        }
+        for (int i = 0; i < edgeUrlIds.size(); i++) {
+            int src = edgeEnds[2*i];
+            int dst = edgeEnds[2*i+1];
+            if (src < 0 || src >= keywords.size() || dst < 0 || dst >= keywords.size()) {
+                throw invalid("vertex id out of bounds");
+            }
+            checkURLIds(edgeUrlIds.get(i));
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Checks that the specified url ids are positions in the urls array.
+     * @throws IllegalArgumentException if a position is out of bounds
+     */
+    private void checkURLIds(int[] urlIds) throws IllegalArgumentException {
+        for (int urlId : urlIds) {
+            if (urlId < 0 || urlId >= urls.size()) {
+                throw invalid("url id out of bounds");
+            }
+        }
+    }
+
+    /**
+     * Number of vertices getter.
+     * Must be called after parse().
+     * @return the number of vertices of the parsed graph, whose ids are
+     * 0 to getNbVertices()-1
+     */
+    public int getNbVertices() {
+        return keywords.size();
+    }
+
+    /**
+     * Keyword getter.
+     * Must be called after parse().
+     * @param id Id of a vertex
+     * @return the keyword of the vertex of specified id
+     */
+    public String getKeyword(int id) {
+        return keywords.get(id);
+    }
+
+    /**
+     * Vertex urls getter.
+     * Must be called after parse().
+     * @param id Id of a vertex
+     * @return the sorted ids in getDictionary() of the urls of the vertex
+     * of specified id
+     */
+    public int[] getVertexURLIds(int id) {
+        return getDictionaryIds(vertexUrlIds.get(id));
+    }
+
+    /**
+     * Number of edges getter.
+     * Must be called after parse().
+     * @return the number of edges of the parsed graph
+     */
+    public int getNbEdges() {
+        return edgeUrlIds.size();
+    }
+
+    /**
+     * Source getter.
+     * Must be called after parse().
+     * @param i Position of an edge
+     * @return the id of the first end of the edge at specified position
+     */
+    public int getSource(int i) {
+        return edgeEnds[2*i];
+    }
+
+    /**
+     * Destination getter.
+     * Must be called after parse().
+     * @param i Position of an edge
+     * @return the id of the second end of the edge at specified position
+     */
+    public int getDestination(int i) {
+        return edgeEnds[2*i+1];
+    }
+
+    /**
+     * Edge urls getter.
+     * Must be called after parse().
+     * @param i Position of an edge
+     * @return the sorted ids in getDictionary() of the urls of the edge at
+     * specified position
+     */
+    public int[] getEdgeURLIds(int i) {
+        return getDictionaryIds(edgeUrlIds.get(i));
+    }
+
+    /**
+     * Returns the dictionary of the urls, built from the urls array at the
+     * first call.
+     * Must be called after parse().
+     * @return the dictionary of the urls of the graph
+     */
+    public URLDictionary getDictionary() {
+        if (dictionary == null) {
+            dictionary = new URLDictionary();
+            dictionaryIds = new int[urls.size()];
+            for (int i = 0; i < urls.size(); i++) {
+                dictionaryIds[i] = dictionary.getId(urls.get(i));
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Returns the ids in the dictionary of the URLs of specified positions
+     * in the urls array, which have been checked by parse().
+     * @param urlIds Positions of the URLs in the urls array
+     * @return the sorted ids in the dictionary of the URLs
+     */
+    private int[] getDictionaryIds(int[] urlIds) {
+        getDictionary();
+        int[] result = new int[urlIds.length];
+        for (int i = 0; i < urlIds.length; i++) {
+            result[i] = dictionaryIds[urlIds[i]];
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Reads the array of all the urls.
+     */
+    private void parseUrls() throws IOException, IllegalArgumentException {
+        urls = new ArrayList<>();
+        expect('[');
+        if (!consumeIf(']')) {
+            do {
+                urls.add(readString());
+            } while (consumeIf(','));
+            expect(']');
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Reads the array of the vertices.
+     */
+    private void parseVertices() throws IOException, IllegalArgumentException {
+        keywords = new ArrayList<>();
+        vertexUrlIds = new ArrayList<>();
+        expect('[');
+        if (!consumeIf(']')) {
+            do {
+                String kw = null;
+                int[] urlIds = null;
+                expect('{');
+                if (!consumeIf('}')) {
+                    do {
+                        String key = readString();
+                        expect(':');
+                        switch (key) {
+                            case "kw":
+                                kw = readString();
+                                break;
+                            case "url_ids":
+                                urlIds = readIds();
+                                break;
+                            default:
+                                skipValue();
+                        }
+                    } while (consumeIf(','));
+                    expect('}');
+                }
+                if (kw == null || urlIds == null) {
+                    throw invalid("incomplete vertex");
+                }
+                keywords.add(kw);
+                vertexUrlIds.add(urlIds);
+            } while (consumeIf(','));
+            expect(']');
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Reads the array of the edges.
+     */
+    private void parseEdges() throws IOException, IllegalArgumentException {
+        edgeEnds = new int[32];
+        edgeUrlIds = new ArrayList<>();
+        expect('[');
+        if (!consumeIf(']')) {
+            do {
+                int src = -1;
+                int dst = -1;
+                int[] urlIds = null;
+                expect('{');
+                if (!consumeIf('}')) {
+                    do {
+                        String key = readString();
+                        expect(':');
+                        switch (key) {
+                            case "src":
+                                src = readInt();
+                                break;
+                            case "dst":
+                                dst = readInt();
+                                break;
+                            case "url_ids":
+                                urlIds = readIds();
+                                break;
+                            default:
+                                skipValue();
+                        }
+                    } while (consumeIf(','));
+                    expect('}');
+                }
+                if (src == -1 || dst == -1 || urlIds == null) {
+                    throw invalid("incomplete edge");
+                }
+                int i = 2*edgeUrlIds.size();
+                if (i+2 > edgeEnds.length) {
+                    edgeEnds = Arrays.copyOf(edgeEnds, 2*edgeEnds.length);
+                }
+                edgeEnds[i] = src;
+                edgeEnds[i+1] = dst;
+                edgeUrlIds.add(urlIds);
+            } while (consumeIf(','));
+            expect(']');
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Reads an array of non negative integers.
+     * @return the integers of the array
+     */
+    private int[] readIds() throws IOException, IllegalArgumentException {
+        int nbIds = 0;
+        expect('[');
+        if (!consumeIf(']')) {
+            do {
+                if (nbIds == ids.length) {
+                    ids = Arrays.copyOf(ids, 2*ids.length);
+                }
+                ids[nbIds++] = readInt();
+            } while (consumeIf(','));
+            expect(']');
+        }
+        return Arrays.copyOf(ids, nbIds);
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Reads a non negative integer.
+     * @return the integer read
+     */
+    private int readInt() throws IOException, IllegalArgumentException {
+        skipWhitespace();
+        long value = 0;
+        int nbDigits = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            value = 10*value + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw invalid("integer out of bounds");
+            }
+            pos++;
+            nbDigits++;
+        }
+        if (nbDigits == 0) {
+            throw invalid("integer expected");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Reads a string, and unescapes it.
+     * @return the string read
+     */
+    private String readString() throws IOException, IllegalArgumentException {
+        expect('"');
+        string.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw invalid("unterminated string");
+            } else if (c == '"') {
+                return string.toString();
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        string.append((char) c);
+                        break;
+                    case 'b':
+                        string.append('\b');
+                        break;
+                    case 'f':
+                        string.append('\f');
+                        break;
+                    case 'n':
+                        string.append('\n');
+                        break;
+                    case 'r':
+                        string.append('\r');
+                        break;
+                    case 't':
+                        string.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit == -1) {
+                                throw invalid("invalid unicode escape");
+                            }
+                            code = 16*code + digit;
+                        }
+                        string.append((char) code);
+                        break;
+                    default:
+                        throw invalid("invalid escape");
+                }
+            } else {
+                string.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Skips a value of any type, and its content.
+     */
+    private void skipValue() throws IOException, IllegalArgumentException {
+        int c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{') {
+            pos++;
+            if (!consumeIf('}')) {
+                do {
+                    readString();
+                    expect(':');
+                    skipValue();
+                } while (consumeIf(','));
+                expect('}');
+            }
+        } else if (c == '[') {
+            pos++;
+            if (!consumeIf(']')) {
+                do {
+                    skipValue();
+                } while (consumeIf(','));
+                expect(']');
+            }
+        } else {
+            // Number, true, false or null
+            int length = 0;
+            while ((c = peekChar()) != -1 &&
+                    (Character.isLetterOrDigit(c) || c == '-' || c == '+' || c == '.')) {
+                pos++;
+                length++;
+            }
+            if (length == 0) {
+                throw invalid("value expected");
+            }
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Consumes the next non whitespace character, which must be the
+     * specified one.
+     * @param expected Expected character
+     */
+    private void expect(char expected) throws IOException, IllegalArgumentException {
+        if (!consumeIf(expected)) {
+            throw invalid("'" + expected + "' expected");
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Consumes the next non whitespace character if it is the specified one.
+     * @param expected Expected character
+     * @return true if the character has been consumed
+     */
+    private boolean consumeIf(char expected) throws IOException {
+        if (peek() == expected) {
+            pos++;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Skips whitespace characters, and returns the next character without
+     * consuming it.
+     * @return the next non whitespace character, -1 at the end of the stream
+     */
+    private int peek() throws IOException {
+        skipWhitespace();
+        return peekChar();
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Skips whitespace characters.
+     */
+    private void skipWhitespace() throws IOException {
+        int c;
+        while ((c = peekChar()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            pos++;
+        }
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Returns the next character without consuming it.
+     * @return the next character, -1 at the end of the stream
+     */
+    private int peekChar() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Consumes the next character.
+     * @return the next character, -1 at the end of the stream
+     */
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Private auxiliary parsing method.
+     * Reads the next characters of the stream in the buffer, which must
+     * have been entirely consumed.
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        int nbRead;
+        do {
+            nbRead = in.read(buffer, 0, buffer.length);
+        } while (nbRead == 0);
+        pos = 0;
+        limit = Math.max(0, nbRead);
+        return nbRead > 0;
+    }
+
+    /**
+     * Private auxiliary method.
+     * @param message Description of the error
+     * @return an exception describing the specified parsing error
+     */
+    private IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException("Invalid JSON graph : " + message);
+    }
+}
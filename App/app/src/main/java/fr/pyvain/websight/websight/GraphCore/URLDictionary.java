@@ -0,0 +1,85 @@
+package fr.pyvain.websight.websight.GraphCore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A class that gives a unique id to each url of a graph,
+ * so that the DataSet objects of the graph only store the ids of their
+ * urls, and each url is stored once for the whole graph.
+ * </p>
+ * <p>
+ * The ids are consecutive, starting from 0, in the order the urls have
+ * been added to the dictionary.
+ * </p>
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class URLDictionary {
+
+    /**
+     * Urls, per id.
+     */
+    private final List<String> urls;
+
+    /**
+     * Id of each url.
+     */
+    private final Map<String, Integer> ids;
+
+    /**
+     * Initializes a new empty dictionary.
+     */
+    public URLDictionary() {
+        urls = new ArrayList<>();
+        ids = new HashMap<>();
+    }
+
+    /**
+     * Returns the id of the specified url, adding it to the dictionary
+     * if it is not in it yet.
+     * @param url Url whose id is required
+     * @return the id of the specified url
+     */
+    public int getId(String url) {
+        Integer id = ids.get(url);
+        if (id == null) {
+            id = urls.size();
+            urls.add(url);
+            ids.put(url, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of the specified url if it is in the dictionary.
+     * @param url Url whose id is required
+     * @return the id of the specified url, -1 if it is not in the
+     * dictionary
+     */
+    public int findId(String url) {
+        Integer id = ids.get(url);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * Url getter by id.
+     * @param id Id of the required url
+     * @return the url of specified id
+     */
+    public String getURL(int id) {
+        return urls.get(id);
+    }
+
+    /**
+     * The size of the dictionary is the number of urls in it.
+     * @return the number of urls in the dictionary
+     */
+    public int size() {
+        return urls.size();
+    }
+}
@@ -14,7 +14,12 @@ import android.widget.Toast;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
+import fr.pyvain.websight.websight.SweetGraphs.ForestRadialLayout;
+import fr.pyvain.websight.websight.SweetGraphs.Graph;
+import fr.pyvain.websight.websight.SweetGraphs.GraphCache;
 import fr.pyvain.websight.websight.SweetGraphs.GraphView;
 
 /**
@@ -51,15 +56,45 @@ public class GraphDisplay extends AppCompatActivity implements ResponseReceiver.
     private ResponseReceiver mReceiver;
 
     /**
-     * Displays a graph in the graphView
+     * Loads the saved graph and its layout, from the graph cache file if
+     * it is valid, from the graph file otherwise, in which case the graph
+     * cache file is written for the next time
      *
-     * @param graphJSon String containing a JSon graph
+     * @return the saved graph and its layout
+     * @throws IOException if the graph file cannot be read
      */
-    private void displayGraph(String graphJSon) {
+    private GraphCache loadGraph() throws IOException {
+        File cacheFile = getFileStreamPath(userID + getString(R.string.graphCacheFile));
+        if (cacheFile.exists()) {
+            try {
+                return GraphCache.read(cacheFile);
+            } catch (IllegalArgumentException e) {
+                Log.w("Websight", "Invalid graph cache: " + e.getMessage());
+            }
+        }
+        GraphCache cache;
+        Reader graph = new InputStreamReader(openFileInput(userID + getString(R.string.graphFile)));
+        try {
+            Graph g = new Graph(graph);
+            cache = new GraphCache(g, new ForestRadialLayout(g, g.getVertices().first()));
+        } finally {
+            graph.close();
+        }
+        cache.write(cacheFile);
+        return cache;
+    }
+
+    /**
+     * Displays the saved graph in the graphView
+     *
+     * @throws IOException if the graph file cannot be read
+     */
+    private void displayGraph() throws IOException {
         TextView tuto = (TextView) findViewById(R.id.noGraphText);
         tuto.setVisibility(View.GONE);
         GraphView gView = (GraphView) findViewById(R.id.graphView);
-        gView.setGraph(graphJSon);
+        GraphCache cache = loadGraph();
+        gView.setGraph(cache.getGraph(), cache.getLayout());
         gView.setVisibility(View.VISIBLE);
         ImageButton changeLabels = (ImageButton) findViewById(R.id.changeLabels);
         changeLabels.setVisibility(View.VISIBLE);
@@ -111,6 +146,8 @@ public class GraphDisplay extends AppCompatActivity implements ResponseReceiver.
                     Intent i = new Intent(this, GraphRequestService.class);
                     i.putExtra("token", token);
                     i.putExtra("keywords", keywords);
+                    i.putExtra("graphFile", userID + getString(R.string.graphFile));
+                    i.putExtra("graphCacheFile", userID + getString(R.string.graphCacheFile));
                     i.putExtra("receiver", mReceiver);
                     startService(i);
                 } else
@@ -133,7 +170,7 @@ public class GraphDisplay extends AppCompatActivity implements ResponseReceiver.
      * The action performed when the service's task is completed
      *
      * @param resultCode error code : 0 if something went wrong, 1 otherwise
-     * @param resultData either a short description of te error or a String representing a graph (JSon)
+     * @param resultData a short description of the error, the graph being saved in the graph file otherwise
      */
     @Override
     public void onReceiveResult(int resultCode, Bundle resultData) {
@@ -141,13 +178,11 @@ public class GraphDisplay extends AppCompatActivity implements ResponseReceiver.
         getGraph.clearAnimation();
         getGraph.setClickable(true);
         if (resultCode != 0) {
-            String graph = new String(resultData.getCharArray("graph"));
             try {
-                FileIO.writeInFile(this, userID + getResources().getString(R.string.graphFile), graph);
+                displayGraph();
             } catch (IOException e) {
-                Toast.makeText(GraphDisplay.this, getString(R.string.fillDataMessage), Toast.LENGTH_SHORT).show();
+                Toast.makeText(GraphDisplay.this, getString(R.string.fileExceptionMessage), Toast.LENGTH_SHORT).show();
             }
-            displayGraph(graph);
         } else {
             String error = new String(resultData.getCharArray("error"));
             Toast.makeText(GraphDisplay.this, error, Toast.LENGTH_SHORT).show();
@@ -188,13 +223,11 @@ public class GraphDisplay extends AppCompatActivity implements ResponseReceiver.
 
         File file = getBaseContext().getFileStreamPath(userID + getString(R.string.graphFile));
         if(file.exists()) {
-            String graph = "";
             try {
-                graph = FileIO.readFile(this, userID + getString(R.string.graphFile));
+                displayGraph();
             } catch (IOException e) {
                 new CustomToast(GraphDisplay.this, getString(R.string.fileExceptionMessage), 90, 16.0/9).show();
             }
-            displayGraph(graph);
         }
 
 
@@ -349,7 +349,7 @@ class GraphEngine {
 
         Map<Edge, Segment> segments = currDrawing.getSegments();
         for (Edge e : currForest.getEdges()) {
-            float width = maxSize * e.getData().getURLs().size() / maxNbUrls;
+            float width = maxSize * e.getData().getNbURLs() / maxNbUrls;
             edgePaint.setStrokeWidth(width);
             Segment s = segments.get(e);
             CPoint p1 = s.getP1();
@@ -13,7 +13,15 @@ import android.os.ResultReceiver;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import fr.pyvain.websight.websight.SweetGraphs.ForestRadialLayout;
+import fr.pyvain.websight.websight.SweetGraphs.Graph;
+import fr.pyvain.websight.websight.SweetGraphs.GraphCache;
 
 /**
  * <p> Service used </p></p>
@@ -33,6 +41,8 @@ public class GraphRequestService extends IntentService {
         System.out.println("Début request");
         String token = intent.getStringExtra("token");
         String[] keywords = intent.getStringArrayExtra("keywords");
+        String graphFile = intent.getStringExtra("graphFile");
+        String graphCacheFile = intent.getStringExtra("graphCacheFile");
         ResultReceiver receiver = intent.getParcelableExtra("receiver");
 
         Bundle b = new Bundle();
@@ -41,13 +51,44 @@ public class GraphRequestService extends IntentService {
         Resources resources = getResources();
 //        b.putCharArray("graph", Graph.niceGraph().toCharArray());
 //        code = 1;
-        String graph;
+        // The graph is streamed into a temporary file, which replaces the
+        // previous graph only once it has been completely received
+        String tmpFile = graphFile + ".tmp";
         try {
-            graph = new Request(this.getApplicationContext()).getGraph(token, keywords);
-            b.putCharArray("graph", graph.toCharArray());
+            OutputStream out = openFileOutput(tmpFile, Context.MODE_PRIVATE);
+            try {
+                new Request(this.getApplicationContext()).getGraph(token, keywords, out);
+            } finally {
+                out.close();
+            }
+            // The graph is parsed and laid out here, off the UI thread, and
+            // saved with its layout in the graph cache file, which is what
+            // GraphDisplay loads
+            String tmpCacheFile = graphCacheFile + ".tmp";
+            Reader in = new InputStreamReader(openFileInput(tmpFile));
+            try {
+                Graph g = new Graph(in);
+                ForestRadialLayout layout = new ForestRadialLayout(g, g.getVertices().first());
+                new GraphCache(g, layout).write(getFileStreamPath(tmpCacheFile));
+            } finally {
+                in.close();
+            }
+            File cache = getFileStreamPath(graphCacheFile);
+            if (cache.exists() && !cache.delete()) {
+                throw new IOException("Cannot replace " + graphCacheFile);
+            }
+            if (!getFileStreamPath(tmpFile).renameTo(getFileStreamPath(graphFile))) {
+                throw new IOException("Cannot replace " + graphFile);
+            }
+            if (!getFileStreamPath(tmpCacheFile).renameTo(cache)) {
+                throw new IOException("Cannot replace " + graphCacheFile);
+            }
             code = 1;
         } catch (IOException e) {
             b.putCharArray("error", resources.getString(R.string.ioExceptionMessage).toCharArray());
+        } catch (IllegalArgumentException e) {
+            // The received graph is invalid
+            b.putCharArray("error", resources.getString(R.string.serverExceptionMessage).toCharArray());
         } catch (InvalidCredentialsException e) {
             b.putCharArray("error", resources.getString(R.string.invalidCredentialsExceptionMessage).toCharArray());
         } catch (ServerException e) {
@@ -0,0 +1,163 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>This class represents one independent simulated annealing chain
+ * searching a state of a Tree which minimizes the cost of its drawing.</p>
+ *
+ * <p>Each chain owns its random generator, its working objects and its
+ * best state, and only reads the tree it starts from, so that several
+ * chains, on the same tree or on different trees, can run at the same
+ * time on a thread pool.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class AnnealingChain implements Callable<Integer> {
+
+    /**
+     * Tree the chain starts from.
+     */
+    private final Tree source;
+
+    /**
+     * Best state found by the chain.
+     */
+    private TreeState best;
+
+    /**
+     * Required radial coordinate of the tree's root.
+     */
+    private final int rad;
+
+    /**
+     * Required angular sector starting angle of the tree's root.
+     */
+    private final float secStart;
+
+    /**
+     * Required angular sector width of the tree's root.
+     */
+    private final float secWidth;
+
+    /**
+     * Required vertex Radius of the tree in percentage of the maximal
+     * allowed value.
+     */
+    private final float vRadius;
+
+    /**
+     * Configuration of the minimization the chain is part of.
+     */
+    private final AnnealingConfig config;
+
+    /**
+     * Index of the chain in the minimization, which gives its random
+     * generator.
+     */
+    private final int index;
+
+    /**
+     * Time at which the chain must stop, given by
+     * SystemClock.elapsedRealtime().
+     */
+    private final long deadline;
+
+    /**
+     * Initializes a new annealing chain starting from the specified
+     * Tree, with the specified parameters.
+     *
+     * @param source    Tree the chain starts from
+     * @param rad       Required radial coordinate of the tree's root
+     * @param secStart  Required angular sector starting angle of the
+     *                  tree's root
+     * @param secWidth  Required angular sector width of the tree's root
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param config    Configuration of the minimization
+     * @param index     Index of the chain, its random generator being
+     *                  config.chainRandom(index)
+     * @param deadline  Time at which the chain must stop, given by
+     *                  SystemClock.elapsedRealtime()
+     */
+    public AnnealingChain(Tree source, int rad, float secStart, float secWidth,
+                          float vRadius, AnnealingConfig config, int index, long deadline) {
+        this.source = source;
+        this.best = null;
+        this.rad = rad;
+        this.secStart = secStart;
+        this.secWidth = secWidth;
+        this.vRadius = vRadius;
+        this.config = config;
+        this.index = index;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Runs the chain until its deadline, or until its budget of
+     * iterations is spent.
+     * @return the cost of the best state found
+     */
+    @Override
+    public Integer call() {
+        best = new TreeState(source);
+        return source.anneal(best, rad, secStart, secWidth, vRadius,
+                new Tree(), new RadialLayout(), new Drawing(),
+                config.chainRandom(index), config, deadline);
+    }
+
+    /**
+     * Runs the specified chains on the specified executor, waits for
+     * all of them, then sets each source tree to the best state found
+     * by its chains.
+     *
+     * If the calling thread is interrupted while waiting, the source trees
+     * are left unchanged, and the interrupt status is restored.
+     *
+     * @param executor Executor running the chains
+     * @param chains   Chains to run
+     * @throws IllegalStateException if one of the chains failed
+     */
+    public static void runAll(ExecutorService executor, List<AnnealingChain> chains)
+            throws IllegalStateException
+    {
+        List<Future<Integer>> results;
+        try {
+            results = executor.invokeAll(chains);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // Keeps the best chain of each source tree
+        Map<Tree, AnnealingChain> bestChains = new IdentityHashMap<>();
+        Map<Tree, Integer> bestCosts = new IdentityHashMap<>();
+        for (int i = 0; i < chains.size(); i++) {
+            AnnealingChain chain = chains.get(i);
+            int cost;
+            try {
+                cost = results.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Annealing chain failed", e.getCause());
+            }
+            Integer bestCost = bestCosts.get(chain.source);
+            if (bestCost == null || cost < bestCost) {
+                bestCosts.put(chain.source, cost);
+                bestChains.put(chain.source, chain);
+            }
+        }
+        for (AnnealingChain chain : bestChains.values()) {
+            chain.source.restoreState(chain.best);
+        }
+    }
+}
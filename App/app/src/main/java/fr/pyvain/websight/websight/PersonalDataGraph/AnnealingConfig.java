@@ -0,0 +1,334 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import java.util.Random;
+
+/**
+ * <p>This class gathers the parameters of a crossings minimization by
+ * simulated annealing : <ul>
+ *     <li>the seed from which the random generators of the annealing
+ *     chains are derived</li>
+ *     <li>the budget of the minimization : a maximal number of iterations,
+ *     a maximal time, or both</li>
+ *     <li>the cooling schedule, i.e. how the temperature decreases
+ *     between two iterations</li>
+ * </ul></p>
+ *
+ * <p>A minimization is reproducible when it is only limited by a number
+ * of iterations : the same configuration then always leads to the same
+ * result. With a time limit, the number of iterations, hence the result,
+ * depends on the speed of the device.</p>
+ *
+ * <p>Each chain, and each tree of a forest, draws its random numbers from
+ * its own generator, seeded with a seed derived from the one of the
+ * configuration by split(), so that running the chains in parallel does
+ * not change their results.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class AnnealingConfig {
+
+    /**
+     * Cooling schedule of an annealing chain, which decreases the
+     * temperature from an initial temperature to a final one in an
+     * estimated number of iterations.
+     */
+    public enum Cooling {
+
+        /**
+         * The temperature is multiplied by a constant factor.
+         */
+        GEOMETRIC {
+            @Override
+            public float step(float initTemp, float finalTemp, int nbIters) {
+                return (float) Math.pow(finalTemp/initTemp, 1.0/nbIters);
+            }
+
+            @Override
+            public float decrease(float temp, float step) {
+                return temp * step;
+            }
+        },
+
+        /**
+         * A constant is subtracted from the temperature, which stays positive.
+         */
+        LINEAR {
+            @Override
+            public float step(float initTemp, float finalTemp, int nbIters) {
+                return (initTemp - finalTemp) / nbIters;
+            }
+
+            @Override
+            public float decrease(float temp, float step) {
+                return Math.max(temp - step, Float.MIN_VALUE);
+            }
+        };
+
+        /**
+         * Computes the step of the schedule going from the specified initial
+         * temperature to the specified final one in the specified number of
+         * iterations.
+         *
+         * @param initTemp  Initial temperature
+         * @param finalTemp Final temperature
+         * @param nbIters   Number of iterations, must be > 0
+         * @return the step to give to decrease()
+         */
+        public abstract float step(float initTemp, float finalTemp, int nbIters);
+
+        /**
+         * Computes the temperature of the next iteration.
+         *
+         * @param temp Temperature of the current iteration
+         * @param step Step of the schedule
+         * @return the temperature of the next iteration
+         */
+        public abstract float decrease(float temp, float step);
+    }
+
+    /**
+     * Value of the budgets meaning that there is no such limit.
+     */
+    public static final int UNLIMITED = -1;
+
+    /**
+     * Increment of the seeds derived by split(), i.e. 2^64 divided by
+     * the golden ratio, as in the SplitMix64 generator.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Seed of the minimization.
+     */
+    private final long seed;
+
+    /**
+     * Maximal number of iterations of each chain, UNLIMITED if none.
+     */
+    private final int maxIterations;
+
+    /**
+     * Maximal time of the minimization in milliseconds, UNLIMITED if none.
+     */
+    private final long maxTime;
+
+    /**
+     * Cooling schedule of the chains.
+     */
+    private final Cooling cooling;
+
+    /**
+     * Initializes a new configuration with the specified seed and budget,
+     * and the specified cooling schedule.
+     * The minimization stops as soon as one of the budgets is spent.
+     *
+     * @param seed          Seed of the minimization
+     * @param maxIterations Maximal number of iterations of each chain,
+     *                      UNLIMITED if none, must be >= 0 else
+     * @param maxTime       Maximal time of the minimization in
+     *                      milliseconds, UNLIMITED if none, must be >= 0 else
+     * @param cooling       Cooling schedule of the chains
+     * @throws IllegalArgumentException if a budget is invalid, or if
+     * both are unlimited
+     */
+    public AnnealingConfig(long seed, int maxIterations, long maxTime, Cooling cooling)
+            throws IllegalArgumentException
+    {
+        if (maxIterations < 0 && maxIterations != UNLIMITED) {
+            throw new IllegalArgumentException("Invalid number of iterations");
+        } else if (maxTime < 0 && maxTime != UNLIMITED) {
+            throw new IllegalArgumentException("Invalid time");
+        } else if (maxIterations == UNLIMITED && maxTime == UNLIMITED) {
+            throw new IllegalArgumentException("The budget must be limited");
+        } else if (cooling == null) {
+            throw new IllegalArgumentException("Cooling schedule required");
+        }
+        this.seed = seed;
+        this.maxIterations = maxIterations;
+        this.maxTime = maxTime;
+        this.cooling = cooling;
+    }
+
+    /**
+     * Initializes a new configuration of a reproducible minimization, with
+     * the specified seed, number of iterations and cooling schedule.
+     *
+     * @param seed          Seed of the minimization
+     * @param maxIterations Number of iterations of each chain, must be >= 0
+     * @param cooling       Cooling schedule of the chains
+     * @throws IllegalArgumentException if the number of iterations is
+     * invalid
+     */
+    public AnnealingConfig(long seed, int maxIterations, Cooling cooling)
+            throws IllegalArgumentException
+    {
+        this(seed, checkIterations(maxIterations), UNLIMITED, cooling);
+    }
+
+    /**
+     * Initializes a new configuration of a minimization with the specified
+     * seed and time, and a geometric cooling schedule.
+     *
+     * @param seed    Seed of the minimization
+     * @param maxTime Maximal time of the minimization in milliseconds,
+     *                must be >= 0
+     * @throws IllegalArgumentException if the time is invalid
+     */
+    public AnnealingConfig(long seed, long maxTime) throws IllegalArgumentException {
+        this(seed, UNLIMITED, checkTime(maxTime), Cooling.GEOMETRIC);
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the specified number of iterations, if it is not negative
+     * @throws IllegalArgumentException else
+     */
+    private static int checkIterations(int maxIterations) throws IllegalArgumentException {
+        if (maxIterations < 0) {
+            throw new IllegalArgumentException("Invalid number of iterations");
+        }
+        return maxIterations;
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the specified time, if it is not negative
+     * @throws IllegalArgumentException else
+     */
+    private static long checkTime(long maxTime) throws IllegalArgumentException {
+        if (maxTime < 0) {
+            throw new IllegalArgumentException("Invalid time");
+        }
+        return maxTime;
+    }
+
+    /**
+     * Seed getter.
+     * @return the seed of the minimization
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Maximal number of iterations getter.
+     * @return the maximal number of iterations of each chain, UNLIMITED
+     * if none
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Maximal time getter.
+     * @return the maximal time of the minimization in milliseconds,
+     * UNLIMITED if none
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * Cooling schedule getter.
+     * @return the cooling schedule of the chains
+     */
+    public Cooling getCooling() {
+        return cooling;
+    }
+
+    /**
+     * Returns the time at which a minimization with this configuration
+     * started at the specified time must stop.
+     * @param start Start of the minimization, given by
+     *              SystemClock.elapsedRealtime()
+     * @return the deadline of the minimization, Long.MAX_VALUE if its time
+     * is unlimited
+     */
+    public long deadline(long start) {
+        return (maxTime == UNLIMITED) ? Long.MAX_VALUE : start + maxTime;
+    }
+
+    /**
+     * Derives the seed of the specified part of the minimization (chain,
+     * or tree of a forest) from the seed of the configuration.
+     * The derived seeds are well distributed, even for consecutive seeds
+     * or indices.
+     *
+     * @param index Index of the part
+     * @return the seed of the specified part
+     */
+    public long split(int index) {
+        // Finalizer of SplitMix64
+        long z = seed + (index + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a new random generator for the specified chain.
+     * @param chain Index of the chain
+     * @return a random generator seeded with split(chain)
+     */
+    public Random chainRandom(int chain) {
+        return new Random(split(chain));
+    }
+
+    /**
+     * Returns the configuration of the specified part of the minimization,
+     * e.g. of a tree of a forest, with a seed derived by split(), the same
+     * cooling schedule, and the specified budget.
+     *
+     * @param index         Index of the part
+     * @param maxIterations Maximal number of iterations of each chain of
+     *                      the part, UNLIMITED if none
+     * @param maxTime       Maximal time of the part, UNLIMITED if none
+     * @return the configuration of the part
+     * @throws IllegalArgumentException if the budget is invalid
+     */
+    public AnnealingConfig part(int index, int maxIterations, long maxTime)
+            throws IllegalArgumentException
+    {
+        return new AnnealingConfig(split(index), maxIterations, maxTime, cooling);
+    }
+
+    /**
+     * Two AnnealingConfig objects are equal if they have equal
+     * attributes.
+     *
+     * @param o Object to compare with the receiving AnnealingConfig.
+     * @return True if and only if o is an AnnealingConfig, with equal
+     * attributes
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AnnealingConfig)) {
+            return false;
+        } else {
+            AnnealingConfig that = (AnnealingConfig) o;
+            return (this.seed == that.seed &&
+                    this.maxIterations == that.maxIterations &&
+                    this.maxTime == that.maxTime &&
+                    this.cooling == that.cooling);
+        }
+    }
+
+    /**
+     * Returns a hash code value for the AnnealingConfig.
+     * Two equal AnnealingConfig objects have the same hash code value.
+     *
+     * @return a hash code value for the AnnealingConfig.
+     */
+    @Override
+    public int hashCode() {
+        // Good implementation propose in Josh Bloch's Effective Java
+        int result = 13;
+        result = 37 * result + (int) (seed ^ (seed >>> 32));
+        result = 37 * result + maxIterations;
+        result = 37 * result + (int) (maxTime ^ (maxTime >>> 32));
+        result = 37 * result + cooling.ordinal();
+        return result;
+    }
+}
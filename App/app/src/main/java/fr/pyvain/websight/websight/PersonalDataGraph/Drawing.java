@@ -1,14 +1,17 @@
 package fr.pyvain.websight.websight.PersonalDataGraph;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import fr.pyvain.websight.websight.Geometry.CPoint;
 import fr.pyvain.websight.websight.Geometry.InterComputer;
+import fr.pyvain.websight.websight.Geometry.PolarProjection;
 import fr.pyvain.websight.websight.Geometry.Segment;
+import fr.pyvain.websight.websight.Geometry.SpatialGrid;
 
 /**
  * <p>This class represents a drawing of a graph. It is defined by : <ul>
@@ -24,6 +27,12 @@ import fr.pyvain.websight.websight.Geometry.Segment;
  * <p>Finally, it allows to compute which Vertex / Edge is at a
  * given position</p>
  *
+ * <p>The drawing is stored in arrays of primitives, which are reused by
+ * each update and only reallocated when the graph gets bigger : updating
+ * a drawing allocates no object. The maps of CPoint and Segment objects
+ * returned by getCenters() and getSegments() are only built again on
+ * demand, after an update.</p>
+ *
  * <p>
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
@@ -50,15 +59,89 @@ public final class Drawing {
 
 
     /**
-     * Centers of the vertices.
+     * Centers of the vertices, built on demand.
      */
     private final Map<Vertex, CPoint> centers;
 
     /**
-     * Segments materializing the edges.
+     * Segments materializing the edges, built on demand.
      */
     private final Map<Edge, Segment> segments;
 
+    /**
+     * True if and only if the centers and segments maps match the
+     * current drawing.
+     */
+    private boolean mapsUpToDate;
+
+    /**
+     * Coordinates of the segments, packed as follow : x1, y1, x2, y2
+     * of the 1st segment, then of the 2nd one, and so on, the lower
+     * endpoint of each segment (see Segment.getP1()) first.
+     * Allows to count the crossings without allocating any object.
+     */
+    private int[] packedSegments;
+
+    /**
+     * Number of segments in packedSegments.
+     */
+    private int nbSegments;
+
+    /**
+     * Scratch buffer used to count the crossings between the segments.
+     */
+    private long[] scratch;
+
+    /**
+     * Coordinates of the segments, packed as packedSegments, with the
+     * segments of a given set of edges first, and flag set for the
+     * segments of that set, per segment index. Used to count the
+     * crossings involving that set only.
+     */
+    private int[] sortedSegments;
+    private boolean[] selected;
+
+    /**
+     * Vertices, in the order of the graph, and number of them.
+     */
+    private Vertex[] vertexArray;
+    private int nbVertices;
+
+    /**
+     * Index of each vertex in vertexArray, per vertex id.
+     */
+    private int[] indexById;
+
+    /**
+     * Edges, in the order of the graph.
+     */
+    private Edge[] edgeArray;
+
+    /**
+     * Index of each edge in edgeArray, only built again when the edges
+     * change.
+     */
+    private final Map<Edge, Integer> edgeIndices;
+
+    /**
+     * Spatial index of the centers and segments, built by each update.
+     */
+    private final SpatialGrid grid;
+
+    /**
+     * Polar coordinates of the vertices of the last drawn layout, per index
+     * in the Graph's Vertex SortedSet, and coordinates of their centers.
+     */
+    private int[] radii;
+    private float[] angles;
+    private int[] xs;
+    private int[] ys;
+
+    /**
+     * Projection of the polar coordinates of the vertices to the canvas.
+     */
+    private final PolarProjection polar;
+
     /**
      * Radius of the vertices.
      */
@@ -75,6 +158,23 @@ public final class Drawing {
     public Drawing() {
         centers = new HashMap<>();
         segments = new HashMap<>();
+        mapsUpToDate = true;
+        packedSegments = new int[0];
+        nbSegments = 0;
+        scratch = new long[0];
+        sortedSegments = new int[0];
+        selected = new boolean[0];
+        vertexArray = new Vertex[0];
+        nbVertices = 0;
+        indexById = new int[0];
+        edgeArray = new Edge[0];
+        edgeIndices = new HashMap<>();
+        grid = new SpatialGrid();
+        radii = new int[0];
+        angles = new float[0];
+        xs = new int[0];
+        ys = new int[0];
+        polar = new PolarProjection();
         radius = 0f;
         unit = 0f;
     }
@@ -142,32 +242,146 @@ public final class Drawing {
         }
 
         // Clears the drawing
-        centers.clear();
-        segments.clear();
+        mapsUpToDate = false;
 
         // Computes new drawing
-        // Position of (0, 0) in the graph
-        CPoint p0 = new CPoint(x0, y0);
         // Ratio between distances in the drawing and distances in the layout
         unit = Math.min(xMax-xMin, yMax-yMin) / (2*l.getLayoutRadius());
         // Radius of vertices in the drawing
         radius = unit * vRadius;
         // (x, y) in the layout -> (x0 + unit*x, y0 + unit*y) in the drawing
+        // Buffers are only reallocated when the graph gets bigger
+        nbVertices = g.getVertices().size();
+        if (vertexArray.length < nbVertices) {
+            vertexArray = new Vertex[nbVertices];
+            radii = new int[nbVertices];
+            angles = new float[nbVertices];
+            xs = new int[nbVertices];
+            ys = new int[nbVertices];
+        }
+        int maxId = (nbVertices == 0) ? -1 : g.getVertices().last().getId();
+        if (indexById.length <= maxId) {
+            indexById = new int[maxId + 1];
+        }
         int i = 0;
         for (Vertex v : g.getVertices()) {
-            centers.put(v, new CPoint(l.getPolarCoords(i++), p0, unit));
+            vertexArray[i] = v;
+            indexById[v.getId()] = i;
+            radii[i] = l.getRadius(i);
+            angles[i] = l.getAngle(i);
+            i++;
+        }
+        // All the centers are projected at once, the trigonometric values
+        // only being computed again for the vertices whose angle changed
+        polar.project(radii, angles, nbVertices, x0, y0, unit, xs, ys);
+        int nbEdges = g.getEdges().size();
+        if (edgeArray.length < nbEdges) {
+            packedSegments = new int[4*nbEdges];
+            scratch = new long[2*nbEdges];
+            sortedSegments = new int[4*nbEdges];
+            selected = new boolean[nbEdges];
+            edgeArray = new Edge[nbEdges];
         }
+        // The index of the edges is only built again if they changed
+        boolean edgesChanged = (nbEdges != nbSegments);
+        nbSegments = 0;
         // Each segment goes from rim to rim
         for (Edge e : g.getEdges()) {
-            CPoint end1 = centers.get(e.getEnd1());
-            CPoint end2 = centers.get(e.getEnd2());
-            // The edge intersects with 1st (resp. 2nd) end vertex at
-            // alpha (resp. 1-alpha) of its length
-            float alpha = radius / (end1.distance(end2));
-            CPoint p1 = new CPoint(end1, end2, alpha);
-            CPoint p2 = new CPoint(end1, end2, 1-alpha);
-            segments.put(e, new Segment(p1, p2));
+            edgesChanged |= (edgeArray[nbSegments] != e);
+            edgeArray[nbSegments] = e;
+            setSegment(nbSegments, indexById[e.getEnd1().getId()],
+                    indexById[e.getEnd2().getId()]);
+            nbSegments++;
+        }
+        if (edgesChanged) {
+            edgeIndices.clear();
+            for (int s = 0; s < nbSegments; s++) {
+                edgeIndices.put(edgeArray[s], s);
+            }
         }
+        grid.update(xs, ys, nbVertices, packedSegments, nbSegments, radius);
+    }
+
+    /**
+     * Private auxiliary method.
+     * Computes the packed coordinates of the specified segment, which
+     * goes from the rim of the first specified vertex to the rim of the
+     * second one.
+     *
+     * @param s  Index of the segment
+     * @param v1 Index of the first end vertex
+     * @param v2 Index of the second end vertex
+     * @throws IllegalArgumentException if the endpoints of the segment are
+     * equal
+     */
+    private void setSegment(int s, int v1, int v2) throws IllegalArgumentException {
+        rimToRim(xs[v1], ys[v1], xs[v2], ys[v2], radius, packedSegments, 4*s);
+    }
+
+    /**
+     * Computes the coordinates of the segment going from the rim of the
+     * first specified circle to the rim of the second one, with the same
+     * arithmetic as the CPoint and Segment constructors, without
+     * allocating any object.
+     *
+     * @param x1     x-coordinate of the center of the first circle
+     * @param y1     y-coordinate of the center of the first circle
+     * @param x2     x-coordinate of the center of the second circle
+     * @param y2     y-coordinate of the center of the second circle
+     * @param radius Common radius of the circles
+     * @param coords Array to fill with x1, y1, x2, y2 of the segment,
+     *               its lower endpoint (see Segment.getP1()) first
+     * @param offset Index of x1 in coords
+     * @throws IllegalArgumentException if the endpoints of the segment are
+     * equal
+     */
+    static void rimToRim(int x1, int y1, int x2, int y2, float radius,
+                         int[] coords, int offset) throws IllegalArgumentException {
+        // The edge intersects with 1st (resp. 2nd) end vertex at
+        // alpha (resp. 1-alpha) of its length
+        float alpha = radius / (float) Math.sqrt(Math.pow(x1-x2, 2) + Math.pow(y1-y2, 2));
+        int p1x = Math.round(alpha * x1 + (1 - alpha) * x2);
+        int p1y = Math.round(alpha * y1 + (1 - alpha) * y2);
+        int p2x = Math.round((1-alpha) * x1 + (1 - (1-alpha)) * x2);
+        int p2y = Math.round((1-alpha) * y1 + (1 - (1-alpha)) * y2);
+        if (p1x == p2x && p1y == p2y) {
+            throw new IllegalArgumentException("endpoints must be different");
+        }
+        // Lower endpoint first, as in Segment
+        if (p1x > p2x || (p1x == p2x && p1y > p2y)) {
+            int tmp = p1x;
+            p1x = p2x;
+            p2x = tmp;
+            tmp = p1y;
+            p1y = p2y;
+            p2y = tmp;
+        }
+        coords[offset] = p1x;
+        coords[offset+1] = p1y;
+        coords[offset+2] = p2x;
+        coords[offset+3] = p2y;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Builds again the centers and segments maps from the current
+     * drawing, if needed.
+     */
+    private void updateMaps() {
+        if (mapsUpToDate) {
+            return;
+        }
+        centers.clear();
+        segments.clear();
+        for (int i = 0; i < nbVertices; i++) {
+            centers.put(vertexArray[i], new CPoint(xs[i], ys[i]));
+        }
+        for (int s = 0; s < nbSegments; s++) {
+            segments.put(edgeArray[s], new Segment(
+                    new CPoint(packedSegments[4*s], packedSegments[4*s+1]),
+                    new CPoint(packedSegments[4*s+2], packedSegments[4*s+3])));
+        }
+        mapsUpToDate = true;
     }
 
     /**
@@ -175,6 +389,7 @@ public final class Drawing {
      * @return a read only view of the centers of the vertices
      */
     public Map<Vertex, CPoint> getCenters() {
+        updateMaps();
         return Collections.unmodifiableMap(centers);
     }
 
@@ -184,9 +399,57 @@ public final class Drawing {
      *         the base layout's vertices
      */
     public Map<Edge, Segment> getSegments() {
+        updateMaps();
         return Collections.unmodifiableMap(segments);
     }
 
+    /**
+     * Specific center getter, which does not allocate any object.
+     * @param vNb Number of the graph's vertex whose center is required
+     * @return the x-coordinate of the center of the specified vertex
+     */
+    public int getCenterX(int vNb) {
+        return xs[vNb];
+    }
+
+    /**
+     * Specific center getter, which does not allocate any object.
+     * @param vNb Number of the graph's vertex whose center is required
+     * @return the y-coordinate of the center of the specified vertex
+     */
+    public int getCenterY(int vNb) {
+        return ys[vNb];
+    }
+
+    /**
+     * Copies the coordinates of the segment materializing the specified
+     * edge in the specified array, at the specified offset : x1, y1, x2, y2,
+     * the lower endpoint first.
+     *
+     * @param e      Edge whose segment is required
+     * @param coords Array to fill
+     * @param offset Index of x1 in coords
+     * @throws IllegalArgumentException if the edge is not in the drawing
+     */
+    public void getSegmentCoords(Edge e, int[] coords, int offset)
+            throws IllegalArgumentException
+    {
+        System.arraycopy(packedSegments, 4*segmentIndex(e), coords, offset, 4);
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the index of the specified edge in the drawing
+     * @throws IllegalArgumentException if the edge is not in the drawing
+     */
+    private int segmentIndex(Edge e) throws IllegalArgumentException {
+        Integer s = edgeIndices.get(e);
+        if (s == null) {
+            throw new IllegalArgumentException("Edge not in the drawing");
+        }
+        return s;
+    }
+
     /**
      * Unit getter.
      * @return the distance equivalent to 1 unit of distance in the base layout.
@@ -205,36 +468,28 @@ public final class Drawing {
 
     /**
      * If there is a Vertex drawn within specified distance of the
-     * specified point, returns it. Else returns null.
+     * specified point, returns the nearest one. Else returns null.
      * @param p CPoint to analyse
      * @param d radius of the area to analyse, must be >= 0
      * @return The Vertex drawn in the specified area if it exists,
      * null else
      */
     public Vertex vertexAt(CPoint p, int d) {
-        for (Vertex v : centers.keySet()) {
-            if (p.distance(centers.get(v)) <= radius + d) {
-                return v;
-            }
-        }
-        return null;
+        int i = grid.nearestCenter(p, radius + d);
+        return (i == -1) ? null : vertexArray[i];
     }
 
     /**
      * If there is an Edge drawn within specified distance of the
-     * specified point, returns it. Else returns null.
+     * specified point, returns the nearest one. Else returns null.
      * @param p CPoint to analyse
      * @param d radius of the area to analyse, must be > 0
      * @return The Edge drawn in the specified area if it exists,
      * null else
      */
     public Edge edgeAt(CPoint p, int d) {
-        for (Edge e : segments.keySet()) {
-            if (segments.get(e).contains(p, d)) {
-                return e;
-            }
-        }
-        return null;
+        int i = grid.nearestSegment(p, d);
+        return (i == -1) ? null : edgeArray[i];
     }
 
 
@@ -249,7 +504,91 @@ public final class Drawing {
      * layout
      */
     public int nbEdgeIntersections() {
-        return InterComputer.edgeIntersections(segments.values()).size();
+        return InterComputer.edgeIntersections(getSegments().values()).size();
+    }
+
+    /**
+     * Returns the number of intersection between the edges of the
+     * drawing, computed in parallel in vertical slabs of the drawing by
+     * the specified executor. The result is the same as the one of
+     * nbEdgeIntersections().
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param executor  Executor computing the intersections in the slabs
+     * @param nbSlabs   Number of slabs, must be > 0
+     * @return the number of intersection between the edges of the
+     * layout
+     * @throws IllegalArgumentException if the number of slabs is not
+     * positive
+     * @see InterComputer#edgeIntersectionsParallel(Collection, ExecutorService, int)
+     */
+    public int nbEdgeIntersections(ExecutorService executor, int nbSlabs)
+            throws IllegalArgumentException
+    {
+        return InterComputer.edgeIntersectionsParallel(getSegments().values(), executor,
+                nbSlabs).size();
+    }
+
+    /**
+     * Returns the number of pairs of crossing edges in the drawing,
+     * without allocating any object.
+     *
+     * Unlike nbEdgeIntersections(), several edges crossing at the same
+     * point are counted once per pair.
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @return the number of pairs of crossing edges in the drawing
+     */
+    public int nbEdgeCrossings() {
+        return InterComputer.nbEdgeCrossings(packedSegments, nbSegments, scratch);
+    }
+
+    /**
+     * Returns the number of pairs of crossing edges in the drawing, one
+     * of which at least is in the specified set, without allocating any
+     * object. The pairs of edges outside the set are not tested.
+     *
+     * Undefined behaviour if one of the segments is outside
+     * [-1000, 1000] x [-1000, 1000] (caused by long overflow)
+     *
+     * @param edges The set of edges whose crossings must be counted
+     * @return the number of pairs of crossing edges in the drawing, one
+     * of which at least is in the specified set
+     * @throws IllegalArgumentException if one of the edges is not in the
+     * drawing
+     */
+    public int nbEdgeCrossings(Collection<Edge> edges)
+            throws IllegalArgumentException
+    {
+        // The segments of the set are copied first, then the other ones
+        int nbFirst = 0;
+        try {
+            for (Edge e : edges) {
+                int s = segmentIndex(e);
+                if (!selected[s]) {
+                    selected[s] = true;
+                    System.arraycopy(packedSegments, 4*s, sortedSegments, 4*nbFirst, 4);
+                    nbFirst++;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            Arrays.fill(selected, false);
+            throw e;
+        }
+        int next = nbFirst;
+        for (int s = 0; s < nbSegments; s++) {
+            if (selected[s]) {
+                selected[s] = false;
+            } else {
+                System.arraycopy(packedSegments, 4*s, sortedSegments, 4*next, 4);
+                next++;
+            }
+        }
+        return InterComputer.nbEdgeCrossings(sortedSegments, nbSegments, nbFirst, scratch);
     }
 
     /**
@@ -265,11 +604,11 @@ public final class Drawing {
      * layout
      */
     public int nbVertexCrossings(Collection<Edge> edges) {
-        Collection<Segment> segments = new ArrayList<>();
+        // Only the vertices around each edge are tested
+        int res = 0;
         for (Edge e : edges) {
-            segments.add(this.segments.get(e));
+            res += grid.nbCirclesCrossedBy(segmentIndex(e), radius+1);
         }
-        return InterComputer.nbVertexCrossings(segments,
-                centers.values(), radius+1) - 2*segments.size();
+        return res - 2*edges.size();
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package fr.pyvain.websight.websight.PersonalDataGraph;
 
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
+
 /**
  * <p>
  * A class that represents an edge of a personal data graph.
@@ -15,7 +17,7 @@ package fr.pyvain.websight.websight.PersonalDataGraph;
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
  */
-public final class Edge {
+public final class Edge implements Adjacency.Link<Vertex> {
 
 	/**
 	 * Ends of the edge (ordered by increasing id)
@@ -47,6 +49,7 @@ public final class Edge {
 	 *
 	 * @return the first end of the edge
 	 */
+	@Override
 	public Vertex getEnd1() {
 		return ends[0];
 	}
@@ -56,6 +59,7 @@ public final class Edge {
 	 *
 	 * @return the second end of the edge
 	 */
+	@Override
 	public Vertex getEnd2() {
 		return ends[1];
 	}
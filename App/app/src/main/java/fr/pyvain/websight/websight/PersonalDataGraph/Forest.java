@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 /**
  * <p>A data forest is a data structure based upon a personal data graph.
@@ -109,7 +110,7 @@ public class Forest implements Graph, Parcelable {
             // Computes a new Data tree rooted in :
             // - the main root the first time
             // - the vertex of smallest id not covered yet every other time
-            Tree newTree = new Tree(nextRoot);
+            Tree newTree = new Tree(g.getAdjacency(), nextRoot);
             trees.add(newTree);
             for (Vertex v : newTree.getVertices()) {
                 vFinder.put(v, newTree);
@@ -238,11 +239,39 @@ public class Forest implements Graph, Parcelable {
     public void minimizeCrossings(float vRadius, Tree wTree, RadialLayout wLayout,
                                   Drawing wDrawing, long maxTime)
             throws IllegalArgumentException
+    {
+        minimizeCrossings(vRadius, wTree, wLayout, wDrawing,
+                new AnnealingConfig(SimulatedAnnealing.rand.nextLong(), maxTime));
+    }
+
+    /**
+     * Places the forest in a state (i.e. permutes the children lists of its
+     * vertices) which minimizes the cost of the drawing of this forest with
+     * specified parameters, with the specified configuration.
+     *
+     * The trees are optimized one after the other, the budget of the
+     * minimization being shared between them in proportion of their
+     * number of vertices. The i-th tree is optimized with the configuration
+     * config.part(i, ...), so that its result does not depend on the
+     * other trees if the time is unlimited.
+     *
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param wTree     Working tree, previous content will be overwritten
+     * @param wLayout   Working layout, previous content will be overwritten
+     * @param wDrawing  Working drawing, previous content will be overwritten
+     * @param config    Seed, budget and cooling schedule of the minimization
+     * @throws IllegalArgumentException if the vertex radius is out of bounds
+     */
+    public void minimizeCrossings(float vRadius, Tree wTree, RadialLayout wLayout,
+                                  Drawing wDrawing, AnnealingConfig config)
+            throws IllegalArgumentException
     {
         if (!(0 < vRadius && vRadius < 1)) {
             throw new IllegalArgumentException("Vertex radius out of bounds");
         }
         long start = SystemClock.elapsedRealtime();
+        int remainingIters = config.getMaxIterations();
         int remainingVertices = size;
         // TODO : there must be a better way than duplicating the code in
         // TODO : RadialLayout.update(Forest) ...
@@ -252,8 +281,9 @@ public class Forest implements Graph, Parcelable {
         float secStart = 0.0f;
         float secWidth;
         int rad;
-        for (Tree tree : trees) {
-            if (tree == trees.get(0)) {
+        for (int t = 0; t < trees.size(); t++) {
+            Tree tree = trees.get(t);
+            if (t == 0) {
                 secWidth = totalWidth;
                 rad = 0;
             } else {
@@ -262,9 +292,18 @@ public class Forest implements Graph, Parcelable {
             }
             if (tree.size() > 3) {
                 float weight = (float)tree.size()/remainingVertices;
-                long remainingTime = start + maxTime - SystemClock.elapsedRealtime();
+                int iters = AnnealingConfig.UNLIMITED;
+                if (remainingIters != AnnealingConfig.UNLIMITED) {
+                    iters = Math.round(weight*remainingIters);
+                    remainingIters -= iters;
+                }
+                long time = AnnealingConfig.UNLIMITED;
+                if (config.getMaxTime() != AnnealingConfig.UNLIMITED) {
+                    long remainingTime = start + config.getMaxTime() - SystemClock.elapsedRealtime();
+                    time = Math.max(0, Math.round(weight*remainingTime));
+                }
                 tree.minimizeCrossings(rad, secStart, secWidth, vRadius,
-                        wTree, wLayout, wDrawing, Math.round(weight*remainingTime));
+                        wTree, wLayout, wDrawing, config.part(t, iters, time));
             }
             remainingVertices -= tree.size();
             secStart += secWidth;
@@ -272,6 +311,99 @@ public class Forest implements Graph, Parcelable {
     }
 
 
+    /**
+     * With specified time, places the forest in a state (i.e. permutes the
+     * children lists of its vertices) which minimizes the cost of the drawing
+     * of this forest with specified parameters.
+     *
+     * The trees of the forest are optimized at the same time, each of them
+     * by several independent annealing chains run on the specified executor.
+     * Each chain has its own random generator and working objects, and the
+     * best state found for each tree is kept.
+     *
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param executor  Executor running the annealing chains
+     * @param nbChains  Number of annealing chains per tree, must be > 0
+     * @param maxTime   Maximum time allocated to the minimization
+     * @throws IllegalArgumentException if the vertex radius or the number
+     * of chains is out of bounds
+     */
+    public void minimizeCrossings(float vRadius, ExecutorService executor,
+                                  int nbChains, long maxTime)
+            throws IllegalArgumentException
+    {
+        minimizeCrossings(vRadius, executor, nbChains,
+                new AnnealingConfig(SimulatedAnnealing.rand.nextLong(), maxTime));
+    }
+
+    /**
+     * Places the forest in a state (i.e. permutes the children lists of its
+     * vertices) which minimizes the cost of the drawing of this forest with
+     * specified parameters, with the specified configuration.
+     *
+     * The trees of the forest are optimized at the same time, each of them
+     * by several independent annealing chains run on the specified executor.
+     * The budget of iterations is shared between the trees in proportion
+     * of their number of vertices, and the j-th chain of the i-th tree draws
+     * its random numbers from config.part(i, ...).chainRandom(j).
+     *
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param executor  Executor running the annealing chains
+     * @param nbChains  Number of annealing chains per tree, must be > 0
+     * @param config    Seed, budget and cooling schedule of the minimization
+     * @throws IllegalArgumentException if the vertex radius or the number
+     * of chains is out of bounds
+     */
+    public void minimizeCrossings(float vRadius, ExecutorService executor,
+                                  int nbChains, AnnealingConfig config)
+            throws IllegalArgumentException
+    {
+        if (!(0 < vRadius && vRadius < 1)) {
+            throw new IllegalArgumentException("Vertex radius out of bounds");
+        } else if (nbChains <= 0) {
+            throw new IllegalArgumentException("Invalid number of chains");
+        }
+        // All the chains run concurrently, so they share the same deadline
+        long deadline = config.deadline(SystemClock.elapsedRealtime());
+        int remainingIters = config.getMaxIterations();
+        int remainingVertices = size;
+        int totalSize = size - trees.get(0).size();
+        int periphery = trees.get(0).getHeight()+1;
+        float totalWidth = (float) (2 * Math.PI);
+        float secStart = 0.0f;
+        float secWidth;
+        int rad;
+        List<AnnealingChain> chains = new ArrayList<>();
+        for (int t = 0; t < trees.size(); t++) {
+            Tree tree = trees.get(t);
+            if (t == 0) {
+                secWidth = totalWidth;
+                rad = 0;
+            } else {
+                secWidth = totalWidth * tree.size() / totalSize;
+                rad = periphery;
+            }
+            if (tree.size() > 3) {
+                // Same share of the iterations as in the sequential version
+                int iters = AnnealingConfig.UNLIMITED;
+                if (remainingIters != AnnealingConfig.UNLIMITED) {
+                    iters = Math.round((float)tree.size()/remainingVertices*remainingIters);
+                    remainingIters -= iters;
+                }
+                AnnealingConfig treeConfig = config.part(t, iters, config.getMaxTime());
+                for (int i = 0; i < nbChains; i++) {
+                    chains.add(new AnnealingChain(tree, rad, secStart, secWidth,
+                            vRadius, treeConfig, i, deadline));
+                }
+            }
+            remainingVertices -= tree.size();
+            secStart += secWidth;
+        }
+        AnnealingChain.runAll(executor, chains);
+    }
+
     /**
      * Makes the receiving Forest a copy of the specified Forest
      * @param forest Forest to copy
@@ -0,0 +1,677 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import fr.pyvain.websight.websight.Geometry.InterComputer;
+import fr.pyvain.websight.websight.Geometry.Segment;
+
+/**
+ * <p>This class keeps track of the crossings of a drawing of a Tree,
+ * so that the cost of a neighbour state can be computed without drawing
+ * the whole tree again.</p>
+ *
+ * <p>Shuffling the children of a vertex only moves the vertices of its
+ * subtree : the angular sectors widths, and thus the unit and vertex radius
+ * of the drawing, do not depend on the order of the children. Therefore,
+ * after a shuffle, only the centers of the subtree's vertices are computed
+ * again, and only the edges incident to them are tested again against the
+ * other edges, and against the vertices. The number of crossings of each
+ * edge is stored, so that the total is updated by difference.</p>
+ *
+ * <p>The centers and segments are stored in arrays of primitives, computed
+ * with the same arithmetic as Drawing, so that an update allocates no
+ * object. The affected edges are only tested against the edges whose
+ * bounding box overlaps with the bounding box of all the affected edges.</p>
+ *
+ * <p>The edges of the tree never cross each other (see
+ * SimulatedAnnealing.cost()), so that only the pairs of edges involving
+ * an additional edge are tested.</p>
+ *
+ * <p>The last update can be canceled with undo(), which restores the
+ * previous values from a journal, in time proportional to the size of the
+ * update.</p>
+ *
+ * <p>The results are exactly the same as the ones of Drawing.nbEdgeCrossings()
+ * and Drawing.nbVertexCrossings(), given the additional edges, on a drawing
+ * of the tree updated from scratch.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class IncrementalCost {
+
+    /**
+     * Tree whose drawing is tracked.
+     */
+    private final Tree tree;
+
+    /**
+     * Maps each vertex of the tree to its index in the tree's Vertex
+     * SortedSet.
+     */
+    private final Map<Vertex, Integer> indices;
+
+    /**
+     * Vertices of the tree, per index.
+     */
+    private final Vertex[] vertices;
+
+    /**
+     * Number of descendants of each vertex, per index.
+     */
+    private final int[] nbDescendants;
+
+    /**
+     * Radial coordinate of each vertex, per index.
+     */
+    private final int[] radial;
+
+    /**
+     * Starting angle of the angular sector of each vertex, per index.
+     */
+    private final float[] secStart;
+
+    /**
+     * Width of the angular sector of each vertex, per index.
+     */
+    private final float[] secWidth;
+
+    /**
+     * Coordinates of the center of each vertex in the drawing, per index.
+     */
+    private final int[] cx, cy;
+
+    /**
+     * Distance in the drawing equivalent to 1 unit of distance in the layout.
+     */
+    private final float unit;
+
+    /**
+     * Radius of the vertices in the drawing.
+     */
+    private final float radius;
+
+    /**
+     * First and second end of each edge, per edge index.
+     */
+    private final int[] end1, end2;
+
+    /**
+     * True for the additional edges of the tree, per edge index.
+     */
+    private final boolean[] extra;
+
+    /**
+     * Indices of the additional edges of the tree, in increasing order.
+     */
+    private final int[] extraIndices;
+
+    /**
+     * Indices of the edges incident to each vertex, per vertex index.
+     */
+    private final int[][] incident;
+
+    /**
+     * Coordinates of the segment materializing each edge, packed as
+     * follow : x1, y1, x2, y2 of the 1st edge, then of the 2nd one, and so on.
+     */
+    private final int[] coords;
+
+    /**
+     * Number of edges crossing each edge, per edge index, only counting
+     * the additional ones for the edges of the tree.
+     */
+    private final int[] crossings;
+
+    /**
+     * Number of vertices crossed by each additional edge, per edge index,
+     * including its own ends (always 0 for the edges of the tree).
+     */
+    private final int[] vCrossings;
+
+    /**
+     * Number of pairs of crossing edges, one of which at least is
+     * additional.
+     */
+    private int nbEdgeCrossings;
+
+    /**
+     * Number of times the additional edges cross vertices.
+     */
+    private int nbVertexCrossings;
+
+    // The following attributes form the journal of the last update,
+    // used to undo it
+
+    /**
+     * Stamps of the current update, per edge index.
+     * An edge has been journaled in the current update if and only if
+     * its stamp is equal to the current stamp.
+     */
+    private final int[] edgeStamps;
+
+    /**
+     * Affected edges (i.e. edges incident to a moved vertex) stamps,
+     * per edge index.
+     */
+    private final int[] affectedStamps;
+
+    /**
+     * Current update stamp.
+     */
+    private int stamp;
+
+    /**
+     * Indices of the vertices moved by the last update.
+     */
+    private final int[] moved;
+
+    /**
+     * Previous centers of the moved vertices, per vertex index.
+     */
+    private final int[] oldCx, oldCy;
+
+    /**
+     * Previous sector start of the moved vertices, per vertex index.
+     */
+    private final float[] oldSecStart;
+
+    /**
+     * Number of vertices moved by the last update.
+     */
+    private int nbMoved;
+
+    /**
+     * Indices of the edges affected by the last update.
+     */
+    private final int[] affected;
+
+    /**
+     * Number of edges affected by the last update.
+     */
+    private int nbAffected;
+
+    /**
+     * Previous coordinates of the affected edges, packed as coords.
+     */
+    private final int[] oldCoords;
+
+    /**
+     * Indices of the edges which may cross an affected edge, used as a
+     * buffer by countAffectedCrossings().
+     */
+    private final int[] candidates;
+
+    /**
+     * Indices of the edges whose crossing counts have been modified by
+     * the last update.
+     */
+    private final int[] journaled;
+
+    /**
+     * Previous crossing counts of the journaled edges, per edge index.
+     */
+    private final int[] oldCrossings, oldVCrossings;
+
+    /**
+     * Number of journaled edges.
+     */
+    private int nbJournaled;
+
+    /**
+     * Previous totals.
+     */
+    private int oldNbEdgeCrossings, oldNbVertexCrossings;
+
+    /**
+     * True if and only if the last update can be undone.
+     */
+    private boolean canUndo;
+
+    /**
+     * Initializes a new IncrementalCost tracking the specified drawing of
+     * the specified tree, built from the specified layout.
+     *
+     * @param tree    Tree whose drawing must be tracked
+     * @param layout  Layout of the tree, with the angular sector of its
+     *                root starting at secStart and of width secWidth
+     * @param drawing Drawing of the tree built from layout on the
+     *                "draft canvas"
+     * @param secStart  Starting angle of the root's angular sector
+     * @param secWidth  Width of the root's angular sector
+     */
+    public IncrementalCost(Tree tree, RadialLayout layout, Drawing drawing,
+                           float secStart, float secWidth) {
+        this.tree = tree;
+        int V = tree.getVertices().size();
+        indices = new HashMap<>(2*V);
+        vertices = new Vertex[V];
+        nbDescendants = new int[V];
+        radial = new int[V];
+        this.secStart = new float[V];
+        this.secWidth = new float[V];
+        cx = new int[V];
+        cy = new int[V];
+        int i = 0;
+        for (Vertex v : tree.getVertices()) {
+            indices.put(v, i);
+            vertices[i] = v;
+            nbDescendants[i] = tree.getNbDescendants(v);
+            radial[i] = layout.getRadius(i);
+            cx[i] = drawing.getCenterX(i);
+            cy[i] = drawing.getCenterY(i);
+            i++;
+        }
+        unit = drawing.getUnit();
+        radius = drawing.getVertexRadius();
+        setSectors(indices.get(tree.getRoot()), secStart, secWidth);
+
+        int E = tree.getEdges().size();
+        end1 = new int[E];
+        end2 = new int[E];
+        extra = new boolean[E];
+        coords = new int[4*E];
+        List<List<Integer>> incidentLists = new ArrayList<>(V);
+        for (i = 0; i < V; i++) {
+            incidentLists.add(new ArrayList<Integer>());
+        }
+        int e = 0;
+        for (Edge edge : tree.getEdges()) {
+            end1[e] = indices.get(edge.getEnd1());
+            end2[e] = indices.get(edge.getEnd2());
+            extra[e] = tree.getExtraEdges().contains(edge);
+            incidentLists.get(end1[e]).add(e);
+            incidentLists.get(end2[e]).add(e);
+            drawing.getSegmentCoords(edge, coords, 4*e);
+            e++;
+        }
+        extraIndices = new int[tree.getExtraEdges().size()];
+        int nbExtra = 0;
+        for (e = 0; e < E; e++) {
+            if (extra[e]) {
+                extraIndices[nbExtra++] = e;
+            }
+        }
+        incident = new int[V][];
+        for (i = 0; i < V; i++) {
+            List<Integer> list = incidentLists.get(i);
+            incident[i] = new int[list.size()];
+            for (int j = 0; j < list.size(); j++) {
+                incident[i][j] = list.get(j);
+            }
+        }
+
+        // Counts the crossings from scratch
+        crossings = new int[E];
+        vCrossings = new int[E];
+        nbEdgeCrossings = 0;
+        for (e = 0; e < E; e++) {
+            for (int f = e+1; f < E; f++) {
+                if ((extra[e] || extra[f]) && boxesOverlap(e, f)
+                        && InterComputer.crosses(coords, e, f)) {
+                    crossings[e]++;
+                    crossings[f]++;
+                    nbEdgeCrossings++;
+                }
+            }
+        }
+        nbVertexCrossings = 0;
+        for (e = 0; e < E; e++) {
+            if (extra[e]) {
+                vCrossings[e] = vertexCrossingsOf(e);
+                nbVertexCrossings += vCrossings[e] - 2;
+            }
+        }
+
+        edgeStamps = new int[E];
+        affectedStamps = new int[E];
+        stamp = 0;
+        moved = new int[V];
+        oldCx = new int[V];
+        oldCy = new int[V];
+        oldSecStart = new float[V];
+        affected = new int[E];
+        oldCoords = new int[4*E];
+        candidates = new int[E];
+        journaled = new int[E];
+        oldCrossings = new int[E];
+        oldVCrossings = new int[E];
+        canUndo = false;
+    }
+
+    /**
+     * Number of pairs of crossing edges getter.
+     * @return the number of pairs of crossing edges in the drawing, one
+     * of which at least is additional
+     */
+    public int getNbEdgeCrossings() {
+        return nbEdgeCrossings;
+    }
+
+    /**
+     * Number of vertex crossings getter.
+     * @return the number of times the additional edges cross vertices
+     * in the drawing
+     */
+    public int getNbVertexCrossings() {
+        return nbVertexCrossings;
+    }
+
+    /**
+     * Updates the crossings after the children of the specified vertex
+     * have been shuffled in the tree.
+     *
+     * @param shuffled Vertex whose children have been shuffled, does nothing
+     *                 if it is null or not in the tree
+     */
+    public void update(Vertex shuffled) {
+        stamp++;
+        nbMoved = 0;
+        nbAffected = 0;
+        nbJournaled = 0;
+        oldNbEdgeCrossings = nbEdgeCrossings;
+        oldNbVertexCrossings = nbVertexCrossings;
+        canUndo = true;
+        Integer v = (shuffled == null) ? null : indices.get(shuffled);
+        if (v == null) {
+            return;
+        }
+
+        // Moves the subtree of the shuffled vertex, the vertex itself
+        // staying in place
+        float childStart = secStart[v];
+        for (Vertex child : tree.getChildren(shuffled)) {
+            int c = indices.get(child);
+            moveSubtree(c, childStart);
+            childStart += secWidth[c];
+        }
+
+        // Lists the edges incident to the moved vertices
+        for (int m = 0; m < nbMoved; m++) {
+            for (int e : incident[moved[m]]) {
+                if (affectedStamps[e] != stamp) {
+                    affectedStamps[e] = stamp;
+                    affected[nbAffected++] = e;
+                }
+            }
+        }
+
+        // Removes the contributions of the affected edges at their previous
+        // position, moves them, then adds their new contributions
+        countAffectedCrossings(-1);
+        for (int a = 0; a < nbAffected; a++) {
+            int e = affected[a];
+            System.arraycopy(coords, 4*e, oldCoords, 4*e, 4);
+            Drawing.rimToRim(cx[end1[e]], cy[end1[e]], cx[end2[e]], cy[end2[e]],
+                    radius, coords, 4*e);
+        }
+        countAffectedCrossings(1);
+
+        // Updates the vertex crossings of the additional edges, the edges
+        // far from the moved vertices being skipped
+        float r = radius+1;
+        int margin = (int) Math.ceil(r) + 1;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int m = 0; m < nbMoved; m++) {
+            int u = moved[m];
+            minX = Math.min(minX, Math.min(oldCx[u], cx[u]) - margin);
+            minY = Math.min(minY, Math.min(oldCy[u], cy[u]) - margin);
+            maxX = Math.max(maxX, Math.max(oldCx[u], cx[u]) + margin);
+            maxY = Math.max(maxY, Math.max(oldCy[u], cy[u]) + margin);
+        }
+        for (int e = 0; e < end1.length; e++) {
+            if (!extra[e]) {
+                continue;
+            }
+            int delta;
+            if (affectedStamps[e] == stamp) {
+                delta = vertexCrossingsOf(e) - vCrossings[e];
+            } else if (!boxOverlaps(e, minX, minY, maxX, maxY)) {
+                delta = 0;
+            } else {
+                delta = 0;
+                int i = 4*e;
+                for (int m = 0; m < nbMoved; m++) {
+                    int u = moved[m];
+                    if (Segment.nbIntersectionsWithCircle(coords[i], coords[i+1],
+                            coords[i+2], coords[i+3], oldCx[u], oldCy[u], r) > 0) {
+                        delta--;
+                    }
+                    if (Segment.nbIntersectionsWithCircle(coords[i], coords[i+1],
+                            coords[i+2], coords[i+3], cx[u], cy[u], r) > 0) {
+                        delta++;
+                    }
+                }
+            }
+            if (delta != 0) {
+                journal(e);
+                vCrossings[e] += delta;
+                nbVertexCrossings += delta;
+            }
+        }
+    }
+
+    /**
+     * Cancels the effects of the last call to update(), if it has not
+     * been canceled yet.
+     */
+    public void undo() {
+        if (!canUndo) {
+            return;
+        }
+        for (int m = 0; m < nbMoved; m++) {
+            int u = moved[m];
+            cx[u] = oldCx[u];
+            cy[u] = oldCy[u];
+            secStart[u] = oldSecStart[u];
+        }
+        for (int a = 0; a < nbAffected; a++) {
+            int e = affected[a];
+            System.arraycopy(oldCoords, 4*e, coords, 4*e, 4);
+        }
+        for (int j = 0; j < nbJournaled; j++) {
+            int e = journaled[j];
+            crossings[e] = oldCrossings[e];
+            vCrossings[e] = oldVCrossings[e];
+        }
+        nbEdgeCrossings = oldNbEdgeCrossings;
+        nbVertexCrossings = oldNbVertexCrossings;
+        canUndo = false;
+    }
+
+    /**
+     * Private auxiliary initialization method.
+     * Sets the angular sector of the specified vertex and of its descendants,
+     * the same way RadialLayout does.
+     *
+     * @param v         Index of the vertex
+     * @param vSecStart Starting angle of the vertex's angular sector
+     * @param vSecWidth Width of the vertex's angular sector
+     */
+    private void setSectors(int v, float vSecStart, float vSecWidth) {
+        secStart[v] = vSecStart;
+        secWidth[v] = vSecWidth;
+        float childStart = vSecStart;
+        for (Vertex child : tree.getChildren(vertices[v])) {
+            int c = indices.get(child);
+            float childWidth = vSecWidth * (nbDescendants[c]+1);
+            childWidth /= nbDescendants[v];
+            setSectors(c, childStart, childWidth);
+            childStart += childWidth;
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Moves the specified vertex so that its angular sector starts at
+     * the specified angle, then calls itself recursively on its children.
+     * The previous center and sector of each moved vertex are journaled.
+     * The center is computed with the same arithmetic as the CPoint
+     * constructor from polar coordinates.
+     *
+     * @param v         Index of the vertex to move
+     * @param vSecStart New starting angle of the vertex's angular sector
+     */
+    private void moveSubtree(int v, float vSecStart) {
+        moved[nbMoved++] = v;
+        oldCx[v] = cx[v];
+        oldCy[v] = cy[v];
+        oldSecStart[v] = secStart[v];
+        secStart[v] = vSecStart;
+        float vAngle = vSecStart + secWidth[v]/2;
+        cx[v] = (int) Math.round(Drawing.C0 + unit * radial[v] * Math.cos(vAngle));
+        cy[v] = (int) Math.round(Drawing.C0 + unit * radial[v] * Math.sin(vAngle));
+        float childStart = vSecStart;
+        for (Vertex child : tree.getChildren(vertices[v])) {
+            int c = indices.get(child);
+            moveSubtree(c, childStart);
+            childStart += secWidth[c];
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Adds (or removes) the crossings between the affected edges and the
+     * edges they can cross, at their current positions, to the crossing
+     * counts.
+     *
+     * @param sign 1 to add the crossings, -1 to remove them
+     */
+    private void countAffectedCrossings(int sign) {
+        if (nbAffected == 0) {
+            return;
+        }
+        // Only the edges overlapping with the bounding box of all the
+        // affected edges can cross one of them
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int a = 0; a < nbAffected; a++) {
+            int i = 4*affected[a];
+            minX = Math.min(minX, Math.min(coords[i], coords[i+2]));
+            minY = Math.min(minY, Math.min(coords[i+1], coords[i+3]));
+            maxX = Math.max(maxX, Math.max(coords[i], coords[i+2]));
+            maxY = Math.max(maxY, Math.max(coords[i+1], coords[i+3]));
+        }
+        int nbCandidates = 0;
+        for (int f = 0; f < end1.length; f++) {
+            if (boxOverlaps(f, minX, minY, maxX, maxY)) {
+                candidates[nbCandidates++] = f;
+            }
+        }
+        for (int a = 0; a < nbAffected; a++) {
+            int e = affected[a];
+            for (int c = 0; c < nbCandidates; c++) {
+                int f = candidates[c];
+                // Pairs of affected edges are only counted once, and the
+                // edges of the tree only cross additional edges
+                if (f == e || (affectedStamps[f] == stamp && f < e)
+                        || !(extra[e] || extra[f])) {
+                    continue;
+                }
+                countCrossing(e, f, sign);
+            }
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Adds (or removes) the crossing of the specified edges, if they
+     * cross, to the crossing counts.
+     *
+     * @param e    Index of the first edge
+     * @param f    Index of the second edge
+     * @param sign 1 to add the crossing, -1 to remove it
+     */
+    private void countCrossing(int e, int f, int sign) {
+        if (boxesOverlap(e, f) && InterComputer.crosses(coords, e, f)) {
+            journal(e);
+            journal(f);
+            crossings[e] += sign;
+            crossings[f] += sign;
+            nbEdgeCrossings += sign;
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Saves the crossing counts of the specified edge in the journal, if
+     * they have not been saved yet during the current update.
+     *
+     * @param e Index of the edge
+     */
+    private void journal(int e) {
+        if (edgeStamps[e] != stamp) {
+            edgeStamps[e] = stamp;
+            oldCrossings[e] = crossings[e];
+            oldVCrossings[e] = vCrossings[e];
+            journaled[nbJournaled++] = e;
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Computes the number of vertices crossed by the specified edge,
+     * including its own ends, the same way Drawing.nbVertexCrossings() does.
+     *
+     * @param e Index of the edge
+     * @return the number of vertices crossed by the edge
+     */
+    private int vertexCrossingsOf(int e) {
+        int res = 0;
+        int i = 4*e;
+        for (int u = 0; u < cx.length; u++) {
+            if (Segment.nbIntersectionsWithCircle(coords[i], coords[i+1], coords[i+2],
+                    coords[i+3], cx[u], cy[u], radius+1) > 0) {
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Checks whether the bounding boxes of the specified edges overlap.
+     *
+     * @param e Index of the first edge
+     * @param f Index of the second edge
+     * @return True if and only if the bounding boxes of the edges overlap
+     */
+    private boolean boxesOverlap(int e, int f) {
+        int i = 4*e;
+        int j = 4*f;
+        return Math.max(coords[j], coords[j+2]) >= Math.min(coords[i], coords[i+2]) &&
+                Math.max(coords[i], coords[i+2]) >= Math.min(coords[j], coords[j+2]) &&
+                Math.max(coords[j+1], coords[j+3]) >= Math.min(coords[i+1], coords[i+3]) &&
+                Math.max(coords[i+1], coords[i+3]) >= Math.min(coords[j+1], coords[j+3]);
+    }
+
+    /**
+     * Private auxiliary method.
+     * Checks whether the bounding box of the specified edge overlaps with
+     * the specified box.
+     *
+     * @param e    Index of the edge
+     * @param minX Left end x-coordinate of the box
+     * @param minY Top end y-coordinate of the box
+     * @param maxX Right end x-coordinate of the box
+     * @param maxY Bottom end y-coordinate of the box
+     * @return True if and only if the bounding box of the edge overlaps
+     * with the box
+     */
+    private boolean boxOverlaps(int e, int minX, int minY, int maxX, int maxY) {
+        int i = 4*e;
+        return Math.max(coords[i], coords[i+2]) >= minX &&
+                Math.min(coords[i], coords[i+2]) <= maxX &&
+                Math.max(coords[i+1], coords[i+3]) >= minY &&
+                Math.min(coords[i+1], coords[i+3]) <= maxY;
+    }
+}
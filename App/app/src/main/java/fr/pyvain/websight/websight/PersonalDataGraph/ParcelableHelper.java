@@ -45,7 +45,7 @@ class ParcelableHelper {
             Vertex end2 = vFinder.get(in.readInt());
             Edge e = new Edge(end1, end2);
             DataSet data = in.readParcelable(DataSet.class.getClassLoader());
-            e.getData().addURLs(data.getURLs());
+            e.getData().addURLs(data);
             edges.add(e);
         }
     }
@@ -4,10 +4,8 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.SortedSet;
 
 /**
  * <p>A radial layout is a style of graph drawing that places the vertices
@@ -54,6 +52,11 @@ import java.util.Map;
  *     trees, except the main tree. </li>
  * </ul></p>
  *
+ * <p>The coordinates are stored in arrays of primitives, which are
+ * reused by each update and only reallocated when the graph gets
+ * bigger, so that laying out a tree again and again, as the annealing
+ * does, allocates no object.</p>
+ *
  * <p>
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
@@ -61,10 +64,25 @@ import java.util.Map;
 public class RadialLayout implements Parcelable {
 
     /**
-     * Polar coordinates of the vertices of the underlying Graph,
-     * in radians, per index in the Graph's Vertex SortedSet.
+     * Radial and angular coordinates (in radians) of the vertices of the
+     * underlying Graph, per index in the Graph's Vertex SortedSet.
+     * Only the nbVertices first slots are meaningful.
+     */
+    private int[] radii;
+    private float[] angles;
+
+    /**
+     * Number of vertices of the underlying Graph.
      */
-    private final List<PolarCoords> coords;
+    private int nbVertices;
+
+    /**
+     * Radial and angular coordinates of the vertices, per vertex id,
+     * filled by the recursive layout before being gathered in the order
+     * of the Graph's Vertex SortedSet.
+     */
+    private int[] radiusById;
+    private float[] angleById;
 
     /**
      * Maximal radius the vertices of the Graph can have without any of
@@ -85,7 +103,11 @@ public class RadialLayout implements Parcelable {
      * Initializes a new empty radial layout
      */
     public RadialLayout() {
-        coords = new ArrayList<>();
+        radii = new int[0];
+        angles = new float[0];
+        nbVertices = 0;
+        radiusById = new int[0];
+        angleById = new float[0];
         maxVertexRadius = 0.5f;
         layoutRadius = 0f;
     }
@@ -126,17 +148,9 @@ public class RadialLayout implements Parcelable {
      * @param secWidth  Width of the root's angular sector in radians
      */
     public void update(Tree tree, int rad, float secStart, float secWidth) {
-        coords.clear();
-        coords.addAll(Collections.<PolarCoords>nCopies(tree.getVertices().size(), null));
-        maxVertexRadius = 0.5f;
-        layoutRadius = 0f;
-        Map<Vertex, Integer> indices = new HashMap<>();
-        int i = 0;
-        for (Vertex v : tree.getVertices()) {
-            indices.put(v, i++);
-        }
-        setCoords(tree.getRoot(), tree, rad, secStart, secWidth, indices);
-        layoutRadius += maxVertexRadius;
+        reserve(tree.getVertices());
+        layOut(tree, rad, secStart, secWidth);
+        gather(tree.getVertices());
     }
 
     /**
@@ -144,40 +158,74 @@ public class RadialLayout implements Parcelable {
      * @param forest Forest which must be laid out
      */
     public void update(Forest forest) {
-        // Maps each vertex of the underlying forest to its index in the
-        // forest's Vertex SortedSet.
-        Map<Vertex, Integer> indices = new HashMap<>();
-        int i = 0;
-        for (Vertex v : forest.getVertices()) {
-            indices.put(v, i++);
-        }
-        // Clears layout
-        maxVertexRadius = 0.5f;
-        layoutRadius = 0;
-        coords.clear();
-        coords.addAll(Collections.<PolarCoords>nCopies(forest.getVertices().size(), null));
-        // Builds new layout
+        reserve(forest.getVertices());
+        // Builds new layout, all the trees sharing the buffers
         Tree mainTree = forest.getMainTree();
         int periphery = mainTree.getHeight()+1;
         int totalSize = forest.size() - mainTree.size();
         float totalWidth = (float) (2 * Math.PI);
         float secStart = 0.0f;
         float secWidth;
+        float forestMaxVertexRadius = 0.5f;
+        float forestLayoutRadius = 0f;
         for (Tree t : forest.getTrees()) {
-            RadialLayout tl;
             if (t == mainTree) {
-                tl = new RadialLayout(t, 0, 0f, totalWidth);
+                layOut(t, 0, 0f, totalWidth);
             } else {
                 secWidth = totalWidth * t.size() / totalSize;
-                tl = new RadialLayout(t, periphery, secStart, secWidth);
+                layOut(t, periphery, secStart, secWidth);
                 secStart += secWidth;
             }
-            i = 0;
-            for (Vertex v : t.getVertices()) {
-                coords.set(indices.get(v), tl.getPolarCoords(i++));
-            }
-            maxVertexRadius = Math.min(maxVertexRadius, tl.getMaxVertexRadius());
-            layoutRadius = Math.max(layoutRadius, tl.getLayoutRadius());
+            forestMaxVertexRadius = Math.min(forestMaxVertexRadius, maxVertexRadius);
+            forestLayoutRadius = Math.max(forestLayoutRadius, layoutRadius);
+        }
+        maxVertexRadius = forestMaxVertexRadius;
+        layoutRadius = forestLayoutRadius;
+        gather(forest.getVertices());
+    }
+
+    /**
+     * Private auxiliary method.
+     * Makes the buffers big enough for the specified vertices, which are
+     * sorted by id.
+     */
+    private void reserve(SortedSet<Vertex> vertices) {
+        int n = vertices.size();
+        if (radii.length < n) {
+            radii = new int[n];
+            angles = new float[n];
+        }
+        int maxId = vertices.isEmpty() ? -1 : vertices.last().getId();
+        if (radiusById.length <= maxId) {
+            radiusById = new int[maxId + 1];
+            angleById = new float[maxId + 1];
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Lays out the specified tree, in which the angular sector of the
+     * root has the specified attributes, in the per id buffers, and sets
+     * maxVertexRadius and layoutRadius to the ones of the tree.
+     */
+    private void layOut(Tree tree, int rad, float secStart, float secWidth) {
+        maxVertexRadius = 0.5f;
+        layoutRadius = 0f;
+        setCoords(tree.getRoot(), tree, rad, secStart, secWidth);
+        layoutRadius += maxVertexRadius;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Copies the coordinates of the specified vertices from the per id
+     * buffers to the per index ones.
+     */
+    private void gather(SortedSet<Vertex> vertices) {
+        nbVertices = 0;
+        for (Vertex v : vertices) {
+            radii[nbVertices] = radiusById[v.getId()];
+            angles[nbVertices] = angleById[v.getId()];
+            nbVertices++;
         }
     }
 
@@ -194,15 +242,13 @@ public class RadialLayout implements Parcelable {
      * @param vSecWidth Width of the vertex's angular sector in radians
      * @param vSecStart Starting angle of the vertex's angular sector
      *                  in radians
-     * @param indices   Maps each vertex of the underlying tree to its
-     *                  index in the tree's Vertex SortedSet.
      */
     private void setCoords(Vertex v, Tree tree, int vR, float vSecStart,
-                           float vSecWidth, Map<Vertex, Integer> indices)
+                           float vSecWidth)
     {
         // The vertex is placed in the middle of its sector
-        float vAngle = vSecStart + vSecWidth/2;
-        coords.set(indices.get(v), new PolarCoords(vR, vAngle));
+        radiusById[v.getId()] = vR;
+        angleById[v.getId()] = vSecStart + vSecWidth/2;
         // Updates layout's maxVertexRadius and radius
         if (vSecWidth < Math.PI && vR > 0) {
             maxVertexRadius = (float) Math.min(maxVertexRadius,
@@ -214,30 +260,59 @@ public class RadialLayout implements Parcelable {
         for (Vertex child : tree.getChildren(v)) {
             float childWidth = vSecWidth * (tree.getNbDescendants(child)+1);
             childWidth /= tree.getNbDescendants(v);
-            setCoords(child, tree, vR+1, childStart, childWidth, indices);
+            setCoords(child, tree, vR+1, childStart, childWidth);
             childStart += childWidth;
         }
     }
 
 
-    /**
-     * Polar coordinates getter.
-     * @return A read only view of the polar coordinates of the vertices
-     * of the underlying graph.
-     */
-    private List<PolarCoords> getPolarCoords() {
-        return Collections.unmodifiableList(coords);
-    }
-
     /**
      * Specific polar coordinates getter.
      * @param vNb Number of the underlying graph's vertex whose polar
      *            coordinates are required
-     * @return The polar coordinates of the specified vertex if it
-     * is in the layout, null else.
+     * @return The polar coordinates of the specified vertex
+     * @throws IndexOutOfBoundsException if the vertex is not in the layout
      */
     public PolarCoords getPolarCoords(int vNb) {
-        return coords.get(vNb);
+        return new PolarCoords(getRadius(vNb), angles[vNb]);
+    }
+
+    /**
+     * Specific radial coordinate getter, which does not allocate any
+     * object.
+     * @param vNb Number of the underlying graph's vertex whose radial
+     *            coordinate is required
+     * @return The radial coordinate of the specified vertex
+     * @throws IndexOutOfBoundsException if the vertex is not in the layout
+     */
+    public int getRadius(int vNb) {
+        if (vNb >= nbVertices) {
+            throw new IndexOutOfBoundsException("No vertex " + vNb + " in the layout");
+        }
+        return radii[vNb];
+    }
+
+    /**
+     * Specific angular coordinate getter, which does not allocate any
+     * object.
+     * @param vNb Number of the underlying graph's vertex whose angular
+     *            coordinate is required
+     * @return The angular coordinate of the specified vertex, in radians
+     * @throws IndexOutOfBoundsException if the vertex is not in the layout
+     */
+    public float getAngle(int vNb) {
+        if (vNb >= nbVertices) {
+            throw new IndexOutOfBoundsException("No vertex " + vNb + " in the layout");
+        }
+        return angles[vNb];
+    }
+
+    /**
+     * Number of vertices getter.
+     * @return the number of vertices in the layout
+     */
+    public int getNbVertices() {
+        return nbVertices;
     }
 
     /**
@@ -274,9 +349,19 @@ public class RadialLayout implements Parcelable {
             return false;
         } else {
             RadialLayout that = (RadialLayout) o;
-            return (Math.abs(this.getMaxVertexRadius()-that.getMaxVertexRadius()) < EPS &&
-                    Math.abs(this.getLayoutRadius()-that.getLayoutRadius()) < EPS &&
-                    this.getPolarCoords().equals(that.getPolarCoords()));
+            if (Math.abs(this.getMaxVertexRadius()-that.getMaxVertexRadius()) >= EPS ||
+                    Math.abs(this.getLayoutRadius()-that.getLayoutRadius()) >= EPS ||
+                    this.nbVertices != that.nbVertices) {
+                return false;
+            }
+            // Same comparison as PolarCoords.equals()
+            for (int i = 0; i < nbVertices; i++) {
+                if (this.radii[i] != that.radii[i] ||
+                        Math.abs(this.angles[i]-that.angles[i]) >= EPS) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
 
@@ -292,10 +377,25 @@ public class RadialLayout implements Parcelable {
         int result = 13;
         result = 37 * result + Float.floatToIntBits(maxVertexRadius);
         result = 37 * result + Float.floatToIntBits(layoutRadius);
-        result = 37 * result + coords.hashCode();
+        // Only the radii, as equal angles may differ by EPS
+        for (int i = 0; i < nbVertices; i++) {
+            result = 37 * result + radii[i];
+        }
         return result;
     }
 
+    /**
+     * Private auxiliary method.
+     * @return the polar coordinates of the vertices, in a new list
+     */
+    private List<PolarCoords> getPolarCoords() {
+        List<PolarCoords> res = new ArrayList<>(nbVertices);
+        for (int i = 0; i < nbVertices; i++) {
+            res.add(new PolarCoords(radii[i], angles[i]));
+        }
+        return res;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -303,7 +403,7 @@ public class RadialLayout implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel out, int flags) {
-        out.writeTypedList(coords);
+        out.writeTypedList(getPolarCoords());
         out.writeFloat(maxVertexRadius);
         out.writeFloat(layoutRadius);
     }
@@ -325,8 +425,16 @@ public class RadialLayout implements Parcelable {
      *           (maxVertexRadius then layoutRadius)
      */
     private RadialLayout(Parcel in) {
-        coords = new ArrayList<>();
+        this();
+        List<PolarCoords> coords = new ArrayList<>();
         in.readTypedList(coords, PolarCoords.CREATOR);
+        nbVertices = coords.size();
+        radii = new int[nbVertices];
+        angles = new float[nbVertices];
+        for (int i = 0; i < nbVertices; i++) {
+            radii[i] = coords.get(i).getRadius();
+            angles[i] = coords.get(i).getAngle();
+        }
         maxVertexRadius = in.readFloat();
         layoutRadius = in.readFloat();
     }
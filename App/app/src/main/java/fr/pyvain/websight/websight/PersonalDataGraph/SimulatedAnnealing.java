@@ -50,6 +50,11 @@ final class SimulatedAnnealing {
 	/**
 	 * Computes the cost of the specified drawing of the specified Tree.
 	 *
+	 * <p>The edges of the tree go between consecutive orbits, and the
+	 * sectors of the children of a vertex are nested in its own, so that
+	 * they never cross each other : only the crossings involving an
+	 * additional edge are counted.</p>
+	 *
 	 * @param drawing Drawing whose cost must be computed
      * @param tree    Underlying tree of the Drawing
 	 * @return the cost of the layout
@@ -58,7 +63,20 @@ final class SimulatedAnnealing {
 	public static int cost(Drawing drawing, Tree tree) {
         // only additional edges can intersect with vertices
 		return (V_WEIGHT*drawing.nbVertexCrossings(tree.getExtraEdges()) +
-                drawing.nbEdgeIntersections());
+                drawing.nbEdgeCrossings(tree.getExtraEdges()));
+	}
+
+	/**
+	 * Computes the cost of the drawing tracked by the specified
+	 * IncrementalCost, which is the same as the cost of a Drawing of
+	 * the tracked tree updated from scratch.
+	 *
+	 * @param tracker IncrementalCost tracking the drawing
+	 * @return the cost of the tracked drawing
+	 */
+	public static int cost(IncrementalCost tracker) {
+		return (V_WEIGHT*tracker.getNbVertexCrossings() +
+				tracker.getNbEdgeCrossings());
 	}
 
     /**
@@ -74,18 +92,16 @@ final class SimulatedAnnealing {
     }
 
     /**
-     * Returns an estimated "good" decrease factor for the specified
-     * instance of the simulated annealing problem
-     * @param nbIters Estimated maximal number of iterations before
-     *                     stopping.
-     * @param initTemp     Initial temperature
-     * @param costDelta    Average cost variation between initial state
-     *                     and all other states
-     * @return An estimated "good" decrease factor for the specified
+     * Returns an estimated "good" final temperature for the specified
+     * instance of the simulated annealing problem, at which the
+     * acceptance probability of the average cost variation is 1%
+     * @param costDelta Average cost variation between initial state
+     *                  and all other states
+     * @return An estimated "good" final temperature for the specified
      * instance of the simulated annealing problem
      */
-    public static float goodDecreaseFactor(int nbIters, float initTemp, float costDelta) {
-        return (float) Math.pow(-costDelta/(initTemp*(float)Math.log(0.01)), 1.0/nbIters);
+    public static float goodFinalTemp(float costDelta) {
+        return -costDelta/(float)Math.log(0.01);
     }
 
 
@@ -8,7 +8,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +16,9 @@ import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
 
 /**
  * <p>A data tree is a structure built upon a connected component of
@@ -42,11 +44,29 @@ import java.util.TreeSet;
  */
 public class Tree implements Graph, Parcelable {
 
+    /**
+     * Number of annealing iterations to time before adjusting the
+     * cooling to their actual length.
+     */
+    private static final int CALIBRATION_ITERS = 64;
+
     /**
      * Vertices of the data tree.
      */
     private final SortedSet<Vertex> vertices;
 
+    /**
+     * Vertices of the data tree, in the same order as vertices, stored
+     * in an array list to be picked randomly in O(1).
+     */
+    private final List<Vertex> indexedVertices;
+
+    /**
+     * Vertices of the data tree which have at least two children, i.e.
+     * whose children shuffling may change the state of the tree.
+     */
+    private final List<Vertex> shufflableVertices;
+
     /**
      * Edges of the data tree.
      */
@@ -100,6 +120,12 @@ public class Tree implements Graph, Parcelable {
      */
     private int maxNbUrlsEdge;
 
+    /**
+     * Adjacency of the graph the tree is built upon, used to browse it
+     * quickly. Null if the tree has been built from a Vertex only.
+     */
+    private Adjacency<Vertex, Edge> adjacency;
+
     /**
      * Initializes a new Tree whose root is the specified Vertex
      * and which covers its whole connected component.
@@ -112,6 +138,21 @@ public class Tree implements Graph, Parcelable {
         changeRoot(root);
     }
 
+    /**
+     * Initializes a new Tree whose root is the specified Vertex
+     * and which covers its whole connected component, browsing it
+     * through the specified adjacency.
+     * The children of each vertex are sorted by increasing id.
+     *
+     * @param adjacency Adjacency of the graph containing the root
+     * @param root      Root of the new Tree
+     */
+    public Tree(Adjacency<Vertex, Edge> adjacency, Vertex root) {
+        this();
+        this.adjacency = adjacency;
+        changeRoot(root);
+    }
+
     /**
      * Initializes a new Tree by copying the specified Tree.
      * @param tree Tree to copy
@@ -126,6 +167,8 @@ public class Tree implements Graph, Parcelable {
      */
     public Tree() {
         vertices = new TreeSet<>();
+        indexedVertices = new ArrayList<>();
+        shufflableVertices = new ArrayList<>();
         edges = new HashSet<>();
         extraEdges = new HashSet<>();
         children = new HashMap<>();
@@ -135,6 +178,7 @@ public class Tree implements Graph, Parcelable {
         preShuffleOrder = null;
         height = 0;
         maxNbUrlsEdge = 0;
+        adjacency = null;
     }
 
     /**
@@ -152,8 +196,80 @@ public class Tree implements Graph, Parcelable {
         root = newRoot;
         preShuffleOrder = null;
         height = 0;
-        // Performs a BFS from the root to initialize vertices, edges,
-        // extraEdges and children
+        if (adjacency != null && newRoot.getId() < adjacency.getNbVertices() &&
+                adjacency.getVertex(newRoot.getId()) == newRoot) {
+            browseAdjacency();
+        } else {
+            browseNeighbours();
+        }
+        // Browse through the tree again to initialize nbDescendants
+        // and height
+        computeMetrics(root, 0);
+        indexVertices();
+    }
+
+    /**
+     * Private auxiliary initialization method.
+     * Initializes indexedVertices and shufflableVertices from vertices
+     * and children.
+     */
+    private void indexVertices() {
+        indexedVertices.clear();
+        indexedVertices.addAll(vertices);
+        shufflableVertices.clear();
+        for (Vertex v : indexedVertices) {
+            if (children.get(v).size() >= 2) {
+                shufflableVertices.add(v);
+            }
+        }
+    }
+
+    /**
+     * Private auxiliary initialization method.
+     * Performs a BFS from the root through the adjacency of the graph,
+     * to initialize vertices, edges, extraEdges and children.
+     */
+    private void browseAdjacency() {
+        int[] offsets = adjacency.getOffsets();
+        int[] targets = adjacency.getTargets();
+        boolean[] visited = new boolean[adjacency.getNbVertices()];
+        int[] queue = new int[adjacency.getNbVertices()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root.getId();
+        visited[root.getId()] = true;
+        vertices.add(root);
+        while (head < tail) {
+            int current = queue[head++];
+            List<Vertex> currentChildren = new ArrayList<>();
+            for (int i = offsets[current]; i < offsets[current+1]; i++) {
+                int neighbour = targets[i];
+                Edge edgeTo = adjacency.getEdge(i);
+                maxNbUrlsEdge = Math.max(maxNbUrlsEdge,
+                        edgeTo.getData().getNbURLs());
+                if (!visited[neighbour]) {
+                    visited[neighbour] = true;
+                    Vertex v = adjacency.getVertex(neighbour);
+                    vertices.add(v);
+                    currentChildren.add(v);
+                    queue[tail++] = neighbour;
+                } else {
+                    if (!edges.contains(edgeTo)) {
+                        extraEdges.add(edgeTo);
+                    }
+                }
+                edges.add(edgeTo);
+            }
+            children.put(adjacency.getVertex(current), currentChildren);
+        }
+    }
+
+    /**
+     * Private auxiliary initialization method.
+     * Performs a BFS from the root through the neighbours of the vertices,
+     * to initialize vertices, edges, extraEdges and children.
+     */
+    private void browseNeighbours() {
         vertices.add(root);
         Queue<Vertex> queue = new LinkedList<>();
         queue.add(root);
@@ -163,7 +279,7 @@ public class Tree implements Graph, Parcelable {
             for (Vertex neighbour : current.getNeighbours()) {
                 Edge edgeTo = current.getEdgeTo(neighbour);
                 maxNbUrlsEdge = Math.max(maxNbUrlsEdge,
-                        edgeTo.getData().getURLs().size());
+                        edgeTo.getData().getNbURLs());
                 if (!vertices.contains(neighbour)) {
                     vertices.add(neighbour);
                     currentChildren.add(neighbour);
@@ -177,9 +293,6 @@ public class Tree implements Graph, Parcelable {
             }
             children.put(current, currentChildren);
         }
-        // Browse through the tree again to initialize nbDescendants
-        // and height
-        computeMetrics(root, 0);
     }
 
     /**
@@ -281,20 +394,50 @@ public class Tree implements Graph, Parcelable {
        }
    }
 
+    /**
+     * Shufflable vertices getter.
+     * @return a read only view of the vertices of the tree which have at
+     * least two children, sorted by increasing id
+     */
+    public List<Vertex> getShufflableVertices() {
+        return Collections.unmodifiableList(shufflableVertices);
+    }
+
 
     /**
      * Chooses a random Vertex of the data tree, and shuffles its children
      * placing the tree in a "neighbour state".
      */
     public void neighbourState() {
-        // TODO : maybe change the vertices data structure to a list
-        // TODO : to be able to pick a random element in O(1) instead of O(N)
-        int chosen = new Random().nextInt(vertices.size());
-        Iterator<Vertex> iter = vertices.iterator();
-        for(int i = 0; i < chosen; i++) {
-            iter.next();
+        neighbourState(SimulatedAnnealing.rand);
+    }
+
+    /**
+     * Chooses a random Vertex of the data tree, and shuffles its children
+     * placing the tree in a "neighbour state", using the specified random
+     * generator.
+     * @param rand Random generator to use
+     */
+    public void neighbourState(Random rand) {
+        neighbourState(rand, false);
+    }
+
+    /**
+     * Chooses a random Vertex of the data tree in O(1), and shuffles its
+     * children placing the tree in a "neighbour state", using the specified
+     * random generator.
+     * If required, the vertex is only chosen among the vertices which have
+     * at least two children, unless there is none.
+     * @param rand           Random generator to use
+     * @param shufflableOnly True if the vertices with less than two
+     *                       children must not be chosen
+     */
+    public void neighbourState(Random rand, boolean shufflableOnly) {
+        List<Vertex> candidates = indexedVertices;
+        if (shufflableOnly && !shufflableVertices.isEmpty()) {
+            candidates = shufflableVertices;
         }
-        shuffleChildren(iter.next());
+        shuffleChildren(candidates.get(rand.nextInt(candidates.size())), rand);
     }
 
     /**
@@ -314,11 +457,22 @@ public class Tree implements Graph, Parcelable {
      * @param v Vertex whose children must be shuffled
      */
     public void shuffleChildren(Vertex v) {
+        shuffleChildren(v, SimulatedAnnealing.rand);
+    }
+
+    /**
+     * Randomly shuffles the children of the specified Vertex using the
+     * specified random generator, and saves a copy of its previous state,
+     * to allow restoration thanks to the unshuffleChildren() method.
+     * @param v    Vertex whose children must be shuffled
+     * @param rand Random generator to use
+     */
+    public void shuffleChildren(Vertex v, Random rand) {
         if (vertices.contains(v)) {
             lastShuffled = v;
             List<Vertex> vChildren = children.get(v);
             preShuffleOrder = new ArrayList<>(vChildren);
-            Collections.shuffle(vChildren);
+            Collections.shuffle(vChildren, rand);
         }
     }
 
@@ -403,11 +557,146 @@ public class Tree implements Graph, Parcelable {
                                   Tree wTree, RadialLayout wLayout, Drawing wDrawing,
                                   long maxTime)
     throws IllegalArgumentException
+    {
+        minimizeCrossings(rad, secStart, secWidth, vRadius, wTree, wLayout, wDrawing,
+                new AnnealingConfig(SimulatedAnnealing.rand.nextLong(), maxTime));
+    }
+
+    /**
+     * Places the tree in a state (i.e. permutes the children lists of its
+     * vertices) which minimizes the cost of the drawing of this tree with
+     * specified parameters, by a single annealing chain of the specified
+     * configuration.
+     *
+     * The chain draws its random numbers from config.chainRandom(0), so
+     * that the result is the same as the one of the first chain of a
+     * parallel minimization with the same configuration.
+     *
+     * @param rad       Required radial coordinate of the tree's root
+     * @param secStart  Required angular sector starting angle of the
+     *                  tree's root
+     * @param secWidth  Required angular sector width of the tree's root
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param wTree     Working tree, previous content will be overwritten
+     * @param wLayout   Working layout, previous content will be overwritten
+     * @param wDrawing  Working drawing, previous content will be overwritten
+     * @param config    Seed, budget and cooling schedule of the minimization
+     * @throws IllegalArgumentException if the vertex radius is out of bounds
+     */
+    public void minimizeCrossings(int rad, float secStart, float secWidth, float vRadius,
+                                  Tree wTree, RadialLayout wLayout, Drawing wDrawing,
+                                  AnnealingConfig config)
+            throws IllegalArgumentException
     {
         if (!(0 < vRadius && vRadius < 1)) {
             throw new IllegalArgumentException("Vertex radius out of bounds");
         }
-        long start = SystemClock.elapsedRealtime();
+        TreeState best = new TreeState(this);
+        anneal(best, rad, secStart, secWidth, vRadius, wTree, wLayout, wDrawing,
+                config.chainRandom(0), config,
+                config.deadline(SystemClock.elapsedRealtime()));
+        restoreState(best);
+    }
+
+    /**
+     * With specified time, places the tree in a state (i.e. permutes the
+     * children lists of its vertices) which minimizes the cost of the drawing
+     * of this tree with specified parameters.
+     *
+     * Several independent annealing chains, each with its own random
+     * generator and working objects, are run on the specified executor,
+     * and the best state found by any of them is kept.
+     *
+     * @param rad       Required radial coordinate of the tree's root
+     * @param secStart  Required angular sector starting angle of the
+     *                  tree's root
+     * @param secWidth  Required angular sector width of the tree's root
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param executor  Executor running the annealing chains
+     * @param nbChains  Number of annealing chains, must be > 0
+     * @param maxTime   Maximum time allocated to the minimization
+     * @throws IllegalArgumentException if the vertex radius or the number
+     * of chains is out of bounds
+     */
+    public void minimizeCrossings(int rad, float secStart, float secWidth, float vRadius,
+                                  ExecutorService executor, int nbChains, long maxTime)
+            throws IllegalArgumentException
+    {
+        minimizeCrossings(rad, secStart, secWidth, vRadius, executor, nbChains,
+                new AnnealingConfig(SimulatedAnnealing.rand.nextLong(), maxTime));
+    }
+
+    /**
+     * Places the tree in a state (i.e. permutes the children lists of its
+     * vertices) which minimizes the cost of the drawing of this tree with
+     * specified parameters, by several independent annealing chains of the
+     * specified configuration run on the specified executor. The best
+     * state found by any of them is kept.
+     *
+     * The i-th chain draws its random numbers from config.chainRandom(i),
+     * and each chain has its own budget of iterations : the result only
+     * depends on the configuration if its time is unlimited.
+     *
+     * @param rad       Required radial coordinate of the tree's root
+     * @param secStart  Required angular sector starting angle of the
+     *                  tree's root
+     * @param secWidth  Required angular sector width of the tree's root
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param executor  Executor running the annealing chains
+     * @param nbChains  Number of annealing chains, must be > 0
+     * @param config    Seed, budget and cooling schedule of the minimization
+     * @throws IllegalArgumentException if the vertex radius or the number
+     * of chains is out of bounds
+     */
+    public void minimizeCrossings(int rad, float secStart, float secWidth, float vRadius,
+                                  ExecutorService executor, int nbChains,
+                                  AnnealingConfig config)
+            throws IllegalArgumentException
+    {
+        if (!(0 < vRadius && vRadius < 1)) {
+            throw new IllegalArgumentException("Vertex radius out of bounds");
+        } else if (nbChains <= 0) {
+            throw new IllegalArgumentException("Invalid number of chains");
+        }
+        long deadline = config.deadline(SystemClock.elapsedRealtime());
+        List<AnnealingChain> chains = new ArrayList<>(nbChains);
+        for (int i = 0; i < nbChains; i++) {
+            chains.add(new AnnealingChain(this, rad, secStart, secWidth, vRadius,
+                    config, i, deadline));
+        }
+        AnnealingChain.runAll(executor, chains);
+    }
+
+    /**
+     * Annealing chain : starting from the receiving tree's state, searches a
+     * state minimizing the cost of the drawing of this tree with specified
+     * parameters, until the specified deadline.
+     * The receiving tree is only read.
+     *
+     * @param best      Snapshot of the receiving tree's state, set to the
+     *                  best state found
+     * @param rad       Required radial coordinate of the tree's root
+     * @param secStart  Required angular sector starting angle of the
+     *                  tree's root
+     * @param secWidth  Required angular sector width of the tree's root
+     * @param vRadius   Required vertex Radius of the tree in percentage of
+     *                  the maximal allowed value, must be in ]0, 1[
+     * @param wTree     Working tree, previous content will be overwritten
+     * @param wLayout   Working layout, previous content will be overwritten
+     * @param wDrawing  Working drawing, previous content will be overwritten
+     * @param rand      Random generator used by the chain
+     * @param config    Budget of iterations and cooling schedule of the chain
+     * @param deadline  Time at which the chain must stop, given by
+     *                  SystemClock.elapsedRealtime()
+     * @return the cost of the best state found
+     */
+    int anneal(TreeState best, int rad, float secStart, float secWidth, float vRadius,
+               Tree wTree, RadialLayout wLayout, Drawing wDrawing,
+               Random rand, AnnealingConfig config, long deadline)
+    {
         wTree.copy(this);
         long startIter = SystemClock.elapsedRealtime();
         wLayout.update(wTree, rad, secStart, secWidth);
@@ -415,47 +704,96 @@ public class Tree implements Graph, Parcelable {
                 Drawing.CMIN, Drawing.CMIN,
                 Drawing.CMAX, Drawing.CMAX,
                 Drawing.C0, Drawing.C0);
-        int minCost = SimulatedAnnealing.cost(wDrawing, wTree);
+        long iterLength = SystemClock.elapsedRealtime()-startIter;
+        // Only the moved parts of the drawing will be computed again
+        IncrementalCost tracker = new IncrementalCost(wTree, wLayout, wDrawing,
+                secStart, secWidth);
+        int minCost = SimulatedAnnealing.cost(tracker);
         int prevCost = minCost;
 
-        long iterLength = SystemClock.elapsedRealtime()-startIter;
-        // Estimated number of iterations before stop
-        int nbIters = (Math.round(0.9f*maxTime/iterLength)-1);
+        // Number of iterations before stop, estimated from the time of
+        // the first one if it is not given
+        int maxIters = config.getMaxIterations();
+        int nbIters;
+        if (maxIters != AnnealingConfig.UNLIMITED) {
+            nbIters = Math.max(1, maxIters);
+        } else {
+            nbIters = Math.max(1, Math.round(0.9f*(deadline-startIter)/iterLength)-1);
+        }
         // Estimated average cost variation between initial state
         // and all other states
         int costDelta = this.getVertices().size()/4 + this.size();
 
+        AnnealingConfig.Cooling cooling = config.getCooling();
         float temp = SimulatedAnnealing.goodInitTemp(costDelta);
-        float decreaseFactor = SimulatedAnnealing.goodDecreaseFactor(nbIters, temp, costDelta);
-
-        while (SystemClock.elapsedRealtime() < start + maxTime) {
-            System.out.println(prevCost);
-            // Considers a neighbourState
-            wTree.neighbourState();
-            wLayout.update(wTree, rad, secStart, secWidth);
-            wDrawing.update(wTree, wLayout, vRadius*wLayout.getMaxVertexRadius(),
-                    Drawing.CMIN, Drawing.CMIN,
-                    Drawing.CMAX, Drawing.CMAX,
-                    Drawing.C0, Drawing.C0);
-            int newCost = SimulatedAnnealing.cost(wDrawing, wTree);
+        float finalTemp = SimulatedAnnealing.goodFinalTemp(costDelta);
+        float step = cooling.step(temp, finalTemp, nbIters);
+
+        long loopStart = System.nanoTime();
+        int nbDone = 0;
+        while ((maxIters == AnnealingConfig.UNLIMITED || nbDone < maxIters) &&
+                SystemClock.elapsedRealtime() < deadline) {
+            // Considers a neighbourState, shuffling a vertex which has
+            // at least two children not to waste the iteration
+            wTree.neighbourState(rand, true);
+            tracker.update(wTree.getLastShuffled());
+            int newCost = SimulatedAnnealing.cost(tracker);
             float p = SimulatedAnnealing.acceptanceProbability(prevCost, newCost, temp);
             // Accepts it or not depending on its cost
-            if (p < SimulatedAnnealing.rand.nextFloat()) {
+            if (rand.nextFloat() < p) {
                 prevCost = newCost;
+                best.markDirty(wTree.getLastShuffled());
                 if (newCost < minCost) {
                     minCost = newCost;
-                    // Always sets the receiving Tree to the best state found yet
-                    this.copy(wTree);
+                    // Always sets the best state to the best state found
+                    // yet, only copying the children orders which changed
+                    best.save(wTree);
                 }
             } else {
                 wTree.previousState();
+                tracker.undo();
             }
             // Updates temperature
-            temp *= decreaseFactor;
+            temp = cooling.decrease(temp, step);
+            nbDone++;
+            // Incremental iterations are much shorter than the first full
+            // one : once a few of them are timed, adjusts the cooling, unless
+            // the number of iterations is given
+            if (maxIters == AnnealingConfig.UNLIMITED && nbDone == CALIBRATION_ITERS) {
+                long elapsed = Math.max(1, System.nanoTime() - loopStart);
+                long remaining = deadline - SystemClock.elapsedRealtime();
+                nbIters = (int) Math.min(Integer.MAX_VALUE,
+                        Math.max(1, remaining * 1000000L * nbDone / elapsed));
+                step = cooling.step(temp, finalTemp, nbIters);
+            }
         }
+        return minCost;
     }
 
 
+    /**
+     * Places the tree in the state saved in the specified snapshot, which
+     * must have been built from this tree. Only the children orders saved
+     * since the snapshot was built are set.
+     * @param state Snapshot of the state to restore
+     */
+    void restoreState(TreeState state) {
+        state.restore(this);
+        lastShuffled = null;
+        preShuffleOrder = null;
+    }
+
+    /**
+     * Specific vertex's children getter, giving write access to the list,
+     * in order to restore a TreeState.
+     * @param v Vertex whose children are required
+     * @return the children list of the specified Vertex if it is the tree,
+     * null else.
+     */
+    List<Vertex> getMutableChildren(Vertex v) {
+        return children.get(v);
+    }
+
     /**
      * Makes the receiving Tree a copy of the specified Tree
      * @param tree Tree to copy
@@ -463,18 +801,27 @@ public class Tree implements Graph, Parcelable {
     public void copy(Tree tree) {
         vertices.clear();
         vertices.addAll(tree.getVertices());
+        indexedVertices.clear();
+        indexedVertices.addAll(tree.indexedVertices);
+        shufflableVertices.clear();
+        shufflableVertices.addAll(tree.shufflableVertices);
         edges.clear();
         edges.addAll(tree.getEdges());
         extraEdges.clear();
         extraEdges.addAll(tree.getExtraEdges());
         root = tree.getRoot();
         children.clear();
-        children.putAll(tree.getChildren());
+        // The children lists are shuffled in place, so they must not be
+        // shared with the copied tree
+        for (Map.Entry<Vertex, List<Vertex>> entry : tree.getChildren().entrySet()) {
+            children.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
         lastShuffled = tree.getLastShuffled();
         preShuffleOrder = tree.getPreShuffleOrder();
         nbDescendants.clear();
         nbDescendants.putAll(tree.getNbDescendants());
         height = tree.getHeight();
+        adjacency = tree.adjacency;
     }
 
     /**
@@ -595,6 +942,9 @@ public class Tree implements Graph, Parcelable {
             preShuffleOrder = null;
         }
         height = in.readInt();
+        indexedVertices = new ArrayList<>(nbVertices);
+        shufflableVertices = new ArrayList<>();
+        indexVertices();
     }
 }
 
@@ -0,0 +1,172 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import java.util.List;
+
+/**
+ * <p>This class represents a compact snapshot of the state of a Tree, i.e.
+ * of the order of the children of each of its vertices.</p>
+ *
+ * <p>The children ids of all the vertices are stored in a single array :
+ * the children of the vertex of id v are stored, in order, between
+ * offsets[v] (included) and offsets[v+1] (excluded). As the children
+ * of a vertex do not change while its tree keeps the same root, only
+ * their order, the offsets never change.</p>
+ *
+ * <p>Moreover, the vertices whose order may differ from the one of a
+ * tracked Tree are marked as dirty, so that saving the state of the
+ * tracked Tree only copies their children, in O(changed vertices) time.
+ * In the same way, the vertices whose order has been saved at least once
+ * are remembered, so that restoring the snapshot into the tree it was
+ * built from only sets their children.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class TreeState {
+
+    /**
+     * Vertices of the tree, per id (null for the ids not in the tree).
+     */
+    private final Vertex[] vertices;
+
+    /**
+     * Position of the children of each vertex in order, per id.
+     */
+    private final int[] offsets;
+
+    /**
+     * Ids of the children of every vertex.
+     */
+    private final int[] order;
+
+    /**
+     * Ids of the vertices whose children order may differ from the one
+     * of the tracked tree.
+     */
+    private final int[] dirty;
+
+    /**
+     * True for the ids in dirty.
+     */
+    private final boolean[] isDirty;
+
+    /**
+     * Number of dirty vertices.
+     */
+    private int nbDirty;
+
+    /**
+     * Ids of the vertices whose children order has been saved at least
+     * once since the snapshot was built.
+     */
+    private final int[] modified;
+
+    /**
+     * True for the ids in modified.
+     */
+    private final boolean[] isModified;
+
+    /**
+     * Number of modified vertices.
+     */
+    private int nbModified;
+
+    /**
+     * Initializes a new snapshot of the current state of the specified Tree.
+     * @param tree Tree whose state must be saved
+     */
+    public TreeState(Tree tree) {
+        int nbIds = tree.getVertices().isEmpty() ? 0 : tree.getVertices().last().getId()+1;
+        vertices = new Vertex[nbIds];
+        offsets = new int[nbIds+1];
+        order = new int[Math.max(0, tree.size()-1)];
+        for (Vertex v : tree.getVertices()) {
+            vertices[v.getId()] = v;
+            offsets[v.getId()+1] = tree.getChildren(v).size();
+        }
+        for (int id = 0; id < nbIds; id++) {
+            offsets[id+1] += offsets[id];
+        }
+        for (Vertex v : tree.getVertices()) {
+            int i = offsets[v.getId()];
+            for (Vertex child : tree.getChildren(v)) {
+                order[i++] = child.getId();
+            }
+        }
+        dirty = new int[nbIds];
+        isDirty = new boolean[nbIds];
+        nbDirty = 0;
+        modified = new int[nbIds];
+        isModified = new boolean[nbIds];
+        nbModified = 0;
+    }
+
+    /**
+     * Marks the specified vertex as dirty, i.e. as a vertex whose children
+     * order may have changed in the tracked tree since the last save.
+     * @param v Vertex to mark, ignored if it is null or not in the snapshot
+     */
+    public void markDirty(Vertex v) {
+        if (v == null) {
+            return;
+        }
+        int id = v.getId();
+        if (id < vertices.length && vertices[id] != null && !isDirty[id]) {
+            isDirty[id] = true;
+            dirty[nbDirty++] = id;
+        }
+    }
+
+    /**
+     * Saves the children order of the dirty vertices of the specified
+     * tracked tree, so that the snapshot matches its state.
+     * @param tree Tracked tree, with the same vertices and root as the
+     *             tree this snapshot has been built from
+     */
+    public void save(Tree tree) {
+        for (int d = 0; d < nbDirty; d++) {
+            int id = dirty[d];
+            isDirty[id] = false;
+            int i = offsets[id];
+            for (Vertex child : tree.getChildren(vertices[id])) {
+                order[i++] = child.getId();
+            }
+            if (!isModified[id]) {
+                isModified[id] = true;
+                modified[nbModified++] = id;
+            }
+        }
+        nbDirty = 0;
+    }
+
+    /**
+     * Sets the children order of the vertices saved at least once in the
+     * specified tree, which must be in the state this snapshot was built
+     * from for the other vertices.
+     * @param tree Tree to restore, with the same vertices and root as the
+     *             tree this snapshot has been built from
+     */
+    public void restore(Tree tree) {
+        for (int m = 0; m < nbModified; m++) {
+            int id = modified[m];
+            List<Vertex> vChildren = tree.getMutableChildren(vertices[id]);
+            for (int i = offsets[id]; i < offsets[id+1]; i++) {
+                vChildren.set(i-offsets[id], vertices[order[i]]);
+            }
+        }
+    }
+
+    /**
+     * Specific vertex's children order getter.
+     * @param v Vertex whose children order is required
+     * @return the ids of the children of the specified vertex, in the
+     * saved order
+     */
+    public int[] getChildrenIds(Vertex v) {
+        int id = v.getId();
+        int[] res = new int[offsets[id+1]-offsets[id]];
+        System.arraycopy(order, offsets[id], res, 0, res.length);
+        return res;
+    }
+}
@@ -8,6 +8,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
+
 /**
  * <p>This class represents a vertex of a personal data graph.
  * A vertex represents a textual personal data, that the user gave to 
@@ -29,7 +31,7 @@ import java.util.TreeMap;
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
  */
-public final class Vertex implements Comparable<Vertex>, Parcelable {
+public final class Vertex implements Comparable<Vertex>, Parcelable, Adjacency.Node {
 
 	/**
 	 * Identifier of the vertex, which is also its index in the list
@@ -70,6 +72,7 @@ public final class Vertex implements Comparable<Vertex>, Parcelable {
 	 * Id getter.
 	 * @return the id of the vertex
 	 */
+	@Override
 	public int getId() {
 		return id;
 	}
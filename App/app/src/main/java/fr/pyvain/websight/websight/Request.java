@@ -150,17 +150,8 @@ class Request {
      */
     private String response() throws IOException {
         if (urlConnection != null) {
-            String response = "";
             // getInputStream() may throw IOException
-            InputStream is = urlConnection.getInputStream();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            // Reads whole stream
-            String line;
-            // readLine() may throw IOException
-            while ((line = reader.readLine()) != null) {
-                response += line;
-            }
-            return response;
+            return readAll(urlConnection.getInputStream());
         } else {
             return "";
         }
@@ -168,22 +159,55 @@ class Request {
 
     private String errorResponse() throws IOException {
         if (urlConnection != null) {
-            String response = "";
-            // getInputStream() may throw IOException
             InputStream is = urlConnection.getErrorStream();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            // Reads whole stream
-            String line;
-            // readLine() may throw IOException
-            while ((line = reader.readLine()) != null) {
-                response += line;
-            }
-            return response;
+            return (is == null) ? "" : readAll(is);
         } else {
             return "";
         }
     }
 
+    /**
+     * Reads a whole stream line by line
+     *
+     * @param is
+     *          Stream to read
+     * @return The concatenated lines of the stream
+     */
+    private String readAll(InputStream is) throws IOException {
+        StringBuilder response = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+        // Reads whole stream
+        String line;
+        // readLine() may throw IOException
+        while ((line = reader.readLine()) != null) {
+            response.append(line);
+        }
+        return response.toString();
+    }
+
+    /**
+     * Copies the response returned by the server into the specified
+     * stream, without holding it in memory
+     * Can be called only after sending a query with sendPOST
+     *
+     * @param out
+     *          Stream in which the response is written
+     *
+     * @see Request#sendPOST
+     */
+    private void copyResponse(OutputStream out) throws IOException {
+        if (urlConnection != null) {
+            // getInputStream() may throw IOException
+            InputStream is = urlConnection.getInputStream();
+            byte[] buffer = new byte[8192];
+            int nbRead;
+            while ((nbRead = is.read(buffer)) != -1) {
+                out.write(buffer, 0, nbRead);
+            }
+            is.close();
+        }
+    }
+
     /**
      * Asks the server for an access token and returns it
      *
@@ -299,19 +323,20 @@ class Request {
     }
 
     /**
-     * Asks the server for a graph and returns it
+     * Asks the server for a graph and writes it into the specified stream
      *
      * @param token
      *          token to identify a user
      * @param keywords
      *          keywords used to build the graph
-     * @return The JSon of a graph
+     * @param out
+     *          stream in which the JSon of the graph is written
      *
      * @throws IOException
      * @throws InvalidCredentialsException
      * @throws ServerException
      */
-    public String getGraph(String token, String[] keywords)
+    public void getGraph(String token, String[] keywords, OutputStream out)
             throws IOException, InvalidCredentialsException, ServerException, ServiceUnavailableException, NoConnexionException {
 
         // Sets up connection
@@ -332,10 +357,10 @@ class Request {
 
         // Analyses response
         switch (this.responseCode()) {
-            // Extracts token and returns it
-            case HttpURLConnection.HTTP_OK: {
-                return this.response();
-            }
+            // Streams the graph
+            case HttpURLConnection.HTTP_OK:
+                this.copyResponse(out);
+                break;
             // Handles error responses
             case HttpURLConnection.HTTP_BAD_REQUEST:
                 System.out.println(this.errorResponse());
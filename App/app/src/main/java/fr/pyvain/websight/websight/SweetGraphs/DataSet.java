@@ -3,35 +3,230 @@ package fr.pyvain.websight.websight.SweetGraphs;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
+import fr.pyvain.websight.websight.GraphCore.URLDictionary;
+
 /**
+ * <p>
+ * A class that represents the data carried by an edge or a vertex of
+ * a graph, i.e. a set of URLs.
+ * </p>
+ * <p>
+ * The urls are not stored in the DataSet, but in an URLDictionary,
+ * usually shared by all the DataSet objects of a graph : the DataSet
+ * only stores the sorted ids of its urls. Thus the union of two DataSet
+ * objects sharing a dictionary is a merge of two int arrays, and their
+ * size is the length of an array.
+ * </p>
  * <p>
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
  */
 public final class DataSet implements Parcelable {
 
-    private final Set<String> urls;
+    /**
+     * Ids of the urls of an empty DataSet.
+     */
+    private static final int[] NO_IDS = new int[0];
 
+    /**
+     * Dictionary giving the ids of the urls, null until urls are added.
+     */
+    private URLDictionary dictionary;
 
+    /**
+     * Ids of the urls, sorted by increasing id, without duplicates.
+     */
+    private int[] ids;
+
+    /**
+     * Initializes a new empty DataSet
+     */
     public DataSet() {
-        urls = new HashSet<>();
+        dictionary = null;
+        ids = NO_IDS;
     }
 
+    /**
+     * Adds the urls contained in the specified set of Strings
+     * to the set of urls of the DataSet
+     *
+     * @param urls a String set containing urls
+     */
     public void addURLs(Collection<String> urls) {
+        if (dictionary == null) {
+            dictionary = new URLDictionary();
+        }
+        int[] newIds = new int[urls.size()];
+        int i = 0;
         for (String url : urls) {
-            this.urls.add(url);
+            newIds[i++] = dictionary.getId(url);
+        }
+        Arrays.sort(newIds);
+        merge(newIds);
+    }
+
+    /**
+     * Adds the urls of the specified DataSet to the set of urls of the
+     * DataSet. This is a merge of their ids if they share the same
+     * dictionary, or if the receiving DataSet is empty.
+     *
+     * @param data DataSet whose urls must be added
+     */
+    public void addURLs(DataSet data) {
+        addURLIds(data.dictionary, data.ids);
+    }
+
+    /**
+     * Adds the urls of specified ids in the specified dictionary to the
+     * set of urls of the DataSet.
+     *
+     * @param dictionary Dictionary giving the ids of the urls
+     * @param urlIds     Ids of the urls, sorted by increasing id
+     */
+    void addURLIds(URLDictionary dictionary, int[] urlIds) {
+        if (urlIds.length == 0) {
+            return;
+        }
+        if (ids.length == 0) {
+            this.dictionary = dictionary;
+        }
+        if (this.dictionary == dictionary) {
+            merge(urlIds);
+        } else {
+            List<String> urls = new ArrayList<>(urlIds.length);
+            for (int id : urlIds) {
+                urls.add(dictionary.getURL(id));
+            }
+            addURLs(urls);
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Merges the specified sorted ids with the ids of the DataSet,
+     * dropping duplicates.
+     *
+     * @param urlIds Ids of urls, sorted by increasing id
+     */
+    private void merge(int[] urlIds) {
+        int[] merged = new int[ids.length + urlIds.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < ids.length || j < urlIds.length) {
+            int next;
+            if (j == urlIds.length || (i < ids.length && ids[i] <= urlIds[j])) {
+                next = ids[i++];
+            } else {
+                next = urlIds[j++];
+            }
+            if (k == 0 || merged[k-1] != next) {
+                merged[k++] = next;
+            }
         }
+        ids = (k == merged.length) ? merged : Arrays.copyOf(merged, k);
     }
 
+    /**
+     * Url ids getter.
+     * The returned array must not be modified.
+     * @return the ids of the urls in the dictionary, sorted by increasing id
+     */
+    int[] getURLIds() {
+        return ids;
+    }
+
+    /**
+     * Dictionary getter.
+     * @return the dictionary giving the ids of the urls, null if no url
+     * has ever been added
+     */
+    URLDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Moves the urls of the DataSet to the specified dictionary, so that
+     * they are identified by their ids in it from now on.
+     *
+     * @param dictionary New dictionary of the DataSet
+     */
+    void setDictionary(URLDictionary dictionary) {
+        if (this.dictionary != dictionary) {
+            int[] newIds = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                newIds[i] = dictionary.getId(this.dictionary.getURL(ids[i]));
+            }
+            Arrays.sort(newIds);
+            this.dictionary = dictionary;
+            ids = newIds;
+        }
+    }
+
+    /**
+     * Number of urls getter.
+     *
+     * @return the number of urls contained in the DataSet
+     */
+    public int getNbURLs() {
+        return ids.length;
+    }
+
+    /**
+     * urls getter
+     *
+     * @return a read only set of urls contained in the DataSet
+     */
     public Set<String> getURLs() {
-        return Collections.unmodifiableSet(urls);
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < ids.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return dictionary.getURL(ids[next++]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof String) || dictionary == null) {
+                    return false;
+                }
+                int id = dictionary.findId((String) o);
+                return id != -1 && Arrays.binarySearch(ids, id) >= 0;
+            }
+        };
     }
 
     @Override
@@ -40,21 +235,23 @@ public final class DataSet implements Parcelable {
         if (o == null || getClass() != o.getClass()) return false;
 
         DataSet dataSet = (DataSet) o;
-        return urls.equals(dataSet.urls);
+        if (dictionary == dataSet.dictionary) {
+            return Arrays.equals(ids, dataSet.ids);
+        }
+        return getURLs().equals(dataSet.getURLs());
     }
 
     @Override
     public int hashCode() {
-        return urls.hashCode();
+        return getURLs().hashCode();
     }
 
-
     public int describeContents() {
         return 0;
     }
 
     public void writeToParcel(Parcel out, int flags) {
-        out.writeStringList(new ArrayList<>(urls));
+        out.writeStringList(new ArrayList<>(getURLs()));
     }
 
     public static final Parcelable.Creator<DataSet> CREATOR
@@ -69,8 +266,9 @@ public final class DataSet implements Parcelable {
     };
 
     private DataSet(Parcel in) {
+        this();
         List<String> urls = new ArrayList<>();
         in.readStringList(urls);
-        this.urls = new HashSet<>(urls);
+        addURLs(urls);
     }
 }
@@ -2,12 +2,14 @@ package fr.pyvain.websight.websight.SweetGraphs;
 
 import java.util.Arrays;
 
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
+
 /**
  * <p>
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
  */
-public class Edge {
+public class Edge implements Adjacency.Link<Vertex> {
 
     /**
      * Ends of the edge (ordered by increasing id)
@@ -26,10 +28,12 @@ public class Edge {
     }
 
 
+    @Override
     public Vertex getEnd1() {
         return ends[0];
     }
 
+    @Override
     public Vertex getEnd2() {
         return ends[1];
     }
@@ -3,12 +3,16 @@ package fr.pyvain.websight.websight.SweetGraphs;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+
+import fr.pyvain.websight.websight.Geometry.PolarProjection;
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
 
 /**
  * <p>
@@ -17,7 +21,7 @@ import java.util.Queue;
  */
 public class ForestRadialLayout implements RadialLayout, Parcelable {
 
-    private final static float MIN_RADIUS = 0.15f;
+    final static float MIN_RADIUS = 0.15f;
     private final static float MAX_RADIUS = 0.35f;
     private final static float MIN_THICKNESS = 0.01f;
     private final static float MAX_THICKNESS = 0.07f;
@@ -28,6 +32,42 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
     private final Map<Integer, Map<Integer, Segment>> edges;
     private final List<Circle> orbits;
 
+    /**
+     * Polar coordinates of the center of each vertex around the pole, per
+     * id, null if they are not known yet (layout read from a Parcel or a
+     * buffer, until derivePolar() is called).
+     */
+    private float[] polarRadius;
+    private float[] polarAngle;
+
+    /**
+     * Radius of each vertex, per id, null when the polar coordinates are.
+     */
+    private float[] vertexRadius;
+
+    /**
+     * Pole of the polar coordinates, i.e. the center of the root.
+     */
+    private float poleX;
+    private float poleY;
+
+    /**
+     * Cartesian coordinates of the centers, filled by the projection.
+     */
+    private float[] xs;
+    private float[] ys;
+
+    /**
+     * Projection of the polar coordinates of the vertices.
+     */
+    private final PolarProjection polar;
+
+    /**
+     * Spatial index of the circles and segments, built on demand, null
+     * if the layout changed since it was built.
+     */
+    private LayoutIndex index;
+
     public ForestRadialLayout(Graph graph, Vertex root) {
         this();
         changeRoot(graph, root);
@@ -39,6 +79,15 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
         vertices = new HashMap<>();
         edges = new HashMap<>();
         orbits = new ArrayList<>();
+        polarRadius = null;
+        polarAngle = null;
+        vertexRadius = null;
+        poleX = 0f;
+        poleY = 0f;
+        xs = new float[0];
+        ys = new float[0];
+        polar = new PolarProjection();
+        index = null;
     }
 
 //    public ForestRadialLayout(Graph graph, ForestRadialLayout from, ForestRadialLayout to, float step) {
@@ -107,15 +156,22 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
     public ForestRadialLayout(Graph graph, ForestRadialLayout from, ForestRadialLayout to, float step) {
         this();
         rootId = from.getRootId();
-        Point c = from.vertices.get(rootId).getCenter();
-        for (Vertex v : graph.getVertices()) {
-            int vId = v.getId();
-            Circle cFrom = from.vertices.get(vId);
-            Circle cTo = to.vertices.get(vId);
-            Point center = polarInterpolation(cFrom.getCenter(), cTo.getCenter(), c, step);
-            float r = (1-step)*cFrom.getRadius() + step*cTo.getRadius();
-            Circle inter = new Circle(center, r);
-            vertices.put(vId, inter);
+        if (from.polarAngle != null && to.polarAngle != null
+                && from.polarAngle.length == to.polarAngle.length) {
+            // Both layouts are around their root : their polar coordinates
+            // are interpolated without computing them again
+            interpolatePolar(graph, from, to, step);
+        } else {
+            Point c = from.vertices.get(rootId).getCenter();
+            for (Vertex v : graph.getVertices()) {
+                int vId = v.getId();
+                Circle cFrom = from.vertices.get(vId);
+                Circle cTo = to.vertices.get(vId);
+                Point center = polarInterpolation(cFrom.getCenter(), cTo.getCenter(), c, step);
+                float r = (1-step)*cFrom.getRadius() + step*cTo.getRadius();
+                Circle inter = new Circle(center, r);
+                vertices.put(vId, inter);
+            }
         }
         for (Edge e : graph.getEdges()) {
             updateE(e, graph);
@@ -130,64 +186,160 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
     }
 
 
+    /**
+     * Private auxiliary method.
+     * Places the vertices of the graph between their positions in the
+     * specified layouts, whose polar coordinates are known, by interpolating
+     * their polar coordinates and their poles, then projects them all at
+     * once.
+     */
+    private void interpolatePolar(Graph graph, ForestRadialLayout from,
+                                  ForestRadialLayout to, float step) {
+        int n = from.polarAngle.length;
+        polarRadius = new float[n];
+        polarAngle = new float[n];
+        vertexRadius = new float[n];
+        xs = new float[n];
+        ys = new float[n];
+        float twoPi = 2*(float)Math.PI;
+        for (int v = 0; v < n; v++) {
+            float r1 = from.polarRadius[v];
+            float r2 = to.polarRadius[v];
+            float angle1 = from.polarAngle[v];
+            float angle2 = to.polarAngle[v];
+            polarRadius[v] = (1-step)*r1 + step*r2;
+            if (r2 == 0) {
+                polarAngle[v] = angle1;
+            } else if (r1 == 0) {
+                polarAngle[v] = angle2;
+            } else {
+                // Turns the shortest way
+                float diff = angle2-angle1;
+                diff -= twoPi*Math.round(diff/twoPi);
+                polarAngle[v] = angle1 + step*diff;
+            }
+            vertexRadius[v] = (1-step)*from.vertexRadius[v] + step*to.vertexRadius[v];
+        }
+        poleX = (1-step)*from.poleX + step*to.poleX;
+        poleY = (1-step)*from.poleY + step*to.poleY;
+        polar.project(polarRadius, polarAngle, n, poleX, poleY, 1f, xs, ys);
+        for (Vertex v : graph.getVertices()) {
+            int vId = v.getId();
+            vertices.put(vId, new Circle(new Point(xs[vId], ys[vId]), vertexRadius[vId]));
+        }
+    }
+
     public void rotate(float angle) {
+        index = null;
         Point root = vertices.get(rootId).getCenter();
+        // The same rotation is applied to all the points
+        float cosA = (float)Math.cos(angle);
+        float sinA = (float)Math.sin(angle);
         for (Map.Entry<Integer, Circle> e : vertices.entrySet()) {
-            e.getValue().getCenter().rotateAround(root, angle);
+            e.getValue().getCenter().rotateAround(root, cosA, sinA);
         }
         for (Map.Entry<Integer, Map<Integer, Segment>> e1 : edges.entrySet()) {
             for (Map.Entry<Integer, Segment> e2 : e1.getValue().entrySet()) {
                 Segment s = e2.getValue();
-                s.getLeftEnd().rotateAround(root, angle);
-                s.getRightEnd().rotateAround(root, angle);
+                s.getLeftEnd().rotateAround(root, cosA, sinA);
+                s.getRightEnd().rotateAround(root, cosA, sinA);
+            }
+        }
+        if (polarAngle != null) {
+            for (int v = 0; v < polarAngle.length; v++) {
+                polarAngle[v] += angle;
             }
         }
     }
 
     public void changeRoot(Graph graph, Vertex root) {
         this.rootId = root.getId();
+        index = null;
         vertices.clear();
         edges.clear();
         orbits.clear();
-        Map<Vertex, Integer> nbDescendants = new HashMap<>();
-        Map<Vertex, List<Vertex>> children = new HashMap<>();
-
-        // Performs a first BFS to compute a spanning tree rooted in the main root
-        updateC(children, root);
-        // Performs a DFS to compute the nb of descendant of each vertex in the main
-        // connected component
-        updateD(nbDescendants, root, children);
-        // Performs a DFS to compute the height of the tree
-        int mainHeight = computeHeight(root, children);
+        // The spanning trees are computed on the adjacency of the graph :
+        // the vertices are stored in BFS order, so that the children of a
+        // vertex are consecutive, and come after their parent
+        Adjacency<Vertex, Edge> adjacency = graph.getAdjacency();
+        int n = adjacency.getNbVertices();
+        int[] order = new int[n];
+        int[] depth = new int[n];
+        int[] firstChild = new int[n];
+        int[] nbChildren = new int[n];
+        int[] nbDescendants = new int[n];
+        boolean[] visited = new boolean[n];
+
+        // Performs a first BFS to compute a spanning tree rooted in the main
+        // root, the nb of descendant of each vertex in the main connected
+        // component, and the height of the tree
+        int end = browse(adjacency, rootId, 0, order, depth, firstChild,
+                nbChildren, nbDescendants, visited);
+        int mainHeight = depth[order[end-1]];
+        int mainEnd = end;
 
         // Finds the root (ie the vertex of smallest id) in every other connected component
         // And performs a BFS to compute the corresponding spanning tree, updating children
         // and nbChildren
         // Also computes the sum of the numbers of descendants of the roots
         // And the max heights of the spanning trees, needed to compute the positions.
-        List<Vertex> roots = new ArrayList<>();
         int maxHeight = -1;
         int totalNbDescendants = 0;
-        for (Vertex v : graph.getVertices()) {
-            if (! children.containsKey(v)) {
-                roots.add(v);
-                updateC(children, v);
-                updateD(nbDescendants, v, children);
-                maxHeight = Math.max(maxHeight, computeHeight(v, children));
-                totalNbDescendants += 1 + nbDescendants.get(v);
+        for (int v = 0; v < n; v++) {
+            if (!visited[v]) {
+                int start = end;
+                end = browse(adjacency, v, start, order, depth, firstChild,
+                        nbChildren, nbDescendants, visited);
+                maxHeight = Math.max(maxHeight, depth[order[end-1]]);
+                totalNbDescendants += 1 + nbDescendants[v];
             }
         }
 
-
-
         // Computes the drawing of all the vertices of the graph
         float secStart = 0f;
         float totalWidth = 2*(float)Math.PI;
-        updateV(root, 0, secStart, totalWidth, children, nbDescendants, graph);
-        for (Vertex v : roots) {
-            float secWidth = totalWidth * (1+nbDescendants.get(v)) / totalNbDescendants;
-            updateV(v, mainHeight+1, secStart, secWidth, children, nbDescendants, graph);
-            secStart += secWidth;
+        float[] vSecStart = new float[n];
+        float[] vSecWidth = new float[n];
+        vSecStart[rootId] = secStart;
+        vSecWidth[rootId] = totalWidth;
+        for (int i = mainEnd; i < n; i++) {
+            int v = order[i];
+            // Vertex at depth 0 : root of another connected component
+            if (depth[v] == 0) {
+                float secWidth = totalWidth * (1+nbDescendants[v]) / totalNbDescendants;
+                vSecStart[v] = secStart;
+                vSecWidth[v] = secWidth;
+                secStart += secWidth;
+            }
+        }
+        if (polarAngle == null || polarAngle.length != n) {
+            polarRadius = new float[n];
+            polarAngle = new float[n];
+            vertexRadius = new float[n];
+            xs = new float[n];
+            ys = new float[n];
+        }
+        poleX = 0f;
+        poleY = 0f;
+        for (int i = 0; i < n; i++) {
+            int v = order[i];
+            polarRadius[v] = (i < mainEnd) ? depth[v] : mainHeight+1+depth[v];
+            polarAngle[v] = vSecStart[v] + vSecWidth[v]/2;
+            // Computes the sectors of the children
+            int total = nbDescendants[v];
+            float cStart = vSecStart[v];
+            for (int j = firstChild[v]; j < firstChild[v]+nbChildren[v]; j++) {
+                int c = order[j];
+                float cWidth = vSecWidth[v] * (1 + nbDescendants[c]) / total;
+                vSecStart[c] = cStart;
+                vSecWidth[c] = cWidth;
+                cStart += cWidth;
+            }
+        }
+        // All the centers are projected at once
+        polar.project(polarRadius, polarAngle, n, 0f, 0f, 1f, xs, ys);
+        for (int v = 0; v < n; v++) {
+            updateV(adjacency.getVertex(v), xs[v], ys[v], graph);
         }
 
         // Computes the drawing of all the edges of the graph
@@ -206,62 +358,58 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
         frame.setHeight(2*layoutRadius);
     }
 
-    private void updateC(Map<Vertex, List<Vertex>> children, Vertex root) {
-        Queue<Vertex> queue = new LinkedList<>();
-        queue.add(root);
-        children.put(root, new ArrayList<Vertex>());
-        Vertex current;
-        while ((current = queue.poll()) != null) {
-            List<Vertex> currentChildren = children.get(current);
-            for (Vertex neighbour : current.getNeighbours()) {
-                if (!children.containsKey(neighbour)) {
-                    currentChildren.add(neighbour);
-                    queue.add(neighbour);
-                    children.put(neighbour, new ArrayList<Vertex>());
+    /**
+     * Performs a BFS from the specified root through the specified adjacency,
+     * storing the vertices in BFS order from the specified position.
+     * Computes the depth, the children and the number of descendants of
+     * each vertex browsed.
+     *
+     * @return the position following the last vertex browsed in order
+     */
+    private int browse(Adjacency<Vertex, Edge> adjacency, int root, int start, int[] order,
+                       int[] depth, int[] firstChild, int[] nbChildren,
+                       int[] nbDescendants, boolean[] visited) {
+        int[] offsets = adjacency.getOffsets();
+        int[] targets = adjacency.getTargets();
+        int head = start;
+        int tail = start;
+        order[tail++] = root;
+        visited[root] = true;
+        depth[root] = 0;
+        while (head < tail) {
+            int current = order[head++];
+            firstChild[current] = tail;
+            nbChildren[current] = 0;
+            for (int i = offsets[current]; i < offsets[current+1]; i++) {
+                int neighbour = targets[i];
+                if (!visited[neighbour]) {
+                    visited[neighbour] = true;
+                    depth[neighbour] = depth[current]+1;
+                    order[tail++] = neighbour;
+                    nbChildren[current]++;
                 }
             }
         }
-    }
-
-    private void updateD(Map<Vertex, Integer> nbDescendants, Vertex v,
-                        Map<Vertex, List<Vertex>> children) {
-        int result = 0;
-        for (Vertex c : children.get(v)) {
-            updateD(nbDescendants, c, children);
-            result += 1 + nbDescendants.get(c);
-        }
-        nbDescendants.put(v, result);
-    }
-
-    private int computeHeight(Vertex v, Map<Vertex, List<Vertex>> children) {
-        int maxHeight = 0;
-        for (Vertex c : children.get(v)) {
-            int h = computeHeight(c, children);
-            maxHeight = Math.max(maxHeight, 1+h);
+        // Children come after their parent, so the numbers of descendants
+        // are computed in reverse order
+        for (int i = tail-1; i >= start; i--) {
+            int v = order[i];
+            int result = 0;
+            for (int j = firstChild[v]; j < firstChild[v]+nbChildren[v]; j++) {
+                result += 1 + nbDescendants[order[j]];
+            }
+            nbDescendants[v] = result;
         }
-        return maxHeight;
+        return tail;
     }
 
-    private void updateV(Vertex v, int depth, float secStart, float secWidth,
-                       Map<Vertex, List<Vertex>> children, Map<Vertex, Integer> nbDescendants,
-                        Graph graph)
-    {
-        float angle = secStart + secWidth/2;
-        float x = depth * (float)Math.cos(angle);
-        float y = depth * (float)Math.sin(angle);
+    private void updateV(Vertex v, float x, float y, Graph graph) {
         float sizeScale = graph.getMaxVertexSize() - graph.getMinVertexSize();
-        float vSize = v.getData().getURLs().size() - graph.getMinVertexSize();
+        float vSize = v.getData().getNbURLs() - graph.getMinVertexSize();
         float ratio = (sizeScale == 0) ? 1f : vSize/sizeScale;
         float radius = (1-ratio)*MIN_RADIUS + ratio*MAX_RADIUS;
+        vertexRadius[v.getId()] = radius;
         vertices.put(v.getId(), new Circle(new Point(x, y), radius));
-        // Calls itself recursively on children
-        int total = nbDescendants.get(v);
-        float cStart = secStart;
-        for (Vertex c : children.get(v)) {
-            float cWidth = secWidth * (1 + nbDescendants.get(c)) / total;
-            updateV(c, depth+1, cStart, cWidth, children, nbDescendants, graph);
-            cStart += cWidth;
-        }
     }
 
     private void updateE(Edge e, Graph graph) {
@@ -280,11 +428,7 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
         float beta = c2.getRadius() / d;
         float x2 = beta * p1.getX() + (1 - beta) * p2.getX();
         float y2 = beta * p1.getY() + (1 - beta) * p2.getY();
-        // Computes the thickness of the segment
-        float sizeScale = graph.getMaxEdgeSize() - graph.getMinEdgeSize();
-        float eSize = e.getData().getURLs().size() - graph.getMinEdgeSize();
-        float ratio = (sizeScale == 0) ? 1f : eSize/sizeScale;
-        float thickness = (1-ratio)*MIN_THICKNESS + ratio*MAX_THICKNESS;
+        float thickness = thickness(e, graph);
         Map <Integer, Segment> map;
         if ((map = edges.get(id1)) == null) {
             map = new HashMap<>();
@@ -297,6 +441,20 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
         ));
     }
 
+    /**
+     * Computes the thickness of the segment of the specified edge, before
+     * projection, from its size relatively to the other edges of the graph.
+     * @param e     Edge of the graph
+     * @param graph Graph containing the edge
+     * @return the thickness of the segment of the edge
+     */
+    static float thickness(Edge e, Graph graph) {
+        float sizeScale = graph.getMaxEdgeSize() - graph.getMinEdgeSize();
+        float eSize = e.getData().getNbURLs() - graph.getMinEdgeSize();
+        float ratio = (sizeScale == 0) ? 1f : eSize/sizeScale;
+        return (1-ratio)*MIN_THICKNESS + ratio*MAX_THICKNESS;
+    }
+
     private void updateO(int maxDepth) {
         Point origin = new Point(0, 0);
         for (int i = 1; i <= maxDepth; i++) {
@@ -308,6 +466,111 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
         return rootId;
     }
 
+    /**
+     * Private auxiliary method.
+     * Derives the polar coordinates of the centers of the vertices around
+     * the center of the root, and the radii of the vertices, from their
+     * circles, if they are not known yet.
+     */
+    private void derivePolar() {
+        if (polarAngle != null) {
+            return;
+        }
+        int n = 0;
+        for (Integer id : vertices.keySet()) {
+            n = Math.max(n, id+1);
+        }
+        polarRadius = new float[n];
+        polarAngle = new float[n];
+        vertexRadius = new float[n];
+        xs = new float[n];
+        ys = new float[n];
+        Circle root = vertices.get(rootId);
+        if (root != null) {
+            poleX = root.getCenter().getX();
+            poleY = root.getCenter().getY();
+        }
+        for (Map.Entry<Integer, Circle> e : vertices.entrySet()) {
+            int v = e.getKey();
+            Point p = e.getValue().getCenter();
+            polarRadius[v] = Point.distanceBetween(p.getX(), p.getY(), poleX, poleY);
+            polarAngle[v] = (float)Math.atan2(p.getY()-poleY, p.getX()-poleX);
+            vertexRadius[v] = e.getValue().getRadius();
+        }
+    }
+
+    /**
+     * Radial coordinates getter, for LayoutFrame.
+     * @return the radial coordinate of the center of each vertex around
+     * the pole, per id (not copied)
+     */
+    float[] getPolarRadii() {
+        derivePolar();
+        return polarRadius;
+    }
+
+    /**
+     * Angular coordinates getter, for LayoutFrame.
+     * @return the angular coordinate of the center of each vertex around
+     * the pole, per id (not copied)
+     */
+    float[] getPolarAngles() {
+        derivePolar();
+        return polarAngle;
+    }
+
+    /**
+     * Radii getter, for LayoutFrame.
+     * @return the radius of each vertex, per id (not copied)
+     */
+    float[] getVertexRadii() {
+        derivePolar();
+        return vertexRadius;
+    }
+
+    /**
+     * Pole getters, for LayoutFrame.
+     * @return a coordinate of the pole of the polar coordinates
+     */
+    float getPoleX() {
+        derivePolar();
+        return poleX;
+    }
+
+    float getPoleY() {
+        derivePolar();
+        return poleY;
+    }
+
+    /**
+     * Spatial index getter, for LayoutFrame. The index is built once
+     * after each change of the layout.
+     * @param graph Graph of the layout
+     * @return the index of the circles and segments of the layout
+     */
+    LayoutIndex getIndex(Graph graph) {
+        if (index == null || !index.indexes(graph)) {
+            index = new LayoutIndex(graph, vertices, edges);
+        }
+        return index;
+    }
+
+    /**
+     * Frame getter, for LayoutFrame.
+     * @return the rectangle the layout is drawn in (not copied)
+     */
+    Rectangle getFrame() {
+        return frame;
+    }
+
+    /**
+     * Orbits getter, for LayoutFrame.
+     * @return the orbits of the layout (not copied)
+     */
+    List<Circle> getOrbits() {
+        return orbits;
+    }
+
     public List<Circle> projectedOrbits(Rectangle canvasSize) {
         List<Circle> result = new ArrayList<>(orbits.size());
         float ratio = Math.min(
@@ -388,6 +651,110 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
         return ratio*MIN_RADIUS;
     }
 
+    /**
+     * Writes the layout to the specified binary output, in the format
+     * read by ForestRadialLayout(ByteBuffer).
+     * @param out Output to write in
+     * @throws IOException if the output cannot be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(rootId);
+        out.writeFloat(frame.getCenter().getX());
+        out.writeFloat(frame.getCenter().getY());
+        out.writeFloat(frame.getWidth());
+        out.writeFloat(frame.getHeight());
+        out.writeInt(vertices.size());
+        for (Map.Entry<Integer, Circle> e : vertices.entrySet()) {
+            out.writeInt(e.getKey());
+            writeCircle(out, e.getValue());
+        }
+        int nbEdges = 0;
+        for (Map<Integer, Segment> map : edges.values()) {
+            nbEdges += map.size();
+        }
+        out.writeInt(nbEdges);
+        for (Map.Entry<Integer, Map<Integer, Segment>> e1 : edges.entrySet()) {
+            for (Map.Entry<Integer, Segment> e2 : e1.getValue().entrySet()) {
+                Segment s = e2.getValue();
+                out.writeInt(e1.getKey());
+                out.writeInt(e2.getKey());
+                out.writeFloat(s.getLeftEnd().getX());
+                out.writeFloat(s.getLeftEnd().getY());
+                out.writeFloat(s.getRightEnd().getX());
+                out.writeFloat(s.getRightEnd().getY());
+                out.writeFloat(s.getThickness());
+            }
+        }
+        out.writeInt(orbits.size());
+        for (Circle o : orbits) {
+            writeCircle(out, o);
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Writes the center and the radius of the specified circle.
+     */
+    private static void writeCircle(DataOutput out, Circle c) throws IOException {
+        out.writeFloat(c.getCenter().getX());
+        out.writeFloat(c.getCenter().getY());
+        out.writeFloat(c.getRadius());
+    }
+
+    /**
+     * Private auxiliary method.
+     * Reads a circle written by writeCircle.
+     */
+    private static Circle readCircle(ByteBuffer in) {
+        return new Circle(new Point(in.getFloat(), in.getFloat()), in.getFloat());
+    }
+
+    /**
+     * Reads a layout written by writeTo(DataOutput) from the specified
+     * buffer.
+     * @param in Buffer to read from, positioned at the start of the layout
+     * @throws java.nio.BufferUnderflowException if the buffer is too short
+     * @throws IllegalArgumentException if a number of items is invalid
+     */
+    ForestRadialLayout(ByteBuffer in) throws IllegalArgumentException {
+        rootId = in.getInt();
+        frame = new Rectangle(new Point(in.getFloat(), in.getFloat()),
+                in.getFloat(), in.getFloat());
+        int nbVertices = GraphCache.readCount(in, 16);
+        vertices = new HashMap<>(nbVertices);
+        for (int i = 0; i < nbVertices; i++) {
+            vertices.put(in.getInt(), readCircle(in));
+        }
+        int nbEdges = GraphCache.readCount(in, 28);
+        edges = new HashMap<>();
+        for (int i = 0; i < nbEdges; i++) {
+            int id1 = in.getInt();
+            int id2 = in.getInt();
+            Point leftEnd = new Point(in.getFloat(), in.getFloat());
+            Point rightEnd = new Point(in.getFloat(), in.getFloat());
+            Map<Integer, Segment> map;
+            if ((map = edges.get(id1)) == null) {
+                map = new HashMap<>();
+                edges.put(id1, map);
+            }
+            map.put(id2, new Segment(leftEnd, rightEnd, in.getFloat()));
+        }
+        int nbOrbits = GraphCache.readCount(in, 12);
+        orbits = new ArrayList<>(nbOrbits);
+        for (int i = 0; i < nbOrbits; i++) {
+            orbits.add(readCircle(in));
+        }
+        polarRadius = null;
+        polarAngle = null;
+        vertexRadius = null;
+        poleX = 0f;
+        poleY = 0f;
+        xs = new float[0];
+        ys = new float[0];
+        polar = new PolarProjection();
+        index = null;
+    }
+
     public int describeContents() {
         return 0;
     }
@@ -453,5 +820,14 @@ public class ForestRadialLayout implements RadialLayout, Parcelable {
         for (int i = 0; i < nbOrbits; i++) {
             orbits.add((Circle)in.readParcelable(Circle.class.getClassLoader()));
         }
+        polarRadius = null;
+        polarAngle = null;
+        vertexRadius = null;
+        poleX = 0f;
+        poleY = 0f;
+        xs = new float[0];
+        ys = new float[0];
+        polar = new PolarProjection();
+        index = null;
     }
 }
@@ -3,11 +3,11 @@ package fr.pyvain.websight.websight.SweetGraphs;
 import android.os.Parcel;
 import android.os.Parcelable;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -19,6 +19,10 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
+import fr.pyvain.websight.websight.GraphCore.GraphParser;
+import fr.pyvain.websight.websight.GraphCore.URLDictionary;
+
 /**
  * <p>This class represents a general simple undirected graph. Such a graph
  * can be built from a json encoded graph received from the server.</p>
@@ -60,6 +64,16 @@ public class Graph implements Parcelable {
      */
     private int maxEdgeSize;
 
+    /**
+     * Dictionary of the urls of the graph.
+     */
+    private URLDictionary dictionary;
+
+    /**
+     * Adjacency of the graph, in compressed sparse row format.
+     */
+    private Adjacency<Vertex, Edge> adjacency;
+
     /**
      * Initializes a new empty input graph.
      */
@@ -70,6 +84,8 @@ public class Graph implements Parcelable {
         maxVertexSize = 0;
         minEdgeSize = 0;
         maxEdgeSize = 0;
+        dictionary = new URLDictionary();
+        adjacency = new Adjacency<>(new ArrayList<Vertex>(), edges);
     }
 
     public static String niceGraph() {
@@ -130,34 +146,66 @@ public class Graph implements Parcelable {
      * Initializes a new graph from a json encoded graph received
      * from the server.
      *
-     * @see Graph#parseVertices
-     * @see Graph#parseEdges
-     * @param graph  A graph encoded with the following JSON format
-     *               {
-     *                "urls": ["url1", ..., "urlM"],
-     *                "vertices": **JSON spec of the vertices, see parseVertices**,
-     *                "edges": **JSON spec of the edges, see parseEdges**,
-     *               }
-     *
+     * @see GraphParser
+     * @param graph  A graph encoded with the JSON format described in
+     *               GraphParser
      * @throws IllegalArgumentException if graph is not valid
      */
     public Graph(String graph) throws IllegalArgumentException {
         this();
-        System.out.println("GRAPH\n" + graph);
         try {
-            JSONObject root = new JSONObject(graph);
-            JSONArray urls = root.getJSONArray("urls");
-            JSONArray vertices = root.getJSONArray("vertices");
-            JSONArray edges = root.getJSONArray("edges");
-            List<Vertex> vList = parseVertices(vertices, urls);
-            List<Edge> eList = parseEdges(edges, urls, vList);
-            init(vList, eList);
-        } catch (JSONException e) {
+            parse(new StringReader(graph));
+        } catch (IOException e) {
+            // Never thrown by a StringReader
             throw new IllegalArgumentException(
                     "Invalid JSON graph : " + e.getMessage());
         }
     }
 
+    /**
+     * Initializes a new graph from a json encoded graph received
+     * from the server, read directly from the specified stream.
+     * The stream is not closed.
+     *
+     * @see GraphParser
+     * @param graph  Stream of a graph encoded with the JSON format
+     *               described in GraphParser
+     * @throws IOException if the stream could not be read
+     * @throws IllegalArgumentException if graph is not valid
+     */
+    public Graph(Reader graph) throws IOException, IllegalArgumentException {
+        this();
+        parse(graph);
+    }
+
+    /**
+     * Private auxiliary initialization method.
+     * Parses the specified json encoded graph, and fills edges and
+     * vertices accordingly.
+     *
+     * @param graph  Stream of a json encoded graph
+     * @throws IOException if the stream could not be read
+     * @throws IllegalArgumentException if graph is not valid
+     */
+    private void parse(Reader graph) throws IOException, IllegalArgumentException {
+        GraphParser parser = new GraphParser(graph);
+        parser.parse();
+        URLDictionary urls = parser.getDictionary();
+        List<Vertex> vList = new ArrayList<>(parser.getNbVertices());
+        for (int id = 0; id < parser.getNbVertices(); id++) {
+            Vertex v = new Vertex(id, parser.getKeyword(id));
+            v.getData().addURLIds(urls, parser.getVertexURLIds(id));
+            vList.add(v);
+        }
+        List<Edge> eList = new ArrayList<>(parser.getNbEdges());
+        for (int i = 0; i < parser.getNbEdges(); i++) {
+            Edge e = new Edge(vList.get(parser.getSource(i)), vList.get(parser.getDestination(i)));
+            e.getData().addURLIds(urls, parser.getEdgeURLIds(i));
+            eList.add(e);
+        }
+        init(vList, eList);
+    }
+
     /**
      * Private auxiliary initialization method.
      * Fills edges and vertices, merging vertices which have the same ends and
@@ -187,9 +235,10 @@ public class Graph implements Parcelable {
         // Fills edges
         minEdgeSize = Integer.MAX_VALUE;
         maxEdgeSize = 0;
+        shareDictionary(vertices, edges);
         HashMap<Edge, Edge> edgeFinder = new HashMap<>();
         for (Edge newEdge : edges) {
-            Set<String> urls = newEdge.getData().getURLs();
+            DataSet urls = newEdge.getData();
             Edge edge = edgeFinder.get(newEdge);
             // Adds the new edge to the edge list.
             if (edge == null) {
@@ -200,7 +249,7 @@ public class Graph implements Parcelable {
             } else {
                 edge.getData().addURLs(urls);
             }
-            int eSize = edge.getData().getURLs().size();
+            int eSize = edge.getData().getNbURLs();
             minEdgeSize = Math.min(minEdgeSize, eSize);
             maxEdgeSize = Math.max(maxEdgeSize, eSize);
             // Adds the edge's URLS to both ends, and sets them as neighbours
@@ -213,103 +262,52 @@ public class Graph implements Parcelable {
         minVertexSize = Integer.MAX_VALUE;
         maxVertexSize = 0;
         for (Vertex v : this.vertices) {
-            int vSize = v.getData().getURLs().size();
+            int vSize = v.getData().getNbURLs();
             minVertexSize = Math.min(minVertexSize, vSize);
             maxVertexSize = Math.max(maxVertexSize, vSize);
         }
+        adjacency = new Adjacency<>(vertices, this.edges);
     }
 
     /**
      * Private auxiliary initialization method.
-     * Returns a set of URLs built from the specified JSONArrays
+     * Moves the data sets of the specified vertices and edges to a single
+     * url dictionary, so that their urls are stored once and their unions
+     * are merges of url ids.
      *
-     * @param urls    A JSONArray containing all the URLs
-     *                ["url1", "url2", ..., "urlM"],
-     * @param urlIds  A JSONArray containing URL ids giving a set of URL
-     *                ids for each vertex [url_id_1, ..., _url_id_Z]
-     * @throws JSONException if the input is invalid
+     * @param vertices Vertices of the graph
+     * @param edges    Edges of the graph
      */
-    private Set<String> getURLsFromIds(JSONArray urlIds, JSONArray urls)
-            throws JSONException {
-        Set<String> urlsSet = new HashSet<>();
-        for (int j = 0; j < urlIds.length(); j++) {
-            urlsSet.add(urls.getString(urlIds.getInt(j)));
+    private void shareDictionary(Collection<Vertex> vertices, Collection<Edge> edges) {
+        dictionary = null;
+        for (Vertex v : vertices) {
+            if (dictionary == null) {
+                dictionary = v.getData().getDictionary();
+            }
         }
-        return urlsSet;
-    }
-
-    /**
-     * Private initialization auxiliary method.
-     * Parses the specified JSONArrays, builds a Vertex list accordingly
-     * and returns it.
-     *
-     * @param urls     JSONArray describing all the urls
-     *                      ["url1", "url2", ..., "urlM"],
-     * @param vertices JSON specification of vertices
-     *                 [
-     *                  {"kw":"keyword1",
-     *                   "url_ids":[v0_url_id_0, ..., v0_url_id_X] },
-     *                  ...,
-     *                  {"kw":"keywordN",
-     *                   "url_ids":[vN_url_id_0, ..., vN_url_id_Y]}
-     *                 ]
-     * @throws JSONException if the input is invalid
-     * @return List of vertices as specified by the input JSONs
-     */
-    private List<Vertex> parseVertices(JSONArray vertices, JSONArray urls)
-            throws JSONException {
-        List<Vertex> result = new ArrayList<>(vertices.length());
-        for (int id = 0; id < vertices.length(); id++) {
-            JSONObject vertex = vertices.getJSONObject(id);
-            Vertex v = new Vertex(id, vertex.getString("kw"));
-            JSONArray urlIds = vertex.getJSONArray("url_ids");
-            Set<String> urlsSet = getURLsFromIds(urlIds, urls);
-            v.getData().addURLs(urlsSet);
-            result.add(v);
+        for (Edge e : edges) {
+            if (dictionary == null) {
+                dictionary = e.getData().getDictionary();
+            }
+        }
+        if (dictionary == null) {
+            dictionary = new URLDictionary();
+        }
+        for (Vertex v : vertices) {
+            v.getData().setDictionary(dictionary);
+        }
+        for (Edge e : edges) {
+            e.getData().setDictionary(dictionary);
         }
-        return result;
     }
 
     /**
-     * Private initialization auxiliary method.
-     * Parses the specified JSONArrays, builds an Edge list accordingly
-     * and returns it.
-     * The vertices of the graph must be initialized before calling
-     * this method.
-     *
-     * @param urls   A JSONArray containing all the URLs
-     *               ["url1", "url2", ..., "urlM"],
-     * @param edges  A JSONArray describing the edges, of format
-     *               [
-     *                 {
-     *                   "src": e0_vertex_id_0,
-     *                   "dst": e0_vertex_id_1,
-     *                   "url_ids":[e0_url_id_0, ..., e0_url_id_Z]
-     *                 },
-     *                 ...,
-     *                 {
-     *                   "src": eP_vertex_id_0,
-     *                   "dst": eP_vertex_id_1,
-     *                   "url_ids":[eP_url_id_0, ..., eP_url_id_W]
-     *                 }
-     *               ]
-     * @throws JSONException if the input is invalid
+     * Url dictionary getter.
+     * @return the dictionary of the urls of the graph, shared by the data
+     * sets of its vertices and edges
      */
-    private List<Edge> parseEdges(JSONArray edges, JSONArray urls,
-                                  List<Vertex> vertices) throws JSONException
-    {
-        List<Edge> result = new ArrayList<>(edges.length());
-        for (int i = 0; i < edges.length(); i++) {
-            JSONObject edge = edges.getJSONObject(i);
-            Vertex end1 = vertices.get(edge.getInt("src"));
-            Vertex end2 = vertices.get(edge.getInt("dst"));
-            Edge e = new Edge(end1, end2);
-            JSONArray urlIds = edge.getJSONArray("url_ids");
-            Set<String> urlsSet = getURLsFromIds(urlIds, urls);
-            e.getData().addURLs(urlsSet);
-            result.add(e);
-        }
-        return result;
+    public URLDictionary getURLDictionary() {
+        return dictionary;
     }
 
     /**
@@ -336,6 +334,14 @@ public class Graph implements Parcelable {
         return Collections.unmodifiableSet(edges);
     }
 
+    /**
+     * Adjacency getter.
+     * @return the adjacency of the graph, in compressed sparse row format
+     */
+    public Adjacency<Vertex, Edge> getAdjacency() {
+        return adjacency;
+    }
+
     public int getMinEdgeSize() {
         return minEdgeSize;
     }
@@ -448,5 +454,7 @@ public class Graph implements Parcelable {
             e.getEnd1().addNeighbour(e.getEnd2(), e);
             e.getEnd2().addNeighbour(e.getEnd1(), e);
         }
+        shareDictionary(vertices, edges);
+        adjacency = new Adjacency<>(new ArrayList<>(vertices), edges);
     }
 }
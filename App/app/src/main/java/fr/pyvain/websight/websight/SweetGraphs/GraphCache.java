@@ -0,0 +1,342 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
+import fr.pyvain.websight.websight.GraphCore.URLDictionary;
+
+/**
+ * <p>This class represents a graph along with its computed layout, and
+ * saves them to a compact binary file, which is loaded back through a
+ * memory mapped file, so that the last graph received can be drawn at
+ * start-up without parsing its JSON encoding nor computing its layout
+ * again.</p>
+ *
+ * <p>The file is made of, all numbers being big-endian :<ul>
+ *     <li>a header : the magic number MAGIC and the format VERSION</li>
+ *     <li>the url dictionary : the number of urls, then each url as its
+ *     number of UTF-8 bytes followed by the bytes</li>
+ *     <li>the vertex table : the number of vertices, then for each vertex
+ *     by increasing id, its label encoded as an url, its number of urls
+ *     and its url ids</li>
+ *     <li>the edges in compressed sparse row format, keyed by their first
+ *     end : the number of edges, the offset of the edges of each vertex
+ *     followed by the number of edges, then for each edge, its second
+ *     end, its number of urls and its url ids</li>
+ *     <li>the layout, as written by ForestRadialLayout</li>
+ * </ul></p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class GraphCache {
+
+    /**
+     * First int of a graph cache file.
+     */
+    private static final int MAGIC = 0x57534743;
+
+    /**
+     * Version of the format, to increment at each change of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Encoding of the strings.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Cached graph.
+     */
+    private final Graph graph;
+
+    /**
+     * Layout of the cached graph.
+     */
+    private final ForestRadialLayout layout;
+
+    /**
+     * Initializes a new graph cache containing the specified graph and
+     * layout.
+     *
+     * @param graph  Graph to cache
+     * @param layout Layout of the graph
+     */
+    public GraphCache(Graph graph, ForestRadialLayout layout) {
+        this.graph = graph;
+        this.layout = layout;
+    }
+
+    /**
+     * Graph getter.
+     * @return the cached graph
+     */
+    public Graph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Layout getter.
+     * @return the layout of the cached graph
+     */
+    public ForestRadialLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Writes the graph and its layout to the specified file, replacing its
+     * previous content.
+     *
+     * @param file File to write in
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            // Url dictionary
+            URLDictionary dictionary = writtenDictionary();
+            out.writeInt(dictionary.size());
+            for (int id = 0; id < dictionary.size(); id++) {
+                writeString(out, dictionary.getURL(id));
+            }
+            // Vertex table
+            Adjacency<Vertex, Edge> adjacency = graph.getAdjacency();
+            int nbVertices = adjacency.getNbVertices();
+            out.writeInt(nbVertices);
+            for (int id = 0; id < nbVertices; id++) {
+                Vertex v = adjacency.getVertex(id);
+                writeString(out, v.getLabel());
+                writeIds(out, v.getData(), graph.getURLDictionary(), dictionary);
+            }
+            // Edges, grouped by first end
+            List<List<Edge>> rows = new ArrayList<>(nbVertices);
+            for (int id = 0; id < nbVertices; id++) {
+                rows.add(new ArrayList<Edge>());
+            }
+            for (Edge e : graph.getEdges()) {
+                rows.get(e.getEnd1().getId()).add(e);
+            }
+            out.writeInt(graph.getEdges().size());
+            int offset = 0;
+            for (List<Edge> row : rows) {
+                out.writeInt(offset);
+                offset += row.size();
+            }
+            out.writeInt(offset);
+            for (List<Edge> row : rows) {
+                for (Edge e : row) {
+                    out.writeInt(e.getEnd2().getId());
+                    writeIds(out, e.getData(), graph.getURLDictionary(), dictionary);
+                }
+            }
+            layout.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a graph and its layout from the specified file, written by
+     * write(File), mapping the file in memory.
+     *
+     * @param file File to read from
+     * @return the graph cache read
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a valid graph
+     * cache of the current version
+     */
+    public static GraphCache read(File file) throws IOException, IllegalArgumentException {
+        FileInputStream stream = new FileInputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(in);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated graph cache");
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Reads a graph and its layout from the specified buffer.
+     */
+    private static GraphCache read(ByteBuffer in) throws IllegalArgumentException {
+        if (in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a graph cache");
+        } else if (in.getInt() != VERSION) {
+            throw new IllegalArgumentException("Unsupported graph cache version");
+        }
+        // Url dictionary
+        URLDictionary dictionary = new URLDictionary();
+        int nbUrls = readCount(in, 4);
+        for (int id = 0; id < nbUrls; id++) {
+            dictionary.getId(readString(in));
+        }
+        // Vertex table
+        int nbVertices = readCount(in, 8);
+        List<Vertex> vertices = new ArrayList<>(nbVertices);
+        for (int id = 0; id < nbVertices; id++) {
+            Vertex v = new Vertex(id, readString(in));
+            v.getData().addURLIds(dictionary, readIds(in, nbUrls));
+            vertices.add(v);
+        }
+        // Edges
+        int nbEdges = readCount(in, 8);
+        int[] offsets = new int[nbVertices+1];
+        for (int id = 0; id <= nbVertices; id++) {
+            offsets[id] = in.getInt();
+            if (id > 0 && offsets[id] < offsets[id-1]) {
+                throw new IllegalArgumentException("Invalid graph cache edges");
+            }
+        }
+        if (offsets[0] != 0 || offsets[nbVertices] != nbEdges) {
+            throw new IllegalArgumentException("Invalid graph cache edges");
+        }
+        List<Edge> edges = new ArrayList<>(nbEdges);
+        for (int id1 = 0; id1 < nbVertices; id1++) {
+            for (int i = offsets[id1]; i < offsets[id1+1]; i++) {
+                int id2 = in.getInt();
+                if (id2 < 0 || id2 >= nbVertices) {
+                    throw new IllegalArgumentException("Invalid graph cache edges");
+                }
+                Edge e = new Edge(vertices.get(id1), vertices.get(id2));
+                e.getData().addURLIds(dictionary, readIds(in, nbUrls));
+                edges.add(e);
+            }
+        }
+        Graph graph = new Graph(vertices, edges);
+        return new GraphCache(graph, new ForestRadialLayout(in));
+    }
+
+    /**
+     * Private auxiliary method.
+     * Returns the dictionary to write : the urls of the dictionary of the
+     * graph with the same ids, followed by the urls of the data sets built
+     * outside of it, if any. The data sets of the graph are left as is.
+     */
+    private URLDictionary writtenDictionary() {
+        URLDictionary shared = graph.getURLDictionary();
+        URLDictionary dictionary = new URLDictionary();
+        for (int id = 0; id < shared.size(); id++) {
+            dictionary.getId(shared.getURL(id));
+        }
+        List<DataSet> data = new ArrayList<>();
+        for (Vertex v : graph.getVertices()) {
+            data.add(v.getData());
+        }
+        for (Edge e : graph.getEdges()) {
+            data.add(e.getData());
+        }
+        for (DataSet d : data) {
+            URLDictionary own = d.getDictionary();
+            if (own != null && own != shared) {
+                for (int id : d.getURLIds()) {
+                    dictionary.getId(own.getURL(id));
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Writes the ids in the specified written dictionary of the urls of
+     * the specified data set, remapping them if the data set does not use
+     * the shared dictionary of the graph.
+     */
+    private static void writeIds(DataOutputStream out, DataSet data, URLDictionary shared,
+                                 URLDictionary dictionary) throws IOException {
+        int[] ids = data.getURLIds();
+        URLDictionary own = data.getDictionary();
+        if (own != null && own != shared) {
+            int[] remapped = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                remapped[i] = dictionary.findId(own.getURL(ids[i]));
+            }
+            Arrays.sort(remapped);
+            ids = remapped;
+        }
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    /**
+     * Reads a number of items from the specified buffer, checking that
+     * so many items fit in the rest of the buffer, so that a corrupt file
+     * allocates neither a negative nor a huge array.
+     * @param in       Buffer to read from
+     * @param itemSize Minimal size of an item, in bytes
+     * @return the number of items read
+     * @throws IllegalArgumentException if the number is negative or too big
+     */
+    static int readCount(ByteBuffer in, int itemSize) throws IllegalArgumentException {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / itemSize) {
+            throw new IllegalArgumentException("Invalid graph cache count");
+        }
+        return count;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Reads sorted url ids, which must be lower than the specified number
+     * of urls.
+     */
+    private static int[] readIds(ByteBuffer in, int nbUrls) throws IllegalArgumentException {
+        int[] ids = new int[readCount(in, 4)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.getInt();
+            if (ids[i] < 0 || ids[i] >= nbUrls || (i > 0 && ids[i] <= ids[i-1])) {
+                throw new IllegalArgumentException("Invalid graph cache url ids");
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Writes the specified string as its number of UTF-8 bytes followed
+     * by the bytes.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Private auxiliary method.
+     * Reads a string written by writeString.
+     */
+    private static String readString(ByteBuffer in) throws IllegalArgumentException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Invalid graph cache string");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -1,17 +1,25 @@
 package fr.pyvain.websight.websight.SweetGraphs;
 
 import android.animation.TimeInterpolator;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.os.AsyncTask;
 import android.os.SystemClock;
 import android.support.v4.view.animation.FastOutSlowInInterpolator;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
+ * <p>The frame is drawn on the thread of a RenderScheduler, while the
+ * touches are handled on the UI thread. So that a touch never reads the
+ * arrays of the frame while a drawing rewrites them, the public methods
+ * are synchronized : a touch waits at most for the end of the frame being
+ * drawn.</p>
+ *
  * <p>
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
@@ -29,19 +37,148 @@ public class GraphEngine {
     private ForestRadialLayout layout1;
 
     /**
-     * End layout when transitioning.
+     * End layout when transitioning, null until layoutComputingTask
+     * publishes it.
      */
     private ForestRadialLayout layout2;
 
     /**
-     * Current drawing of the graph's vertices
+     * Time when the transition to layout2 starts, in ms since boot.
      */
-    private Map<Integer, Circle> vDrawing;
+    private long transitionSince;
 
     /**
-     * Current drawing of the graph's edges
+     * Number of layouts requested so far. A layoutComputingTask only
+     * publishes its layout if no other one was requested since.
      */
-    private Map<Integer, Map<Integer, Segment>> eDrawing;
+    private int nbRequestedLayouts;
+
+    /**
+     * Current frame, i.e. the projection of the layout drawn, reused from
+     * one frame to the next so that drawing allocates nothing
+     */
+    private final LayoutFrame frame;
+
+    /**
+     * Short labels of the vertices, per id
+     */
+    private String[] idLabels;
+
+    /**
+     * Bounds of the last text measured
+     */
+    private final Rect textBounds;
+
+    /**
+     * Text size at which the labels are measured. As textPaint scales its
+     * text linearly, the size of a label at any other text size is
+     * deduced from its size at this one.
+     */
+    private static final float REFERENCE_TEXT_SIZE = 30;
+
+    /**
+     * Text whose width is the diameter of the smallest vertices.
+     */
+    private static final String SIZING_TEXT = "00";
+
+    /**
+     * Width of SIZING_TEXT at REFERENCE_TEXT_SIZE, 0 until measured
+     */
+    private float sizingTextWidth;
+
+    /**
+     * Sizes of the labels at REFERENCE_TEXT_SIZE, per id, NaN until
+     * measured
+     */
+    private float[] labelWidths;
+    private float[] labelHeights;
+
+    /**
+     * Graph and kind of labels whose labels were measured
+     */
+    private Graph measuredGraph;
+    private boolean measuredFullLabels;
+
+    /**
+     * Level of detail of the drawing
+     */
+    private final LevelOfDetail detail;
+
+    /**
+     * Offscreen layer holding the background, the orbits, the vertices
+     * and the edges, drawn again only when they change. It is larger than
+     * the canvas by LAYER_MARGIN of its size on each side, so that it can
+     * be moved along with the camera. Null until the first drawing.
+     */
+    private Bitmap layer;
+    private Canvas layerCanvas;
+
+    /**
+     * Margin of the layer on each side, as a fraction of the size of the
+     * canvas.
+     */
+    private static final float LAYER_MARGIN = 0.125f;
+
+    /**
+     * Margins of the layer, in pixels
+     */
+    private int layerMarginX;
+    private int layerMarginY;
+
+    /**
+     * Part of the projection space held by the layer, i.e. the visible
+     * part widened by the margins
+     */
+    private final Rectangle layerArea;
+
+    /**
+     * True if and only if the layer holds the drawing of the current
+     * layout, at the camera below
+     */
+    private boolean layerValid;
+
+    /**
+     * True if and only if the layer must be drawn again, e.g. because the
+     * graph or the labels changed. Set from any thread.
+     */
+    private volatile boolean layerOutdated;
+
+    /**
+     * Camera at which the layer was drawn : center of the projection
+     * space and zoom
+     */
+    private float layerX;
+    private float layerY;
+    private float layerZoom;
+
+    /**
+     * Camera of the previous frame
+     */
+    private float lastX;
+    private float lastY;
+    private float lastZoom;
+
+    /**
+     * True if and only if the last frame was not drawn from a layer drawn
+     * at the current camera, so that the layer must be drawn again once
+     * the camera stops
+     */
+    private boolean layerPending;
+
+    /**
+     * Transformation of the layer to the current camera
+     */
+    private final Matrix layerMatrix;
+
+    /**
+     * Paint used to draw the layer when it is transformed
+     */
+    private final Paint layerPaint;
+
+    /**
+     * Color of the background
+     */
+    private int backgroundColor;
 
     /**
      * Space on which the layout must be projected
@@ -74,6 +211,11 @@ public class GraphEngine {
 
     private boolean firstDraw;
 
+    /**
+     * True if and only if something changed since the last drawing
+     */
+    private volatile boolean dirty;
+
     /**
      * Currently selected Vertex. Null if no Vertex is selected.
      */
@@ -202,14 +344,35 @@ public class GraphEngine {
     public GraphEngine() {
         graph = new Graph();
         layout1 = new ForestRadialLayout();
-        layout2 = new ForestRadialLayout();
-        vDrawing = new HashMap<>();
-        eDrawing = new HashMap<>();
+        layout2 = null;
+        transitionSince = 0;
+        nbRequestedLayouts = 0;
+        frame = new LayoutFrame();
+        idLabels = new String[0];
+        textBounds = new Rect();
+        sizingTextWidth = 0;
+        labelWidths = new float[0];
+        labelHeights = new float[0];
+        measuredGraph = null;
+        measuredFullLabels = true;
+        detail = new LevelOfDetail();
+        layer = null;
+        layerCanvas = null;
+        layerValid = false;
+        layerOutdated = true;
+        layerMarginX = 0;
+        layerMarginY = 0;
+        layerArea = new Rectangle(new Point(0, 0), 0, 0);
+        layerPending = false;
+        layerMatrix = new Matrix();
+        layerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        backgroundColor = 0xFFFFFFFF;
         projection = new Rectangle(new Point(0, 0), 0, 0);
         visible = new Rectangle(new Point(0,0), 0, 0);
         zoom = MIN_ZOOM;
         fullLabels = true;
         firstDraw = false;
+        dirty = true;
         selectedVertex = null;
         selectedSince = 0;
         recentering = false;
@@ -227,28 +390,90 @@ public class GraphEngine {
      * emphasis on its first vertex.
      * @param g Graph to display
      */
-    public void setCurrent(Graph g) {
+    public synchronized void setCurrent(Graph g) {
         graph = g;
         layout1.changeRoot(g, g.getVertices().first());
+        cancelNext();
         firstDraw = true;
+        layerOutdated = true;
+        dirty = true;
+    }
+
+    /**
+     * Sets the graph engine to display the specified input graph, with
+     * the specified already computed layout.
+     * @param g      Graph to display
+     * @param layout Layout of the graph
+     */
+    public synchronized void setCurrent(Graph g, ForestRadialLayout layout) {
+        graph = g;
+        layout1 = layout;
+        cancelNext();
+        firstDraw = true;
+        layerOutdated = true;
+        dirty = true;
     }
 
     /**
      * Switch from full labels to only id, or the opposite.
      */
-    public void changeLabels() {
+    public synchronized void changeLabels() {
         fullLabels = !fullLabels;
+        layerOutdated = true;
+        dirty = true;
+    }
+
+    /**
+     * Marks the drawing as out of date, e.g. when the canvas is resized.
+     */
+    public synchronized void invalidate() {
+        layerOutdated = true;
+        dirty = true;
+    }
+
+    /**
+     * Sets the color of the background, drawn before the graph.
+     * @param color Color of the background, as ARGB
+     */
+    public synchronized void setBackgroundColor(int color) {
+        backgroundColor = color;
+        invalidate();
+    }
+
+    /**
+     * Frees the offscreen layer, e.g. when the drawing is paused, once the
+     * drawing in progress if any is over. The layer is drawn again at the
+     * next drawing.
+     */
+    public synchronized void releaseLayer() {
+        if (layer != null) {
+            layer.recycle();
+            layer = null;
+            layerCanvas = null;
+        }
+        layerValid = false;
+    }
+
+    /**
+     * Tells whether the graph must be drawn again : something changed
+     * since the last drawing, an animation is ongoing, or the last frame
+     * was only an approximation.
+     * @return true if and only if the graph must be drawn again
+     */
+    public synchronized boolean needsRedraw() {
+        return dirty || recentering || selectedVertex != null || layerPending;
     }
 
     /**
      * Recenter the drawing of the layout.
      */
-    public void recenter() {
+    public synchronized void recenter() {
         if (!recentering) {
             recentering = true;
             recenteringFrom = projection.getCenter();
             recenteringSince = SystemClock.elapsedRealtime();
             recenteringInitialZoom = zoom;
+            dirty = true;
         }
     }
 
@@ -257,7 +482,7 @@ public class GraphEngine {
      * keeping it in [1, MAX_SCALE].
      * @param zoomFactor The zoom factor to multiply the zoom scale by
      */
-    public void zoom(float zoomFactor) {
+    public synchronized void zoom(float zoomFactor) {
         if (!recentering) {
             float newZoom = zoom * zoomFactor;
             if (MIN_ZOOM <= newZoom && newZoom <= MAX_ZOOM) {
@@ -267,6 +492,7 @@ public class GraphEngine {
                 c.setX(visible.getCenter().getX() + zoomFactor * dx);
                 c.setY(visible.getCenter().getY() + zoomFactor * dy);
                 zoom = newZoom;
+                dirty = true;
             }
         }
     }
@@ -276,7 +502,7 @@ public class GraphEngine {
      * @param xShift The shift to perform along x axis
      * @param yShift The shift to perform along y axis
      */
-    public void shift(float xShift, float yShift) {
+    public synchronized void shift(float xShift, float yShift) {
         if (!recentering) {
             Point c = projection.getCenter();
             c.setX(Math.min(Math.max(
@@ -289,6 +515,7 @@ public class GraphEngine {
                     projection.getCenter().getY() - projection.getHeight()),
                     projection.getCenter().getY() + projection.getHeight())
             );
+            dirty = true;
         }
     }
 
@@ -296,7 +523,7 @@ public class GraphEngine {
      * Returns the selected vertex.
      * @return The selected vertex.
      */
-    public Vertex selectedVertex() {
+    public synchronized Vertex selectedVertex() {
         return selectedVertex;
     }
 
@@ -305,11 +532,14 @@ public class GraphEngine {
      * a forest whose main root is this Vertex.
      * @param v Vertex to select
      */
-    public void select(Vertex v) {
+    public synchronized void select(Vertex v) {
         selectedVertex = v;
         selectedSince = SystemClock.elapsedRealtime();
+        layout2 = null;
+        nbRequestedLayouts++;
+        dirty = true;
         if (layout1.getRootId() != v.getId()) {
-            layoutComputingTask = new layoutComputingTask();
+            layoutComputingTask = new layoutComputingTask(nbRequestedLayouts);
             layoutComputingTask.execute(this);
         }
     }
@@ -317,11 +547,23 @@ public class GraphEngine {
     /**
      * Deselects the selected Vertex.
      */
-    public void deselect() {
+    public synchronized void deselect() {
         if (SystemClock.elapsedRealtime() - selectedSince < SELECTION_DURATION) {
-            selectedVertex = null;
+            cancelNext();
+            dirty = true;
         }
     }
+
+    /**
+     * Private auxiliary method.
+     * Deselects the selected vertex and drops the next layout, including
+     * the one being computed.
+     */
+    private void cancelNext() {
+        selectedVertex = null;
+        layout2 = null;
+        nbRequestedLayouts++;
+    }
     
     /**
      * If its exists, returns the vertex drawn at the specified point.
@@ -329,14 +571,13 @@ public class GraphEngine {
      * @param touchPoint Point at which to look for a Vertex
      * @return The vertex drawn at the specified point, or null.
      */
-    public Vertex vertexAt(Point touchPoint) {
-        for (Vertex v : graph.getVertices()) {
-            Circle c = vDrawing.get(v.getId());
-            if (c != null) {
-                float d = Point.distanceBetween(c.getCenter(), touchPoint);
-                if (d <= c.getRadius() + TOUCH_RADIUS) {
-                    return v;
-                }
+    public synchronized Vertex vertexAt(Point touchPoint) {
+        for (int k = 0; k < frame.getNbVisibleVertices(); k++) {
+            int id = frame.getVisibleVertex(k);
+            float d = Point.distanceBetween(frame.getCenterX(id), frame.getCenterY(id),
+                    touchPoint.getX(), touchPoint.getY());
+            if (d <= frame.getRadius(id) + TOUCH_RADIUS) {
+                return graph.getAdjacency().getVertex(id);
             }
         }
         return null;
@@ -348,16 +589,13 @@ public class GraphEngine {
      * @param touchPoint Point at which to look for an Edge
      * @return The edge drawn at the specified point, or null.
      */
-    public Edge edgeAt(Point touchPoint) {
-        for (Edge e : graph.getEdges()) {
-            Map<Integer, Segment> m = eDrawing.get(e.getEnd1().getId());
-            if (m != null) {
-                Segment s = m.get(e.getEnd2().getId());
-                if (s != null) {
-                    if (s.intersectsWith(new Circle(touchPoint, TOUCH_RADIUS))) {
-                        return e;
-                    }
-                }
+    public synchronized Edge edgeAt(Point touchPoint) {
+        for (int k = 0; k < frame.getNbVisibleEdges(); k++) {
+            int i = frame.getVisibleEdge(k);
+            if (Segment.intersectsWithCircle(
+                    frame.getX1(i), frame.getY1(i), frame.getX2(i), frame.getY2(i),
+                    touchPoint.getX(), touchPoint.getY(), TOUCH_RADIUS)) {
+                return frame.getEdge(i);
             }
         }
         return null;
@@ -367,14 +605,22 @@ public class GraphEngine {
      * Draws the current layout in the specified canvas
      * @param canvas Canvas to draw in
      */
-    public void draw(Canvas canvas) {
+    public synchronized void draw(Canvas canvas) {
+        // The changes made while drawing are drawn next time
+        dirty = false;
+
         // Updates the projection space rectangle, and the visible space rectangle
         // according to the canvas' current size, the current zoom and the current shift
         visible.setWidth(canvas.getWidth());
         visible.setHeight(canvas.getHeight());
         visible.getCenter().setX(canvas.getWidth()/2);
         visible.getCenter().setY(canvas.getHeight()/2);
-
+        layerMarginX = (int) (LAYER_MARGIN*canvas.getWidth());
+        layerMarginY = (int) (LAYER_MARGIN*canvas.getHeight());
+        layerArea.setWidth(canvas.getWidth() + 2*layerMarginX);
+        layerArea.setHeight(canvas.getHeight() + 2*layerMarginY);
+        layerArea.getCenter().setX(canvas.getWidth()/2);
+        layerArea.getCenter().setY(canvas.getHeight()/2);
 
         if (firstDraw) {
             projection.getCenter().setX(canvas.getWidth() / 2);
@@ -398,126 +644,271 @@ public class GraphEngine {
         projection.setHeight(canvas.getHeight()*zoom);
 
 
-        ForestRadialLayout layout = layoutToDraw();
-
-
+        boolean transition = updateFrame();
 
         // Sets text size
-        setTextSizeToWidth("00", layout.projectedMinRadius(projection));
+        setTextSizeToWidth(frame.getMinRadius());
 
-        drawOrbits(canvas, layout);
-        drawVertices(canvas, layout);
-        drawEdges(canvas, layout);
+        if (layerOutdated) {
+            layerOutdated = false;
+            layerValid = false;
+        }
+        if (transition || recentering) {
+            // Everything moves : the layer would be outdated at once
+            layerValid = false;
+            layerPending = false;
+            drawScene(canvas, visible);
+        } else {
+            drawLayer(canvas);
+        }
+        // Only the selection is drawn live
         drawSelection(canvas);
     }
 
-    private ForestRadialLayout layoutToDraw() {
+    /**
+     * Draws everything but the selection on the specified canvas.
+     * @param canvas Canvas to draw on
+     * @param area   Part of the projection space to draw
+     */
+    private void drawScene(Canvas canvas, Rectangle area) {
+        canvas.drawColor(backgroundColor);
+        drawOrbits(canvas, area);
+        drawVertices(canvas);
+        drawEdges(canvas);
+    }
+
+    /**
+     * Draws the layer on the specified canvas. While the camera moves,
+     * the layer is transformed to the current camera as long as it still
+     * covers the whole canvas, else the scene is drawn straight on the
+     * canvas. In both cases, the layer is drawn again at the current
+     * camera as soon as the camera stops.
+     * @param canvas Canvas to draw on
+     */
+    private void drawLayer(Canvas canvas) {
+        int width = canvas.getWidth() + 2*layerMarginX;
+        int height = canvas.getHeight() + 2*layerMarginY;
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            if (layer != null) {
+                layer.recycle();
+            }
+            // The background is opaque, so no alpha channel is needed
+            layer = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            layerCanvas = new Canvas(layer);
+            layerCanvas.translate(layerMarginX, layerMarginY);
+            layerValid = false;
+        }
+        float x = projection.getCenter().getX();
+        float y = projection.getCenter().getY();
+        boolean moving = x != lastX || y != lastY || zoom != lastZoom;
+        lastX = x;
+        lastY = y;
+        lastZoom = zoom;
+
+        boolean sameCamera = x == layerX && y == layerY && zoom == layerZoom;
+        if (layerValid && !sameCamera && moving) {
+            // Where the layer lands once transformed to the current camera
+            float scale = zoom / layerZoom;
+            float left = x - scale*(layerX + layerMarginX);
+            float top = y - scale*(layerY + layerMarginY);
+            if (left <= 0 && top <= 0 && left + scale*width >= canvas.getWidth() &&
+                    top + scale*height >= canvas.getHeight()) {
+                layerMatrix.setTranslate(-layerX - layerMarginX, -layerY - layerMarginY);
+                layerMatrix.postScale(scale, scale);
+                layerMatrix.postTranslate(x, y);
+                canvas.drawBitmap(layer, layerMatrix, layerPaint);
+                layerPending = true;
+                return;
+            }
+        }
+        if (!layerValid || !sameCamera) {
+            layerValid = false;
+            if (moving) {
+                // The layer would be outdated at the next frame
+                drawScene(canvas, visible);
+                layerPending = true;
+                return;
+            }
+            drawScene(layerCanvas, layerArea);
+            layerX = x;
+            layerY = y;
+            layerZoom = zoom;
+            layerValid = true;
+        }
+        layerPending = false;
+        canvas.drawBitmap(layer, -layerMarginX, -layerMarginY, null);
+    }
+
+    /**
+     * Updates the frame to the layout to draw : the current layout, or an
+     * interpolation between the current layout and the next one during
+     * a transition.
+     * @return true if and only if the frame is an interpolation
+     */
+    private boolean updateFrame() {
         if (selectedVertex != null) {
             long elapsed = SystemClock.elapsedRealtime() - selectedSince;
             if (selectedVertex.getId() == layout1.getRootId()) {
                 if (elapsed > SELECTION_DURATION + ANIMATION_DURATION) {
                     selectedVertex = null;
                 }
-            } else {
-                if (SELECTION_DURATION <= elapsed && elapsed <= SELECTION_DURATION + ANIMATION_DURATION) {
+            } else if (layout2 != null) {
+                // Until the next layout is published, the current one is drawn
+                long transition = SystemClock.elapsedRealtime() - transitionSince;
+                if (0 <= transition && transition <= ANIMATION_DURATION) {
                     if (!recentering) {
                         recenter();
                     }
-                    float step = ((float) (elapsed - SELECTION_DURATION)) / (ANIMATION_DURATION);
+                    float step = ((float) transition) / (ANIMATION_DURATION);
                     step = MOVE_INTERPOLATOR.getInterpolation(step);
-                    return new ForestRadialLayout(graph, layout1, layout2, step);
-                } else if (elapsed > SELECTION_DURATION + ANIMATION_DURATION) {
+                    frame.update(graph, layout1, layout2, step, projection, visible);
+                    return true;
+                } else if (transition > ANIMATION_DURATION) {
                     selectedVertex = null;
-                    ForestRadialLayout tmp = layout1;
                     layout1 = layout2;
-                    layout2 = tmp;
+                    layout2 = null;
+                    layerValid = false;
                 }
             }
         }
-        return layout1;
+        // Only the visible part of the current layout is projected, with
+        // the margins of the layer unless the camera is animated
+        frame.update(graph, layout1, projection, recentering ? visible : layerArea);
+        return false;
     }
 
-    private float getTextWidth(String text) {
-        Rect bounds = new Rect();
-        textPaint.getTextBounds(text, 0, text.length(), bounds);
-        return bounds.width();
+    /**
+     * Measures the specified label at REFERENCE_TEXT_SIZE, unless it was
+     * already measured for the current graph and kind of labels.
+     * @param id    Id of the vertex labelled
+     * @param label Label of the vertex
+     */
+    private void measureLabel(int id, String label) {
+        if (measuredGraph != graph || measuredFullLabels != fullLabels ||
+                labelWidths.length < frame.getNbVertices()) {
+            int n = frame.getNbVertices();
+            if (labelWidths.length < n) {
+                labelWidths = new float[n];
+                labelHeights = new float[n];
+            }
+            Arrays.fill(labelWidths, Float.NaN);
+            Arrays.fill(labelHeights, Float.NaN);
+            measuredGraph = graph;
+            measuredFullLabels = fullLabels;
+        }
+        if (Float.isNaN(labelWidths[id])) {
+            float textSize = textPaint.getTextSize();
+            textPaint.setTextSize(REFERENCE_TEXT_SIZE);
+            textPaint.getTextBounds(label, 0, label.length(), textBounds);
+            textPaint.setTextSize(textSize);
+            labelWidths[id] = textBounds.width();
+            labelHeights[id] = textBounds.height();
+        }
     }
 
-    private float getTextHeight(String text) {
-        Rect bounds = new Rect();
-        textPaint.getTextBounds(text, 0, text.length(), bounds);
-        return bounds.height();
+    /**
+     * Private auxiliary method.
+     * Draws the label of the specified vertex centred on the specified
+     * point.
+     */
+    private void drawLabel(Canvas canvas, Vertex v, float x, float y) {
+        int id = v.getId();
+        String label = labelOf(v);
+        measureLabel(id, label);
+        float scale = textPaint.getTextSize() / REFERENCE_TEXT_SIZE;
+        canvas.drawText(label, x - scale*labelWidths[id]/2,
+                y + scale*labelHeights[id]/2, textPaint);
     }
 
     /**
-     * Sets the text width of paintText such as the specified text is written
+     * Private auxiliary method.
+     * @return the label to draw on the specified vertex
+     */
+    private String labelOf(Vertex v) {
+        if (fullLabels) {
+            return v.getLabel();
+        }
+        int id = v.getId();
+        if (idLabels.length <= id) {
+            idLabels = new String[frame.getNbVertices()];
+        }
+        if (idLabels[id] == null) {
+            idLabels[id] = String.valueOf(id);
+        }
+        return idLabels[id];
+    }
+
+    /**
+     * Sets the text width of paintText such as SIZING_TEXT is written
      * on the specified width
-     * @param text  Text to draw
      * @param width Width that the text must have
      */
-    private void setTextSizeToWidth(String text, float width) {
-        textPaint.setTextSize(30);
-        textPaint.setTextSize(width * 30/ getTextWidth(text));
+    private void setTextSizeToWidth(float width) {
+        if (sizingTextWidth <= 0) {
+            textPaint.setTextSize(REFERENCE_TEXT_SIZE);
+            textPaint.getTextBounds(SIZING_TEXT, 0, SIZING_TEXT.length(), textBounds);
+            sizingTextWidth = textBounds.width();
+        }
+        textPaint.setTextSize(width * REFERENCE_TEXT_SIZE / sizingTextWidth);
     }
 
     /**
      * Draws the orbits, i.e. the concentric circles centred on the
-     * origin of the layout.
+     * origin of the layout, as polygons whose number of sides depends
+     * on their radius. Only the sides crossing the specified area are
+     * drawn.
      * @param canvas Canvas to draw on
-     * @param layout Layout to draw
-     */
-    private void drawOrbits(Canvas canvas, ForestRadialLayout layout) {
-        for (Circle o : layout.projectedOrbits(projection)) {
-            if (visible.contains(o)) {
-                canvas.drawCircle(o.getCenter().getX(), o.getCenter().getY(),
-                        o.getRadius(), orbitPaint);
-            }
+     * @param area   Part of the projection space to draw
+     */
+    private void drawOrbits(Canvas canvas, Rectangle area) {
+        // Widened by the stroke so that the sides along the borders are kept
+        float margin = orbitPaint.getStrokeWidth();
+        float halfWidth = area.getWidth()/2 + margin;
+        float halfHeight = area.getHeight()/2 + margin;
+        Point c = area.getCenter();
+        int n = detail.tessellateOrbits(frame, c.getX() - halfWidth, c.getY() - halfHeight,
+                c.getX() + halfWidth, c.getY() + halfHeight);
+        if (n > 0) {
+            canvas.drawLines(detail.getOrbitLines(), 0, n, orbitPaint);
         }
     }
 
     /**
-     * Draws the visible segments of the layout on the specified canvas.
+     * Draws the visible segments of the frame on the specified canvas.
+     * The segments thinner than a pixel are drawn at once, as hairlines.
      * @param canvas Canvas to draw on
-     * @param layout Layout to draw
-     */
-    private void drawEdges(Canvas canvas, ForestRadialLayout layout) {
-        eDrawing.clear();
-        Map<Integer, Map<Integer, Segment>> segments = layout.projectedEdges(projection);
-        for (Edge e : graph.getEdges()) {
-            int id1 = e.getEnd1().getId();
-            int id2 = e.getEnd2().getId();
-            Segment s = segments.get(id1).get(id2);
-            if (vDrawing.containsKey(id1) || vDrawing.containsKey(id2)) {
-                if (!eDrawing.containsKey(id1)) {
-                    eDrawing.put(id1, new HashMap<Integer, Segment>());
-                }
-                eDrawing.get(id1).put(id2, s);
-                Point p1 = s.getLeftEnd();
-                Point p2 = s.getRightEnd();
-                edgePaint.setStrokeWidth(s.getThickness());
-                canvas.drawLine(p1.getX(), p1.getY(), p2.getX(), p2.getY(), edgePaint);
-
+     */
+    private void drawEdges(Canvas canvas) {
+        int n = detail.gatherThinEdges(frame);
+        if (n > 0) {
+            edgePaint.setStrokeWidth(0);
+            canvas.drawLines(detail.getThinLines(), 0, n, edgePaint);
+        }
+        for (int k = 0; k < frame.getNbVisibleEdges(); k++) {
+            int i = frame.getVisibleEdge(k);
+            if (!LevelOfDetail.isThin(frame, i)) {
+                edgePaint.setStrokeWidth(frame.getThickness(i));
+                canvas.drawLine(frame.getX1(i), frame.getY1(i),
+                        frame.getX2(i), frame.getY2(i), edgePaint);
             }
         }
     }
 
     /**
-     * Draws the visible vertices of the layout on the specified canvas.
+     * Draws the visible vertices of the frame on the specified canvas.
+     * Their labels are drawn only if they are big enough to be read.
      * @param canvas Canvas to draw on
-     * @param layout Layout to draw
-     */
-    private void drawVertices(Canvas canvas, ForestRadialLayout layout) {
-        vDrawing.clear();
-        Map<Integer, Circle> circles = layout.projectedVertices(projection);
-        for (Vertex v : graph.getVertices()) {
-            Circle c = circles.get(v.getId());
-            if (visible.contains(c)) {
-                vDrawing.put(v.getId(), c);
-                Point p = c.getCenter();
-                canvas.drawCircle(p.getX(), p.getY(), c.getRadius(), vertexPaint);
-                String label = (fullLabels) ? v.getLabel() : String.valueOf(v.getId());
-                canvas.drawText(label, p.getX()-getTextWidth(label)/2,
-                        p.getY()+getTextHeight(label)/2, textPaint);
+     */
+    private void drawVertices(Canvas canvas) {
+        boolean labels = LevelOfDetail.showsLabels(textPaint.getTextSize());
+        for (int k = 0; k < frame.getNbVisibleVertices(); k++) {
+            int id = frame.getVisibleVertex(k);
+            float x = frame.getCenterX(id);
+            float y = frame.getCenterY(id);
+            float r = frame.getRadius(id);
+            canvas.drawCircle(x, y, r, vertexPaint);
+            if (labels) {
+                drawLabel(canvas, graph.getAdjacency().getVertex(id), x, y);
             }
         }
     }
@@ -530,36 +921,50 @@ public class GraphEngine {
     private void drawSelection(Canvas canvas) {
         if (selectedVertex != null) {
             long elapsed = SystemClock.elapsedRealtime() - selectedSince;
-            if (elapsed <= SELECTION_DURATION) {
-                Circle c = vDrawing.get(selectedVertex.getId());
-                Point p = c.getCenter();
+            int id = selectedVertex.getId();
+            if (elapsed <= SELECTION_DURATION && frame.isVertexVisible(id)) {
+                float x = frame.getCenterX(id);
+                float y = frame.getCenterY(id);
                 float step = SELECTION_INTERPOLATOR.getInterpolation((float)elapsed/SELECTION_DURATION);
                 step = 0.5f - Math.abs(step - 0.5f);
-                float r = (1-step)*c.getRadius() + step*0.25f*Math.min(visible.getWidth(), visible.getHeight());
-                canvas.drawCircle(p.getX(), p.getY(), r, vertexPaint);
-                String label = (fullLabels) ? selectedVertex.getLabel() : String.valueOf(selectedVertex.getId());
-                canvas.drawText(label, p.getX()-getTextWidth(label)/2,
-                        p.getY()+getTextHeight(label)/2, textPaint);
+                float r = (1-step)*frame.getRadius(id) + step*0.25f*Math.min(visible.getWidth(), visible.getHeight());
+                canvas.drawCircle(x, y, r, vertexPaint);
+                drawLabel(canvas, selectedVertex, x, y);
             }
 
         }
     }
 
     /**
-     * Computes a layout whose main root is the selected vertex before
-     */
-    private void computeNext() {
-        layout2.changeRoot(graph, selectedVertex);
-        Map<Integer, Circle> vertices1 = layout1.projectedVertices(projection);
-        Map<Integer, Circle> vertices2 = layout2.projectedVertices(projection);
-        Map<Integer, Map<Integer, Segment>> segments1 = layout1.projectedEdges(projection);
-        Map<Integer, Map<Integer, Segment>> segments2 = layout2.projectedEdges(projection);
+     * Computes a layout whose main root is the selected vertex, and
+     * publishes it as the next layout unless another layout was requested
+     * since the specified request. The layout is computed off the lock, in
+     * a layout of its own, so that drawing never reads it half-built.
+     * @param request Number of the request of the layout
+     */
+    private void computeNext(int request) {
+        Graph g;
+        Vertex root;
+        Rectangle space;
+        Map<Integer, Circle> vertices1;
+        synchronized (this) {
+            if (request != nbRequestedLayouts) {
+                return;
+            }
+            g = graph;
+            root = selectedVertex;
+            space = new Rectangle(new Point(projection.getCenter().getX(),
+                    projection.getCenter().getY()), projection.getWidth(), projection.getHeight());
+            vertices1 = layout1.projectedVertices(space);
+        }
+        ForestRadialLayout next = new ForestRadialLayout(g, root);
+        Map<Integer, Circle> vertices2 = next.projectedVertices(space);
         float bestAngle = 1f;
         float minDist = Float.MAX_VALUE;
         for (int i = 1; i <= 20; i++) {
-            layout2.rotate(2*(float)Math.PI/10);
+            next.rotate(2*(float)Math.PI/10);
             float dist = 0;
-            for (Vertex v : graph.getVertices()) {
+            for (Vertex v : g.getVertices()) {
                 int id = v.getId();
                 dist += Point.distanceBetween(vertices1.get(id).getCenter(), vertices2.get(id).getCenter());
             }
@@ -568,7 +973,16 @@ public class GraphEngine {
                 bestAngle = i*2*(float)Math.PI/10;
             }
         }
-        layout2.rotate(bestAngle);
+        next.rotate(bestAngle);
+        synchronized (this) {
+            if (request == nbRequestedLayouts) {
+                layout2 = next;
+                // The transition starts once the selection is over
+                transitionSince = Math.max(SystemClock.elapsedRealtime(),
+                        selectedSince + SELECTION_DURATION);
+                dirty = true;
+            }
+        }
     }
 
     /**
@@ -579,14 +993,20 @@ public class GraphEngine {
      */
     static class layoutComputingTask extends AsyncTask<GraphEngine, Void, Void> {
 
-        public layoutComputingTask () {
+        /**
+         * Number of the request of the layout computed.
+         */
+        private final int request;
+
+        public layoutComputingTask (int request) {
             super();
+            this.request = request;
         }
 
         @Override
         protected Void doInBackground (GraphEngine... args) {
             GraphEngine graphEngine = args[0];
-            graphEngine.computeNext();
+            graphEngine.computeNext(request);
             return null;
         }
     }
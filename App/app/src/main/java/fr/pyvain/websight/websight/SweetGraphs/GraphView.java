@@ -14,6 +14,8 @@ import android.view.ScaleGestureDetector;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Set;
 
 import fr.pyvain.websight.websight.AdviceDisplay;
@@ -23,7 +25,12 @@ import fr.pyvain.websight.websight.R;
 public class GraphView extends SurfaceView implements SurfaceHolder.Callback {
 
     private SurfaceHolder holder;
-    private DrawingThread drawingThread;
+
+    /**
+     * Scheduler of the frames, which are only drawn when the graph engine
+     * needs to draw again.
+     */
+    private RenderScheduler scheduler;
 
     /**
      * Graph engine.
@@ -80,9 +87,16 @@ public class GraphView extends SurfaceView implements SurfaceHolder.Callback {
         scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
         holder = getHolder();
         holder.addCallback(this);
-        drawingThread = null;
+        scheduler = new RenderScheduler(new RenderScheduler.Renderer() {
+            @Override
+            public boolean renderFrame() {
+                return drawFrame();
+            }
+        });
 
         //graphEngine.setCurrent(Graph.randomInputGraph(12, 10));
+        graphEngine.setBackgroundColor(ContextCompat.getColor(context, R.color.colorBg));
+
         graphEngine.edgePaint.setStyle(Paint.Style.STROKE);
         graphEngine.edgePaint.setStrokeWidth(3);
         graphEngine.edgePaint.setARGB(255, 0, 0, 0);
@@ -105,41 +119,81 @@ public class GraphView extends SurfaceView implements SurfaceHolder.Callback {
     public void setGraph(String graphJSON) {
         Graph g = new Graph(graphJSON);
         graphEngine.setCurrent(g);
-        invalidate();
+        scheduler.requestRender();
+    }
+
+    /**
+     * Displays the graph read from the specified JSON formated stream
+     * @param graphJSON Stream of the JSON encoded graph to display
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the JSON encoded graph is invalid
+     */
+    public void setGraph(Reader graphJSON) throws IOException {
+        Graph g = new Graph(graphJSON);
+        graphEngine.setCurrent(g);
+        scheduler.requestRender();
+    }
+
+    /**
+     * Displays the specified graph with the specified layout, such as
+     * the ones loaded from a GraphCache
+     * @param g      Graph to display
+     * @param layout Layout of the graph
+     */
+    public void setGraph(Graph g, ForestRadialLayout layout) {
+        graphEngine.setCurrent(g, layout);
+        scheduler.requestRender();
     }
 
     public void changeLabels() {
         graphEngine.changeLabels();
+        scheduler.requestRender();
     }
 
 
     public void update(Canvas pCanvas) {
-        pCanvas.drawColor(ContextCompat.getColor(getContext(), R.color.colorBg));
+        // The background is drawn by the graph engine, within its layer
         graphEngine.draw(pCanvas);
     }
 
+    /**
+     * Draws a frame on the surface, if the graph engine needs to draw again.
+     * Called from the thread of the scheduler.
+     * @return true if and only if another frame is needed
+     */
+    private boolean drawFrame() {
+        if (!graphEngine.needsRedraw()) {
+            return false;
+        }
+        Canvas canvas = holder.lockCanvas();
+        if (canvas == null) {
+            // The surface is not ready : it will be drawn once created
+            return false;
+        }
+        try {
+            update(canvas);
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+        return graphEngine.needsRedraw();
+    }
+
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        graphEngine.invalidate();
+        scheduler.requestRender();
     }
 
     public void resume() {
-        drawingThread = new DrawingThread();
-        drawingThread.keepDrawing = true;
-        drawingThread.start();
+        scheduler.start();
+        graphEngine.invalidate();
+        scheduler.requestRender();
     }
 
     public void pause() {
-        if (drawingThread != null) {
-            drawingThread.keepDrawing = false;
-            boolean joined = false;
-            while (!joined) {
-                try {
-                    drawingThread.join();
-                    joined = true;
-                } catch (InterruptedException e) {
-                }
-            }
-        }
+        scheduler.stop();
+        // No frame is drawn until resumed
+        graphEngine.releaseLayer();
     }
 
     @Override
@@ -152,34 +206,6 @@ public class GraphView extends SurfaceView implements SurfaceHolder.Callback {
         pause();
     }
 
-    private class DrawingThread extends Thread {
-        // Used to stop drawing when not needed
-        boolean keepDrawing = true;
-
-        @Override
-        public void run() {
-
-            while (keepDrawing) {
-                Canvas canvas = null;
-                try {
-                    canvas = holder.lockCanvas();
-                    synchronized (holder) {
-                        update(canvas);
-                    }
-                } finally {
-                    if (canvas != null)
-                        holder.unlockCanvasAndPost(canvas);
-                }
-                // 50 fps
-                try {
-                    Thread.sleep(20);
-                } catch (InterruptedException e) {}
-            }
-        }
-
-
-    }
-
     /**
      * <p>GestureListener which detects simple touches on vertices and edges,
      * and starts the AdviceDisplay activity.</p>
@@ -273,6 +299,8 @@ public class GraphView extends SurfaceView implements SurfaceHolder.Callback {
                 }
                 break;
         }
+        // Draws again only if the event changed something
+        scheduler.requestRender();
         return true;
     }
 }
\ No newline at end of file
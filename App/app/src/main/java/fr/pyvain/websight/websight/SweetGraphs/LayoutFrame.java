@@ -0,0 +1,596 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import java.util.List;
+
+import fr.pyvain.websight.websight.Geometry.PolarProjection;
+
+/**
+ * <p>This class represents a frame of the drawing of a graph : a layout of
+ * the graph, or an interpolation between two of its layouts, projected on
+ * a canvas, stored in parallel arrays of floats.</p>
+ *
+ * <p>Unlike ForestRadialLayout(Graph, ForestRadialLayout, ForestRadialLayout,
+ * float) followed by projectedVertices(), projectedEdges() and
+ * projectedOrbits(), which build new maps of new circles and segments,
+ * updating a frame allocates nothing : its arrays are only reallocated when
+ * the graph gets bigger, and the edges of the graph are only indexed again
+ * when the graph changes. Hence a frame can be updated at each step of an
+ * animation.</p>
+ *
+ * <p>The vertices are indexed by id, and the edges in the iteration order
+ * of Graph.getEdges().</p>
+ *
+ * <p>When a visible rectangle is given, only the vertices and edges which
+ * intersect it are visible, and only their coordinates are meaningful.
+ * The projection of a layout then only projects them, found through the
+ * spatial index of the layout, so that its cost depends on what is
+ * visible rather than on the size of the graph.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public final class LayoutFrame {
+
+    /**
+     * Graph whose edges are indexed, null if none yet.
+     */
+    private Graph graph;
+
+    /**
+     * Number of vertices and edges of the graph.
+     */
+    private int nbVertices;
+    private int nbEdges;
+
+    /**
+     * Edges of the graph, the ids of their ends, and the thickness of
+     * their segments before projection.
+     */
+    private Edge[] edges;
+    private int[] end1;
+    private int[] end2;
+    private float[] edgeThickness;
+
+    /**
+     * Interpolated polar coordinates of the centers of the vertices, per id.
+     */
+    private float[] polarRadius;
+    private float[] polarAngle;
+
+    /**
+     * Projected centers and radii of the vertices, per id.
+     */
+    private float[] xs;
+    private float[] ys;
+    private float[] radii;
+
+    /**
+     * Projected ends and thicknesses of the segments of the edges.
+     */
+    private float[] x1s;
+    private float[] y1s;
+    private float[] x2s;
+    private float[] y2s;
+    private float[] thicknesses;
+
+    /**
+     * Projected orbits.
+     */
+    private int nbOrbits;
+    private float[] orbitXs;
+    private float[] orbitYs;
+    private float[] orbitRadii;
+
+    /**
+     * Ids of the visible vertices, and indices of the visible edges.
+     */
+    private int nbVisibleVertices;
+    private int[] visibleVertices;
+    private int nbVisibleEdges;
+    private int[] visibleEdges;
+
+    /**
+     * Last update in which each vertex was visible, per id, and number
+     * of the current update.
+     */
+    private int[] vertexUpdate;
+    private int update;
+
+    /**
+     * Projected minimal radius of a vertex.
+     */
+    private float minRadius;
+
+    /**
+     * Projection of the interpolated polar coordinates.
+     */
+    private final PolarProjection polar;
+
+    /**
+     * Initializes a new empty frame.
+     */
+    public LayoutFrame() {
+        graph = null;
+        nbVertices = 0;
+        nbEdges = 0;
+        edges = new Edge[0];
+        end1 = new int[0];
+        end2 = new int[0];
+        edgeThickness = new float[0];
+        polarRadius = new float[0];
+        polarAngle = new float[0];
+        xs = new float[0];
+        ys = new float[0];
+        radii = new float[0];
+        x1s = new float[0];
+        y1s = new float[0];
+        x2s = new float[0];
+        y2s = new float[0];
+        thicknesses = new float[0];
+        nbOrbits = 0;
+        orbitXs = new float[0];
+        orbitYs = new float[0];
+        orbitRadii = new float[0];
+        nbVisibleVertices = 0;
+        visibleVertices = new int[0];
+        nbVisibleEdges = 0;
+        visibleEdges = new int[0];
+        vertexUpdate = new int[0];
+        update = 0;
+        minRadius = 0f;
+        polar = new PolarProjection();
+    }
+
+    /**
+     * Updates the frame to the projection of the specified layout on the
+     * specified canvas.
+     *
+     * @param graph  Graph drawn
+     * @param layout Layout of the graph
+     * @param canvas Space on which the layout must be projected
+     * @throws IllegalArgumentException if the layout does not match the graph
+     */
+    public void update(Graph graph, ForestRadialLayout layout, Rectangle canvas)
+            throws IllegalArgumentException
+    {
+        update(graph, layout, layout, 0f, canvas);
+    }
+
+    /**
+     * Updates the frame to the projection of the parts of the specified
+     * layout visible in the specified rectangle of the specified canvas.
+     * Only the visible vertices and edges, given by the spatial index of
+     * the layout, are projected.
+     *
+     * @param graph   Graph drawn
+     * @param layout  Layout of the graph
+     * @param canvas  Space on which the layout must be projected
+     * @param visible Visible part of the canvas
+     * @throws IllegalArgumentException if the layout does not match the graph
+     */
+    public void update(Graph graph, ForestRadialLayout layout, Rectangle canvas,
+                       Rectangle visible) throws IllegalArgumentException
+    {
+        if (graph != this.graph) {
+            index(graph);
+        }
+        LayoutIndex index = layout.getIndex(graph);
+        update++;
+        Rectangle f = layout.getFrame();
+        float frameX = f.getCenter().getX();
+        float frameY = f.getCenter().getY();
+        float ratio = Math.min(canvas.getWidth()/f.getWidth(), canvas.getHeight()/f.getHeight());
+        float canvasX = canvas.getCenter().getX();
+        float canvasY = canvas.getCenter().getY();
+
+        // The visible rectangle, mapped back into layout space
+        float minX = frameX + (visible.getCenter().getX() - visible.getWidth()/2 - canvasX)/ratio;
+        float maxX = frameX + (visible.getCenter().getX() + visible.getWidth()/2 - canvasX)/ratio;
+        float minY = frameY + (visible.getCenter().getY() - visible.getHeight()/2 - canvasY)/ratio;
+        float maxY = frameY + (visible.getCenter().getY() + visible.getHeight()/2 - canvasY)/ratio;
+
+        nbVisibleVertices = index.queryVertices(minX, minY, maxX, maxY, visibleVertices);
+        for (int k = 0; k < nbVisibleVertices; k++) {
+            int id = visibleVertices[k];
+            vertexUpdate[id] = update;
+            xs[id] = canvasX + ratio*(index.getX(id)-frameX);
+            ys[id] = canvasY + ratio*(index.getY(id)-frameY);
+            radii[id] = ratio * index.getRadius(id);
+        }
+        nbVisibleEdges = index.queryEdges(minX, minY, maxX, maxY, visibleEdges);
+        for (int k = 0; k < nbVisibleEdges; k++) {
+            int i = visibleEdges[k];
+            x1s[i] = canvasX + ratio*(index.getX1(i)-frameX);
+            y1s[i] = canvasY + ratio*(index.getY1(i)-frameY);
+            x2s[i] = canvasX + ratio*(index.getX2(i)-frameX);
+            y2s[i] = canvasY + ratio*(index.getY2(i)-frameY);
+            thicknesses[i] = ratio * index.getThickness(i);
+        }
+
+        updateOrbits(layout, canvasX, canvasY, frameX, frameY, ratio);
+        minRadius = ratio * ForestRadialLayout.MIN_RADIUS;
+    }
+
+    /**
+     * Updates the frame to the projection on the specified canvas of the
+     * interpolation between the specified layouts, as computed by
+     * ForestRadialLayout(Graph, ForestRadialLayout, ForestRadialLayout, float) :
+     * the polar coordinates of the vertices, their radii and the poles of
+     * the layouts are interpolated, each segment goes from rim to rim, and
+     * the orbits are the ones of the end layout.
+     *
+     * @param graph  Graph drawn
+     * @param from   Start layout of the graph
+     * @param to     End layout of the graph
+     * @param step   Step of the interpolation, in [0, 1]
+     * @param canvas Space on which the layout must be projected
+     * @throws IllegalArgumentException if the layouts do not match the graph
+     */
+    public void update(Graph graph, ForestRadialLayout from, ForestRadialLayout to,
+                       float step, Rectangle canvas) throws IllegalArgumentException
+    {
+        update(graph, from, to, step, canvas, null);
+    }
+
+    /**
+     * Same as update(Graph, ForestRadialLayout, ForestRadialLayout, float,
+     * Rectangle), then only keeps visible the vertices and edges which
+     * intersect the specified rectangle of the canvas. All of them are
+     * projected, the layouts not being indexed.
+     *
+     * @param graph   Graph drawn
+     * @param from    Start layout of the graph
+     * @param to      End layout of the graph
+     * @param step    Step of the interpolation, in [0, 1]
+     * @param canvas  Space on which the layout must be projected
+     * @param visible Visible part of the canvas, null if all of it is
+     * @throws IllegalArgumentException if the layouts do not match the graph
+     */
+    public void update(Graph graph, ForestRadialLayout from, ForestRadialLayout to,
+                       float step, Rectangle canvas, Rectangle visible)
+            throws IllegalArgumentException
+    {
+        if (graph != this.graph) {
+            index(graph);
+        }
+        float[] radius1 = from.getPolarRadii();
+        float[] radius2 = to.getPolarRadii();
+        float[] angle1 = from.getPolarAngles();
+        float[] angle2 = to.getPolarAngles();
+        float[] vRadius1 = from.getVertexRadii();
+        float[] vRadius2 = to.getVertexRadii();
+        int n = nbVertices;
+        if (radius1.length < n || radius2.length < n) {
+            throw new IllegalArgumentException("The layouts do not match the graph");
+        }
+
+        // Interpolates the frames of the layouts
+        Rectangle f1 = from.getFrame();
+        Rectangle f2 = to.getFrame();
+        float frameX = (1-step)*f1.getCenter().getX() + step*f2.getCenter().getX();
+        float frameY = (1-step)*f1.getCenter().getY() + step*f2.getCenter().getY();
+        float frameWidth = (1-step)*f1.getWidth() + step*f2.getWidth();
+        float frameHeight = (1-step)*f1.getHeight() + step*f2.getHeight();
+        float ratio = Math.min(canvas.getWidth()/frameWidth, canvas.getHeight()/frameHeight);
+        float canvasX = canvas.getCenter().getX();
+        float canvasY = canvas.getCenter().getY();
+
+        // Interpolates the polar coordinates of the vertices
+        float twoPi = 2*(float)Math.PI;
+        for (int v = 0; v < n; v++) {
+            float r1 = radius1[v];
+            float r2 = radius2[v];
+            polarRadius[v] = (1-step)*r1 + step*r2;
+            if (r2 == 0) {
+                polarAngle[v] = angle1[v];
+            } else if (r1 == 0) {
+                polarAngle[v] = angle2[v];
+            } else {
+                // Turns the shortest way
+                float diff = angle2[v]-angle1[v];
+                diff -= twoPi*Math.round(diff/twoPi);
+                polarAngle[v] = angle1[v] + step*diff;
+            }
+            radii[v] = ratio * ((1-step)*vRadius1[v] + step*vRadius2[v]);
+        }
+        // The projection on the canvas is folded in the polar projection
+        float poleX = (1-step)*from.getPoleX() + step*to.getPoleX();
+        float poleY = (1-step)*from.getPoleY() + step*to.getPoleY();
+        polar.project(polarRadius, polarAngle, n,
+                canvasX + ratio*(poleX-frameX), canvasY + ratio*(poleY-frameY), ratio,
+                xs, ys);
+
+        // Each segment goes from rim to rim
+        for (int i = 0; i < nbEdges; i++) {
+            int id1 = end1[i];
+            int id2 = end2[i];
+            float px1 = xs[id1];
+            float py1 = ys[id1];
+            float px2 = xs[id2];
+            float py2 = ys[id2];
+            float d = Point.distanceBetween(px1, py1, px2, py2);
+            float alpha = radii[id1] / d;
+            x1s[i] = alpha * px2 + (1 - alpha) * px1;
+            y1s[i] = alpha * py2 + (1 - alpha) * py1;
+            float beta = radii[id2] / d;
+            x2s[i] = beta * px1 + (1 - beta) * px2;
+            y2s[i] = beta * py1 + (1 - beta) * py2;
+            thicknesses[i] = ratio * edgeThickness[i];
+        }
+
+        cull(visible);
+        updateOrbits(to, canvasX, canvasY, frameX, frameY, ratio);
+        minRadius = ratio * ForestRadialLayout.MIN_RADIUS;
+    }
+
+    /**
+     * Private auxiliary method.
+     * Finds the projected vertices and edges which intersect the specified
+     * rectangle, all of them if it is null.
+     */
+    private void cull(Rectangle visible) {
+        update++;
+        float minX = -Float.MAX_VALUE;
+        float minY = -Float.MAX_VALUE;
+        float maxX = Float.MAX_VALUE;
+        float maxY = Float.MAX_VALUE;
+        if (visible != null) {
+            minX = visible.getCenter().getX() - visible.getWidth()/2;
+            maxX = visible.getCenter().getX() + visible.getWidth()/2;
+            minY = visible.getCenter().getY() - visible.getHeight()/2;
+            maxY = visible.getCenter().getY() + visible.getHeight()/2;
+        }
+        nbVisibleVertices = 0;
+        for (int id = 0; id < nbVertices; id++) {
+            if (visible == null ||
+                    LayoutIndex.circleIntersects(minX, minY, maxX, maxY, xs[id], ys[id], radii[id])) {
+                vertexUpdate[id] = update;
+                visibleVertices[nbVisibleVertices++] = id;
+            }
+        }
+        nbVisibleEdges = 0;
+        for (int i = 0; i < nbEdges; i++) {
+            if (visible == null || LayoutIndex.segmentIntersects(minX, minY, maxX, maxY,
+                    x1s[i], y1s[i], x2s[i], y2s[i])) {
+                visibleEdges[nbVisibleEdges++] = i;
+            }
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Projects the orbits of the specified layout.
+     */
+    private void updateOrbits(ForestRadialLayout layout, float canvasX, float canvasY,
+                              float frameX, float frameY, float ratio) {
+        List<Circle> orbits = layout.getOrbits();
+        nbOrbits = orbits.size();
+        if (orbitXs.length < nbOrbits) {
+            orbitXs = new float[nbOrbits];
+            orbitYs = new float[nbOrbits];
+            orbitRadii = new float[nbOrbits];
+        }
+        for (int i = 0; i < nbOrbits; i++) {
+            Circle o = orbits.get(i);
+            orbitXs[i] = canvasX + ratio*(o.getCenter().getX()-frameX);
+            orbitYs[i] = canvasY + ratio*(o.getCenter().getY()-frameY);
+            orbitRadii[i] = ratio * o.getRadius();
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Indexes the edges of the specified graph, and makes the arrays big
+     * enough for it.
+     */
+    private void index(Graph graph) {
+        this.graph = graph;
+        nbVertices = graph.getAdjacency().getNbVertices();
+        nbEdges = graph.getEdges().size();
+        if (xs.length < nbVertices) {
+            polarRadius = new float[nbVertices];
+            polarAngle = new float[nbVertices];
+            xs = new float[nbVertices];
+            ys = new float[nbVertices];
+            radii = new float[nbVertices];
+            visibleVertices = new int[nbVertices];
+            vertexUpdate = new int[nbVertices];
+        }
+        if (edges.length < nbEdges) {
+            edges = new Edge[nbEdges];
+            end1 = new int[nbEdges];
+            end2 = new int[nbEdges];
+            edgeThickness = new float[nbEdges];
+            x1s = new float[nbEdges];
+            y1s = new float[nbEdges];
+            x2s = new float[nbEdges];
+            y2s = new float[nbEdges];
+            thicknesses = new float[nbEdges];
+            visibleEdges = new int[nbEdges];
+        }
+        int i = 0;
+        for (Edge e : graph.getEdges()) {
+            edges[i] = e;
+            end1[i] = e.getEnd1().getId();
+            end2[i] = e.getEnd2().getId();
+            edgeThickness[i] = ForestRadialLayout.thickness(e, graph);
+            i++;
+        }
+        // The edges of a previous bigger graph are not retained
+        for (int j = nbEdges; j < edges.length; j++) {
+            edges[j] = null;
+        }
+    }
+
+    /**
+     * Number of vertices getter.
+     * @return the number of vertices of the graph drawn, the ids of the
+     * vertices being in [0, getNbVertices()[
+     */
+    public int getNbVertices() {
+        return nbVertices;
+    }
+
+    /**
+     * Number of visible vertices getter.
+     * @return the number of visible vertices
+     */
+    public int getNbVisibleVertices() {
+        return nbVisibleVertices;
+    }
+
+    /**
+     * Visible vertex getter.
+     * @param k Index in [0, getNbVisibleVertices()[
+     * @return the id of the k-th visible vertex
+     */
+    public int getVisibleVertex(int k) {
+        return visibleVertices[k];
+    }
+
+    /**
+     * Tells whether the specified vertex is visible.
+     * @param id Id of a vertex
+     * @return true if and only if the vertex is visible
+     */
+    public boolean isVertexVisible(int id) {
+        return vertexUpdate[id] == update;
+    }
+
+    /**
+     * Number of visible edges getter.
+     * @return the number of visible edges
+     */
+    public int getNbVisibleEdges() {
+        return nbVisibleEdges;
+    }
+
+    /**
+     * Visible edge getter.
+     * @param k Index in [0, getNbVisibleEdges()[
+     * @return the index of the k-th visible edge
+     */
+    public int getVisibleEdge(int k) {
+        return visibleEdges[k];
+    }
+
+    /**
+     * Projected center getters.
+     * @param id Id of a vertex
+     * @return a coordinate of the projected center of the vertex
+     */
+    public float getCenterX(int id) {
+        return xs[id];
+    }
+
+    public float getCenterY(int id) {
+        return ys[id];
+    }
+
+    /**
+     * Projected radius getter.
+     * @param id Id of a vertex
+     * @return the projected radius of the vertex
+     */
+    public float getRadius(int id) {
+        return radii[id];
+    }
+
+    /**
+     * Number of edges getter.
+     * @return the number of edges of the graph drawn
+     */
+    public int getNbEdges() {
+        return nbEdges;
+    }
+
+    /**
+     * Edge getter.
+     * @param i Index of an edge, in [0, getNbEdges()[
+     * @return the i-th edge of the graph drawn
+     */
+    public Edge getEdge(int i) {
+        return edges[i];
+    }
+
+    /**
+     * End getters.
+     * @param i Index of an edge, in [0, getNbEdges()[
+     * @return the id of an end of the i-th edge, the first end having
+     * the smallest id
+     */
+    public int getEnd1(int i) {
+        return end1[i];
+    }
+
+    public int getEnd2(int i) {
+        return end2[i];
+    }
+
+    /**
+     * Projected segment getters.
+     * @param i Index of an edge, in [0, getNbEdges()[
+     * @return a coordinate of an end of the projected segment of the i-th
+     * edge, the first end touching the first end of the edge
+     */
+    public float getX1(int i) {
+        return x1s[i];
+    }
+
+    public float getY1(int i) {
+        return y1s[i];
+    }
+
+    public float getX2(int i) {
+        return x2s[i];
+    }
+
+    public float getY2(int i) {
+        return y2s[i];
+    }
+
+    /**
+     * Projected thickness getter.
+     * @param i Index of an edge, in [0, getNbEdges()[
+     * @return the projected thickness of the segment of the i-th edge
+     */
+    public float getThickness(int i) {
+        return thicknesses[i];
+    }
+
+    /**
+     * Number of orbits getter.
+     * @return the number of orbits drawn
+     */
+    public int getNbOrbits() {
+        return nbOrbits;
+    }
+
+    /**
+     * Projected orbit getters.
+     * @param i Index of an orbit, in [0, getNbOrbits()[
+     * @return a coordinate of the center, or the radius, of the i-th
+     * projected orbit
+     */
+    public float getOrbitX(int i) {
+        return orbitXs[i];
+    }
+
+    public float getOrbitY(int i) {
+        return orbitYs[i];
+    }
+
+    public float getOrbitRadius(int i) {
+        return orbitRadii[i];
+    }
+
+    /**
+     * Projected minimal radius getter.
+     * @return the projected radius of the smallest possible vertex, as
+     * given by ForestRadialLayout.projectedMinRadius()
+     */
+    public float getMinRadius() {
+        return minRadius;
+    }
+}
@@ -0,0 +1,464 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import java.util.Map;
+
+/**
+ * <p>This class indexes the circles of the vertices and the segments of the
+ * edges of a layout, in layout space, in a uniform grid, so that the
+ * items intersecting a rectangle, e.g. the visible part of the canvas
+ * mapped back into layout space, are found by only looking at the cells
+ * covered by the rectangle.</p>
+ *
+ * <p>Each cell stores the ids of the vertices whose center it contains, and
+ * the indices of the segments going through it, both in compressed sparse
+ * row format, as in Geometry.SpatialGrid : the items of cell c are at
+ * indices [start[c], start[c+1][ of the items array.</p>
+ *
+ * <p>The vertices are indexed by id, and the edges in the iteration order
+ * of Graph.getEdges(), as in LayoutFrame. An index is built once per
+ * layout, and querying it allocates nothing.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class LayoutIndex {
+
+    /**
+     * Maximal number of cells per vertex.
+     */
+    private static final int MAX_CELLS_PER_VERTEX = 4;
+
+    /**
+     * Graph whose layout is indexed.
+     */
+    private final Graph graph;
+
+    /**
+     * Centers and radii of the vertices, per id, and the largest radius.
+     */
+    private final float[] xs;
+    private final float[] ys;
+    private final float[] radii;
+    private final float maxRadius;
+
+    /**
+     * Coordinates of the segments, packed as follow : x1, y1, x2, y2 of the
+     * 1st segment, then of the 2nd one, and so on, and their thicknesses.
+     */
+    private final float[] segmentCoords;
+    private final float[] thicknesses;
+
+    /**
+     * Top left corner of the grid.
+     */
+    private float minX;
+    private float minY;
+
+    /**
+     * Width and height of the cells.
+     */
+    private float cellSize;
+
+    /**
+     * Number of columns and rows of the grid.
+     */
+    private int nbColumns;
+    private int nbRows;
+
+    /**
+     * Start of the vertices of each cell in vertexItems, cells being
+     * numbered row by row, and ids of the vertices, cell by cell.
+     */
+    private int[] vertexStart;
+    private int[] vertexItems;
+
+    /**
+     * Start of the segments of each cell in segmentItems, and indices of
+     * the segments, cell by cell.
+     */
+    private int[] segmentStart;
+    private int[] segmentItems;
+
+    /**
+     * Query during which each segment was last found, so that a segment
+     * going through several cells is only found once, and current query.
+     */
+    private final int[] segmentQuery;
+    private int query;
+
+    /**
+     * Builds the index of the specified layout of the specified graph.
+     *
+     * @param graph    Graph whose layout to index
+     * @param vertices Circles of the vertices of the layout, per id
+     * @param edges    Segments of the edges of the layout, per ids of
+     *                 their ends
+     */
+    LayoutIndex(Graph graph, Map<Integer, Circle> vertices,
+                Map<Integer, Map<Integer, Segment>> edges) {
+        this.graph = graph;
+        int nbVertices = graph.getAdjacency().getNbVertices();
+        xs = new float[nbVertices];
+        ys = new float[nbVertices];
+        radii = new float[nbVertices];
+        float max = 0f;
+        for (int v = 0; v < nbVertices; v++) {
+            Circle c = vertices.get(v);
+            xs[v] = c.getCenter().getX();
+            ys[v] = c.getCenter().getY();
+            radii[v] = c.getRadius();
+            max = Math.max(max, radii[v]);
+        }
+        maxRadius = max;
+        int nbEdges = graph.getEdges().size();
+        segmentCoords = new float[4*nbEdges];
+        thicknesses = new float[nbEdges];
+        int i = 0;
+        for (Edge e : graph.getEdges()) {
+            Segment s = edges.get(e.getEnd1().getId()).get(e.getEnd2().getId());
+            segmentCoords[4*i] = s.getLeftEnd().getX();
+            segmentCoords[4*i+1] = s.getLeftEnd().getY();
+            segmentCoords[4*i+2] = s.getRightEnd().getX();
+            segmentCoords[4*i+3] = s.getRightEnd().getY();
+            thicknesses[i] = s.getThickness();
+            i++;
+        }
+        segmentQuery = new int[nbEdges];
+        query = 0;
+        build();
+    }
+
+    /**
+     * Private auxiliary method.
+     * Builds the grid over the vertices and segments.
+     */
+    private void build() {
+        int nbVertices = xs.length;
+        int nbSegments = thicknesses.length;
+
+        // Bounds of the layout
+        minX = Float.MAX_VALUE;
+        minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int v = 0; v < nbVertices; v++) {
+            minX = Math.min(minX, xs[v]);
+            minY = Math.min(minY, ys[v]);
+            maxX = Math.max(maxX, xs[v]);
+            maxY = Math.max(maxY, ys[v]);
+        }
+        for (int i = 0; i < 2*nbSegments; i++) {
+            minX = Math.min(minX, segmentCoords[2*i]);
+            minY = Math.min(minY, segmentCoords[2*i+1]);
+            maxX = Math.max(maxX, segmentCoords[2*i]);
+            maxY = Math.max(maxY, segmentCoords[2*i+1]);
+        }
+        if (minX > maxX) {
+            minX = 0f;
+            minY = 0f;
+            maxX = 0f;
+            maxY = 0f;
+        }
+
+        // About one vertex per cell, the cells being at least as large as
+        // the vertices
+        float width = maxX - minX;
+        float height = maxY - minY;
+        int n = Math.max(1, nbVertices);
+        cellSize = Math.max(2*maxRadius, (float) Math.sqrt(width * height / n));
+        if (cellSize <= 0) {
+            cellSize = 1f;
+        }
+        while (nbCells(width, cellSize, height) > MAX_CELLS_PER_VERTEX * n) {
+            cellSize *= 2;
+        }
+        nbColumns = (int) (width / cellSize) + 1;
+        nbRows = (int) (height / cellSize) + 1;
+        int nbCells = nbColumns * nbRows;
+
+        // Vertices, counted then placed per cell
+        vertexStart = new int[nbCells + 1];
+        vertexItems = new int[nbVertices];
+        for (int v = 0; v < nbVertices; v++) {
+            vertexStart[cellOf(xs[v], ys[v]) + 1]++;
+        }
+        for (int c = 0; c < nbCells; c++) {
+            vertexStart[c + 1] += vertexStart[c];
+        }
+        for (int v = 0; v < nbVertices; v++) {
+            vertexItems[--vertexStart[cellOf(xs[v], ys[v]) + 1]] = v;
+        }
+        // The placement loop moved the start of each cell to the next one
+        System.arraycopy(vertexStart, 1, vertexStart, 0, nbCells);
+        vertexStart[nbCells] = nbVertices;
+
+        // Segments, counted then placed in each cell they go through
+        segmentStart = new int[nbCells + 1];
+        int nbItems = 0;
+        for (int i = 0; i < nbSegments; i++) {
+            nbItems += placeSegment(i, null);
+        }
+        segmentItems = new int[nbItems];
+        for (int c = 0; c < nbCells; c++) {
+            segmentStart[c + 1] += segmentStart[c];
+        }
+        for (int i = 0; i < nbSegments; i++) {
+            placeSegment(i, segmentItems);
+        }
+        System.arraycopy(segmentStart, 1, segmentStart, 0, nbCells);
+        segmentStart[nbCells] = nbItems;
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the number of cells of the specified size covering the
+     * specified area
+     */
+    private static long nbCells(float width, float cellSize, float height) {
+        return ((long) (width / cellSize) + 1) * ((long) (height / cellSize) + 1);
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the column of the specified x-coordinate, clamped to the grid
+     */
+    private int column(float x) {
+        int col = (int) Math.floor((x - minX) / cellSize);
+        return Math.min(Math.max(col, 0), nbColumns - 1);
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the row of the specified y-coordinate, clamped to the grid
+     */
+    private int row(float y) {
+        int row = (int) Math.floor((y - minY) / cellSize);
+        return Math.min(Math.max(row, 0), nbRows - 1);
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return the cell containing the specified point
+     */
+    private int cellOf(float x, float y) {
+        return row(y)*nbColumns + column(x);
+    }
+
+    /**
+     * Private auxiliary method.
+     * Counts the cells the specified segment goes through, column by
+     * column, and places it in them if items is not null, else only
+     * counts them in segmentStart.
+     * @return the number of cells the segment goes through
+     */
+    private int placeSegment(int i, int[] items) {
+        float x1 = segmentCoords[4*i];
+        float y1 = segmentCoords[4*i+1];
+        float x2 = segmentCoords[4*i+2];
+        float y2 = segmentCoords[4*i+3];
+        int res = 0;
+        int colMin = column(Math.min(x1, x2));
+        int colMax = column(Math.max(x1, x2));
+        for (int col = colMin; col <= colMax; col++) {
+            // Part of the segment within the column, its ends being in the
+            // first and last columns whatever the rounding
+            float xa = (col == colMin) ? Math.min(x1, x2) : minX + col*cellSize;
+            float xb = (col == colMax) ? Math.max(x1, x2) : minX + (col+1)*cellSize;
+            float ya;
+            float yb;
+            if (x1 == x2) {
+                ya = y1;
+                yb = y2;
+            } else {
+                ya = y1 + (y2-y1) * (xa-x1) / (x2-x1);
+                yb = y1 + (y2-y1) * (xb-x1) / (x2-x1);
+            }
+            int rowMin = row(Math.min(ya, yb));
+            int rowMax = row(Math.max(ya, yb));
+            for (int row = rowMin; row <= rowMax; row++) {
+                int cell = row*nbColumns + col;
+                if (items == null) {
+                    segmentStart[cell + 1]++;
+                } else {
+                    items[--segmentStart[cell + 1]] = i;
+                }
+                res++;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Tells whether this index is the one of a layout of the specified
+     * graph.
+     * @param graph A graph
+     * @return true if and only if the indexed layout is a layout of graph
+     */
+    boolean indexes(Graph graph) {
+        return this.graph == graph;
+    }
+
+    /**
+     * Finds the vertices whose circle intersects the specified rectangle.
+     *
+     * @param minX   Left side of the rectangle
+     * @param minY   Top side of the rectangle
+     * @param maxX   Right side of the rectangle
+     * @param maxY   Bottom side of the rectangle
+     * @param result Array to fill with the ids of the vertices found, at
+     *               least as large as the number of vertices
+     * @return the number of vertices found
+     */
+    int queryVertices(float minX, float minY, float maxX, float maxY, int[] result) {
+        int res = 0;
+        int colMin = column(minX - maxRadius);
+        int colMax = column(maxX + maxRadius);
+        int rowMin = row(minY - maxRadius);
+        int rowMax = row(maxY + maxRadius);
+        for (int row = rowMin; row <= rowMax; row++) {
+            for (int col = colMin; col <= colMax; col++) {
+                int cell = row*nbColumns + col;
+                for (int k = vertexStart[cell]; k < vertexStart[cell + 1]; k++) {
+                    int v = vertexItems[k];
+                    if (circleIntersects(minX, minY, maxX, maxY, xs[v], ys[v], radii[v])) {
+                        result[res++] = v;
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Finds the edges whose segment intersects the specified rectangle.
+     *
+     * @param minX   Left side of the rectangle
+     * @param minY   Top side of the rectangle
+     * @param maxX   Right side of the rectangle
+     * @param maxY   Bottom side of the rectangle
+     * @param result Array to fill with the indices of the edges found, at
+     *               least as large as the number of edges
+     * @return the number of edges found
+     */
+    int queryEdges(float minX, float minY, float maxX, float maxY, int[] result) {
+        query++;
+        int res = 0;
+        int colMin = column(minX);
+        int colMax = column(maxX);
+        int rowMin = row(minY);
+        int rowMax = row(maxY);
+        for (int row = rowMin; row <= rowMax; row++) {
+            for (int col = colMin; col <= colMax; col++) {
+                int cell = row*nbColumns + col;
+                for (int k = segmentStart[cell]; k < segmentStart[cell + 1]; k++) {
+                    int i = segmentItems[k];
+                    if (segmentQuery[i] != query) {
+                        segmentQuery[i] = query;
+                        if (segmentIntersects(minX, minY, maxX, maxY,
+                                segmentCoords[4*i], segmentCoords[4*i+1],
+                                segmentCoords[4*i+2], segmentCoords[4*i+3])) {
+                            result[res++] = i;
+                        }
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Computes if the specified circle intersects the specified rectangle.
+     *
+     * @param minX Left side of the rectangle
+     * @param minY Top side of the rectangle
+     * @param maxX Right side of the rectangle
+     * @param maxY Bottom side of the rectangle
+     * @param x    x-coordinate of the center of the circle
+     * @param y    y-coordinate of the center of the circle
+     * @param r    Radius of the circle
+     * @return true if and only if the disk and the rectangle intersect
+     */
+    static boolean circleIntersects(float minX, float minY, float maxX, float maxY,
+                                    float x, float y, float r) {
+        // Distance from the center to the nearest point of the rectangle
+        float dx = Math.max(Math.max(minX - x, x - maxX), 0f);
+        float dy = Math.max(Math.max(minY - y, y - maxY), 0f);
+        return dx*dx + dy*dy <= r*r;
+    }
+
+    /**
+     * Computes if the specified segment intersects the specified rectangle.
+     *
+     * @param minX Left side of the rectangle
+     * @param minY Top side of the rectangle
+     * @param maxX Right side of the rectangle
+     * @param maxY Bottom side of the rectangle
+     * @param x1   x-coordinate of the first end of the segment
+     * @param y1   y-coordinate of the first end of the segment
+     * @param x2   x-coordinate of the second end of the segment
+     * @param y2   y-coordinate of the second end of the segment
+     * @return true if and only if the segment and the rectangle intersect
+     */
+    static boolean segmentIntersects(float minX, float minY, float maxX, float maxY,
+                                     float x1, float y1, float x2, float y2) {
+        // Bounding boxes
+        if (Math.max(x1, x2) < minX || Math.min(x1, x2) > maxX ||
+                Math.max(y1, y2) < minY || Math.min(y1, y2) > maxY) {
+            return false;
+        }
+        // The line of the segment must separate the corners of the rectangle
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float c1 = dx*(minY-y1) - dy*(minX-x1);
+        float c2 = dx*(minY-y1) - dy*(maxX-x1);
+        float c3 = dx*(maxY-y1) - dy*(minX-x1);
+        float c4 = dx*(maxY-y1) - dy*(maxX-x1);
+        return !((c1 > 0 && c2 > 0 && c3 > 0 && c4 > 0) ||
+                (c1 < 0 && c2 < 0 && c3 < 0 && c4 < 0));
+    }
+
+    /**
+     * Center and radius getters.
+     * @param id Id of a vertex
+     * @return a coordinate of the center, or the radius, of the circle of
+     * the vertex in the layout
+     */
+    float getX(int id) {
+        return xs[id];
+    }
+
+    float getY(int id) {
+        return ys[id];
+    }
+
+    float getRadius(int id) {
+        return radii[id];
+    }
+
+    /**
+     * Segment getters.
+     * @param i Index of an edge
+     * @return a coordinate of an end, or the thickness, of the segment of
+     * the edge in the layout
+     */
+    float getX1(int i) {
+        return segmentCoords[4*i];
+    }
+
+    float getY1(int i) {
+        return segmentCoords[4*i+1];
+    }
+
+    float getX2(int i) {
+        return segmentCoords[4*i+2];
+    }
+
+    float getY2(int i) {
+        return segmentCoords[4*i+3];
+    }
+
+    float getThickness(int i) {
+        return thicknesses[i];
+    }
+}
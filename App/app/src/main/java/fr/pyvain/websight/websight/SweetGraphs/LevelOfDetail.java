@@ -0,0 +1,215 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+/**
+ * <p>This class adapts the detail of the drawing of a frame to its scale,
+ * so that drawing a dense graph stays cheap : <ul>
+ *     <li>the labels are hidden when their text would be smaller than
+ *     MIN_TEXT_SIZE pixels</li>
+ *     <li>the edges thinner than MIN_EDGE_THICKNESS pixels are gathered
+ *     into a single batch of hairlines, drawn at once</li>
+ *     <li>each orbit is drawn as a polygon with just enough sides for its
+ *     projected radius, only the sides crossing the visible rectangle
+ *     being kept</li>
+ * </ul></p>
+ *
+ * <p>The lines are packed as expected by Canvas.drawLines() : x1, y1, x2, y2
+ * of the 1st line, then of the 2nd one, and so on. Their buffers are
+ * reused from one frame to the next.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class LevelOfDetail {
+
+    /**
+     * Minimal text size of the labels drawn, in pixels.
+     */
+    static final float MIN_TEXT_SIZE = 6f;
+
+    /**
+     * Minimal thickness of the edges drawn on their own, in pixels.
+     */
+    static final float MIN_EDGE_THICKNESS = 1f;
+
+    /**
+     * Maximal distance between an orbit and its polygon, in pixels.
+     */
+    static final float ORBIT_TOLERANCE = 0.5f;
+
+    /**
+     * Bounds of the number of sides of the polygon of an orbit.
+     */
+    static final int MIN_ORBIT_SIDES = 8;
+    static final int MAX_ORBIT_SIDES = 512;
+
+    /**
+     * Hairlines of the thin edges.
+     */
+    private float[] thinLines;
+    private int nbThinLines;
+
+    /**
+     * Visible sides of the orbits.
+     */
+    private float[] orbitLines;
+    private int nbOrbitLines;
+
+    /**
+     * Initializes a new level of detail with empty buffers.
+     */
+    LevelOfDetail() {
+        thinLines = new float[0];
+        nbThinLines = 0;
+        orbitLines = new float[0];
+        nbOrbitLines = 0;
+    }
+
+    /**
+     * Tells whether the labels are drawn at the specified text size.
+     * @param textSize Text size of the labels, in pixels
+     * @return true if and only if the labels are big enough to be read
+     */
+    static boolean showsLabels(float textSize) {
+        return textSize >= MIN_TEXT_SIZE;
+    }
+
+    /**
+     * Tells whether the specified edge of the specified frame is drawn as
+     * a hairline, within the batch of the thin edges.
+     * @param frame Frame drawn
+     * @param i     Index of an edge of the frame
+     * @return true if and only if its segment is thinner than
+     * MIN_EDGE_THICKNESS
+     */
+    static boolean isThin(LayoutFrame frame, int i) {
+        return frame.getThickness(i) < MIN_EDGE_THICKNESS;
+    }
+
+    /**
+     * Computes the number of sides of the polygon drawn for an orbit of
+     * the specified radius : the fewest sides such that the polygon stays
+     * within ORBIT_TOLERANCE of the orbit, within [MIN_ORBIT_SIDES,
+     * MAX_ORBIT_SIDES].
+     * @param radius Projected radius of the orbit, in pixels
+     * @return the number of sides of its polygon
+     */
+    static int nbOrbitSides(float radius) {
+        if (radius <= ORBIT_TOLERANCE) {
+            return MIN_ORBIT_SIDES;
+        }
+        // The middle of a side of a regular n-gon is at r*cos(pi/n) from its center
+        double n = Math.ceil(Math.PI / Math.acos(1 - ORBIT_TOLERANCE / radius));
+        return (int) Math.min(Math.max(n, MIN_ORBIT_SIDES), MAX_ORBIT_SIDES);
+    }
+
+    /**
+     * Gathers the visible thin edges of the specified frame into the
+     * batch of hairlines.
+     * @param frame Frame drawn
+     * @return the number of floats of the batch, i.e. 4 per thin edge
+     */
+    int gatherThinEdges(LayoutFrame frame) {
+        int n = frame.getNbVisibleEdges();
+        if (thinLines.length < 4*n) {
+            thinLines = new float[4*frame.getNbEdges()];
+        }
+        nbThinLines = 0;
+        for (int k = 0; k < n; k++) {
+            int i = frame.getVisibleEdge(k);
+            if (isThin(frame, i)) {
+                thinLines[nbThinLines++] = frame.getX1(i);
+                thinLines[nbThinLines++] = frame.getY1(i);
+                thinLines[nbThinLines++] = frame.getX2(i);
+                thinLines[nbThinLines++] = frame.getY2(i);
+            }
+        }
+        return nbThinLines;
+    }
+
+    /**
+     * Hairlines getter.
+     * @return the batch of hairlines of the thin edges, whose first
+     * gatherThinEdges() floats are meaningful (not copied)
+     */
+    float[] getThinLines() {
+        return thinLines;
+    }
+
+    /**
+     * Computes the sides of the polygons of the orbits of the specified
+     * frame which cross the specified rectangle.
+     * @param frame Frame drawn
+     * @param minX  Left side of the visible rectangle
+     * @param minY  Top side of the visible rectangle
+     * @param maxX  Right side of the visible rectangle
+     * @param maxY  Bottom side of the visible rectangle
+     * @return the number of floats of the sides, i.e. 4 per side
+     */
+    int tessellateOrbits(LayoutFrame frame, float minX, float minY, float maxX, float maxY) {
+        nbOrbitLines = 0;
+        for (int o = 0; o < frame.getNbOrbits(); o++) {
+            float cx = frame.getOrbitX(o);
+            float cy = frame.getOrbitY(o);
+            float r = frame.getOrbitRadius(o);
+            if (!crosses(minX, minY, maxX, maxY, cx, cy, r)) {
+                continue;
+            }
+            int n = nbOrbitSides(r);
+            if (orbitLines.length < nbOrbitLines + 4*n) {
+                float[] lines = new float[Math.max(nbOrbitLines + 4*n, 2*orbitLines.length)];
+                System.arraycopy(orbitLines, 0, lines, 0, nbOrbitLines);
+                orbitLines = lines;
+            }
+            // The vertices of the polygon are computed by successive
+            // rotations of the first one
+            double cosA = Math.cos(2*Math.PI/n);
+            double sinA = Math.sin(2*Math.PI/n);
+            double dx = r;
+            double dy = 0;
+            float x1 = cx + r;
+            float y1 = cy;
+            for (int k = 1; k <= n; k++) {
+                double tmp = dx*cosA - dy*sinA;
+                dy = dx*sinA + dy*cosA;
+                dx = tmp;
+                // The polygon is closed exactly
+                float x2 = (k == n) ? cx + r : (float) (cx + dx);
+                float y2 = (k == n) ? cy : (float) (cy + dy);
+                if (LayoutIndex.segmentIntersects(minX, minY, maxX, maxY, x1, y1, x2, y2)) {
+                    orbitLines[nbOrbitLines++] = x1;
+                    orbitLines[nbOrbitLines++] = y1;
+                    orbitLines[nbOrbitLines++] = x2;
+                    orbitLines[nbOrbitLines++] = y2;
+                }
+                x1 = x2;
+                y1 = y2;
+            }
+        }
+        return nbOrbitLines;
+    }
+
+    /**
+     * Private auxiliary method.
+     * @return true if and only if the specified circle, not the disk,
+     * crosses the specified rectangle, i.e. if the rectangle is neither
+     * outside of the circle nor strictly inside of it
+     */
+    private static boolean crosses(float minX, float minY, float maxX, float maxY,
+                                   float cx, float cy, float r) {
+        // Farthest corner of the rectangle from the center
+        float fx = Math.max(cx - minX, maxX - cx);
+        float fy = Math.max(cy - minY, maxY - cy);
+        return LayoutIndex.circleIntersects(minX, minY, maxX, maxY, cx, cy, r) &&
+                fx*fx + fy*fy >= r*r;
+    }
+
+    /**
+     * Orbit sides getter.
+     * @return the sides of the orbits, whose first tessellateOrbits()
+     * floats are meaningful (not copied)
+     */
+    float[] getOrbitLines() {
+        return orbitLines;
+    }
+}
@@ -47,7 +47,19 @@ public class Point implements Comparable<Point>, Parcelable {
 
 
     public static float distanceBetween(Point p1, Point p2) {
-        return (float) Math.sqrt(Math.pow(p1.x-p2.x, 2) + Math.pow(p1.y-p2.y, 2));
+        return distanceBetween(p1.x, p1.y, p2.x, p2.y);
+    }
+
+    /**
+     * Computes the distance between the points of the specified coordinates.
+     * @param x1 x-coordinate of the first point
+     * @param y1 y-coordinate of the first point
+     * @param x2 x-coordinate of the second point
+     * @param y2 y-coordinate of the second point
+     * @return the distance between (x1, y1) and (x2, y2)
+     */
+    public static float distanceBetween(float x1, float y1, float x2, float y2) {
+        return (float) Math.sqrt(Math.pow(x1-x2, 2) + Math.pow(y1-y2, 2));
     }
 
     /**
@@ -57,12 +69,22 @@ public class Point implements Comparable<Point>, Parcelable {
      * @param angle Angle of the rotation
      */
     public void rotateAround(Point c, float angle) {
+        rotateAround(c, (float)Math.cos(angle), (float)Math.sin(angle));
+    }
+
+    /**
+     * Rotates the receiving Point around the specified center Point, of
+     * the angle of specified cosine and sine, so that several points can
+     * be rotated of the same angle without computing them again.
+     * @param c Center of the rotation
+     * @param cosA Cosine of the angle of the rotation
+     * @param sinA Sine of the angle of the rotation
+     */
+    public void rotateAround(Point c, float cosA, float sinA) {
         float d = Point.distanceBetween(c, this);
         if (d != 0) {
             float dx = this.getX()-c.getX();
             float dy = this.getY()-c.getY();
-            float cosA = (float)Math.cos(angle);
-            float sinA = (float)Math.sin(angle);
             this.setX(cosA*dx - sinA*dy + c.getX());
             this.setY(sinA*dx + cosA*dy + c.getY());
         }
@@ -50,9 +50,20 @@ public class Rectangle implements Parcelable {
 
 
     public boolean contains(Circle c) {
-        float dx = Math.abs(center.getX() - c.getCenter().getX()) - width/2;
-        float dy = Math.abs(center.getY() - c.getCenter().getY()) - height/2;
-        float r = c.getRadius();
+        return contains(c.getCenter().getX(), c.getCenter().getY(), c.getRadius());
+    }
+
+    /**
+     * Same as contains(Circle), for the circle of the specified center
+     * and radius.
+     * @param x x-coordinate of the center of the circle
+     * @param y y-coordinate of the center of the circle
+     * @param r Radius of the circle
+     * @return the same as contains(new Circle(new Point(x, y), r))
+     */
+    public boolean contains(float x, float y, float r) {
+        float dx = Math.abs(center.getX() - x) - width/2;
+        float dy = Math.abs(center.getY() - y) - height/2;
         return ((dx <= 0 || dy <= 0) || ((dx <= r || dy <= r) &&
                 Math.pow(dx, 2) + Math.pow(dy, 2) <= Math.pow(r, 2)));
     }
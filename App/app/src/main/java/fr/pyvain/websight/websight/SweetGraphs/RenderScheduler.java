@@ -0,0 +1,225 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * <p>This class schedules the frames of a renderer on a dedicated thread,
+ * only while the renderer has something new to draw.</p>
+ *
+ * <p>A frame is scheduled by requestRender(), and the renderer tells after
+ * each frame whether another one is needed, e.g. during an animation.
+ * When it is not, no frame is scheduled until the next request, so that a
+ * static drawing costs nothing.</p>
+ *
+ * <p>From API 16, the frames are synchronized with the display by
+ * Choreographer frame callbacks. Before, they are spaced by
+ * FALLBACK_FRAME_TIME.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+final class RenderScheduler {
+
+    /**
+     * Renderer whose frames are scheduled.
+     */
+    interface Renderer {
+
+        /**
+         * Draws a frame, on the thread of the scheduler.
+         * @return true if and only if another frame is needed
+         */
+        boolean renderFrame();
+    }
+
+    /**
+     * Time between two frames without Choreographer, in ms.
+     */
+    private static final long FALLBACK_FRAME_TIME = 16;
+
+    private final Renderer renderer;
+
+    /**
+     * Thread drawing the frames, null when stopped.
+     */
+    private HandlerThread thread;
+
+    /**
+     * Handler of the thread drawing the frames, null before the first start.
+     */
+    private Handler handler;
+
+    /**
+     * Vsync frame callbacks, null before API 16.
+     */
+    private VsyncFrames vsync;
+
+    /**
+     * True if and only if a frame is scheduled.
+     * Only accessed from the thread drawing the frames.
+     */
+    private boolean scheduled;
+
+    /**
+     * Schedules a frame, if none is.
+     */
+    private final Runnable request = new Runnable() {
+        @Override
+        public void run() {
+            if (!scheduled) {
+                scheduled = true;
+                postFrame();
+            }
+        }
+    };
+
+    /**
+     * Draws a frame, and schedules the next one if needed.
+     */
+    private final Runnable frame = new Runnable() {
+        @Override
+        public void run() {
+            scheduled = false;
+            if (renderer.renderFrame()) {
+                scheduled = true;
+                postFrame();
+            }
+        }
+    };
+
+    /**
+     * Cancels the frame scheduled and stops the thread, the messages left
+     * in its looper being discarded.
+     */
+    private final Runnable quit = new Runnable() {
+        @Override
+        public void run() {
+            if (vsync != null) {
+                vsync.cancel();
+            }
+            scheduled = false;
+            Looper.myLooper().quit();
+        }
+    };
+
+    /**
+     * Initializes a new stopped scheduler for the specified renderer.
+     * @param renderer Renderer whose frames to schedule
+     */
+    RenderScheduler(Renderer renderer) {
+        this.renderer = renderer;
+        thread = null;
+        handler = null;
+        vsync = null;
+        scheduled = false;
+    }
+
+    /**
+     * Starts the thread drawing the frames, if it is not started.
+     */
+    synchronized void start() {
+        if (thread == null) {
+            thread = new HandlerThread("GraphRender");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+            vsync = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) ?
+                    new VsyncFrames(frame) : null;
+        }
+    }
+
+    /**
+     * Schedules a frame, if the scheduler is started.
+     * Can be called from any thread.
+     */
+    synchronized void requestRender() {
+        if (thread != null) {
+            handler.post(request);
+        }
+    }
+
+    /**
+     * Stops the thread drawing the frames, and waits for its end, so that
+     * the scheduler can be started again.
+     */
+    void stop() {
+        HandlerThread stopped;
+        synchronized (this) {
+            if (thread == null) {
+                return;
+            }
+            handler.post(quit);
+            stopped = thread;
+            thread = null;
+        }
+        boolean joined = false;
+        boolean interrupted = false;
+        while (!joined) {
+            try {
+                stopped.join();
+                joined = true;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Private auxiliary method.
+     * Schedules the next frame, at the next vsync if possible.
+     * Called from the thread drawing the frames.
+     */
+    private void postFrame() {
+        if (vsync != null) {
+            vsync.post();
+        } else {
+            handler.postDelayed(frame, FALLBACK_FRAME_TIME);
+        }
+    }
+
+    /**
+     * <p>Choreographer frame callbacks, only loaded from API 16.</p>
+     *
+     * <p>
+     * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+     * </p>
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class VsyncFrames implements Choreographer.FrameCallback {
+
+        private final Runnable frame;
+
+        VsyncFrames(Runnable frame) {
+            this.frame = frame;
+        }
+
+        /**
+         * Schedules the frame at the next vsync.
+         * Must be called from the thread drawing the frames, the
+         * Choreographer being the one of its looper.
+         */
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        /**
+         * Cancels the frame scheduled, if any.
+         */
+        void cancel() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frame.run();
+        }
+    }
+}
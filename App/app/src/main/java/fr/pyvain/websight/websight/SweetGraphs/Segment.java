@@ -117,17 +117,36 @@ public class Segment implements Parcelable {
      * @return false if the segment and the circle are non intersecting, true else
      */
     public boolean intersectsWith(Circle circle) {
-        double dx12 = leftEnd.getX()-rightEnd.getX();
-        double dx2c = rightEnd.getX()-circle.getCenter().getX();
-        double dy12 = leftEnd.getY()-rightEnd.getY();
-        double dy2c = rightEnd.getY()-circle.getCenter().getY();
+        return intersectsWithCircle(leftEnd.getX(), leftEnd.getY(),
+                rightEnd.getX(), rightEnd.getY(),
+                circle.getCenter().getX(), circle.getCenter().getY(), circle.getRadius());
+    }
+
+    /**
+     * Computes if the segment of the specified ends intersects with the
+     * circle of the specified center and radius, without building them.
+     * @param x1     x-coordinate of the left end of the segment
+     * @param y1     y-coordinate of the left end of the segment
+     * @param x2     x-coordinate of the right end of the segment
+     * @param y2     y-coordinate of the right end of the segment
+     * @param cx     x-coordinate of the center of the circle
+     * @param cy     y-coordinate of the center of the circle
+     * @param radius Radius of the circle
+     * @return false if the segment and the circle are non intersecting, true else
+     */
+    public static boolean intersectsWithCircle(float x1, float y1, float x2, float y2,
+                                               float cx, float cy, float radius) {
+        double dx12 = x1-x2;
+        double dx2c = x2-cx;
+        double dy12 = y1-y2;
+        double dy2c = y2-cy;
         // Basically solves
         // | (y-c.y)^2 + (x-c.x)^2 = r^2
         // | y = alpha*leftEnd.y + (1-alpha)*rightEnd.y
         // | x = alpha*leftEnd.x + (1-alpha)*rightEnd.x
         double a = Math.pow(dx12, 2) +  Math.pow(dy12, 2);
         double b = 2 * (dx2c*dx12 + dy2c*dy12);
-        double c = Math.pow(dx2c, 2) + Math.pow(dy2c, 2) - Math.pow(circle.getRadius(), 2);
+        double c = Math.pow(dx2c, 2) + Math.pow(dy2c, 2) - Math.pow(radius, 2);
         double delta = Math.pow(b, 2) - 4*a*c;
         if (delta > 0) {
             double l1 = Math.pow(b + 2*a, 2);
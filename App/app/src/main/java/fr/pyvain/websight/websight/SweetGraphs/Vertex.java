@@ -8,6 +8,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
+
 /**
  * <p>This class represents a Vertex of a Graph. Such a Vertex has a unique id,
  * a label, can bear some additional data in a DataSet, and has neighbours to
@@ -17,7 +19,7 @@ import java.util.TreeMap;
  * @author Etienne Thiery, etienne.thiery@wanadoo.fr
  * </p>
  */
-public final class Vertex implements Comparable<Vertex>, Parcelable {
+public final class Vertex implements Comparable<Vertex>, Parcelable, Adjacency.Node {
 
     private final int id;
     private final String label;
@@ -31,6 +33,7 @@ public final class Vertex implements Comparable<Vertex>, Parcelable {
         this.neighbours = new TreeMap<>();
     }
 
+    @Override
     public int getId() {
         return id;
     }
@@ -0,0 +1,132 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+
+public class TestCrossoverModel {
+
+	@BeforeClass
+	public static void beforeTests() {
+		System.out.println("Testing class CrossoverModel");
+	}
+
+	/**
+	 * Builds a grid of n horizontal and n vertical-ish segments
+	 * crossing each other, or n parallel segments if dense is false.
+	 */
+	private static List<Segment> segments(int n, boolean dense) {
+		List<Segment> segments = new ArrayList<>();
+		int step = 1800 / n;
+		for (int i = 0; i < n; i++) {
+			int c = -900 + i*step;
+			segments.add(new Segment(new CPoint(-1000, c), new CPoint(1000, c+1)));
+			if (dense) {
+				segments.add(new Segment(new CPoint(c, -1000), new CPoint(c+1, 1000)));
+			}
+		}
+		return segments;
+	}
+
+	@Test
+	public void testChooseWork() {
+		CrossoverModel model = new CrossoverModel(new double[]{1, 1, 1});
+		double[] work = new double[CrossoverModel.NB_ALGORITHMS];
+		// Parallel segments : no intersection, and x-ranges all overlap
+		List<Segment> parallel = segments(100, false);
+		model.choose(parallel, work);
+		assertEquals(100*99/2, work[CrossoverModel.NAIVE], 1e-9);
+		assertTrue(work[CrossoverModel.BOXED] > work[CrossoverModel.NAIVE]);
+		assertTrue(work[CrossoverModel.BO] < work[CrossoverModel.NAIVE]);
+		// A grid has many intersections, which make the naive methods slower
+		List<Segment> grid = segments(50, true);
+		model.choose(grid, work);
+		assertTrue(work[CrossoverModel.NAIVE] > 100*99/2);
+	}
+
+	@Test
+	public void testChooseFastest() {
+		double[] work = new double[]{100, 200, 300};
+		assertEquals(CrossoverModel.NAIVE,
+				new CrossoverModel(new double[]{1, 1, 1}).choose(work));
+		assertEquals(CrossoverModel.BOXED,
+				new CrossoverModel(new double[]{10, 1, 10}).choose(work));
+		assertEquals(CrossoverModel.BO,
+				new CrossoverModel(new double[]{10, 10, 1}).choose(work));
+	}
+
+	@Test
+	public void testExploration() {
+		CrossoverModel model = new CrossoverModel(new double[]{1, 1, 1});
+		double[] work = new double[]{100, 150, 200};
+		int nbOthers = 0;
+		for (int i = 0; i < 320; i++) {
+			if (model.choose(work) != CrossoverModel.NAIVE) {
+				nbOthers++;
+			}
+		}
+		// One choice out of 32 runs another algorithm
+		assertEquals(10, nbOthers);
+		// Algorithms much slower than the fastest are never run
+		work = new double[]{100, 1000, 1000};
+		for (int i = 0; i < 320; i++) {
+			assertEquals(CrossoverModel.NAIVE, model.choose(work));
+		}
+	}
+
+	@Test
+	public void testRecord() {
+		CrossoverModel model = new CrossoverModel(new double[]{1, 1, 1});
+		// Slower runs than expected increase the cost
+		for (int i = 0; i < 100; i++) {
+			model.record(CrossoverModel.BO, 100, 300);
+		}
+		assertEquals(3, model.getCost(CrossoverModel.BO), 1e-3);
+		assertEquals(1, model.getCost(CrossoverModel.NAIVE), 1e-9);
+		// An outlier only has a bounded influence
+		model.record(CrossoverModel.BO, 100, 1000000);
+		assertTrue(model.getCost(CrossoverModel.BO) < 5);
+		// Then the choices follow the costs
+		assertEquals(CrossoverModel.NAIVE, model.choose(new double[]{100, 1000, 100}));
+	}
+
+	@Test
+	public void testPinAndReset() {
+		CrossoverModel model = new CrossoverModel(new double[]{1, 1, 1});
+		double[] work = {100, 1000, 1000};
+		model.pin(CrossoverModel.BO);
+		assertEquals(CrossoverModel.BO, model.getPinned());
+		// A pinned model never explores
+		for (int i = 0; i < 100; i++) {
+			assertEquals(CrossoverModel.BO, model.choose(work));
+		}
+		model.pin(CrossoverModel.ADAPTIVE);
+		assertEquals(CrossoverModel.NAIVE, model.choose(work));
+		// Reset forgets the costs learnt and the pinned algorithm
+		for (int i = 0; i < 100; i++) {
+			model.record(CrossoverModel.NAIVE, 100, 10000);
+		}
+		model.pin(CrossoverModel.BOXED);
+		model.reset();
+		assertEquals(1, model.getCost(CrossoverModel.NAIVE), 1e-9);
+		assertEquals(CrossoverModel.ADAPTIVE, model.getPinned());
+		assertEquals(CrossoverModel.NAIVE, model.choose(work));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPinUnknown() {
+		new CrossoverModel().pin(CrossoverModel.NB_ALGORITHMS);
+	}
+}
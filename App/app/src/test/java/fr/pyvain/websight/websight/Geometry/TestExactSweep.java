@@ -0,0 +1,93 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+
+public class TestExactSweep {
+
+	@BeforeClass
+	public static void beforeTests() {
+		System.out.println("Testing class ExactSweep\n");
+	}
+
+	@Test
+	public void testSlabWork() {
+		// A segment going through every slab, crossed once in each slab
+		int nbSlabs = 100;
+		int width = 20;
+		List<Segment> segments = new ArrayList<>();
+		segments.add(new Segment(new CPoint(-1000, 0), new CPoint(999, 0)));
+		for (int i = 0; i < nbSlabs; i++) {
+			int x = -1000 + i*width + width/2;
+			segments.add(new Segment(new CPoint(x, -5), new CPoint(x + 1, 5)));
+		}
+		ExactSweep full = new ExactSweep(segments);
+		assertEquals(nbSlabs, full.run().size());
+		int nbEvents = 0;
+		for (int i = 0; i < nbSlabs; i++) {
+			int minX = -1000 + i*width;
+			// All the segments are given to the slab : only its events are created
+			ExactSweep slab = new ExactSweep(segments, minX, minX + width - 1);
+			IntersectionSet inters = slab.run();
+			assertEquals(1, inters.size());
+			// Entry or start of the long segment, 2 endpoints and 1 crossing
+			assertTrue(slab.getNbEvents() <= 5);
+			nbEvents += slab.getNbEvents();
+		}
+		// The slabs only add the entry points of the long segment
+		assertTrue(nbEvents <= full.getNbEvents() + nbSlabs);
+	}
+
+	@Test
+	public void testSlabsUnion() {
+		Random rand = new Random(7);
+		for (int t = 0; t < 50; t++) {
+			List<Segment> segments = new ArrayList<>();
+			while (segments.size() < 40) {
+				int x1 = rand.nextInt(61) - 30;
+				int y1 = rand.nextInt(61) - 30;
+				int x2 = rand.nextInt(61) - 30;
+				int y2 = rand.nextInt(61) - 30;
+				if (x1 != x2 || y1 != y2) {
+					segments.add(new Segment(new CPoint(x1, y1), new CPoint(x2, y2)));
+				}
+			}
+			IntersectionSet expected = new ExactSweep(segments).run();
+			// Narrow slabs, so that many intersections are snapped on their sides
+			int width = 1 + t % 3;
+			IntersectionSet union = new IntersectionSet();
+			for (int minX = -30; minX <= 30; minX += width) {
+				int maxX = minX + width - 1;
+				for (Intersection i : new ExactSweep(segments, minX, maxX).run().toArray()) {
+					int x = i.getLocation().getX();
+					if (minX <= x && x <= maxX) {
+						union.add(i);
+					}
+				}
+			}
+			assertEquals(expected.size(), union.size());
+			for (Intersection i : expected.toArray()) {
+				boolean found = false;
+				for (Intersection j : union.at(i.getLocation().getX())) {
+					found |= j.getLocation().equals(i.getLocation())
+							&& j.getSegments().size() == i.getSegments().size();
+				}
+				assertTrue(found);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+
+public class TestIntHeap {
+
+	@BeforeClass
+	public static void beforeTests() {
+		System.out.println("Testing class IntHeap\n");
+	}
+
+	@Test
+	public void testAddPoll() {
+		IntHeap heap = new IntHeap(1);
+		assertTrue(heap.isEmpty());
+		heap.add(3);
+		heap.add(-5);
+		heap.add(3);
+		heap.add(0);
+		assertFalse(heap.isEmpty());
+		assertEquals(-5, heap.peek());
+		assertEquals(-5, heap.poll());
+		assertEquals(0, heap.poll());
+		assertEquals(3, heap.poll());
+		assertEquals(3, heap.poll());
+		assertTrue(heap.isEmpty());
+	}
+
+	@Test
+	public void testRandom() {
+		// Compared with a PriorityQueue, with interleaved adds and polls
+		Random rand = new Random(42);
+		IntHeap heap = new IntHeap(4);
+		PriorityQueue<Integer> expected = new PriorityQueue<>();
+		for (int i = 0; i < 10000; i++) {
+			if (expected.isEmpty() || rand.nextInt(3) > 0) {
+				int value = rand.nextInt(2001) - 1000;
+				heap.add(value);
+				expected.add(value);
+			} else {
+				assertEquals((int) expected.poll(), heap.poll());
+			}
+		}
+		while (!expected.isEmpty()) {
+			assertEquals((int) expected.poll(), heap.poll());
+		}
+		assertTrue(heap.isEmpty());
+	}
+}
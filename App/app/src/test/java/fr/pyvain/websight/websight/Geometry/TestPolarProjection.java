@@ -0,0 +1,76 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import fr.pyvain.websight.websight.PersonalDataGraph.PolarCoords;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+
+public class TestPolarProjection {
+
+	private static final int NB_POINTS = 100;
+
+	@BeforeClass
+	public static void beforeTests() {
+		System.out.println("Testing class PolarProjection");
+	}
+
+	@Test
+	public void testProjectRounded() {
+		Random random = new Random(42);
+		PolarProjection projection = new PolarProjection();
+		int[] radii = new int[NB_POINTS];
+		float[] angles = new float[NB_POINTS];
+		int[] xs = new int[NB_POINTS];
+		int[] ys = new int[NB_POINTS];
+		CPoint origin = new CPoint(12, -7);
+		for (int t = 0; t < 5; t++) {
+			// Only some of the angles change between two projections
+			for (int i = 0; i < NB_POINTS; i++) {
+				radii[i] = random.nextInt(10);
+				if (t == 0 || random.nextBoolean()) {
+					angles[i] = (float) (2 * Math.PI * random.nextFloat());
+				}
+			}
+			float unit = 10 + 90 * random.nextFloat();
+			projection.project(radii, angles, NB_POINTS, origin.getX(), origin.getY(),
+					unit, xs, ys);
+			for (int i = 0; i < NB_POINTS; i++) {
+				CPoint expected = new CPoint(new PolarCoords(radii[i], angles[i]), origin, unit);
+				assertEquals(expected, new CPoint(xs[i], ys[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testProject() {
+		Random random = new Random(42);
+		PolarProjection projection = new PolarProjection();
+		float[] radii = new float[NB_POINTS];
+		float[] angles = new float[NB_POINTS];
+		float[] xs = new float[NB_POINTS];
+		float[] ys = new float[NB_POINTS];
+		// The batch grows between two projections
+		for (int n = 1; n <= NB_POINTS; n *= 3) {
+			for (int i = 0; i < n; i++) {
+				radii[i] = 5 * random.nextFloat();
+				angles[i] = (float) (4 * Math.PI * random.nextFloat() - 2 * Math.PI);
+			}
+			projection.project(radii, angles, n, 1f, 2f, 3f, xs, ys);
+			for (int i = 0; i < n; i++) {
+				assertEquals(1f + 3f * radii[i] * (float) Math.cos(angles[i]), xs[i], 0f);
+				assertEquals(2f + 3f * radii[i] * (float) Math.sin(angles[i]), ys[i], 0f);
+			}
+		}
+	}
+}
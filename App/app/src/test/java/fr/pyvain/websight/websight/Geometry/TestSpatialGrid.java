@@ -0,0 +1,132 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+
+public class TestSpatialGrid {
+
+	private static final int NB_CENTERS = 200;
+	private static final int NB_SEGMENTS = 300;
+	private static final float RADIUS = 20;
+
+	@BeforeClass
+	public static void beforeTests() {
+		System.out.println("Testing class SpatialGrid");
+	}
+
+	private static CPoint randomPoint(Random random) {
+		return new CPoint(random.nextInt(2001) - 1000, random.nextInt(2001) - 1000);
+	}
+
+	private static CPoint[] centers(Random random) {
+		CPoint[] centers = new CPoint[NB_CENTERS];
+		for (int i = 0; i < NB_CENTERS; i++) {
+			centers[i] = randomPoint(random);
+		}
+		return centers;
+	}
+
+	private static Segment[] segments(Random random) {
+		Segment[] segments = new Segment[NB_SEGMENTS];
+		for (int i = 0; i < NB_SEGMENTS; i++) {
+			CPoint p1 = randomPoint(random);
+			CPoint p2;
+			switch (i % 3) {
+				case 0: p2 = new CPoint(p1.getX(), random.nextInt(2001) - 1000); break;
+				case 1: p2 = new CPoint(random.nextInt(2001) - 1000, p1.getY()); break;
+				default: p2 = randomPoint(random);
+			}
+			segments[i] = new Segment(p1, p2);
+		}
+		return segments;
+	}
+
+	@Test
+	public void testNbCirclesCrossedBy() {
+		Random random = new Random(42);
+		CPoint[] centers = centers(random);
+		Segment[] segments = segments(random);
+		SpatialGrid grid = new SpatialGrid();
+		grid.update(centers, NB_CENTERS, segments, NB_SEGMENTS, RADIUS);
+		for (Segment s : segments) {
+			for (float r : new float[]{1, RADIUS + 1, 150}) {
+				int expected = 0;
+				for (CPoint c : centers) {
+					if (s.nbIntersectionsWithCircle(c, r) > 0) {
+						expected++;
+					}
+				}
+				assertEquals(expected, grid.nbCirclesCrossedBy(s, r));
+			}
+		}
+	}
+
+	@Test
+	public void testNearestCenter() {
+		Random random = new Random(43);
+		CPoint[] centers = centers(random);
+		SpatialGrid grid = new SpatialGrid();
+		grid.update(centers, NB_CENTERS, new Segment[0], 0, RADIUS);
+		for (int k = 0; k < 1000; k++) {
+			CPoint p = randomPoint(random);
+			float d = RADIUS + random.nextInt(50);
+			int expected = -1;
+			for (int i = 0; i < NB_CENTERS; i++) {
+				float distance = p.distance(centers[i]);
+				if (distance <= d && (expected == -1 || distance < p.distance(centers[expected]))) {
+					expected = i;
+				}
+			}
+			assertEquals(expected, grid.nearestCenter(p, d));
+		}
+		// Points outside the grid
+		assertEquals(-1, grid.nearestCenter(new CPoint(5000, 5000), 10));
+	}
+
+	@Test
+	public void testNearestSegment() {
+		Random random = new Random(44);
+		Segment[] segments = segments(random);
+		SpatialGrid grid = new SpatialGrid();
+		grid.update(new CPoint[0], 0, segments, NB_SEGMENTS, RADIUS);
+		for (int k = 0; k < 1000; k++) {
+			CPoint p = randomPoint(random);
+			int eps = 1 + random.nextInt(20);
+			boolean found = false;
+			for (Segment s : segments) {
+				found |= s.contains(p, eps);
+			}
+			int i = grid.nearestSegment(p, eps);
+			assertEquals(found, i != -1);
+			if (found) {
+				assertEquals(true, segments[i].contains(p, eps));
+			}
+		}
+		// A point on a segment is nearest to it
+		Segment s = segments[7];
+		assertEquals(7, grid.nearestSegment(s.getP1(), 1));
+	}
+
+	@Test
+	public void testEmpty() {
+		SpatialGrid grid = new SpatialGrid();
+		CPoint p = new CPoint(0, 0);
+		assertEquals(-1, grid.nearestCenter(p, 10));
+		assertEquals(-1, grid.nearestSegment(p, 10));
+		assertEquals(0, grid.nbCirclesCrossedBy(new Segment(p, new CPoint(10, 10)), 10));
+		grid.update(new CPoint[0], 0, new Segment[0], 0, RADIUS);
+		assertEquals(-1, grid.nearestCenter(p, 10));
+		assertEquals(0, grid.nbCirclesCrossedBy(new Segment(p, new CPoint(10, 10)), 10));
+	}
+}
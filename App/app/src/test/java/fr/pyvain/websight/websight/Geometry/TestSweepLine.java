@@ -0,0 +1,92 @@
+package fr.pyvain.websight.websight.Geometry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+
+public class TestSweepLine {
+
+	@BeforeClass
+	public static void beforeTests() {
+		System.out.println("Testing class SweepLine\n");
+	}
+
+	@Test
+	public void testAddRemove() {
+		// Random horizontal-ish segments, compared with a TreeSet
+		Random rand = new Random(42);
+		SweepContext context = new SweepContext(0);
+		SweepLine sweepLine = new SweepLine(context);
+		TreeSet<Segment> expected = new TreeSet<>(context);
+		Segment[] segments = new Segment[500];
+		boolean[] added = new boolean[segments.length];
+		for (int i = 0; i < segments.length; i++) {
+			int y = rand.nextInt(2001) - 1000;
+			segments[i] = new Segment(new CPoint(-1000, y), new CPoint(1000, y + rand.nextInt(3) - 1));
+			added[i] = expected.add(segments[i]);
+			assertEquals(added[i], sweepLine.add(segments[i]));
+		}
+		// Segments equal to another one have not been added
+		for (int i = 0; i < segments.length; i += 2) {
+			if (added[i]) {
+				assertTrue(expected.remove(segments[i]));
+				assertTrue(sweepLine.remove(segments[i]));
+			} else {
+				assertFalse(sweepLine.remove(segments[i]));
+			}
+		}
+		for (Segment s : segments) {
+			assertEquals(expected.higher(s), sweepLine.higher(s));
+			assertEquals(expected.lower(s), sweepLine.lower(s));
+		}
+	}
+
+	@Test
+	public void testReorder() {
+		// Three segments crossing at (0, 0), between two other ones
+		Segment s1 = new Segment(new CPoint(-100, -100), new CPoint(100, 100));
+		Segment s2 = new Segment(new CPoint(-100, 0), new CPoint(100, 0));
+		Segment s3 = new Segment(new CPoint(-100, 100), new CPoint(100, -100));
+		Segment below = new Segment(new CPoint(-100, -500), new CPoint(100, -500));
+		Segment above = new Segment(new CPoint(-100, 500), new CPoint(100, 500));
+		SweepContext context = new SweepContext(-100);
+		SweepLine sweepLine = new SweepLine(context);
+		for (Segment s : Arrays.asList(s1, s2, s3, below, above)) {
+			assertTrue(sweepLine.add(s));
+		}
+		assertEquals(s2, sweepLine.higher(s1));
+		assertEquals(s3, sweepLine.higher(s2));
+		// The x-coordinate of the intersection might be rounded before it
+		context.setComparingX(-1);
+		sweepLine.reorder(Arrays.asList(s1, s2, s3));
+		assertEquals(s3, sweepLine.higher(below));
+		assertEquals(s2, sweepLine.higher(s3));
+		assertEquals(s1, sweepLine.higher(s2));
+		assertEquals(above, sweepLine.higher(s1));
+		assertEquals(below, sweepLine.lower(s3));
+		assertNull(sweepLine.lower(below));
+		assertNull(sweepLine.higher(above));
+		// Segments can still be removed and added after the reordering
+		context.setComparingX(50);
+		assertTrue(sweepLine.remove(s2));
+		assertFalse(sweepLine.remove(s2));
+		assertEquals(s1, sweepLine.higher(s3));
+		assertTrue(sweepLine.add(s2));
+		assertEquals(s2, sweepLine.higher(s3));
+	}
+}
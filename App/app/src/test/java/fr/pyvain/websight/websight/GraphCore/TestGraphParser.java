@@ -0,0 +1,87 @@
+package fr.pyvain.websight.websight.GraphCore;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+public class TestGraphParser {
+
+    @BeforeClass
+    public static void beforeTests() {
+        System.out.println("Testing class GraphParser\n");
+    }
+
+    private GraphParser parse(String graph) throws IOException {
+        GraphParser parser = new GraphParser(new StringReader(graph));
+        parser.parse();
+        return parser;
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        // Fields in any order, unknown fields, escapes and whitespaces
+        GraphParser parser = parse(" {\n" +
+                "\"edges\": [{\"url_ids\": [1], \"dst\": 2, \"src\": 0, \"w\": 1.5e3}],\n" +
+                "\"version\": {\"major\": [true, null, -1]},\n" +
+                "\"vertices\": [{\"kw\": \"a\\\"b\\\\c\\u00e9\", \"url_ids\": [0, 1]},\n" +
+                "               {\"url_ids\": [], \"kw\": \"d\"},\n" +
+                "               {\"kw\": \"e\\/f\", \"url_ids\": [1]}],\n" +
+                "\"urls\": [\"www.a.com\", \"www.b.com\"]\n" +
+                "} ");
+        assertEquals(3, parser.getNbVertices());
+        String[] keywords = new String[]{"a\"b\\c\u00e9", "d", "e/f"};
+        for (int id = 0; id < 3; id++) {
+            assertEquals(keywords[id], parser.getKeyword(id));
+        }
+        URLDictionary dictionary = parser.getDictionary();
+        assertEquals(2, dictionary.size());
+        int a = dictionary.findId("www.a.com");
+        int b = dictionary.findId("www.b.com");
+        assertEquals("www.a.com", dictionary.getURL(a));
+        assertEquals("www.b.com", dictionary.getURL(b));
+        assertArrayEquals(new int[]{Math.min(a, b), Math.max(a, b)}, parser.getVertexURLIds(0));
+        assertEquals(0, parser.getVertexURLIds(1).length);
+        assertArrayEquals(new int[]{b}, parser.getVertexURLIds(2));
+        assertEquals(1, parser.getNbEdges());
+        assertEquals(0, parser.getSource(0));
+        assertEquals(2, parser.getDestination(0));
+        assertArrayEquals(new int[]{b}, parser.getEdgeURLIds(0));
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        List<String> invalids = Arrays.asList(
+                "",
+                "{}",
+                "[]",
+                "{\"urls\": [], \"vertices\": []}",
+                "{\"urls\": [], \"vertices\": [], \"edges\": []} x",
+                "{\"urls\": [], \"vertices\": [{\"kw\": \"a\"}], \"edges\": []}",
+                "{\"urls\": [], \"vertices\": [{\"kw\": \"a\", \"url_ids\": [0]}], \"edges\": []}",
+                "{\"urls\": [], \"vertices\": [], \"edges\": [{\"src\": 0, \"dst\": 1, \"url_ids\": []}]}",
+                "{\"urls\": [\"a], \"vertices\": [], \"edges\": []}",
+                "{\"urls\": [], \"vertices\": [], \"edges\": [],}");
+        for (String invalid : invalids) {
+            try {
+                parse(invalid);
+                fail("Accepted " + invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+public class TestAnnealingConfig {
+
+    private static final float EPS = 0.01f;
+
+    @BeforeClass
+    public static void beforeTests() {
+        System.out.println("Testing class AnnealingConfig\n");
+    }
+
+    @Test
+    public void testConstructors() {
+        AnnealingConfig iters = new AnnealingConfig(42L, 100, AnnealingConfig.Cooling.LINEAR);
+        assertEquals(42L, iters.getSeed());
+        assertEquals(100, iters.getMaxIterations());
+        assertEquals(AnnealingConfig.UNLIMITED, iters.getMaxTime());
+        assertEquals(Long.MAX_VALUE, iters.deadline(1000L));
+        AnnealingConfig time = new AnnealingConfig(42L, 200L);
+        assertEquals(AnnealingConfig.UNLIMITED, time.getMaxIterations());
+        assertEquals(200L, time.getMaxTime());
+        assertEquals(1200L, time.deadline(1000L));
+        assertEquals(AnnealingConfig.Cooling.GEOMETRIC, time.getCooling());
+        try {
+            new AnnealingConfig(42L, AnnealingConfig.UNLIMITED, AnnealingConfig.UNLIMITED,
+                    AnnealingConfig.Cooling.GEOMETRIC);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            new AnnealingConfig(42L, -5, AnnealingConfig.Cooling.GEOMETRIC);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            new AnnealingConfig(42L, -1L);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testEqualHashCode() {
+        AnnealingConfig c1 = new AnnealingConfig(7L, 100, 50L, AnnealingConfig.Cooling.LINEAR);
+        AnnealingConfig c2 = new AnnealingConfig(7L, 100, 50L, AnnealingConfig.Cooling.LINEAR);
+        assertEquals(c1, c2);
+        assertEquals(c1.hashCode(), c2.hashCode());
+        assertNotEquals(c1, new AnnealingConfig(8L, 100, 50L, AnnealingConfig.Cooling.LINEAR));
+        assertNotEquals(c1, new AnnealingConfig(7L, 100, 50L, AnnealingConfig.Cooling.GEOMETRIC));
+        assertEquals(c1.part(3, 10, 5L), c2.part(3, 10, 5L));
+    }
+
+    @Test
+    public void testSplit() {
+        // Derived seeds are deterministic and distinct, even for
+        // consecutive seeds
+        Set<Long> seeds = new HashSet<>();
+        for (long seed = 0; seed < 10; seed++) {
+            AnnealingConfig config = new AnnealingConfig(seed, 1, AnnealingConfig.Cooling.GEOMETRIC);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(config.split(i), config.split(i));
+                assertTrue(seeds.add(config.split(i)));
+            }
+            assertEquals(config.chainRandom(3).nextLong(), config.chainRandom(3).nextLong());
+        }
+    }
+
+    @Test
+    public void testCooling() {
+        for (AnnealingConfig.Cooling cooling : AnnealingConfig.Cooling.values()) {
+            float temp = 100f;
+            float step = cooling.step(temp, 1f, 1000);
+            for (int i = 0; i < 1000; i++) {
+                float next = cooling.decrease(temp, step);
+                assertTrue(0 < next && next < temp);
+                temp = next;
+            }
+            assertEquals(1f, temp, EPS);
+        }
+    }
+
+    @Test
+    public void testReproducibleTree() {
+        InputGraph graph = InputGraph.randomInputGraph(40, 70);
+        for (AnnealingConfig.Cooling cooling : AnnealingConfig.Cooling.values()) {
+            AnnealingConfig config = new AnnealingConfig(1234L, 300, cooling);
+            Tree t1 = new Tree(graph.getVertices().first());
+            Tree t2 = new Tree(t1);
+            t1.minimizeCrossings(0, 0f, (float) (2 * Math.PI), 0.5f,
+                    new Tree(), new RadialLayout(), new Drawing(), config);
+            t2.minimizeCrossings(0, 0f, (float) (2 * Math.PI), 0.5f,
+                    new Tree(), new RadialLayout(), new Drawing(), config);
+            assertEquals(t1.getChildren(), t2.getChildren());
+
+            // Parallel chains are as reproducible
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try {
+                Tree t3 = new Tree(graph.getVertices().first());
+                Tree t4 = new Tree(t3);
+                t3.minimizeCrossings(0, 0f, (float) (2 * Math.PI), 0.5f, executor, 3, config);
+                t4.minimizeCrossings(0, 0f, (float) (2 * Math.PI), 0.5f, executor, 3, config);
+                assertEquals(t3.getChildren(), t4.getChildren());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testReproducibleForest() {
+        InputGraph graph = InputGraph.randomInputGraph(50, 60);
+        AnnealingConfig config = new AnnealingConfig(99L, 400, AnnealingConfig.Cooling.GEOMETRIC);
+        Forest f1 = new Forest(graph, graph.getVertices().first());
+        Forest f2 = new Forest(graph, graph.getVertices().first());
+        f1.minimizeCrossings(0.5f, new Tree(), new RadialLayout(), new Drawing(), config);
+        f2.minimizeCrossings(0.5f, new Tree(), new RadialLayout(), new Drawing(), config);
+        assertEquals(new RadialLayout(f1), new RadialLayout(f2));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Forest f3 = new Forest(graph, graph.getVertices().first());
+            Forest f4 = new Forest(graph, graph.getVertices().first());
+            f3.minimizeCrossings(0.5f, executor, 2, config);
+            f4.minimizeCrossings(0.5f, executor, 2, config);
+            assertEquals(new RadialLayout(f3), new RadialLayout(f4));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
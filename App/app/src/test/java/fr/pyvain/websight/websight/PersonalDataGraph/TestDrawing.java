@@ -168,4 +168,76 @@ public class TestDrawing {
         assertEquals(null, d.edgeAt(new CPoint(1000, 1000), 100));
         assertEquals(null, d.edgeAt(new CPoint(700, 500), 100));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReusedDrawing() {
+        RadialLayout layout = new RadialLayout();
+        Drawing reused = new Drawing();
+        int[] coords = new int[4];
+        // The graph grows then shrinks between two updates
+        for (int n : new int[]{30, 10, 60, 20}) {
+            InputGraph graph = InputGraph.randomInputGraph(n, 2*n);
+            Tree tree = new Tree(graph.getVertices().first());
+            for (int t = 0; t < 3; t++) {
+                tree.neighbourState();
+                layout.update(tree, 0, 0f, (float) (2 * Math.PI));
+                float vRadius = 0.5f*layout.getMaxVertexRadius();
+                reused.update(tree, layout, vRadius,
+                        Drawing.CMIN, Drawing.CMIN, Drawing.CMAX, Drawing.CMAX,
+                        Drawing.C0, Drawing.C0);
+                Drawing expected = new Drawing(tree, new RadialLayout(tree, 0, 0f,
+                        (float) (2 * Math.PI)), vRadius,
+                        Drawing.CMIN, Drawing.CMIN, Drawing.CMAX, Drawing.CMAX,
+                        Drawing.C0, Drawing.C0);
+                assertEquals(expected.getCenters(), reused.getCenters());
+                assertEquals(expected.getSegments(), reused.getSegments());
+                int i = 0;
+                for (Vertex v : tree.getVertices()) {
+                    CPoint center = expected.getCenters().get(v);
+                    assertEquals(center.getX(), reused.getCenterX(i));
+                    assertEquals(center.getY(), reused.getCenterY(i));
+                    i++;
+                }
+                for (Edge e : tree.getEdges()) {
+                    reused.getSegmentCoords(e, coords, 0);
+                    Segment segment = expected.getSegments().get(e);
+                    assertEquals(segment.getP1(), new CPoint(coords[0], coords[1]));
+                    assertEquals(segment.getP2(), new CPoint(coords[2], coords[3]));
+                }
+                assertEquals(expected.nbEdgeCrossings(), reused.nbEdgeCrossings());
+                assertEquals(expected.nbVertexCrossings(tree.getEdges()),
+                        reused.nbVertexCrossings(tree.getEdges()));
+            }
+        }
+    }
+
+    @Test
+    public void testNbEdgeCrossingsOf() {
+        InputGraph graph = InputGraph.randomInputGraph(60, 120);
+        Tree tree = new Tree(graph.getVertices().first());
+        RadialLayout layout = new RadialLayout(tree, 0, 0f, (float) (2 * Math.PI));
+        Drawing drawing = new Drawing(tree, layout, 0.5f*layout.getMaxVertexRadius(),
+                Drawing.CMIN, Drawing.CMIN, Drawing.CMAX, Drawing.CMAX,
+                Drawing.C0, Drawing.C0);
+        assertEquals(drawing.nbEdgeCrossings(), drawing.nbEdgeCrossings(tree.getEdges()));
+        assertEquals(0, drawing.nbEdgeCrossings(new ArrayList<Edge>()));
+        // Pairs involving an additional edge, compared with a pair by pair
+        // computation
+        List<Edge> edges = new ArrayList<>(tree.getEdges());
+        int expected = 0;
+        for (int i = 0; i < edges.size(); i++) {
+            for (int j = i+1; j < edges.size(); j++) {
+                Edge e = edges.get(i);
+                Edge f = edges.get(j);
+                if ((tree.getExtraEdges().contains(e) || tree.getExtraEdges().contains(f))
+                        && drawing.getSegments().get(e).intersectionWith(
+                        drawing.getSegments().get(f)) != null) {
+                    expected++;
+                }
+            }
+        }
+        assertEquals(expected, drawing.nbEdgeCrossings(tree.getExtraEdges()));
+        // The set is forgotten between two calls
+        assertEquals(expected, drawing.nbEdgeCrossings(tree.getExtraEdges()));
+    }
+}
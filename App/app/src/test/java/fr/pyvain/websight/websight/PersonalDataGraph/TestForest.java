@@ -8,6 +8,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
@@ -195,4 +197,64 @@ public class TestForest {
         forest2.copy(forest1);
         assertEquals(forest1, forest2);
     }
+
+    /**
+     * Sum of the costs of the drawings of the trees of the forest, each tree
+     * being laid out alone in its angular sector.
+     */
+    private int treesCost(Forest forest) {
+        int totalSize = forest.size() - forest.getMainTree().size();
+        int periphery = forest.getMainTree().getHeight()+1;
+        float totalWidth = (float) (2 * Math.PI);
+        float secStart = 0f;
+        int cost = 0;
+        for (Tree tree : forest.getTrees()) {
+            float secWidth = totalWidth;
+            int rad = 0;
+            if (tree != forest.getMainTree()) {
+                secWidth = totalWidth * tree.size() / totalSize;
+                rad = periphery;
+            }
+            RadialLayout layout = new RadialLayout(tree, rad, secStart, secWidth);
+            Drawing drawing = new Drawing(tree, layout, 0.5f*layout.getMaxVertexRadius(),
+                    Drawing.CMIN, Drawing.CMIN,
+                    Drawing.CMAX, Drawing.CMAX,
+                    Drawing.C0, Drawing.C0);
+            cost += SimulatedAnnealing.cost(drawing, tree);
+            if (tree != forest.getMainTree()) {
+                secStart += secWidth;
+            }
+        }
+        return cost;
+    }
+
+    @Test
+    public void testParallelMinimizeCrossings() {
+        InputGraph graph = InputGraph.randomInputGraph(80, 100);
+        Forest forest = new Forest(graph, graph.getVertices().first());
+        Forest initial = new Forest();
+        initial.copy(forest);
+        int initialCost = treesCost(forest);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            forest.minimizeCrossings(0.5f, executor, 2, 200);
+        } finally {
+            executor.shutdown();
+        }
+        // Only the order of the children may have changed
+        assertEquals(initial.getVertices(), forest.getVertices());
+        assertEquals(initial.getTrees().size(), forest.getTrees().size());
+        for (int i = 0; i < forest.getTrees().size(); i++) {
+            Tree tree = forest.getTrees().get(i);
+            assertEquals(initial.getTrees().get(i).getRoot(), tree.getRoot());
+            assertEquals(initial.getTrees().get(i).getEdges(), tree.getEdges());
+        }
+        assertTrue(treesCost(forest) <= initialCost);
+        try {
+            forest.minimizeCrossings(0.5f, executor, 0, 200);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+public class TestIncrementalCost {
+
+    @BeforeClass
+    public static void beforeTests() {
+        System.out.println("Testing class IncrementalCost\n");
+    }
+
+    private void assertSameCrossings(Tree tree, RadialLayout layout, Drawing drawing,
+                                     IncrementalCost tracker, float secStart, float secWidth) {
+        layout.update(tree, 0, secStart, secWidth);
+        drawing.update(tree, layout, 0.5f*layout.getMaxVertexRadius(),
+                Drawing.CMIN, Drawing.CMIN,
+                Drawing.CMAX, Drawing.CMAX,
+                Drawing.C0, Drawing.C0);
+        assertEquals(drawing.nbEdgeCrossings(tree.getExtraEdges()),
+                tracker.getNbEdgeCrossings());
+        assertEquals(drawing.nbVertexCrossings(tree.getExtraEdges()),
+                tracker.getNbVertexCrossings());
+    }
+
+    @Test
+    public void testUpdateAndUndo() {
+        float secStart = 0f;
+        float secWidth = (float) (2 * Math.PI);
+        InputGraph graph = InputGraph.randomInputGraph(60, 90);
+        Tree tree = new Tree(graph.getVertices().first());
+        RadialLayout layout = new RadialLayout(tree, 0, secStart, secWidth);
+        Drawing drawing = new Drawing(tree, layout, 0.5f*layout.getMaxVertexRadius(),
+                Drawing.CMIN, Drawing.CMIN,
+                Drawing.CMAX, Drawing.CMAX,
+                Drawing.C0, Drawing.C0);
+        IncrementalCost tracker = new IncrementalCost(tree, layout, drawing,
+                secStart, secWidth);
+        assertSameCrossings(tree, layout, drawing, tracker, secStart, secWidth);
+        Random rand = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            tree.neighbourState();
+            tracker.update(tree.getLastShuffled());
+            assertSameCrossings(tree, layout, drawing, tracker, secStart, secWidth);
+            if (rand.nextBoolean()) {
+                tree.previousState();
+                tracker.undo();
+                assertSameCrossings(tree, layout, drawing, tracker, secStart, secWidth);
+            }
+        }
+    }
+}
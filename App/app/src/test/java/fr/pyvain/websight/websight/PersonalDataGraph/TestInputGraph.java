@@ -0,0 +1,50 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+public class TestInputGraph {
+
+    @BeforeClass
+    public static void beforeTests() {
+        System.out.println("Testing class InputGraph\n");
+    }
+
+    @Test
+    public void testInputGraph() throws IOException {
+        String json = "{\"urls\": [\"u0\", \"u1\", \"u2\"]," +
+                "\"vertices\": [{\"kw\": \"v0\", \"url_ids\": [0]}," +
+                "{\"kw\": \"v1\", \"url_ids\": [1]}," +
+                "{\"kw\": \"v2\", \"url_ids\": []}]," +
+                "\"edges\": [{\"src\": 0, \"dst\": 1, \"url_ids\": [2]}," +
+                "{\"src\": 1, \"dst\": 2, \"url_ids\": []}]}";
+        InputGraph g1 = new InputGraph(json);
+        InputGraph g2 = new InputGraph(new StringReader(json));
+        assertEquals(g1.getVertices(), g2.getVertices());
+        assertEquals(g1.getEdges(), g2.getEdges());
+        assertEquals(3, g1.getVertices().size());
+        assertEquals(2, g1.getEdges().size());
+        // The edge's urls are added to its ends
+        assertEquals(new HashSet<>(Arrays.asList("u0", "u2")),
+                g1.getVertices().first().getData().getURLs());
+        // Urls are shared between data sets
+        Vertex v0 = g1.getAdjacency().getVertex(0);
+        Vertex v1 = g1.getAdjacency().getVertex(1);
+        assertSame(v0.getData().getDictionary(), v1.getData().getDictionary());
+        assertSame(g1.getURLDictionary(), v0.getData().getDictionary());
+    }
+}
@@ -4,9 +4,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import fr.pyvain.websight.websight.Geometry.CPoint;
+import fr.pyvain.websight.websight.Geometry.CrossoverModel;
 import fr.pyvain.websight.websight.Geometry.InterComputer;
 import fr.pyvain.websight.websight.Geometry.Intersection;
 import fr.pyvain.websight.websight.Geometry.IntersectionSet;
@@ -139,4 +144,381 @@ public class TestInterComputer {
             }
         }
 	}
-}
\ No newline at end of file
+
+    @Test
+    public void testEdgeIntersectionsBOEndpoints() {
+        // The two segments below and above the short one only become
+        // neighbours in the sweep line when it ends
+        List<Segment> segments = new ArrayList<>();
+        segments.add(new Segment(new CPoint(-898, -473), new CPoint(759, -351)));
+        segments.add(new Segment(new CPoint(-191, 989), new CPoint(163, -481)));
+        segments.add(new Segment(new CPoint(-577, -2), new CPoint(-95, 477)));
+        IntersectionSet intersBO = InterComputer.edgeIntersectionsBO(segments);
+        assertEquals(1, intersBO.size());
+        assertEquals(InterComputer.edgeIntersectionsNaive(segments).size(), intersBO.size());
+        // The x-coordinate of the intersection of the first two segments is
+        // rounded before their actual intersection
+        segments = new ArrayList<>();
+        segments.add(new Segment(new CPoint(-729, -450), new CPoint(705, 295)));
+        segments.add(new Segment(new CPoint(-972, 511), new CPoint(436, 288)));
+        segments.add(new Segment(new CPoint(-410, -321), new CPoint(362, 863)));
+        assertEquals(2, InterComputer.edgeIntersectionsBO(segments).size());
+    }
+
+    @Test
+    public void testEdgeIntersectionsExact() {
+        List<Segment> segments = new ArrayList<>();
+        assertEquals(0, InterComputer.edgeIntersectionsExact(segments).size());
+        // A vertical segment through the crossing of two diagonals
+        Segment s1 = new Segment(new CPoint(-100, -100), new CPoint(100, 100));
+        Segment s2 = new Segment(new CPoint(-100, 100), new CPoint(100, -100));
+        Segment s3 = new Segment(new CPoint(0, -100), new CPoint(0, 100));
+        segments.add(s1);
+        segments.add(s2);
+        segments.add(s3);
+        IntersectionSet inters = InterComputer.edgeIntersectionsExact(segments);
+        assertEquals(1, inters.size());
+        Intersection inter = new Intersection(new CPoint(0, 0), s1, s2);
+        inter.addSegmentIfAbsent(s3);
+        assertTrue(inters.at(0).contains(inter));
+        // Edges sharing a root endpoint
+        segments = new ArrayList<>();
+        CPoint root = new CPoint(10, -20);
+        for (int i = 0; i < 12; i++) {
+            double angle = i * Math.PI / 6;
+            segments.add(new Segment(root, new CPoint((int) (500*Math.cos(angle)),
+                    (int) (500*Math.sin(angle)))));
+        }
+        inters = InterComputer.edgeIntersectionsExact(segments);
+        assertEquals(1, inters.size());
+        assertEquals(12, inters.at(10).iterator().next().getSegments().size());
+        // Overlapping segments do not intersect with each other
+        segments = new ArrayList<>();
+        segments.add(new Segment(new CPoint(-100, 0), new CPoint(100, 0)));
+        segments.add(new Segment(new CPoint(-50, 0), new CPoint(200, 0)));
+        assertEquals(0, InterComputer.edgeIntersectionsExact(segments).size());
+        Segment vertical = new Segment(new CPoint(0, -100), new CPoint(0, 0));
+        segments.add(vertical);
+        inters = InterComputer.edgeIntersectionsExact(segments);
+        assertEquals(1, inters.size());
+        assertTrue(inters.at(0).iterator().next().getSegments().contains(vertical));
+        // Random segments, with vertical ones and common endpoints,
+        // compared with the naive method
+        Random rand = new Random(42);
+        for (int t = 0; t < 50; t++) {
+            segments = new ArrayList<>();
+            while (segments.size() < 100) {
+                int x1 = rand.nextInt(2001)-1000;
+                int y1 = rand.nextInt(2001)-1000;
+                int x2 = (t % 2 == 0) ? x1 : rand.nextInt(2001)-1000;
+                int y2 = rand.nextInt(2001)-1000;
+                if (t % 3 == 0 && !segments.isEmpty()) {
+                    CPoint p = segments.get(rand.nextInt(segments.size())).getP2();
+                    x1 = p.getX();
+                    y1 = p.getY();
+                }
+                if (x1 != x2 || y1 != y2) {
+                    segments.add(new Segment(new CPoint(x1, y1), new CPoint(x2, y2)));
+                }
+            }
+            IntersectionSet intersNaive = InterComputer.edgeIntersectionsNaive(segments);
+            inters = InterComputer.edgeIntersectionsExact(segments);
+            assertEquals(intersNaive.size(), inters.size());
+            for (Intersection i : intersNaive.toArray()) {
+                int x = i.getLocation().getX();
+                boolean found = false;
+                for (Intersection j : inters.at(x)) {
+                    found |= j.getLocation().equals(i.getLocation());
+                }
+                assertTrue(found);
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeIntersectionsParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Segment> segments = new ArrayList<>();
+            assertEquals(0, InterComputer.edgeIntersectionsParallel(segments, executor, 4).size());
+            // A crossing on the boundary of two slabs is reported once
+            segments.add(new Segment(new CPoint(-100, -100), new CPoint(100, 100)));
+            segments.add(new Segment(new CPoint(-100, 100), new CPoint(100, -100)));
+            assertEquals(1, InterComputer.edgeIntersectionsParallel(segments, executor, 2).size());
+            // Random segments, compared with the sequential method
+            Random rand = new Random(42);
+            for (int t = 0; t < 30; t++) {
+                segments = new ArrayList<>();
+                while (segments.size() < 100) {
+                    int x1 = rand.nextInt(2001)-1000;
+                    int y1 = rand.nextInt(2001)-1000;
+                    int x2 = (t % 2 == 0) ? rand.nextInt(2001)-1000 : x1 + rand.nextInt(201)-100;
+                    int y2 = rand.nextInt(2001)-1000;
+                    if (t % 3 == 0 && !segments.isEmpty()) {
+                        CPoint p = segments.get(rand.nextInt(segments.size())).getP2();
+                        x1 = p.getX();
+                        y1 = p.getY();
+                    }
+                    if (x1 != x2 || y1 != y2) {
+                        segments.add(new Segment(new CPoint(x1, y1), new CPoint(x2, y2)));
+                    }
+                }
+                IntersectionSet intersExact = InterComputer.edgeIntersectionsExact(segments);
+                for (int nbSlabs : new int[] {1, 4, 64, 5000}) {
+                    IntersectionSet inters =
+                            InterComputer.edgeIntersectionsParallel(segments, executor, nbSlabs);
+                    assertEquals(intersExact.size(), inters.size());
+                    for (Intersection i : intersExact.toArray()) {
+                        int x = i.getLocation().getX();
+                        boolean found = false;
+                        for (Intersection j : inters.at(x)) {
+                            found |= j.getLocation().equals(i.getLocation());
+                        }
+                        assertTrue(found);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEdgeIntersectionsParallelNoSlab() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            InterComputer.edgeIntersectionsParallel(new ArrayList<Segment>(), executor, 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testEdgeIntersectionsBoxed() {
+        // Grid of horizontal and diagonal segments
+        List<Segment> segments = new ArrayList<>();
+        for (int y = -900; y <= 900; y+=100) {
+            segments.add(new Segment(new CPoint(-1000, y), new CPoint(1000, y)));
+        }
+        for (int x = -1000; x <= 900; x+=100) {
+            segments.add(new Segment(new CPoint(x, -1000), new CPoint(x+100, 1000)));
+        }
+        assertEquals(19*20, InterComputer.edgeIntersectionsBoxed(segments).size());
+        // Random short segments, compared with the naive method
+        Random rand = new Random(42);
+        segments = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            int x = rand.nextInt(1800)-900;
+            int y = rand.nextInt(1800)-900;
+            segments.add(new Segment(new CPoint(x, y),
+                    new CPoint(x+rand.nextInt(200)-100, y+rand.nextInt(200)-100)));
+        }
+        IntersectionSet intersNaive = InterComputer.edgeIntersectionsNaive(segments);
+        IntersectionSet intersBoxed = InterComputer.edgeIntersectionsBoxed(segments);
+        assertEquals(intersNaive.size(), intersBoxed.size());
+        for (Intersection inter : intersNaive.toArray()) {
+            int x = inter.getLocation().getX();
+            assertTrue(intersBoxed.at(x).contains(inter));
+        }
+    }
+
+    /**
+     * Sorted locations of the specified intersections, with the number
+     * of segments through each one.
+     */
+    private static List<String> locations(IntersectionSet inters) {
+        List<String> res = new ArrayList<>();
+        for (Intersection i : inters.toArray()) {
+            res.add(i.getLocation().getX() + "," + i.getLocation().getY() + ":"
+                    + i.getSegments().size());
+        }
+        Collections.sort(res);
+        return res;
+    }
+
+    @Test
+    public void testEdgeIntersectionsPinned() {
+        // Whatever the method pinned or chosen, the same intersections are
+        // found in random sets with common endpoints and vertical segments
+        CrossoverModel[] models = new CrossoverModel[CrossoverModel.NB_ALGORITHMS + 1];
+        for (int a = 0; a < CrossoverModel.NB_ALGORITHMS; a++) {
+            models[a] = new CrossoverModel();
+            models[a].pin(a);
+        }
+        models[CrossoverModel.NB_ALGORITHMS] = new CrossoverModel();
+        Random rand = new Random(42);
+        for (int t = 0; t < 300; t++) {
+            int spread = (t % 2 == 0) ? 1000 : 10 + rand.nextInt(100);
+            int n = 2 + rand.nextInt(80);
+            List<Segment> segments = new ArrayList<>();
+            while (segments.size() < n) {
+                int x1 = rand.nextInt(2*spread+1)-spread;
+                int y1 = rand.nextInt(2*spread+1)-spread;
+                int x2 = (t % 5 == 0) ? x1 : rand.nextInt(2*spread+1)-spread;
+                int y2 = rand.nextInt(2*spread+1)-spread;
+                if (t % 3 == 0 && !segments.isEmpty()) {
+                    CPoint p = segments.get(rand.nextInt(segments.size())).getP2();
+                    x1 = p.getX();
+                    y1 = p.getY();
+                }
+                if (x1 != x2 || y1 != y2) {
+                    segments.add(new Segment(new CPoint(x1, y1), new CPoint(x2, y2)));
+                }
+            }
+            List<String> expected = locations(InterComputer.edgeIntersectionsNaive(segments));
+            for (CrossoverModel model : models) {
+                assertEquals(expected, locations(InterComputer.edgeIntersections(segments, model)));
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeIntersectionsAdaptive() {
+        // Whatever the method chosen, the same intersections are found
+        // in the grid, which has no common endpoints
+        List<Segment> segments = new ArrayList<>();
+        for (int y = -900; y <= 900; y+=100) {
+            segments.add(new Segment(new CPoint(-1000, y), new CPoint(1000, y)));
+        }
+        for (int x = -1000; x <= 900; x+=100) {
+            segments.add(new Segment(new CPoint(x, -1000), new CPoint(x+100, 1000)));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(19*20, InterComputer.edgeIntersections(segments).size());
+        }
+    }
+
+    @Test
+    public void testEdgeIntersectionsBOConcurrent() throws InterruptedException {
+        // Random segments, processed by several sweeps at the same time
+        Random rand = new Random(42);
+        final List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            segments.add(new Segment(
+                    new CPoint(rand.nextInt(2000)-1000, rand.nextInt(2000)-1000),
+                    new CPoint(rand.nextInt(2000)-1000, rand.nextInt(2000)-1000)));
+        }
+        final int expected = InterComputer.edgeIntersectionsBO(segments).size();
+        final int nbThreads = 4;
+        final int[] results = new int[nbThreads*10];
+        Thread[] threads = new Thread[nbThreads];
+        for (int t = 0; t < nbThreads; t++) {
+            final int first = t*10;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = first; i < first+10; i++) {
+                        results[i] = InterComputer.edgeIntersectionsBO(segments).size();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int res : results) {
+            assertEquals(expected, res);
+        }
+    }
+
+    @Test
+    public void testNbEdgeCrossings() {
+        // Grid of horizontal and diagonal segments
+        int[] coords = new int[4*39];
+        int nb = 0;
+        for (int y = -900; y <= 900; y+=100) {
+            coords[4*nb] = -1000;
+            coords[4*nb+1] = y;
+            coords[4*nb+2] = 1000;
+            coords[4*nb+3] = y;
+            nb++;
+        }
+        for (int x = -1000; x <= 900; x+=100) {
+            coords[4*nb] = x;
+            coords[4*nb+1] = -1000;
+            coords[4*nb+2] = x+100;
+            coords[4*nb+3] = 1000;
+            nb++;
+        }
+        long[] scratch = new long[nb];
+        assertEquals(19*20, InterComputer.nbEdgeCrossings(coords, nb, scratch));
+        // Only the first segments are analysed
+        assertEquals(0, InterComputer.nbEdgeCrossings(coords, 19, scratch));
+        // Random segments, compared with a pair by pair computation
+        Random rand = new Random(42);
+        nb = 300;
+        coords = new int[4*nb];
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < nb; i++) {
+            for (int j = 0; j < 4; j++) {
+                coords[4*i+j] = rand.nextInt(2000)-1000;
+            }
+            segments.add(new Segment(new CPoint(coords[4*i], coords[4*i+1]),
+                    new CPoint(coords[4*i+2], coords[4*i+3])));
+        }
+        int expected = 0;
+        for (int i = 0; i < nb; i++) {
+            for (int j = i+1; j < nb; j++) {
+                if (segments.get(i).intersectionWith(segments.get(j)) != null) {
+                    expected++;
+                }
+            }
+        }
+        assertEquals(expected, InterComputer.nbEdgeCrossings(coords, nb, new long[nb]));
+    }
+
+    @Test
+    public void testNbEdgeCrossingsOfFirst() {
+        // Grid of horizontal and diagonal segments
+        int[] coords = new int[4*39];
+        int nb = 0;
+        for (int y = -900; y <= 900; y+=100) {
+            coords[4*nb] = -1000;
+            coords[4*nb+1] = y;
+            coords[4*nb+2] = 1000;
+            coords[4*nb+3] = y;
+            nb++;
+        }
+        for (int x = -1000; x <= 900; x+=100) {
+            coords[4*nb] = x;
+            coords[4*nb+1] = -1000;
+            coords[4*nb+2] = x+100;
+            coords[4*nb+3] = 1000;
+            nb++;
+        }
+        long[] scratch = new long[2*nb];
+        assertEquals(19*20, InterComputer.nbEdgeCrossings(coords, nb, 19, scratch));
+        assertEquals(2*20, InterComputer.nbEdgeCrossings(coords, nb, 2, scratch));
+        assertEquals(0, InterComputer.nbEdgeCrossings(coords, nb, 0, scratch));
+        // Random segments, compared with a pair by pair computation
+        Random rand = new Random(42);
+        nb = 300;
+        coords = new int[4*nb];
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < nb; i++) {
+            for (int j = 0; j < 4; j++) {
+                coords[4*i+j] = rand.nextInt(2000)-1000;
+            }
+            segments.add(new Segment(new CPoint(coords[4*i], coords[4*i+1]),
+                    new CPoint(coords[4*i+2], coords[4*i+3])));
+        }
+        for (int nbFirst : new int[] {1, 50, 300}) {
+            int expected = 0;
+            for (int i = 0; i < nbFirst; i++) {
+                for (int j = i+1; j < nb; j++) {
+                    if (segments.get(i).intersectionWith(segments.get(j)) != null) {
+                        expected++;
+                    }
+                }
+            }
+            assertEquals(expected, InterComputer.nbEdgeCrossings(coords, nb, nbFirst,
+                    new long[nb+nbFirst]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNbEdgeCrossingsOfFirstShortScratch() {
+        InterComputer.nbEdgeCrossings(new int[8], 2, 1, new long[2]);
+    }
+}
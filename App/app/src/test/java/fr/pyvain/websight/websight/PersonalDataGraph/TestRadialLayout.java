@@ -210,4 +210,35 @@ public class TestRadialLayout {
         assertNotEquals(l0, l1);
         assertNotEquals(l1, l0);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReusedLayout() {
+        RadialLayout reused = new RadialLayout();
+        // The graph grows then shrinks between two updates
+        for (int n : new int[]{30, 10, 60, 20}) {
+            InputGraph graph = InputGraph.randomInputGraph(n, n);
+            Forest forest = new Forest(graph, graph.getVertices().first());
+            reused.update(forest);
+            RadialLayout expected = new RadialLayout(forest);
+            assertEquals(expected, reused);
+            assertEquals(expected.hashCode(), reused.hashCode());
+            assertEquals(n, reused.getNbVertices());
+            for (int i = 0; i < n; i++) {
+                assertEquals(expected.getPolarCoords(i), reused.getPolarCoords(i));
+                assertEquals(reused.getPolarCoords(i).getRadius(), reused.getRadius(i));
+                assertEquals(reused.getPolarCoords(i).getAngle(), reused.getAngle(i), 0f);
+            }
+
+            Tree tree = forest.getMainTree();
+            reused.update(tree, 1, 0.5f, 3f);
+            assertEquals(new RadialLayout(tree, 1, 0.5f, 3f), reused);
+            assertEquals(tree.size(), reused.getNbVertices());
+        }
+        try {
+            reused.getRadius(reused.getNbVertices());
+            fail("IndexOutOfBoundsException expected");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+}
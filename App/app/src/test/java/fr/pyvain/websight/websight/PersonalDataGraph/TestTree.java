@@ -6,8 +6,10 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -178,6 +180,34 @@ public class TestTree {
         assertEquals(before, back);
     }
 
+    @Test
+    public void testShufflableVertices() {
+        InputGraph graph = testingGraph();
+        SortedSet<Vertex> vertices = graph.getVertices();
+        Vertex[] v = new Vertex[7];
+        int i = 0;
+        for (Vertex vertex : vertices) {
+            v[i++] = vertex;
+        }
+        Tree tree = new Tree(v[3]);
+        assertEquals(Collections.singletonList(v[4]), tree.getShufflableVertices());
+        assertEquals(tree.getShufflableVertices(), new Tree(tree).getShufflableVertices());
+        Random rand = new Random(42);
+        for (i = 0; i < 20; i++) {
+            tree.neighbourState(rand, true);
+            assertEquals(v[4], tree.getLastShuffled());
+            tree.previousState();
+        }
+        // Every vertex may be chosen otherwise
+        Set<Vertex> chosen = new HashSet<>();
+        for (i = 0; i < 200; i++) {
+            tree.neighbourState(rand, false);
+            chosen.add(tree.getLastShuffled());
+            tree.previousState();
+        }
+        assertEquals(tree.getVertices(), chosen);
+    }
+
     @Test
     public void testEqual(){
         InputGraph graph = testingGraph();
@@ -214,4 +244,16 @@ public class TestTree {
         tree2.copy(tree1);
         assertEquals(tree1, tree2);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTreeFromAdjacency() {
+        InputGraph graph = InputGraph.randomInputGraph(60, 70);
+        for (Vertex root : graph.getVertices()) {
+            Tree expected = new Tree(root);
+            Tree tree = new Tree(graph.getAdjacency(), root);
+            assertEquals(expected, tree);
+            assertEquals(expected.getNbDescendants(), tree.getNbDescendants());
+            assertEquals(expected.getHeight(), tree.getHeight());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * <p>
+ *     @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+
+public class TestTreeState {
+
+    @BeforeClass
+    public static void beforeTests() {
+        System.out.println("Testing class TreeState\n");
+    }
+
+    private int[] ids(List<Vertex> vertices) {
+        int[] res = new int[vertices.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = vertices.get(i).getId();
+        }
+        return res;
+    }
+
+    @Test
+    public void testTreeState() {
+        InputGraph graph = InputGraph.randomInputGraph(50, 80);
+        Tree tree = new Tree(graph.getVertices().first());
+        Tree initial = new Tree(tree);
+        TreeState state = new TreeState(tree);
+        for (Vertex v : tree.getVertices()) {
+            assertArrayEquals(ids(tree.getChildren(v)), state.getChildrenIds(v));
+        }
+        // Shuffles without saving : the snapshot does not change
+        Random rand = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            tree.neighbourState(rand);
+            state.markDirty(tree.getLastShuffled());
+        }
+        for (Vertex v : tree.getVertices()) {
+            assertArrayEquals(ids(initial.getChildren(v)), state.getChildrenIds(v));
+        }
+        // Saves the dirty vertices
+        state.save(tree);
+        for (Vertex v : tree.getVertices()) {
+            assertArrayEquals(ids(tree.getChildren(v)), state.getChildrenIds(v));
+        }
+        // Restores the saved state into the initial tree
+        initial.neighbourState(rand);
+        initial.previousState();
+        initial.restoreState(state);
+        assertEquals(tree.getChildren(), initial.getChildren());
+        assertNull(initial.getLastShuffled());
+        assertNull(initial.getPreShuffleOrder());
+    }
+}
@@ -3,12 +3,17 @@ package fr.pyvain.websight.websight.SweetGraphs;
 import org.junit.Before;
 import org.junit.Test;
 
+import fr.pyvain.websight.websight.GraphCore.URLDictionary;
+
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * <p>
@@ -69,4 +74,38 @@ public class DataSetTest {
         d1.addURLs(urls1);
         assertEquals(d.hashCode(), d1.hashCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetNbURLs() throws Exception {
+        assertEquals(0, d.getNbURLs());
+        d.addURLs(Arrays.asList("url1", "url2", "url1"));
+        assertEquals(2, d.getNbURLs());
+        assertTrue(d.getURLs().contains("url2"));
+        assertFalse(d.getURLs().contains("url3"));
+    }
+
+    @Test
+    public void testAddDataSet() throws Exception {
+        DataSet d1 = new DataSet();
+        d1.addURLs(urls1);
+        // An empty DataSet adopts the dictionary of the added one
+        d.addURLs(d1);
+        assertSame(d1.getDictionary(), d.getDictionary());
+        assertEquals(d1, d);
+        // Data sets of different dictionaries are merged by urls
+        DataSet d2 = new DataSet();
+        d2.addURLs(urls2);
+        d.addURLs(d2);
+        Set<String> expected = new HashSet<>(urls1);
+        expected.addAll(urls2);
+        assertEquals(expected, d.getURLs());
+        assertEquals(5, d.getNbURLs());
+        // Moving to another dictionary keeps the urls
+        URLDictionary dictionary = new URLDictionary();
+        dictionary.getId("url0");
+        d.setDictionary(dictionary);
+        assertSame(dictionary, d.getDictionary());
+        assertEquals(expected, d.getURLs());
+        assertEquals(6, dictionary.size());
+    }
+}
@@ -3,6 +3,9 @@ package fr.pyvain.websight.websight.SweetGraphs;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -129,4 +132,38 @@ public class ForestRadialLayoutTest {
         expected.add(new Circle(new Point(200.000000f, 400.000000f), 181.818176f));
         assertEquals(expected, layout2.projectedOrbits(projSpace));
     }
-}
\ No newline at end of file
+
+    /**
+     * Copy of the specified layout without its polar coordinates, read
+     * from its binary form.
+     */
+    private ForestRadialLayout copyOf(ForestRadialLayout layout) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        layout.writeTo(new DataOutputStream(bytes));
+        return new ForestRadialLayout(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    @Test
+    public void testPolarInterpolation() throws Exception {
+        ForestRadialLayout to = new ForestRadialLayout(graph, otherRoot);
+        to.rotate(3f);
+        ForestRadialLayout fromCopy = copyOf(layout2);
+        ForestRadialLayout toCopy = copyOf(to);
+        for (float step : new float[] {0f, 0.3f, 0.7f, 1f}) {
+            // Interpolates the polar coordinates of the layouts, or of
+            // the centers of their copies
+            Map<Integer, Circle> expected =
+                    new ForestRadialLayout(graph, fromCopy, toCopy, step).projectedVertices(projSpace);
+            Map<Integer, Circle> actual =
+                    new ForestRadialLayout(graph, layout2, to, step).projectedVertices(projSpace);
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Integer id : expected.keySet()) {
+                Point p1 = expected.get(id).getCenter();
+                Point p2 = actual.get(id).getCenter();
+                assertEquals(p1.getX(), p2.getX(), 1e-2);
+                assertEquals(p1.getY(), p2.getY(), 1e-2);
+                assertEquals(expected.get(id).getRadius(), actual.get(id).getRadius(), 1e-4);
+            }
+        }
+    }
+}
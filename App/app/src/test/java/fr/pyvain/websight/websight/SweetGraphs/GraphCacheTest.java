@@ -0,0 +1,177 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public class GraphCacheTest {
+
+    private Graph graph;
+    private ForestRadialLayout layout;
+    private Rectangle projSpace;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = new Graph(Graph.niceGraph());
+        layout = new ForestRadialLayout(graph, graph.getVertices().first());
+        projSpace = new Rectangle(new Point(200, 400), 400, 800);
+        file = File.createTempFile("graph", ".cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        new GraphCache(graph, layout).write(file);
+        GraphCache cache = GraphCache.read(file);
+        Graph g = cache.getGraph();
+        assertEquals(graph.getVertices(), g.getVertices());
+        assertEquals(graph.getEdges(), g.getEdges());
+        for (Vertex v : graph.getVertices()) {
+            Vertex read = g.getAdjacency().getVertex(v.getId());
+            assertEquals(v.getLabel(), read.getLabel());
+            assertEquals(v.getData(), read.getData());
+        }
+        for (Edge e : graph.getEdges()) {
+            Edge read = g.getAdjacency().getVertex(e.getEnd1().getId())
+                    .getEdgeTo(e.getEnd2());
+            assertEquals(e.getData(), read.getData());
+        }
+        ForestRadialLayout l = cache.getLayout();
+        assertEquals(layout.getRootId(), l.getRootId());
+        assertEquals(layout.projectedVertices(projSpace), l.projectedVertices(projSpace));
+        assertEquals(layout.projectedEdges(projSpace), l.projectedEdges(projSpace));
+        assertEquals(layout.projectedOrbits(projSpace), l.projectedOrbits(projSpace));
+    }
+
+    @Test
+    public void testReadWrongVersion() throws Exception {
+        new GraphCache(graph, layout).write(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4);
+            raf.writeInt(GraphCache.VERSION + 1);
+        } finally {
+            raf.close();
+        }
+        try {
+            GraphCache.read(file);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadTruncated() throws Exception {
+        new GraphCache(graph, layout).write(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() / 2);
+        } finally {
+            raf.close();
+        }
+        try {
+            GraphCache.read(file);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWriteForeignData() throws Exception {
+        // An empty data set takes the dictionary of the urls added to it
+        Graph small = smallGraph();
+        DataSet foreign = new DataSet();
+        foreign.addURLs(Arrays.asList("www.foreign.com", "www.other.com"));
+        DataSet data = small.getAdjacency().getVertex(0).getData();
+        data.addURLs(foreign);
+        int nbURLs = small.getURLDictionary().size();
+        new GraphCache(small, new ForestRadialLayout(small, small.getVertices().first())).write(file);
+        // Writing changes neither the graph nor its data sets
+        assertSame(foreign.getDictionary(), data.getDictionary());
+        assertEquals(nbURLs, small.getURLDictionary().size());
+        Graph g = GraphCache.read(file).getGraph();
+        assertEquals(data.getURLs(), g.getAdjacency().getVertex(0).getData().getURLs());
+    }
+
+    @Test
+    public void testReadInvalidCounts() throws Exception {
+        // Number of urls, then of url ids of the first vertex of a graph
+        // without urls, whose label is "a"
+        assertInvalid(graph, 8, -1);
+        assertInvalid(graph, 8, Integer.MAX_VALUE);
+        Graph small = smallGraph();
+        assertInvalid(small, 21, -1);
+        assertInvalid(small, 21, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testReadDecreasingOffsets() throws Exception {
+        // The 4 offsets of smallGraph(), from 0 to 3, are after its 3
+        // vertices of 9 bytes and its number of edges
+        int offsets = 16 + 3*9 + 4;
+        assertInvalid(smallGraph(), offsets + 4, 4);
+        assertInvalid(smallGraph(), offsets + 8, -1);
+    }
+
+    /**
+     * Builds a graph of 3 vertices labeled "a", "b" and "c", without urls,
+     * and of edges 0-1, 0-2 and 1-2.
+     */
+    private Graph smallGraph() {
+        List<Vertex> vertices = new ArrayList<>();
+        vertices.add(new Vertex(0, "a"));
+        vertices.add(new Vertex(1, "b"));
+        vertices.add(new Vertex(2, "c"));
+        List<Edge> edges = new ArrayList<>();
+        edges.add(new Edge(vertices.get(0), vertices.get(1)));
+        edges.add(new Edge(vertices.get(0), vertices.get(2)));
+        edges.add(new Edge(vertices.get(1), vertices.get(2)));
+        return new Graph(vertices, edges);
+    }
+
+    /**
+     * Writes the specified graph, replaces the int at the specified position
+     * of the file by the specified value, and checks that the file is
+     * rejected.
+     */
+    private void assertInvalid(Graph g, int position, int value) throws Exception {
+        new GraphCache(g, new ForestRadialLayout(g, g.getVertices().first())).write(file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(position);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+        try {
+            GraphCache.read(file);
+            fail("Accepted " + value + " at " + position);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
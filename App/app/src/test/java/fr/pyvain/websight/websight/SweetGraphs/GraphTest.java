@@ -3,14 +3,20 @@ package fr.pyvain.websight.websight.SweetGraphs;
 import org.junit.Before;
 import org.junit.Test;
 
+import fr.pyvain.websight.websight.GraphCore.Adjacency;
+import fr.pyvain.websight.websight.GraphCore.URLDictionary;
+
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -99,6 +105,27 @@ public class GraphTest {
         }
     }
 
+    @Test
+    public void testGetAdjacency() {
+        Adjacency<Vertex, Edge> adjacency = graph.getAdjacency();
+        assertEquals(7, adjacency.getNbVertices());
+        int[] offsets = adjacency.getOffsets();
+        int[] targets = adjacency.getTargets();
+        int[][] neighbours = new int[][]{{1, 3}, {0, 2, 3}, {1}, {0, 1}, {5}, {4}, {}};
+        assertEquals(2*edges.size(), offsets[7]);
+        for (int i = 0; i < 7; i++) {
+            Vertex v = adjacency.getVertex(i);
+            assertEquals(i, v.getId());
+            assertEquals(neighbours[i].length, offsets[i+1]-offsets[i]);
+            for (int j = 0; j < neighbours[i].length; j++) {
+                int target = targets[offsets[i]+j];
+                assertEquals(neighbours[i][j], target);
+                assertEquals(v.getEdgeTo(adjacency.getVertex(target)),
+                        adjacency.getEdge(offsets[i]+j));
+            }
+        }
+    }
+
     @Test
     public void testGetEdges() {
         Set<Edge> gEdges = graph.getEdges();
@@ -142,4 +169,42 @@ public class GraphTest {
     public void testGetMaxEdgeSize() throws Exception {
         assertEquals(2, graph.getMaxEdgeSize());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGraphFromJson() throws Exception {
+        Graph g1 = new Graph(Graph.niceGraph());
+        Graph g2 = new Graph(new StringReader(Graph.niceGraph()));
+        assertEquals(12, g1.getVertices().size());
+        assertEquals(11, g1.getEdges().size());
+        assertEquals(g1.getVertices(), g2.getVertices());
+        assertEquals(g1.getEdges(), g2.getEdges());
+        Vertex v5 = g1.getAdjacency().getVertex(5);
+        assertEquals("jeffray@gmail.com", v5.getLabel());
+        assertEquals(new HashSet<>(Arrays.asList("www.facebook.com",
+                "www.theguardian.com", "www.twitter.com")), v5.getData().getURLs());
+        assertEquals(0, g1.getMinEdgeSize());
+        assertEquals(10, g1.getMaxEdgeSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGraphFromInvalidJson() {
+        new Graph("{\"urls\": [], \"vertices\": [{\"kw\": \"a\", \"url_ids\": [0]}], \"edges\": []}");
+    }
+
+    @Test
+    public void testGetURLDictionary() {
+        URLDictionary dictionary = graph.getURLDictionary();
+        for (Vertex v : graph.getVertices()) {
+            if (v.getData().getNbURLs() > 0) {
+                assertSame(dictionary, v.getData().getDictionary());
+            }
+        }
+        for (Edge e : graph.getEdges()) {
+            if (e.getData().getNbURLs() > 0) {
+                assertSame(dictionary, e.getData().getDictionary());
+            }
+        }
+        Graph nice = new Graph(Graph.niceGraph());
+        assertEquals(14, nice.getURLDictionary().size());
+    }
+}
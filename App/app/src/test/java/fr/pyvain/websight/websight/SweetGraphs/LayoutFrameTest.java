@@ -0,0 +1,202 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public class LayoutFrameTest {
+
+    private final static float EPS = 1e-2f;
+    private Rectangle projSpace;
+
+    @Before
+    public void setUp() throws Exception {
+        projSpace = new Rectangle(new Point(200, 400), 400, 800);
+    }
+
+    /**
+     * Checks that the specified frame is the projection of the specified
+     * layout.
+     */
+    private void assertFrame(Graph graph, ForestRadialLayout layout, LayoutFrame frame) {
+        Map<Integer, Circle> vertices = layout.projectedVertices(projSpace);
+        assertEquals(vertices.size(), frame.getNbVertices());
+        for (Map.Entry<Integer, Circle> e : vertices.entrySet()) {
+            int id = e.getKey();
+            assertEquals(e.getValue().getCenter().getX(), frame.getCenterX(id), EPS);
+            assertEquals(e.getValue().getCenter().getY(), frame.getCenterY(id), EPS);
+            assertEquals(e.getValue().getRadius(), frame.getRadius(id), EPS);
+        }
+        Map<Integer, Map<Integer, Segment>> edges = layout.projectedEdges(projSpace);
+        assertEquals(graph.getEdges().size(), frame.getNbEdges());
+        for (int i = 0; i < frame.getNbEdges(); i++) {
+            Edge e = frame.getEdge(i);
+            assertEquals(e.getEnd1().getId(), frame.getEnd1(i));
+            assertEquals(e.getEnd2().getId(), frame.getEnd2(i));
+            Segment s = edges.get(frame.getEnd1(i)).get(frame.getEnd2(i));
+            assertEquals(s.getLeftEnd().getX(), frame.getX1(i), EPS);
+            assertEquals(s.getLeftEnd().getY(), frame.getY1(i), EPS);
+            assertEquals(s.getRightEnd().getX(), frame.getX2(i), EPS);
+            assertEquals(s.getRightEnd().getY(), frame.getY2(i), EPS);
+            assertEquals(s.getThickness(), frame.getThickness(i), EPS);
+        }
+        List<Circle> orbits = layout.projectedOrbits(projSpace);
+        assertEquals(orbits.size(), frame.getNbOrbits());
+        for (int i = 0; i < orbits.size(); i++) {
+            assertEquals(orbits.get(i).getCenter().getX(), frame.getOrbitX(i), EPS);
+            assertEquals(orbits.get(i).getCenter().getY(), frame.getOrbitY(i), EPS);
+            assertEquals(orbits.get(i).getRadius(), frame.getOrbitRadius(i), EPS);
+        }
+        assertEquals(layout.projectedMinRadius(projSpace), frame.getMinRadius(), EPS);
+    }
+
+    /**
+     * Copy of the specified layout without its polar coordinates, read
+     * from its binary form.
+     */
+    private ForestRadialLayout copyOf(ForestRadialLayout layout) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        layout.writeTo(new DataOutputStream(bytes));
+        return new ForestRadialLayout(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        Graph graph = Graph.randomInputGraph(30, 40);
+        ForestRadialLayout layout = new ForestRadialLayout(graph, graph.getVertices().first());
+        layout.rotate(1f);
+        LayoutFrame frame = new LayoutFrame();
+        frame.update(graph, layout, projSpace);
+        assertFrame(graph, layout, frame);
+        // Same for a layout whose polar coordinates are not known
+        frame.update(graph, copyOf(layout), projSpace);
+        assertFrame(graph, layout, frame);
+    }
+
+    @Test
+    public void testInterpolation() throws Exception {
+        Graph graph = Graph.randomInputGraph(30, 40);
+        ForestRadialLayout from = new ForestRadialLayout(graph, graph.getVertices().first());
+        ForestRadialLayout to = new ForestRadialLayout(graph, graph.getVertices().last());
+        to.rotate(3f);
+        LayoutFrame frame = new LayoutFrame();
+        for (float step : new float[] {0f, 0.3f, 0.7f, 1f}) {
+            frame.update(graph, from, to, step, projSpace);
+            assertFrame(graph, new ForestRadialLayout(graph, from, to, step), frame);
+        }
+    }
+
+    /**
+     * Checks that the visible vertices and edges of the specified culled
+     * frame are the ones of the specified full frame which intersect the
+     * specified rectangle, at the same place. The items within EPS of
+     * the rectangle may be found or not.
+     */
+    private void assertCulled(LayoutFrame full, LayoutFrame culled, Rectangle visible) {
+        float minX = visible.getCenter().getX() - visible.getWidth()/2;
+        float maxX = visible.getCenter().getX() + visible.getWidth()/2;
+        float minY = visible.getCenter().getY() - visible.getHeight()/2;
+        float maxY = visible.getCenter().getY() + visible.getHeight()/2;
+        Set<Integer> found = new HashSet<>();
+        for (int k = 0; k < culled.getNbVisibleVertices(); k++) {
+            int id = culled.getVisibleVertex(k);
+            assertTrue(culled.isVertexVisible(id));
+            assertTrue(found.add(id));
+            assertEquals(full.getCenterX(id), culled.getCenterX(id), EPS);
+            assertEquals(full.getCenterY(id), culled.getCenterY(id), EPS);
+            assertEquals(full.getRadius(id), culled.getRadius(id), EPS);
+        }
+        for (int id = 0; id < full.getNbVertices(); id++) {
+            float x = full.getCenterX(id);
+            float y = full.getCenterY(id);
+            float r = full.getRadius(id);
+            if (LayoutIndex.circleIntersects(minX + EPS, minY + EPS, maxX - EPS, maxY - EPS, x, y, r)) {
+                assertTrue(found.contains(id));
+            } else if (!LayoutIndex.circleIntersects(minX - EPS, minY - EPS, maxX + EPS, maxY + EPS, x, y, r)) {
+                assertTrue(!found.contains(id));
+            }
+        }
+        found.clear();
+        for (int k = 0; k < culled.getNbVisibleEdges(); k++) {
+            int i = culled.getVisibleEdge(k);
+            assertTrue(found.add(i));
+            assertEquals(full.getX1(i), culled.getX1(i), EPS);
+            assertEquals(full.getY1(i), culled.getY1(i), EPS);
+            assertEquals(full.getX2(i), culled.getX2(i), EPS);
+            assertEquals(full.getY2(i), culled.getY2(i), EPS);
+        }
+        for (int i = 0; i < full.getNbEdges(); i++) {
+            float x1 = full.getX1(i);
+            float y1 = full.getY1(i);
+            float x2 = full.getX2(i);
+            float y2 = full.getY2(i);
+            if (LayoutIndex.segmentIntersects(minX + EPS, minY + EPS, maxX - EPS, maxY - EPS, x1, y1, x2, y2)) {
+                assertTrue(found.contains(i));
+            } else if (!LayoutIndex.segmentIntersects(minX - EPS, minY - EPS, maxX + EPS, maxY + EPS, x1, y1, x2, y2)) {
+                assertTrue(!found.contains(i));
+            }
+        }
+    }
+
+    @Test
+    public void testCulling() throws Exception {
+        Graph graph = Graph.randomInputGraph(200, 250);
+        ForestRadialLayout layout = new ForestRadialLayout(graph, graph.getVertices().first());
+        ForestRadialLayout next = new ForestRadialLayout(graph, graph.getVertices().last());
+        LayoutFrame full = new LayoutFrame();
+        LayoutFrame culled = new LayoutFrame();
+        full.update(graph, layout, projSpace);
+        assertEquals(graph.getAdjacency().getNbVertices(), full.getNbVisibleVertices());
+        assertEquals(graph.getEdges().size(), full.getNbVisibleEdges());
+        // Zoomed in, only a part of the canvas is visible
+        Rectangle visible = new Rectangle(new Point(250, 300), 100, 150);
+        culled.update(graph, layout, projSpace, visible);
+        assertCulled(full, culled, visible);
+        int nbVisible = culled.getNbVisibleVertices();
+        assertTrue(0 < nbVisible && nbVisible < full.getNbVertices());
+        // Same during an animation
+        for (float step : new float[] {0.2f, 0.6f}) {
+            full.update(graph, layout, next, step, projSpace);
+            culled.update(graph, layout, next, step, projSpace, visible);
+            assertCulled(full, culled, visible);
+        }
+        // Nothing is visible beside the layout
+        culled.update(graph, layout, projSpace, new Rectangle(new Point(2000, 2000), 10, 10));
+        assertEquals(0, culled.getNbVisibleVertices());
+        assertEquals(0, culled.getNbVisibleEdges());
+    }
+
+    @Test
+    public void testReusedFrame() throws Exception {
+        LayoutFrame frame = new LayoutFrame();
+        // The graph grows and shrinks between two updates
+        for (int n : new int[] {10, 40, 5, 25}) {
+            Graph graph = Graph.randomInputGraph(n, n);
+            ForestRadialLayout layout = new ForestRadialLayout(graph, graph.getVertices().first());
+            frame.update(graph, layout, projSpace);
+            assertFrame(graph, layout, frame);
+            // The edges are indexed again only when the graph changes
+            Edge first = (frame.getNbEdges() > 0) ? frame.getEdge(0) : null;
+            frame.update(graph, layout, projSpace);
+            if (first != null) {
+                assertSame(first, frame.getEdge(0));
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public class LayoutIndexTest {
+
+    @Test
+    public void testCircleIntersects() throws Exception {
+        assertTrue(LayoutIndex.circleIntersects(0, 0, 2, 2, 1, 1, 0.1f));
+        assertTrue(LayoutIndex.circleIntersects(0, 0, 2, 2, 2.5f, 1, 0.6f));
+        assertFalse(LayoutIndex.circleIntersects(0, 0, 2, 2, 2.5f, 1, 0.4f));
+        // Near a corner, the distance to the corner counts
+        assertFalse(LayoutIndex.circleIntersects(0, 0, 2, 2, 2.5f, 2.5f, 0.6f));
+        assertTrue(LayoutIndex.circleIntersects(0, 0, 2, 2, 2.5f, 2.5f, 0.8f));
+    }
+
+    @Test
+    public void testSegmentIntersects() throws Exception {
+        // Inside, crossing, and outside the rectangle
+        assertTrue(LayoutIndex.segmentIntersects(0, 0, 2, 2, 0.5f, 0.5f, 1.5f, 1.5f));
+        assertTrue(LayoutIndex.segmentIntersects(0, 0, 2, 2, -1, 1, 3, 1));
+        assertTrue(LayoutIndex.segmentIntersects(0, 0, 2, 2, -1, 3, 3, -1));
+        assertFalse(LayoutIndex.segmentIntersects(0, 0, 2, 2, 3, 0, 3, 2));
+        // Same bounding box, but passing beside a corner
+        assertFalse(LayoutIndex.segmentIntersects(0, 0, 2, 2, 1.5f, 3, 3, 1.5f));
+        assertTrue(LayoutIndex.segmentIntersects(0, 0, 2, 2, 1.5f, 2.4f, 2.4f, 1.5f));
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        Random random = new Random(42);
+        for (int t = 0; t < 10; t++) {
+            Graph graph = Graph.randomInputGraph(20 + 10*t, 20 + 15*t);
+            ForestRadialLayout layout = new ForestRadialLayout(graph, graph.getVertices().first());
+            layout.rotate(t);
+            LayoutIndex index = layout.getIndex(graph);
+            int nbVertices = graph.getAdjacency().getNbVertices();
+            int nbEdges = graph.getEdges().size();
+            int[] result = new int[Math.max(nbVertices, nbEdges)];
+            for (int q = 0; q < 20; q++) {
+                float x = 20 * random.nextFloat() - 10;
+                float y = 20 * random.nextFloat() - 10;
+                float w = 8 * random.nextFloat();
+                float h = 8 * random.nextFloat();
+
+                // Vertices found, compared with all the vertices
+                Set<Integer> expected = new HashSet<>();
+                for (int id = 0; id < nbVertices; id++) {
+                    if (LayoutIndex.circleIntersects(x, y, x+w, y+h,
+                            index.getX(id), index.getY(id), index.getRadius(id))) {
+                        expected.add(id);
+                    }
+                }
+                int n = index.queryVertices(x, y, x+w, y+h, result);
+                Set<Integer> actual = new HashSet<>();
+                for (int k = 0; k < n; k++) {
+                    actual.add(result[k]);
+                }
+                assertEquals(expected.size(), n);
+                assertEquals(expected, actual);
+
+                // Edges found, each one once, compared with all the edges
+                expected.clear();
+                for (int i = 0; i < nbEdges; i++) {
+                    if (LayoutIndex.segmentIntersects(x, y, x+w, y+h, index.getX1(i),
+                            index.getY1(i), index.getX2(i), index.getY2(i))) {
+                        expected.add(i);
+                    }
+                }
+                n = index.queryEdges(x, y, x+w, y+h, result);
+                actual.clear();
+                for (int k = 0; k < n; k++) {
+                    actual.add(result[k]);
+                }
+                assertEquals(expected.size(), n);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testRebuilt() throws Exception {
+        Graph graph = Graph.randomInputGraph(30, 40);
+        ForestRadialLayout layout = new ForestRadialLayout(graph, graph.getVertices().first());
+        LayoutIndex index = layout.getIndex(graph);
+        // Built once per layout
+        assertSame(index, layout.getIndex(graph));
+        layout.rotate(1f);
+        assertNotSame(index, layout.getIndex(graph));
+        index = layout.getIndex(graph);
+        layout.changeRoot(graph, graph.getVertices().last());
+        assertNotSame(index, layout.getIndex(graph));
+        // The index follows the layout
+        index = layout.getIndex(graph);
+        LayoutIndex fresh = new ForestRadialLayout(graph, graph.getVertices().last())
+                .getIndex(graph);
+        for (int id = 0; id < graph.getAdjacency().getNbVertices(); id++) {
+            assertEquals(fresh.getX(id), index.getX(id), 0f);
+            assertEquals(fresh.getY(id), index.getY(id), 0f);
+            assertEquals(fresh.getRadius(id), index.getRadius(id), 0f);
+        }
+    }
+}
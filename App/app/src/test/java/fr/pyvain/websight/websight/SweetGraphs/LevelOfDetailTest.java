@@ -0,0 +1,124 @@
+package fr.pyvain.websight.websight.SweetGraphs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public class LevelOfDetailTest {
+
+    private final static float EPS = 1e-2f;
+
+    @Test
+    public void testShowsLabels() throws Exception {
+        assertFalse(LevelOfDetail.showsLabels(LevelOfDetail.MIN_TEXT_SIZE / 2));
+        assertTrue(LevelOfDetail.showsLabels(LevelOfDetail.MIN_TEXT_SIZE));
+        assertTrue(LevelOfDetail.showsLabels(30));
+    }
+
+    @Test
+    public void testNbOrbitSides() throws Exception {
+        assertEquals(LevelOfDetail.MIN_ORBIT_SIDES, LevelOfDetail.nbOrbitSides(0));
+        assertEquals(LevelOfDetail.MIN_ORBIT_SIDES, LevelOfDetail.nbOrbitSides(1));
+        assertEquals(LevelOfDetail.MAX_ORBIT_SIDES, LevelOfDetail.nbOrbitSides(1e6f));
+        int previous = 0;
+        for (float r = 10; r <= 2000; r *= 1.5f) {
+            int n = LevelOfDetail.nbOrbitSides(r);
+            // Fewer sides for smaller orbits
+            assertTrue(previous <= n);
+            previous = n;
+            // The polygon stays close to the orbit
+            if (n < LevelOfDetail.MAX_ORBIT_SIDES) {
+                assertTrue(r - r*Math.cos(Math.PI/n) <= LevelOfDetail.ORBIT_TOLERANCE + 1e-4);
+            }
+        }
+    }
+
+    @Test
+    public void testGatherThinEdges() throws Exception {
+        Graph graph = Graph.randomInputGraph(100, 150);
+        ForestRadialLayout layout = new ForestRadialLayout(graph, graph.getVertices().first());
+        LayoutFrame frame = new LayoutFrame();
+        LevelOfDetail detail = new LevelOfDetail();
+        // Small canvas, so that many edges are thinner than a pixel
+        for (float size : new float[] {100, 800}) {
+            frame.update(graph, layout, new Rectangle(new Point(size/2, size/2), size, size));
+            int n = detail.gatherThinEdges(frame);
+            float[] lines = detail.getThinLines();
+            assertEquals(0, n % 4);
+            int nbThin = 0;
+            for (int k = 0; k < frame.getNbVisibleEdges(); k++) {
+                int i = frame.getVisibleEdge(k);
+                if (LevelOfDetail.isThin(frame, i)) {
+                    assertEquals(frame.getX1(i), lines[4*nbThin], 0f);
+                    assertEquals(frame.getY1(i), lines[4*nbThin + 1], 0f);
+                    assertEquals(frame.getX2(i), lines[4*nbThin + 2], 0f);
+                    assertEquals(frame.getY2(i), lines[4*nbThin + 3], 0f);
+                    nbThin++;
+                }
+            }
+            assertEquals(4*nbThin, n);
+        }
+    }
+
+    @Test
+    public void testTessellateOrbits() throws Exception {
+        Graph graph = Graph.randomInputGraph(100, 150);
+        ForestRadialLayout layout = new ForestRadialLayout(graph, graph.getVertices().first());
+        LayoutFrame frame = new LayoutFrame();
+        LevelOfDetail detail = new LevelOfDetail();
+        frame.update(graph, layout, new Rectangle(new Point(200, 400), 400, 800));
+
+        // Whole layout visible : each orbit is drawn entirely
+        int n = detail.tessellateOrbits(frame, -1000, -1000, 2000, 2000);
+        int expected = 0;
+        for (int o = 0; o < frame.getNbOrbits(); o++) {
+            expected += 4*LevelOfDetail.nbOrbitSides(frame.getOrbitRadius(o));
+        }
+        assertEquals(expected, n);
+        assertOnOrbits(frame, detail.getOrbitLines(), n);
+
+        // Zoomed in : only the sides crossing the rectangle are kept
+        float minX = 220, minY = 300, maxX = 300, maxY = 380;
+        n = detail.tessellateOrbits(frame, minX, minY, maxX, maxY);
+        assertTrue(n < expected);
+        float[] lines = detail.getOrbitLines();
+        for (int k = 0; k < n; k += 4) {
+            assertTrue(LayoutIndex.segmentIntersects(minX, minY, maxX, maxY,
+                    lines[k], lines[k+1], lines[k+2], lines[k+3]));
+        }
+        assertOnOrbits(frame, lines, n);
+
+        // Inside of the smallest orbit, or beside the layout : nothing
+        float cx = frame.getOrbitX(0);
+        float cy = frame.getOrbitY(0);
+        float r = Float.MAX_VALUE;
+        for (int o = 0; o < frame.getNbOrbits(); o++) {
+            r = Math.min(r, frame.getOrbitRadius(o));
+        }
+        assertEquals(0, detail.tessellateOrbits(frame, cx - r/4, cy - r/4, cx + r/4, cy + r/4));
+        assertEquals(0, detail.tessellateOrbits(frame, 5000, 5000, 5100, 5100));
+    }
+
+    /**
+     * Checks that the ends of the specified sides are on orbits of the
+     * specified frame.
+     */
+    private void assertOnOrbits(LayoutFrame frame, float[] lines, int n) {
+        for (int k = 0; k < n; k += 2) {
+            boolean found = false;
+            for (int o = 0; o < frame.getNbOrbits() && !found; o++) {
+                float d = Point.distanceBetween(lines[k], lines[k+1],
+                        frame.getOrbitX(o), frame.getOrbitY(o));
+                found = Math.abs(d - frame.getOrbitRadius(o)) <= EPS * Math.max(1, d);
+            }
+            assertTrue(found);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package fr.pyvain.websight.websight.PersonalDataGraph;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Random;
+
+import fr.pyvain.websight.websight.benchmark.DrawingState;
+
+/**
+ * <p>Benchmarks of the iterations of Tree.minimizeCrossings on the main
+ * tree of a random graph, in iterations per second. It belongs to the
+ * package of the annealing classes, which are not public.</p>
+ *
+ * <p>Tree.minimizeCrossings runs until a deadline, so an iteration is
+ * measured on its own : a neighbour state of the tree is considered, its
+ * cost computed, and the previous state restored so that every iteration
+ * starts from the same state.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+public class AnnealingBenchmark extends DrawingState {
+
+    private static final float SEC_WIDTH = (float) (2 * Math.PI);
+
+    private Tree tree;
+    private RadialLayout treeLayout;
+    private Drawing treeDrawing;
+    private IncrementalCost tracker;
+    private Random rand;
+
+    @Setup
+    public void setUp() {
+        buildDrawing();
+        // Same setting as the annealing of the main tree by Forest
+        tree = forest.getMainTree();
+        treeLayout = new RadialLayout(tree, 0, 0f, SEC_WIDTH);
+        treeDrawing = new Drawing(tree, treeLayout, V_RADIUS*treeLayout.getMaxVertexRadius(),
+                Drawing.CMIN, Drawing.CMIN, Drawing.CMAX, Drawing.CMAX,
+                Drawing.C0, Drawing.C0);
+        tracker = new IncrementalCost(tree, treeLayout, treeDrawing, 0f, SEC_WIDTH);
+        rand = new Random(0);
+    }
+
+    /**
+     * Iteration of Tree.minimizeCrossings, only computing again the moved
+     * parts of the drawing.
+     */
+    @Benchmark
+    public int incrementalIteration() {
+        tree.neighbourState(rand, true);
+        tracker.update(tree.getLastShuffled());
+        int cost = SimulatedAnnealing.cost(tracker);
+        tree.previousState();
+        tracker.undo();
+        return cost;
+    }
+
+    /**
+     * Iteration computing again the whole layout and drawing, for
+     * comparison with incrementalIteration.
+     */
+    @Benchmark
+    public int fullIteration() {
+        tree.neighbourState(rand, true);
+        treeLayout.update(tree, 0, 0f, SEC_WIDTH);
+        treeDrawing.update(tree, treeLayout, V_RADIUS*treeLayout.getMaxVertexRadius(),
+                Drawing.CMIN, Drawing.CMIN, Drawing.CMAX, Drawing.CMAX,
+                Drawing.C0, Drawing.C0);
+        int cost = SimulatedAnnealing.cost(treeDrawing, tree);
+        tree.previousState();
+        return cost;
+    }
+}
@@ -0,0 +1,72 @@
+package fr.pyvain.websight.websight.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import fr.pyvain.websight.websight.PersonalDataGraph.Drawing;
+import fr.pyvain.websight.websight.PersonalDataGraph.Forest;
+import fr.pyvain.websight.websight.PersonalDataGraph.InputGraph;
+import fr.pyvain.websight.websight.PersonalDataGraph.RadialLayout;
+
+/**
+ * <p>Benchmark state holding a random graph of parameterized size and
+ * density, with the forest, radial layout and drawing built from it as
+ * the app does.</p>
+ *
+ * <p>The benchmarks extending it must call buildDrawing() in their own
+ * setup method.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+@State(Scope.Benchmark)
+public abstract class DrawingState {
+
+    /**
+     * Fraction of the maximal vertex radius used in the drawings.
+     */
+    public static final float V_RADIUS = 0.5f;
+
+    /**
+     * Number of vertices of the graph.
+     */
+    @Param({"20", "100", "400"})
+    public int nbVertices;
+
+    /**
+     * Average number of edges per vertex of the graph.
+     */
+    @Param({"1.5", "3"})
+    public float density;
+
+    protected InputGraph graph;
+    protected Forest forest;
+    protected RadialLayout layout;
+    protected Drawing drawing;
+
+    /**
+     * Builds a new random graph with the current parameters, and its
+     * forest, layout and drawing.
+     */
+    protected void buildDrawing() {
+        graph = InputGraph.randomInputGraph(nbVertices, nbEdges(nbVertices, density));
+        forest = new Forest(graph, graph.getVertices().first());
+        layout = new RadialLayout(forest);
+        drawing = new Drawing(forest, layout, V_RADIUS*layout.getMaxVertexRadius(),
+                Drawing.CMIN, Drawing.CMIN, Drawing.CMAX, Drawing.CMAX,
+                Drawing.C0, Drawing.C0);
+    }
+
+    /**
+     * Number of edges of a graph of specified size and density, bounded by
+     * the number of edges of the complete graph.
+     * @param nbVertices Number of vertices of the graph
+     * @param density    Average number of edges per vertex
+     * @return the number of edges of the graph
+     */
+    public static int nbEdges(int nbVertices, float density) {
+        return Math.min(Math.round(density*nbVertices), nbVertices*(nbVertices-1)/2);
+    }
+}
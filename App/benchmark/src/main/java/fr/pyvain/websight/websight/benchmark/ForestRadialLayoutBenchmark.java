@@ -0,0 +1,55 @@
+package fr.pyvain.websight.websight.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fr.pyvain.websight.websight.SweetGraphs.ForestRadialLayout;
+import fr.pyvain.websight.websight.SweetGraphs.Graph;
+import fr.pyvain.websight.websight.SweetGraphs.Vertex;
+
+/**
+ * <p>Benchmark of ForestRadialLayout.changeRoot on a random graph, each
+ * invocation choosing the next vertex of the graph as root.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+@State(Scope.Benchmark)
+public class ForestRadialLayoutBenchmark {
+
+    /**
+     * Number of vertices of the graph.
+     */
+    @Param({"20", "100", "400"})
+    public int nbVertices;
+
+    /**
+     * Average number of edges per vertex of the graph.
+     */
+    @Param({"1.5", "3"})
+    public float density;
+
+    private Graph graph;
+    private Vertex[] roots;
+    private int next;
+    private ForestRadialLayout layout;
+
+    @Setup
+    public void setUp() {
+        graph = Graph.randomInputGraph(nbVertices, DrawingState.nbEdges(nbVertices, density));
+        roots = graph.getVertices().toArray(new Vertex[nbVertices]);
+        next = 0;
+        layout = new ForestRadialLayout(graph, roots[0]);
+    }
+
+    @Benchmark
+    public ForestRadialLayout changeRoot() {
+        next = (next + 1) % roots.length;
+        layout.changeRoot(graph, roots[next]);
+        return layout;
+    }
+}
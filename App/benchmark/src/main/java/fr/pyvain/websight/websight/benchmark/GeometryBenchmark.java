@@ -0,0 +1,97 @@
+package fr.pyvain.websight.websight.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import fr.pyvain.websight.websight.Geometry.InterComputer;
+import fr.pyvain.websight.websight.Geometry.IntersectionSet;
+import fr.pyvain.websight.websight.Geometry.Segment;
+
+/**
+ * <p>Benchmarks of the intersection computations on the segments of the
+ * drawing of a random graph. edgeIntersections runs the method chosen by
+ * its crossover model among the other ones, the model being reset before
+ * each trial.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public class GeometryBenchmark extends DrawingState {
+
+    /**
+     * Number of segment pairs intersected by segmentIntersection.
+     */
+    private static final int NB_PAIRS = 1024;
+
+    private Collection<Segment> segments;
+    private Segment[] firsts;
+    private Segment[] seconds;
+
+    @Setup
+    public void setUp() {
+        buildDrawing();
+        segments = drawing.getSegments().values();
+        // Each trial learns the costs of the methods from scratch
+        InterComputer.getCrossoverModel().reset();
+        // Random pairs of segments of the drawing
+        List<Segment> list = new ArrayList<>(segments);
+        Random rand = new Random(0);
+        firsts = new Segment[NB_PAIRS];
+        seconds = new Segment[NB_PAIRS];
+        for (int i = 0; i < NB_PAIRS; i++) {
+            firsts[i] = list.get(rand.nextInt(list.size()));
+            seconds[i] = list.get(rand.nextInt(list.size()));
+        }
+    }
+
+    @Benchmark
+    public IntersectionSet edgeIntersectionsNaive() {
+        return InterComputer.edgeIntersectionsNaive(segments);
+    }
+
+    @Benchmark
+    public IntersectionSet edgeIntersectionsBO() {
+        return InterComputer.edgeIntersectionsBO(segments);
+    }
+
+    @Benchmark
+    public IntersectionSet edgeIntersectionsExact() {
+        return InterComputer.edgeIntersectionsExact(segments);
+    }
+
+    @Benchmark
+    public IntersectionSet edgeIntersectionsBoxed() {
+        return InterComputer.edgeIntersectionsBoxed(segments);
+    }
+
+    @Benchmark
+    public IntersectionSet edgeIntersections() {
+        return InterComputer.edgeIntersections(segments);
+    }
+
+    @Benchmark
+    public int nbEdgeCrossings() {
+        return drawing.nbEdgeCrossings();
+    }
+
+    @Benchmark
+    public int nbVertexCrossings() {
+        return drawing.nbVertexCrossings(forest.getEdges());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NB_PAIRS)
+    public void segmentIntersection(Blackhole bh) {
+        for (int i = 0; i < NB_PAIRS; i++) {
+            bh.consume(firsts[i].intersectionWith(seconds[i]));
+        }
+    }
+}
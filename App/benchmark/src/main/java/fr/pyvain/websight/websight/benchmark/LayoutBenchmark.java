@@ -0,0 +1,37 @@
+package fr.pyvain.websight.websight.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+import fr.pyvain.websight.websight.PersonalDataGraph.Drawing;
+import fr.pyvain.websight.websight.PersonalDataGraph.RadialLayout;
+
+/**
+ * <p>Benchmarks of the computation of the radial layout and of the drawing
+ * of a random graph.</p>
+ *
+ * <p>
+ * @author Etienne Thiery, etienne.thiery@wanadoo.fr
+ * </p>
+ */
+public class LayoutBenchmark extends DrawingState {
+
+    @Setup
+    public void setUp() {
+        buildDrawing();
+    }
+
+    @Benchmark
+    public RadialLayout radialLayoutUpdate() {
+        layout.update(forest);
+        return layout;
+    }
+
+    @Benchmark
+    public Drawing drawingUpdate() {
+        drawing.update(forest, layout, V_RADIUS*layout.getMaxVertexRadius(),
+                Drawing.CMIN, Drawing.CMIN, Drawing.CMAX, Drawing.CMAX,
+                Drawing.C0, Drawing.C0);
+        return drawing;
+    }
+}